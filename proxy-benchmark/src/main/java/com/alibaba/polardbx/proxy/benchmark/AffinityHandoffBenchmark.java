@@ -0,0 +1,210 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.net.NIOConnection;
+import com.alibaba.polardbx.proxy.net.NIOProcessor;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.utils.AutoCloseableContainer;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Round trip of client -> frontend -> backend -> echo server -> backend -> frontend -> client through two relay
+ * connections, which forward like MysqlForwarder and QueryResultHandler do. Frontend is assigned round-robin like
+ * acceptor, and backend is assigned either round-robin(old behavior) or affine to processor of frontend.
+ * crossThreadWrites counts writes issued from thread other than owner reactor, which is 2 per round trip without
+ * affinity and 0 with it.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+public class AffinityHandoffBenchmark {
+    private static final int MAX_PACKET_SIZE = 64 * 1024;
+    private static final int PAYLOAD_SIZE = 64;
+
+    private static final class RelayConnection extends NIOConnection {
+        private volatile NIOConnection peer;
+
+        private RelayConnection(SocketChannel channel, NIOProcessor processor) {
+            super(channel, processor, true, MAX_PACKET_SIZE, 128);
+        }
+
+        @Override
+        protected void onEstablished() {
+        }
+
+        @Override
+        protected int probeLength(ByteBuffer buf, int offset, int length) {
+            return length; // stream passthrough
+        }
+
+        @Override
+        protected void onPacket(AutoCloseableContainer<Slice> packets) {
+            try {
+                peer.write(packets);
+            } catch (Throwable t) {
+                close();
+            }
+        }
+
+        @Override
+        protected void onFatalError(Throwable t) {
+            close();
+        }
+    }
+
+    @State(Scope.Benchmark)
+    public static class Servers {
+        @Param({"true", "false"})
+        public boolean affinity;
+
+        private NIOWorker proxyWorker;
+        private NIOWorker echoWorker;
+        private ServerSocketChannel proxyServer;
+        private ServerSocketChannel echoServer;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            proxyWorker = new NIOWorker(4);
+            echoWorker = new NIOWorker(1);
+            proxyServer = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+            echoServer = ServerSocketChannel.open().bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0));
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            proxyServer.close();
+            echoServer.close();
+        }
+
+        private long crossThreadWrites() {
+            long total = 0;
+            for (final NIOProcessor processor : proxyWorker.getProcessors()) {
+                total += processor.getPerfCollection().getCrossThreadWriteCount().getAcquire();
+            }
+            return total;
+        }
+
+        private static SocketChannel accept(ServerSocketChannel server) throws IOException {
+            final SocketChannel channel = server.accept();
+            channel.configureBlocking(false);
+            return channel;
+        }
+
+        private NIOConnection[] pair() throws IOException {
+            final NIOProcessor frontendProcessor = proxyWorker.getProcessor();
+            final RelayConnection frontend = new RelayConnection(accept(proxyServer), frontendProcessor);
+
+            final SocketChannel backendChannel =
+                NIOConnection.connectBlocking(echoServer.getLocalAddress(), 3000);
+            final RelayConnection echo = new RelayConnection(accept(echoServer), echoWorker.getProcessor());
+            echo.peer = echo;
+            final RelayConnection backend = new RelayConnection(backendChannel,
+                affinity ? proxyWorker.getProcessor(frontendProcessor) : proxyWorker.getProcessor());
+
+            frontend.peer = backend;
+            backend.peer = frontend;
+            echoWorker.getProcessors()[0].postRegister(echo);
+            backend.getProcessor().postRegister(backend);
+            frontend.getProcessor().postRegister(frontend);
+            return new NIOConnection[] {frontend, backend, echo};
+        }
+    }
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Client {
+        public long crossThreadWrites;
+
+        private SocketChannel channel;
+        private NIOConnection[] connections;
+        private final ByteBuffer request = ByteBuffer.allocateDirect(PAYLOAD_SIZE);
+        private final ByteBuffer response = ByteBuffer.allocateDirect(PAYLOAD_SIZE);
+        private long lastCrossThreadWrites;
+
+        @Setup(Level.Trial)
+        public void setup(Servers servers) throws IOException {
+            channel = SocketChannel.open();
+            channel.connect(servers.proxyServer.getLocalAddress());
+            channel.socket().setTcpNoDelay(true);
+            connections = servers.pair();
+            for (int i = 0; i < PAYLOAD_SIZE; ++i) {
+                request.put(i, (byte) i);
+            }
+        }
+
+        @Setup(Level.Iteration)
+        public void reset(Servers servers) {
+            crossThreadWrites = 0;
+            lastCrossThreadWrites = servers.crossThreadWrites();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            channel.close();
+            for (final NIOConnection connection : connections) {
+                connection.close();
+            }
+        }
+    }
+
+    @Benchmark
+    public int roundTrip(Servers servers, Client client) throws IOException {
+        final ByteBuffer request = client.request.clear();
+        while (request.hasRemaining()) {
+            client.channel.write(request);
+        }
+        final ByteBuffer response = client.response.clear();
+        while (response.hasRemaining()) {
+            if (client.channel.read(response) < 0) {
+                throw new IOException("proxy closed");
+            }
+        }
+
+        final long now = servers.crossThreadWrites();
+        client.crossThreadWrites += now - client.lastCrossThreadWrites;
+        client.lastCrossThreadWrites = now;
+        return response.get(PAYLOAD_SIZE - 1);
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.protocol.command.ColumnDefinition41;
+import com.alibaba.polardbx.proxy.protocol.command.EofPacket;
+import com.alibaba.polardbx.proxy.protocol.command.FieldType;
+import com.alibaba.polardbx.proxy.protocol.command.OkPacket;
+import com.alibaba.polardbx.proxy.protocol.command.StatusFlags;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
+import com.alibaba.polardbx.proxy.utils.CharsetMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * In-memory MySQL packets(with normal header) used by benchmarks.
+ */
+public final class BenchmarkPackets {
+    public static final int CAPABILITIES = Capabilities.getBaseCapabilities();
+
+    private BenchmarkPackets() {
+    }
+
+    public interface PacketWriter {
+        void write(Encoder encoder) throws IOException;
+    }
+
+    public static byte[] build(int seq, PacketWriter writer) {
+        try (final Encoder.BytesOutput output = new Encoder.BytesOutput()) {
+            try (final Encoder encoder = Encoder.create(null, output)) {
+                encoder.setSeq(seq);
+                writer.write(encoder);
+                encoder.flush();
+            }
+            return output.getBytes();
+        } catch (IOException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    public static OkPacket okPacket(boolean isEOF) {
+        final OkPacket ok = new OkPacket();
+        ok.setEOF(isEOF);
+        ok.setAffectedRows(isEOF ? 0 : 1);
+        ok.setStatusFlags(StatusFlags.SERVER_STATUS_AUTOCOMMIT);
+        return ok;
+    }
+
+    public static EofPacket eofPacket() {
+        final EofPacket eof = new EofPacket();
+        eof.setStatusFlags(StatusFlags.SERVER_STATUS_AUTOCOMMIT);
+        return eof;
+    }
+
+    public static ColumnDefinition41 column(String name) {
+        final ColumnDefinition41 column = new ColumnDefinition41();
+        column.setCatalog("def".getBytes(StandardCharsets.UTF_8));
+        column.setSchema("sbtest".getBytes(StandardCharsets.UTF_8));
+        column.setTable("sbtest1".getBytes(StandardCharsets.UTF_8));
+        column.setOrgTable("sbtest1".getBytes(StandardCharsets.UTF_8));
+        column.setName(name.getBytes(StandardCharsets.UTF_8));
+        column.setOrgName(name.getBytes(StandardCharsets.UTF_8));
+        column.setCharacterSet(CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci);
+        column.setColumnLength(480);
+        column.setType((byte) FieldType.MYSQL_TYPE_VAR_STRING);
+        return column;
+    }
+
+    public static void row(Encoder encoder, byte[][] values) throws IOException {
+        encoder.begin();
+        for (final byte[] val : values) {
+            if (null == val) {
+                encoder.u8(0xFB);
+            } else {
+                encoder.le_str(val);
+            }
+        }
+        encoder.end();
+    }
+
+    public static byte[][] rowValues(int columns, int rowIndex) {
+        final byte[][] values = new byte[columns][];
+        values[0] = String.valueOf(rowIndex).getBytes(StandardCharsets.UTF_8);
+        for (int i = 1; i < columns; ++i) {
+            values[i] = ("21738402968-89426802347-72651209398-" + rowIndex).getBytes(StandardCharsets.UTF_8);
+        }
+        return values;
+    }
+
+    /**
+     * Text result set in the order of sending, terminated by OK(0xFE) when CLIENT_DEPRECATE_EOF set, or EOF.
+     */
+    public static List<byte[]> resultSet(int columns, int rows, int capabilities) {
+        final boolean deprecateEof = (capabilities & Capabilities.CLIENT_DEPRECATE_EOF) != 0;
+        final List<byte[]> packets = new ArrayList<>(rows + columns + 3);
+        int seq = 1;
+        packets.add(build(seq++, encoder -> {
+            encoder.begin();
+            encoder.lei(columns);
+            encoder.end();
+        }));
+        for (int i = 0; i < columns; ++i) {
+            final ColumnDefinition41 column = column("c" + i);
+            packets.add(build(seq++, encoder -> column.encode(encoder, capabilities)));
+        }
+        if (!deprecateEof) {
+            packets.add(build(seq++, encoder -> eofPacket().encode(encoder, capabilities)));
+        }
+        for (int i = 0; i < rows; ++i) {
+            final byte[][] values = rowValues(columns, i);
+            packets.add(build(seq++ & 0xFF, encoder -> row(encoder, values)));
+        }
+        packets.add(build(seq & 0xFF, encoder -> {
+            if (deprecateEof) {
+                okPacket(true).encode(encoder, capabilities);
+            } else {
+                eofPacket().encode(encoder, capabilities);
+            }
+        }));
+        return packets;
+    }
+}
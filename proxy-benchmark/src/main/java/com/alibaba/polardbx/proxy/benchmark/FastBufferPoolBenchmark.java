@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.utils.FastBufferPool;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Allocate and free of one block, single thread and contended by worker threads which release result slices.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class FastBufferPoolBenchmark {
+    private FastBufferPool pool;
+
+    @Setup
+    public void setup() {
+        // same as reactor default, with a large class for big packets
+        pool = new FastBufferPool(new int[] {8192, 64 * 1024}, new int[] {2048, 256});
+    }
+
+    private boolean allocateAndFree(int size) {
+        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference(size);
+        if (null == holder) {
+            return false; // exhausted, caller falls back to heap
+        }
+        holder.subReference();
+        return true;
+    }
+
+    @Benchmark
+    @Threads(1)
+    public boolean allocateFree() {
+        return allocateAndFree(8192);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean allocateFreeContended() {
+        return allocateAndFree(8192);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean allocateFreeLargeContended() {
+        return allocateAndFree(64 * 1024);
+    }
+}
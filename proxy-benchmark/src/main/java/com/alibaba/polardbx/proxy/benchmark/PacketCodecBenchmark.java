@@ -0,0 +1,153 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.protocol.command.EofPacket;
+import com.alibaba.polardbx.proxy.protocol.command.OkPacket;
+import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
+import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
+import com.alibaba.polardbx.proxy.utils.FastBufferPool;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Decode and encode of the packets which dominate result sets: row, OK and EOF.
+ * Direct slices are from FastBufferPool as reactor does, heap slices are the fallback path.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PacketCodecBenchmark {
+    @Param({"direct", "heap"})
+    public String memory;
+
+    private FastBufferPool pool;
+    private byte[][] rowValues;
+    private OkPacket ok;
+    private EofPacket eof;
+    private Slice okSlice;
+    private Slice rowSlice;
+    private Slice eofSlice;
+
+    // drop all encoded packets, encoder frees the slices left in container
+    private final Encoder.ExportConsumer sink = c -> {
+    };
+
+    private Slice slice(byte[] packet) {
+        if ("heap".equals(memory)) {
+            return new Slice(ByteBuffer.wrap(packet), 0, packet.length);
+        }
+        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference(packet.length);
+        try {
+            final ByteBuffer buffer = holder.duplicateBuffer();
+            buffer.put(packet);
+            return new Slice(holder, 0, packet.length);
+        } finally {
+            holder.subReference();
+        }
+    }
+
+    @Setup
+    public void setup() {
+        pool = new FastBufferPool(8192, 64);
+        rowValues = BenchmarkPackets.rowValues(4, 5021);
+        ok = BenchmarkPackets.okPacket(false);
+        eof = BenchmarkPackets.eofPacket();
+        okSlice = slice(BenchmarkPackets.build(1, encoder -> ok.encode(encoder, BenchmarkPackets.CAPABILITIES)));
+        rowSlice = slice(BenchmarkPackets.build(6, encoder -> BenchmarkPackets.row(encoder, rowValues)));
+        eofSlice = slice(BenchmarkPackets.build(7, encoder -> eof.encode(encoder, BenchmarkPackets.CAPABILITIES)));
+    }
+
+    @TearDown
+    public void tearDown() {
+        okSlice.close();
+        rowSlice.close();
+        eofSlice.close();
+    }
+
+    @Benchmark
+    public OkPacket decodeOk() {
+        final Decoder decoder = Decoder.decodeNormalPacket(okSlice);
+        final OkPacket packet = new OkPacket();
+        packet.decode(decoder, BenchmarkPackets.CAPABILITIES);
+        return packet;
+    }
+
+    @Benchmark
+    public void decodeRow(Blackhole bh) {
+        final Decoder decoder = Decoder.decodeNormalPacket(rowSlice);
+        for (int i = 0; i < rowValues.length; ++i) {
+            bh.consume(decoder.le_str());
+        }
+    }
+
+    @Benchmark
+    public EofPacket decodeEof() {
+        final Decoder decoder = Decoder.decodeNormalPacket(eofSlice);
+        final EofPacket packet = new EofPacket();
+        packet.decode(decoder, BenchmarkPackets.CAPABILITIES);
+        return packet;
+    }
+
+    private Encoder encoder() {
+        return Encoder.create("heap".equals(memory) ? null : pool, sink);
+    }
+
+    @Benchmark
+    public void encodeOk() throws IOException {
+        try (final Encoder encoder = encoder()) {
+            ok.encode(encoder, BenchmarkPackets.CAPABILITIES);
+            encoder.flush();
+        }
+    }
+
+    @Benchmark
+    public void encodeRow() throws IOException {
+        try (final Encoder encoder = encoder()) {
+            BenchmarkPackets.row(encoder, rowValues);
+            encoder.flush();
+        }
+    }
+
+    @Benchmark
+    public void encodeEof() throws IOException {
+        try (final Encoder encoder = encoder()) {
+            eof.encode(encoder, BenchmarkPackets.CAPABILITIES);
+            encoder.flush();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.connection.FrontendConnection;
+import com.alibaba.polardbx.proxy.context.BackendContext;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.net.NIOConnection;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
+import com.alibaba.polardbx.proxy.protocol.handler.MysqlForwarder;
+import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
+import com.alibaba.polardbx.proxy.utils.AutoCloseableContainer;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import com.alibaba.polardbx.proxy.utils.UnsafeBytes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Forward a whole synthetic text result set through QueryResultHandler to a forwarder which drops packets.
+ * Packets are sliced from one direct buffer like the reactor read buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class QueryResultForwardBenchmark {
+    @Param({"10", "1000"})
+    public int rows;
+
+    @Param({"true", "false"})
+    public boolean deprecateEof;
+
+    private BackendContext backendContext;
+    private FrontendContext frontendContext;
+    private AtomicReference<BackendContext> contextReference;
+    private DropForwarder forwarder;
+    private ByteBuffer buffer;
+    private int[] offsets;
+
+    private static final class DropForwarder extends MysqlForwarder {
+        private long forwarded = 0;
+
+        DropForwarder(FrontendConnection connection, FrontendContext context) {
+            super(connection, context);
+        }
+
+        @Override
+        public synchronized void push(Collection<byte[]> bytesPackets) {
+            forwarded += bytesPackets.size();
+        }
+
+        @Override
+        public synchronized void pushSlices(AutoCloseableContainer<Slice> slices) {
+            forwarded += slices.size();
+            slices.close();
+        }
+
+        @Override
+        public synchronized boolean handleAndTakePacket(Slice packet, Decoder decoder) {
+            packet.close();
+            ++forwarded;
+            return true;
+        }
+
+        @Override
+        public synchronized void handleFinish() {
+        }
+    }
+
+    /**
+     * FrontendConnection needs a running ProxyServer, so allocate a detached one with only the flow control state
+     * which QueryResultHandler touches.
+     */
+    private static FrontendConnection detachedFrontend() throws Exception {
+        final FrontendConnection connection =
+            (FrontendConnection) UnsafeBytes.UNSAFE.allocateInstance(FrontendConnection.class);
+        final Field writeBlocking = NIOConnection.class.getDeclaredField("writeBlocking");
+        writeBlocking.setAccessible(true);
+        writeBlocking.set(connection, new AtomicBoolean(false));
+        final Field writeResumeListener = NIOConnection.class.getDeclaredField("writeResumeListener");
+        writeResumeListener.setAccessible(true);
+        writeResumeListener.set(connection, new CopyOnWriteArrayList<>());
+        return connection;
+    }
+
+    @Setup
+    public void setup() throws Exception {
+        int capabilities = BenchmarkPackets.CAPABILITIES;
+        if (!deprecateEof) {
+            capabilities &= ~Capabilities.CLIENT_DEPRECATE_EOF;
+        }
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 3306);
+        backendContext = new BackendContext(address, 1, capabilities);
+        frontendContext = new FrontendContext(address, 2, capabilities);
+        contextReference = new AtomicReference<>(backendContext);
+        forwarder = new DropForwarder(detachedFrontend(), frontendContext);
+
+        final List<byte[]> packets = BenchmarkPackets.resultSet(4, rows, capabilities);
+        offsets = new int[packets.size() + 1];
+        for (int i = 0; i < packets.size(); ++i) {
+            offsets[i + 1] = offsets[i] + packets.get(i).length;
+        }
+        buffer = ByteBuffer.allocateDirect(offsets[packets.size()]);
+        for (final byte[] packet : packets) {
+            buffer.put(packet);
+        }
+        buffer.clear();
+    }
+
+    @TearDown
+    public void tearDown() {
+        forwarder.close();
+        frontendContext.close();
+        backendContext.close();
+    }
+
+    @Benchmark
+    public long forward() {
+        final QueryResultHandler handler = new QueryResultHandler(contextReference, null, forwarder, null);
+        try {
+            for (int i = 0; i < offsets.length - 1; ++i) {
+                final Slice packet = new Slice(buffer, offsets[i], offsets[i + 1] - offsets[i]);
+                if (!handler.handleAndTakePacket(packet, Decoder.decodeNormalPacket(packet))) {
+                    packet.close();
+                }
+            }
+            handler.handleFinish();
+            if (!handler.isDone()) {
+                throw new IllegalStateException("result not finished: " + handler.getState());
+            }
+        } finally {
+            handler.close();
+        }
+        return forwarder.forwarded;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
+import com.alibaba.polardbx.proxy.parser.recognizer.mysql.lexer.MySQLLexer;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLSyntaxErrorException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Lexer and read-only check on every COM_QUERY, measured per statement of the corpus. Full lexer scans are counted
+ * in scans, and scans / statements is the number of scans per statement.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SqlParserBenchmark {
+    private static final int CORPUS_SIZE = 20;
+
+    // typical OLTP traffic with driver generated statements
+    public static final String[] CORPUS = {
+        "select 1",
+        "SELECT @@session.auto_increment_increment AS auto_increment_increment, @@character_set_client AS "
+            + "character_set_client, @@character_set_connection AS character_set_connection, @@character_set_results "
+            + "AS character_set_results, @@collation_server AS collation_server, @@init_connect AS init_connect, "
+            + "@@interactive_timeout AS interactive_timeout, @@license AS license, @@lower_case_table_names AS "
+            + "lower_case_table_names, @@max_allowed_packet AS max_allowed_packet, @@net_write_timeout AS "
+            + "net_write_timeout, @@sql_mode AS sql_mode, @@system_time_zone AS system_time_zone, @@time_zone AS "
+            + "time_zone, @@transaction_isolation AS transaction_isolation, @@wait_timeout AS wait_timeout",
+        "SET autocommit=0",
+        "SET NAMES utf8mb4",
+        "commit",
+        "SELECT c FROM sbtest1 WHERE id=5021",
+        "SELECT c FROM sbtest1 WHERE id BETWEEN 4976 AND 5075 ORDER BY c",
+        "SELECT DISTINCT c FROM sbtest1 WHERE id BETWEEN 4976 AND 5075 ORDER BY c",
+        "SELECT SUM(k) FROM sbtest1 WHERE id BETWEEN 4976 AND 5075",
+        "UPDATE sbtest1 SET k=k+1 WHERE id=5021",
+        "UPDATE sbtest1 SET c='21738402968-89426802347-72651209398-11412395478-36483741026-93219852362-"
+            + "52081452106-93471384329-76318457261-75432145893' WHERE id=5021",
+        "DELETE FROM sbtest1 WHERE id=5021",
+        "INSERT INTO sbtest1 (id, k, c, pad) VALUES (5021, 4992, '21738402968-89426802347-72651209398-11412395478', "
+            + "'93471384329-76318457261-75432145893-38271947261-19283746510')",
+        "/* ApplicationName=DBeaver */ SELECT o.order_id, o.user_id, o.status, i.item_id, i.price FROM orders o "
+            + "JOIN order_items i ON o.order_id = i.order_id WHERE o.user_id = 10086 AND o.status IN ('paid', "
+            + "'shipped') AND o.gmt_create > '2025-01-01 00:00:00' ORDER BY o.gmt_create DESC LIMIT 20",
+        "select * from t_user where name like 'abc%' and age > 18 for update",
+        "select * from t_user where id = 1 lock in share mode",
+        "/*+TDDL: slave()*/ select count(*) from t_order where gmt_create >= date_sub(now(), interval 1 day)",
+        "SHOW VARIABLES LIKE 'lower_case_table_names'",
+        "use db_order",
+        "INSERT INTO t_log (id, content) VALUES (1, 'a'), (2, 'b'), (3, 'c'), (4, 'd'), (5, 'e'), (6, 'f') ON "
+            + "DUPLICATE KEY UPDATE content = VALUES(content)",
+    };
+
+    private byte[][] statements;
+
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class ScanCounter {
+        public long scans;
+        public long statements;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            scans = 0;
+            statements = 0;
+        }
+
+        void record(SQLParser parser) {
+            scans += parser.getScans();
+            ++statements;
+        }
+    }
+
+    @Setup
+    public void setup() {
+        if (CORPUS.length != CORPUS_SIZE) {
+            throw new IllegalStateException("corpus size mismatch " + CORPUS.length);
+        }
+        statements = new byte[CORPUS.length][];
+        for (int i = 0; i < CORPUS.length; ++i) {
+            statements[i] = CORPUS[i].getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void lexer(Blackhole bh) throws SQLSyntaxErrorException {
+        for (final byte[] sql : statements) {
+            final MySQLLexer lexer = new MySQLLexer(sql, StandardCharsets.UTF_8, false);
+            MySQLToken token;
+            while ((token = lexer.nextToken()) != MySQLToken.EOF) {
+                bh.consume(token);
+            }
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void canSlaveRead(Blackhole bh) throws SQLSyntaxErrorException {
+        for (final byte[] sql : statements) {
+            final SQLParser parser =
+                new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION);
+            bh.consume(parser.canSlaveRead());
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void classify(Blackhole bh, ScanCounter counter) throws SQLSyntaxErrorException {
+        for (final byte[] sql : statements) {
+            final SQLParser parser =
+                new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION);
+            bh.consume(parser.classify());
+            counter.record(parser);
+        }
+    }
+
+    /**
+     * All checks of the COM_QUERY pipeline by the legacy entry points, which share one classification scan.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void legacyChecks(Blackhole bh, ScanCounter counter) throws SQLSyntaxErrorException {
+        for (final byte[] sql : statements) {
+            final SQLParser parser =
+                new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION);
+            bh.consume(parser.canSlaveRead());
+            bh.consume(parser.isReadOnly());
+            bh.consume(parser.isMultiStatement());
+            bh.consume(parser.isPrivilegeDatabaseChanged());
+            bh.consume(parser.applyDatabase("db_order", false));
+            bh.consume(parser.parseMultiStatements());
+            counter.record(parser);
+        }
+    }
+
+    /**
+     * Same checks as before classification was shared, each task of the COM_QUERY pipeline scans with its own parser.
+     */
+    @Benchmark
+    @OperationsPerInvocation(CORPUS_SIZE)
+    public void separatedParsers(Blackhole bh, ScanCounter counter) throws SQLSyntaxErrorException {
+        for (final byte[] sql : statements) {
+            // SystemCommandTask
+            bh.consume(new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION));
+            // CheckQuerySlaveReadTask
+            SQLParser parser =
+                new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION);
+            bh.consume(parser.canSlaveRead());
+            counter.scans += parser.getScans();
+            // VariablesPostGatherTask
+            parser = new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION);
+            bh.consume(parser.parseMultiStatements());
+            counter.scans += parser.getScans();
+            // MysqlContext.recordSqlAffects
+            parser = new SQLParser(sql, 0, sql.length, StandardCharsets.UTF_8, null, MySQLLexer.DEFAULT_VERSION);
+            bh.consume(parser.isPrivilegeDatabaseChanged());
+            bh.consume(parser.applyDatabase("db_order", false));
+            counter.record(parser);
+        }
+    }
+}
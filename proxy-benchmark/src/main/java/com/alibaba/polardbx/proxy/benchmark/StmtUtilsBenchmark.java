@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.benchmark;
+
+import com.alibaba.polardbx.proxy.protocol.prepare.StmtUtils;
+import com.alibaba.polardbx.proxy.utils.FastBufferPool;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Statement id patching when forwarding COM_STMT_EXECUTE to a backend with different prepared id.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StmtUtilsBenchmark {
+    // header(4) + COM_STMT_EXECUTE(1) + statement_id(4) + flags(1) + iteration_count(4)
+    private static final int PACKET_SIZE = 14;
+
+    private FastBufferPool pool;
+    private Slice direct;
+    private Slice heap;
+    private byte[] bytes;
+    private int statementId = 0;
+
+    @Setup
+    public void setup() {
+        pool = new FastBufferPool(8192, 16);
+        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference();
+        try {
+            direct = new Slice(holder, 0, PACKET_SIZE);
+        } finally {
+            holder.subReference();
+        }
+        bytes = new byte[PACKET_SIZE];
+        heap = new Slice(ByteBuffer.wrap(new byte[PACKET_SIZE]), 0, PACKET_SIZE);
+    }
+
+    @TearDown
+    public void tearDown() {
+        direct.close();
+    }
+
+    @Benchmark
+    public int patchDirectSlice() {
+        StmtUtils.fastPatchStatementId(direct, ++statementId);
+        return StmtUtils.fastGetStatementId(direct);
+    }
+
+    @Benchmark
+    public int patchHeapSlice() {
+        StmtUtils.fastPatchStatementId(heap, ++statementId);
+        return StmtUtils.fastGetStatementId(heap);
+    }
+
+    @Benchmark
+    public byte[] patchBytes() {
+        StmtUtils.fastPatchStatementId(bytes, ++statementId);
+        return bytes;
+    }
+}
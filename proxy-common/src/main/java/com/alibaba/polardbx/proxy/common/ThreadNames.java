@@ -37,6 +37,8 @@ public class ThreadNames {
 
     public static final String SMOOTH_SWITCHOVER_MONITOR = "SmoothSwitchoverMonitor";
 
+    public static final String SQL_AUDIT_WRITER = "SqlAuditWriter";
+
     // for test
     public static final String TEST_POOL = "TestThreadPool";
 
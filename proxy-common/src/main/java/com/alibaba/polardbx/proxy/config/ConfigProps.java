@@ -46,6 +46,9 @@ public class ConfigProps {
     public static final String BACKEND_ADMIN_MAX_POOLED_SIZE = "backend_admin_max_pooled_size";
     public static final String BACKEND_RW_MAX_POOLED_SIZE = "backend_rw_max_pooled_size";
     public static final String BACKEND_RO_MAX_POOLED_SIZE = "backend_ro_max_pooled_size";
+    public static final String BACKEND_POOL_MAX_CONNECTIONS = "backend_pool_max_connections";
+    public static final String BACKEND_POOL_WAIT_TIMEOUT = "backend_pool_wait_timeout";
+    public static final String BACKEND_POOL_MAX_WAITERS = "backend_pool_max_waiters";
 
     // HA
     public static final String BACKEND_HA_WORKER_THREADS = "backend_ha_worker_threads";
@@ -61,6 +64,8 @@ public class ConfigProps {
     public static final String QUERY_RETRANSMIT_FAST_RETRIES = "query_retransmit_fast_retries";
     public static final String QUERY_RETRANSMIT_FAST_RETRY_DELAY = "query_retransmit_fast_retry_delay";
     public static final String QUERY_RETRANSMIT_SLOW_RETRY_DELAY = "query_retransmit_slow_retry_delay";
+    public static final String ENABLE_FRONTEND_COMPRESSION = "enable_frontend_compression";
+    public static final String FRONTEND_COMPRESSION_LEVEL = "frontend_compression_level";
 
     // Read-write splitting
     public static final String ENABLE_READ_WRITE_SPLITTING = "enable_read_write_splitting";
@@ -73,7 +78,11 @@ public class ConfigProps {
     public static final String SLAVE_READ_LATENCY_THRESHOLD = "slave_read_latency_threshold";
     public static final String FETCH_LSN_TIMEOUT = "fetch_lsn_timeout";
     public static final String FETCH_LSN_RETRY_TIMES = "fetch_lsn_retry_times";
+    public static final String FETCH_LSN_CONCURRENCY = "fetch_lsn_concurrency";
+    public static final String FETCH_LSN_CACHE_WINDOW = "fetch_lsn_cache_window";
     public static final String ENABLE_STALE_READ = "enable_stale_read";
+    public static final String ENABLE_SESSION_CONSISTENCY = "enable_session_consistency";
+    public static final String STRIP_PROXY_HINT = "strip_proxy_hint";
 
     // backend pool refresh
     public static final String BACKEND_POOL_REFRESH_THREADS = "backend_pool_refresh_threads";
@@ -89,6 +98,13 @@ public class ConfigProps {
     // prepared statement cache
     public static final String PREPARED_STATEMENT_CACHE_SIZE = "prepared_statement_cache_size";
 
+    // sql digest cache
+    public static final String SQL_DIGEST_CACHE_SIZE = "sql_digest_cache_size";
+    public static final String SQL_DIGEST_MAX_LENGTH = "sql_digest_max_length";
+
+    // per digest statement statistics
+    public static final String STATEMENT_STATS_SIZE = "statement_stats_size";
+
     // log size
     public static final String LOG_SQL_MAX_LENGTH = "log_sql_max_length";
     public static final String LOG_SQL_PARAM_MAX_LENGTH = "log_sql_param_max_length";
@@ -116,6 +132,10 @@ public class ConfigProps {
 
     // log
     public static final String ENABLE_SQL_LOG = "enable_sql_log";
+    public static final String SQL_LOG_SAMPLE_RATIO = "sql_log_sample_ratio";
+    public static final String SQL_LOG_BUFFER_SIZE = "sql_log_buffer_size";
+    public static final String SQL_LOG_FILE_SIZE = "sql_log_file_size";
+    public static final String SQL_LOG_MAX_FILES = "sql_log_max_files";
 
     // extreme performance
     public static final String ENABLE_LEAK_CHECK = "enable_leak_check";
@@ -146,6 +166,9 @@ public class ConfigProps {
         DEFAULT_PROPS.setProperty(BACKEND_ADMIN_MAX_POOLED_SIZE, "2");
         DEFAULT_PROPS.setProperty(BACKEND_RW_MAX_POOLED_SIZE, "600");
         DEFAULT_PROPS.setProperty(BACKEND_RO_MAX_POOLED_SIZE, "600");
+        DEFAULT_PROPS.setProperty(BACKEND_POOL_MAX_CONNECTIONS, "0"); // per node, 0 for unlimited
+        DEFAULT_PROPS.setProperty(BACKEND_POOL_WAIT_TIMEOUT, "3000"); // 0 to reject without waiting
+        DEFAULT_PROPS.setProperty(BACKEND_POOL_MAX_WAITERS, "1024"); // per node
 
         DEFAULT_PROPS.setProperty(BACKEND_HA_WORKER_THREADS, "8"); // (vip + 3 nodes) * 2(now and last)
         DEFAULT_PROPS.setProperty(BACKEND_HA_CHECK_INTERVAL, "5000");
@@ -158,6 +181,8 @@ public class ConfigProps {
         DEFAULT_PROPS.setProperty(QUERY_RETRANSMIT_FAST_RETRIES, "10");
         DEFAULT_PROPS.setProperty(QUERY_RETRANSMIT_FAST_RETRY_DELAY, "100");
         DEFAULT_PROPS.setProperty(QUERY_RETRANSMIT_SLOW_RETRY_DELAY, "1000");
+        DEFAULT_PROPS.setProperty(ENABLE_FRONTEND_COMPRESSION, "true"); // advertise CLIENT_COMPRESS and zstd to clients
+        DEFAULT_PROPS.setProperty(FRONTEND_COMPRESSION_LEVEL, "6"); // zlib level 1-9
 
         DEFAULT_PROPS.setProperty(ENABLE_READ_WRITE_SPLITTING, "true");
         DEFAULT_PROPS.setProperty(ENABLE_FOLLOWER_READ, "true");
@@ -169,7 +194,11 @@ public class ConfigProps {
         DEFAULT_PROPS.setProperty(SLAVE_READ_LATENCY_THRESHOLD, "3000");
         DEFAULT_PROPS.setProperty(FETCH_LSN_TIMEOUT, "1000");
         DEFAULT_PROPS.setProperty(FETCH_LSN_RETRY_TIMES, "3");
+        DEFAULT_PROPS.setProperty(FETCH_LSN_CONCURRENCY, "4"); // max in-flight fetches
+        DEFAULT_PROPS.setProperty(FETCH_LSN_CACHE_WINDOW, "0"); // ms, reuse recently fetched LSN, 0 to disable
         DEFAULT_PROPS.setProperty(ENABLE_STALE_READ, "false");
+        DEFAULT_PROPS.setProperty(ENABLE_SESSION_CONSISTENCY, "false"); // read your writes only
+        DEFAULT_PROPS.setProperty(STRIP_PROXY_HINT, "true"); // remove PROXY_* hints before forward
 
         DEFAULT_PROPS.setProperty(BACKEND_POOL_REFRESH_THREADS, "4");
         DEFAULT_PROPS.setProperty(BACKEND_POOL_REFRESH_TASK_INTERVAL, "1000");
@@ -182,6 +211,11 @@ public class ConfigProps {
 
         DEFAULT_PROPS.setProperty(PREPARED_STATEMENT_CACHE_SIZE, "100");
 
+        DEFAULT_PROPS.setProperty(SQL_DIGEST_CACHE_SIZE, "4096"); // 0 to disable
+        DEFAULT_PROPS.setProperty(SQL_DIGEST_MAX_LENGTH, "4096");
+
+        DEFAULT_PROPS.setProperty(STATEMENT_STATS_SIZE, "1000"); // 0 to disable
+
         DEFAULT_PROPS.setProperty(LOG_SQL_MAX_LENGTH, "4096");
         DEFAULT_PROPS.setProperty(LOG_SQL_PARAM_MAX_LENGTH, "4096");
 
@@ -202,6 +236,10 @@ public class ConfigProps {
         DEFAULT_PROPS.setProperty(DN_PASSWORD_KEY, "");
 
         DEFAULT_PROPS.setProperty(ENABLE_SQL_LOG, "true");
+        DEFAULT_PROPS.setProperty(SQL_LOG_SAMPLE_RATIO, "1.0"); // errors are always logged
+        DEFAULT_PROPS.setProperty(SQL_LOG_BUFFER_SIZE, "4194304"); // 4MB per ring
+        DEFAULT_PROPS.setProperty(SQL_LOG_FILE_SIZE, "512"); // MB
+        DEFAULT_PROPS.setProperty(SQL_LOG_MAX_FILES, "64");
 
         DEFAULT_PROPS.setProperty(ENABLE_LEAK_CHECK, "false"); // no leak check for extreme performance
     }
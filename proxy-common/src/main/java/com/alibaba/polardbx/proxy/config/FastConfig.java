@@ -20,21 +20,34 @@ package com.alibaba.polardbx.proxy.config;
 
 public class FastConfig {
     public static volatile boolean enableConnectionHold;
+    public static volatile int backendPoolMaxConnections;
+    public static volatile int backendPoolWaitTimeout;
+    public static volatile int backendPoolMaxWaiters;
     public static volatile int queryRetransmitTimeout;
     public static volatile int queryRetransmitFastRetries;
     public static volatile int queryRetransmitFastRetryDelay;
     public static volatile int queryRetransmitSlowRetryDelay;
+    public static volatile boolean enableFrontendCompression;
+    public static volatile int frontendCompressionLevel;
     public static volatile int fetchLsnRetryTimes;
     public static volatile int fetchLsnTimeout;
+    public static volatile int fetchLsnConcurrency;
+    public static volatile int fetchLsnCacheWindow;
     public static volatile boolean enableStaleRead;
+    public static volatile boolean enableSessionConsistency;
+    public static volatile boolean stripProxyHint;
     public static volatile boolean tcpEnsureMinimumBuffer;
     public static volatile int logSqlMaxLength;
+    public static volatile int sqlDigestCacheSize;
+    public static volatile int sqlDigestMaxLength;
+    public static volatile int statementStatsSize;
     public static volatile int logSqlParamMaxLength;
     public static volatile int maxAllowedPacket;
     public static volatile boolean enableSmoothSwitchover;
     public static volatile int smoothSwitchoverCheckInterval;
     public static volatile int smoothSwitchoverWaitTimeout;
     public static volatile boolean enableSqlLog;
+    public static volatile double sqlLogSampleRatio;
     public static volatile boolean enableLeakCheck;
 
     static {
@@ -45,6 +58,12 @@ public class FastConfig {
     public static void refresh() {
         enableConnectionHold =
             Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.ENABLE_CONNECTION_HOLD));
+        backendPoolMaxConnections =
+            Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.BACKEND_POOL_MAX_CONNECTIONS));
+        backendPoolWaitTimeout =
+            Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.BACKEND_POOL_WAIT_TIMEOUT));
+        backendPoolMaxWaiters =
+            Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.BACKEND_POOL_MAX_WAITERS));
         queryRetransmitTimeout =
             Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.QUERY_RETRANSMIT_TIMEOUT));
         queryRetransmitFastRetries =
@@ -53,12 +72,24 @@ public class FastConfig {
             Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.QUERY_RETRANSMIT_FAST_RETRY_DELAY));
         queryRetransmitSlowRetryDelay =
             Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.QUERY_RETRANSMIT_SLOW_RETRY_DELAY));
+        enableFrontendCompression =
+            Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.ENABLE_FRONTEND_COMPRESSION));
+        frontendCompressionLevel =
+            Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.FRONTEND_COMPRESSION_LEVEL));
         fetchLsnRetryTimes = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.FETCH_LSN_RETRY_TIMES));
         fetchLsnTimeout = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.FETCH_LSN_TIMEOUT));
+        fetchLsnConcurrency = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.FETCH_LSN_CONCURRENCY));
+        fetchLsnCacheWindow = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.FETCH_LSN_CACHE_WINDOW));
         enableStaleRead = Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.ENABLE_STALE_READ));
+        enableSessionConsistency =
+            Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.ENABLE_SESSION_CONSISTENCY));
+        stripProxyHint = Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.STRIP_PROXY_HINT));
         tcpEnsureMinimumBuffer =
             Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.TCP_ENSURE_MINIMUM_BUFFER));
         logSqlMaxLength = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.LOG_SQL_MAX_LENGTH));
+        sqlDigestCacheSize = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SQL_DIGEST_CACHE_SIZE));
+        sqlDigestMaxLength = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SQL_DIGEST_MAX_LENGTH));
+        statementStatsSize = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.STATEMENT_STATS_SIZE));
         logSqlParamMaxLength =
             Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.LOG_SQL_PARAM_MAX_LENGTH));
         maxAllowedPacket = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.MAX_ALLOWED_PACKET));
@@ -69,6 +100,8 @@ public class FastConfig {
         smoothSwitchoverWaitTimeout =
             Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SMOOTH_SWITCHOVER_WAIT_TIMEOUT));
         enableSqlLog = Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.ENABLE_SQL_LOG));
+        sqlLogSampleRatio =
+            Double.parseDouble(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SQL_LOG_SAMPLE_RATIO));
         enableLeakCheck = Boolean.parseBoolean(ConfigLoader.PROPERTIES.getProperty(ConfigProps.ENABLE_LEAK_CHECK));
     }
 }
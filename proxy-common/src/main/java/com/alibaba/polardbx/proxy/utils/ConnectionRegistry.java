@@ -0,0 +1,119 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.utils;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Predicate;
+
+/**
+ * Concurrent registry of live connections indexed by id.
+ * Register, unregister and lookup are O(1) and never block each other, listing takes a weakly consistent snapshot
+ * ordered by id, so a page only costs O(n log(offset + limit)) no matter how many connections are alive.
+ */
+public final class ConnectionRegistry<T> {
+    private static final Comparator<Map.Entry<Long, ?>> BY_ID = Comparator.comparingLong(Map.Entry::getKey);
+
+    private final ConcurrentHashMap<Long, T> connections;
+
+    public ConnectionRegistry() {
+        this(1024);
+    }
+
+    public ConnectionRegistry(int initialCapacity) {
+        this.connections = new ConcurrentHashMap<>(initialCapacity);
+    }
+
+    /**
+     * @return false if the id is already taken by another connection
+     */
+    public boolean register(long id, T connection) {
+        return null == connections.putIfAbsent(id, connection);
+    }
+
+    /**
+     * Only removes the mapping when it still points to the given connection.
+     */
+    public boolean unregister(long id, T connection) {
+        return connections.remove(id, connection);
+    }
+
+    public T get(long id) {
+        return connections.get(id);
+    }
+
+    public boolean contains(long id) {
+        return connections.containsKey(id);
+    }
+
+    public int size() {
+        return connections.size();
+    }
+
+    /**
+     * Matched connections ordered by id, skip first offset ones and return at most limit(negative for all).
+     */
+    public List<T> page(Predicate<? super T> filter, int offset, int limit) {
+        if (0 == limit) {
+            return Collections.emptyList();
+        }
+        final int skip = Math.max(offset, 0);
+        final List<Map.Entry<Long, T>> matched;
+        if (limit < 0 || skip > Integer.MAX_VALUE - limit) {
+            matched = new ArrayList<>();
+            for (final Map.Entry<Long, T> entry : connections.entrySet()) {
+                if (null == filter || filter.test(entry.getValue())) {
+                    matched.add(entry);
+                }
+            }
+            matched.sort(BY_ID);
+        } else {
+            // keep smallest (offset + limit) ids in a max heap
+            final int keep = skip + limit;
+            final PriorityQueue<Map.Entry<Long, T>> heap = new PriorityQueue<>(Math.min(keep, 1024), BY_ID.reversed());
+            for (final Map.Entry<Long, T> entry : connections.entrySet()) {
+                if (heap.size() >= keep && entry.getKey() >= heap.peek().getKey()) {
+                    continue;
+                }
+                if (null == filter || filter.test(entry.getValue())) {
+                    heap.add(entry);
+                    if (heap.size() > keep) {
+                        heap.poll();
+                    }
+                }
+            }
+            matched = new ArrayList<>(heap);
+            matched.sort(BY_ID);
+        }
+        if (skip >= matched.size()) {
+            return Collections.emptyList();
+        }
+        final int end = limit < 0 ? matched.size() : (int) Math.min(matched.size(), (long) skip + limit);
+        final List<T> result = new ArrayList<>(end - skip);
+        for (int i = skip; i < end; ++i) {
+            result.add(matched.get(i).getValue());
+        }
+        return result;
+    }
+}
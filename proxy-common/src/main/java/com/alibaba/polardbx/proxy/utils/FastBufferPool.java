@@ -24,73 +24,248 @@ import java.nio.ByteBuffer;
 import java.util.concurrent.atomic.AtomicIntegerArray;
 import java.util.concurrent.atomic.AtomicLong;
 
+/**
+ * Direct buffer pool with several block size classes.
+ * Each class is a slab managed by a lock-free stack, and the owner thread(the reactor) keeps a small magazine of
+ * free blocks in front of the stack, so alloc/free on the owner thread need no CAS at all.
+ * Slab of the default class is allocated on construct, and slabs of larger classes are allocated on first use.
+ */
 public final class FastBufferPool {
+    // max blocks cached in magazine of the owner thread
+    private static final int MAX_MAGAZINE_SIZE = 64;
+
     @Getter
     private final int blockSize;
-    private final ByteBuffer pool;
-    private final long address;
-    private final AtomicLong stack = new AtomicLong(0);
-    private final AtomicIntegerArray next;
-    private final AtomicIntegerArray refCnt;
-
-    private void recycle(int id) {
-        // pre check
-        int ref;
-        if ((ref = refCnt.getPlain(id)) != 0) {
-            Kill.fatalError("FastBufferPool block recycle with ref not zero(%d).", ref);
-        }
-        long expected, val = stack.getPlain();
-        long seq;
-        do {
-            expected = val;
-            next.setPlain(id, (int) expected); // low 32 bits
-            seq = (expected & 0xFFFF_FFFF_0000_0000L) + 0x0000_0001_0000_0000L;
-        } while ((val = stack.compareAndExchange(expected, seq | (id + 1))) != expected);
+    private final SizeClass[] classes;
+    // sizes of classes given with zero block, shown in stats so they are not silently missing
+    private final int[] disabledSizes;
+
+    // thread which owns the magazines, null means no magazine
+    private volatile Thread owner = null;
+
+    private final class SizeClass {
+        private final int blockSize;
+        private final int blockNumber;
+        private final boolean lazy;
+        private volatile ByteBuffer pool = null;
+        private volatile long address = 0;
+        private final AtomicLong stack = new AtomicLong(0);
+        private final AtomicIntegerArray next;
+        private final AtomicIntegerArray refCnt;
+
+        // magazine, only touched by owner thread(read by others only for stats)
+        private final int[] magazine;
+        private int magazineSize = 0;
+
+        // stats
+        private final AtomicLong freeInStack = new AtomicLong(0);
+        private final AtomicLong hit = new AtomicLong(0); // served by magazine, single writer
+        private final AtomicLong miss = new AtomicLong(0); // served by shared stack
+        private final AtomicLong fallback = new AtomicLong(0); // exhausted and caller fallback to heap
+
+        private SizeClass(int blockSize, int blockNumber, boolean lazy) {
+            this.blockSize = blockSize;
+            this.blockNumber = blockNumber;
+            this.lazy = lazy;
+            if (!lazy) {
+                slab();
+            }
+            this.next = new AtomicIntegerArray(blockNumber);
+            this.refCnt = new AtomicIntegerArray(blockNumber);
+            this.magazine = new int[Math.min(MAX_MAGAZINE_SIZE, blockNumber / 4)];
+
+            // put all blocks into the stack with reverse order
+            for (int i = blockNumber - 1; i >= 0; --i) {
+                push(i);
+            }
+        }
+
+        private ByteBuffer slab() {
+            ByteBuffer slab = pool;
+            if (null == slab) {
+                synchronized (this) {
+                    if (null == (slab = pool)) {
+                        slab = ByteBuffer.allocateDirect(blockSize * blockNumber);
+                        final long addr;
+                        try {
+                            addr = UnsafeBytes.BUFFER_ADDRESS_FIELD.getLong(slab);
+                        } catch (Exception e) {
+                            throw new RuntimeException(e);
+                        }
+                        if (0 == addr) {
+                            throw new RuntimeException("Failed to get internal address of direct buffer.");
+                        }
+                        address = addr; // set address before publish the slab
+                        pool = slab;
+                    }
+                }
+            }
+            return slab;
+        }
+
+        private void push(int id) {
+            long expected, val = stack.getPlain();
+            long seq;
+            do {
+                expected = val;
+                next.setPlain(id, (int) expected); // low 32 bits
+                seq = (expected & 0xFFFF_FFFF_0000_0000L) + 0x0000_0001_0000_0000L;
+            } while ((val = stack.compareAndExchange(expected, seq | (id + 1))) != expected);
+            freeInStack.getAndIncrement();
+        }
+
+        // -1 if no free block
+        private int pop() {
+            long expected, val = stack.getPlain();
+            long seq;
+            int id, next_id;
+            do {
+                expected = val;
+                id = (int) expected;
+                if (0 == id) {
+                    // no free block
+                    return -1;
+                }
+                --id;
+                next_id = next.getPlain(id);
+                seq = (expected & 0xFFFF_FFFF_0000_0000L) + 0x0000_0001_0000_0000L;
+            } while ((val = stack.compareAndExchange(expected, seq | next_id)) != expected);
+            freeInStack.getAndDecrement();
+            return id;
+        }
+
+        private void recycle(int id) {
+            // pre check
+            int ref;
+            if ((ref = refCnt.getPlain(id)) != 0) {
+                Kill.fatalError("FastBufferPool block recycle with ref not zero(%d).", ref);
+            }
+            if (Thread.currentThread() == owner) {
+                final int sz = magazineSize;
+                if (sz < magazine.length) {
+                    magazine[sz] = id;
+                    magazineSize = sz + 1;
+                    return;
+                }
+            }
+            push(id);
+        }
+
+        private BufferHolder allocate() {
+            int id;
+            final int sz;
+            if (Thread.currentThread() == owner && (sz = magazineSize) > 0) {
+                id = magazine[sz - 1];
+                magazineSize = sz - 1;
+                hit.setRelease(hit.getPlain() + 1);
+            } else if ((id = pop()) >= 0) {
+                miss.getAndIncrement();
+            } else {
+                fallback.getAndIncrement();
+                return null;
+            }
+            if (lazy && null == pool) {
+                try {
+                    slab();
+                } catch (Throwable t) {
+                    // no memory for the slab, give back and caller fallback to heap
+                    push(id);
+                    fallback.getAndIncrement();
+                    return null;
+                }
+            }
+            final BufferHolder holder = new BufferHolder(this, id);
+            holder.addReferenceConstruct();
+            return holder;
+        }
+
+        private int estimatedFreeBlocks() {
+            return (int) freeInStack.get() + magazineSize;
+        }
+
+        private String sizeString() {
+            return FastBufferPool.sizeString(blockSize);
+        }
+    }
+
+    private static String sizeString(int blockSize) {
+        if (blockSize >= 1024 * 1024 && 0 == blockSize % (1024 * 1024)) {
+            return blockSize / 1024 / 1024 + "M";
+        } else if (blockSize >= 1024 && 0 == blockSize % 1024) {
+            return blockSize / 1024 + "K";
+        }
+        return String.valueOf(blockSize);
     }
 
     public FastBufferPool(int blockSize, int blockNumber) {
-        this.blockSize = blockSize;
-        this.pool = ByteBuffer.allocateDirect(blockSize * blockNumber);
-        try {
-            this.address = UnsafeBytes.BUFFER_ADDRESS_FIELD.getLong(this.pool);
-        } catch (Exception e) {
-            throw new RuntimeException(e);
+        this(new int[] {blockSize}, new int[] {blockNumber});
+    }
+
+    /**
+     * Create pool with multiple size classes.
+     *
+     * @param blockSizes block size of each class, the first one is the default class and must be ascending
+     * @param blockNumbers block number of each class, class with zero block is ignored(except the default one)
+     */
+    public FastBufferPool(int[] blockSizes, int[] blockNumbers) {
+        if (0 == blockSizes.length || blockSizes.length != blockNumbers.length) {
+            throw new IllegalArgumentException("Bad size classes of FastBufferPool.");
         }
-        if (0 == this.address) {
-            throw new RuntimeException("Failed to get internal address of direct buffer.");
+        int valid = 1;
+        for (int i = 1; i < blockSizes.length; ++i) {
+            if (blockSizes[i] <= blockSizes[i - 1]) {
+                throw new IllegalArgumentException("Size classes of FastBufferPool must be ascending.");
+            }
+            if (blockNumbers[i] > 0) {
+                ++valid;
+            }
         }
-        this.next = new AtomicIntegerArray(blockNumber);
-        this.refCnt = new AtomicIntegerArray(blockNumber);
-
-        // put all blocks into the stack with reverse order
-        for (int i = blockNumber - 1; i >= 0; --i) {
-            recycle(i);
+        this.blockSize = blockSizes[0];
+        this.classes = new SizeClass[valid];
+        this.disabledSizes = new int[blockSizes.length - valid];
+        this.classes[0] = new SizeClass(blockSizes[0], blockNumbers[0], false);
+        for (int i = 1, idx = 1, disabled = 0; i < blockSizes.length; ++i) {
+            if (blockNumbers[i] > 0) {
+                this.classes[idx++] = new SizeClass(blockSizes[i], blockNumbers[i], true);
+            } else {
+                this.disabledSizes[disabled++] = blockSizes[i];
+            }
         }
     }
 
-    @Getter
+    /**
+     * Bind the owner thread which uses the magazines. Only invoke once before the owner thread started.
+     */
+    public void bindOwner(Thread owner) {
+        this.owner = owner;
+    }
+
     public final class BufferHolder {
+        private final SizeClass sizeClass;
+        @Getter
         private final int id;
 
         // only allow to construct internal
-        private BufferHolder(int id) {
+        private BufferHolder(SizeClass sizeClass, int id) {
+            this.sizeClass = sizeClass;
             this.id = id;
         }
 
         public ByteBuffer duplicateBuffer() {
-            return pool.duplicate().position(id * blockSize).limit((id + 1) * blockSize);
+            final int blockSize = sizeClass.blockSize;
+            return sizeClass.pool.duplicate().position(id * blockSize).limit((id + 1) * blockSize);
         }
 
         public long address() {
-            return address + (long) id * blockSize;
+            return sizeClass.address + (long) id * sizeClass.blockSize;
         }
 
         public int size() {
-            return blockSize;
+            return sizeClass.blockSize;
         }
 
         public void addReference() {
-            final int before = refCnt.getAndIncrement(id);
+            final int before = sizeClass.refCnt.getAndIncrement(id);
             if (before <= 0) {
                 Kill.fatalError("Bad BufferHolder add ref cnt before not greater zero(%d). %s",
                     before, this.toString());
@@ -99,7 +274,7 @@ public final class FastBufferPool {
 
         // only allow to invoke internal
         private void addReferenceConstruct() {
-            final int before = refCnt.getAndIncrement(id);
+            final int before = sizeClass.refCnt.getAndIncrement(id);
             if (before != 0) {
                 Kill.fatalError("Bad BufferHolder construct with ref cnt not zero(%d). %s",
                     before, this.toString());
@@ -107,10 +282,10 @@ public final class FastBufferPool {
         }
 
         public void subReference() {
-            final int before = refCnt.getAndDecrement(id);
+            final int before = sizeClass.refCnt.getAndDecrement(id);
             if (1 == before) {
                 // free the buffer
-                recycle(id);
+                sizeClass.recycle(id);
             } else if (before <= 0) {
                 Kill.fatalError("Bad BufferHolder sub ref cnt before not greater zero(%s). %s",
                     before, this.toString());
@@ -121,65 +296,118 @@ public final class FastBufferPool {
         public String toString() {
             return "BufferHolder{" +
                 "pool=" + FastBufferPool.this +
+                ", class=" + sizeClass.sizeString() +
                 ", id=" + id +
-                ", ref=" + refCnt.getPlain(id) +
+                ", ref=" + sizeClass.refCnt.getPlain(id) +
                 '}';
         }
     }
 
+    /**
+     * Allocate block from the default(smallest) class.
+     *
+     * @return buffer holder or null if no free block
+     */
     public BufferHolder allocateAndAddReference() {
-        long expected, val = stack.getPlain();
-        long seq;
-        int id, next_id;
-        do {
-            expected = val;
-            id = (int) expected;
-            if (0 == id) {
-                // no free block
-                return null;
+        return classes[0].allocate();
+    }
+
+    /**
+     * Allocate block from the smallest class which can hold the size.
+     *
+     * @param size minimum block size needed
+     * @return buffer holder or null if no class large enough or no free block, and caller should fallback to heap
+     */
+    public BufferHolder allocateAndAddReference(int size) {
+        for (final SizeClass c : classes) {
+            if (c.blockSize >= size) {
+                return c.allocate();
             }
-            --id;
-            next_id = next.getPlain(id);
-            seq = (expected & 0xFFFF_FFFF_0000_0000L) + 0x0000_0001_0000_0000L;
-        } while ((val = stack.compareAndExchange(expected, seq | next_id)) != expected);
-        final BufferHolder holder = new BufferHolder(id);
-        holder.addReferenceConstruct();
-        return holder;
+        }
+        // too large, count on the largest class
+        classes[classes.length - 1].fallback.getAndIncrement();
+        return null;
+    }
+
+    /**
+     * Max block size of all classes.
+     */
+    public int maxBlockSize() {
+        return classes[classes.length - 1].blockSize;
     }
 
+    /**
+     * Free blocks of the default class.
+     */
     public int estimatedFreeBlocks() {
-        long expected, top = stack.getAcquire();
-        loop:
-        while (true) {
-            expected = top;
-            long probe = expected;
-            // visit stack optimistic
-            int cnt = 0;
-            while ((int) probe != 0) {
-                ++cnt;
-                probe = next.getPlain((int) probe - 1);
-                if (((top = stack.get()) != expected)) {
-                    continue loop;
-                }
+        return classes[0].estimatedFreeBlocks();
+    }
+
+    /**
+     * Capacity of the default class.
+     */
+    public int capacity() {
+        return classes[0].pool.capacity();
+    }
+
+    /**
+     * Capacity of all classes, include the slabs not allocated yet.
+     */
+    public long totalCapacity() {
+        long total = 0;
+        for (final SizeClass c : classes) {
+            total += (long) c.blockSize * c.blockNumber;
+        }
+        return total;
+    }
+
+    /**
+     * Capacity of all allocated slabs.
+     */
+    public long allocatedCapacity() {
+        long total = 0;
+        for (final SizeClass c : classes) {
+            final ByteBuffer slab = c.pool;
+            if (slab != null) {
+                total += slab.capacity();
             }
-            return cnt;
         }
+        return total;
     }
 
-    public int capacity() {
-        return pool.capacity();
+    /**
+     * Stats of all classes, format: 8K[idle=2047/2048,hit=1,miss=2,fallback=0] ... 16M[disabled]
+     */
+    public String sizeClassesInfo() {
+        final StringBuilder builder = new StringBuilder();
+        for (final SizeClass c : classes) {
+            if (builder.length() > 0) {
+                builder.append(' ');
+            }
+            builder.append(c.sizeString())
+                .append("[idle=").append(c.estimatedFreeBlocks()).append('/').append(c.blockNumber)
+                .append(",hit=").append(c.hit.getAcquire())
+                .append(",miss=").append(c.miss.get())
+                .append(",fallback=").append(c.fallback.get())
+                .append(']');
+        }
+        for (final int size : disabledSizes) {
+            builder.append(' ').append(sizeString(size)).append("[disabled]");
+        }
+        return builder.toString();
     }
 
     @Override
     public String toString() {
-        final int blockNumber = pool.capacity() / blockSize;
+        final int blockNumber = classes[0].blockNumber;
         final int frees = estimatedFreeBlocks();
         return "FastBufferPool{" +
             "blockSize=" + blockSize +
             ", blockNumber=" + blockNumber +
-            ", address=" + address +
+            ", address=" + classes[0].address +
             ", estimatedFreeBlocks=" + frees +
             ", estimatedUsedBlocks=" + (blockNumber - frees) +
+            ", classes=" + classes.length +
             '}';
     }
 }
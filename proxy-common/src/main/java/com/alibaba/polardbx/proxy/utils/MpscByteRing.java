@@ -0,0 +1,145 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.utils;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free bounded ring of variable length byte records, many producers and single consumer.
+ * Producer claims space by CAS on tail, copies payload and then publishes the 4 bytes header with release store.
+ * Consumer reads header with acquire load, stops at first unpublished record, and zeros consumed space so headers
+ * of later records always start from 0. Record which does not fit is dropped instead of blocking producer.
+ */
+public final class MpscByteRing {
+    private static final VarHandle INT_VIEW =
+        MethodHandles.byteArrayViewVarHandle(int[].class, ByteOrder.LITTLE_ENDIAN);
+
+    private static final int HEADER = 4;
+    private static final int ALIGNMENT = 8;
+
+    @FunctionalInterface
+    public interface RecordHandler {
+        void onRecord(byte[] buffer, int offset, int length);
+    }
+
+    private final byte[] buffer;
+    private final int capacity;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong(0);
+    private volatile long head = 0;
+
+    private final AtomicLong dropped = new AtomicLong(0);
+
+    /**
+     * @param capacity Bytes of the ring, rounded up to power of two.
+     */
+    public MpscByteRing(int capacity) {
+        if (capacity < 64 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Bad ring capacity " + capacity);
+        }
+        this.capacity = Integer.highestOneBit(capacity - 1) << 1;
+        this.mask = this.capacity - 1;
+        this.buffer = new byte[this.capacity];
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getDropped() {
+        return dropped.get();
+    }
+
+    public int getMaxRecordLength() {
+        return (capacity >>> 1) - HEADER;
+    }
+
+    private static int align(int length) {
+        return (length + HEADER + ALIGNMENT - 1) & -ALIGNMENT;
+    }
+
+    /**
+     * Copy one record into ring.
+     *
+     * @return false if no room(or record too large) and record dropped.
+     */
+    public boolean offer(byte[] src, int offset, int length) {
+        if (length <= 0 || length > getMaxRecordLength()) {
+            dropped.getAndIncrement();
+            return false;
+        }
+        final int recordLength = align(length);
+        long t;
+        int index;
+        int padding;
+        do {
+            t = tail.get();
+            index = (int) (t & mask);
+            final int toEnd = capacity - index;
+            // wrap with a padding record if not fit in the rest
+            padding = recordLength > toEnd ? toEnd : 0;
+            if (padding + recordLength > capacity - (int) (t - head)) {
+                dropped.getAndIncrement();
+                return false;
+            }
+        } while (!tail.compareAndSet(t, t + padding + recordLength));
+
+        if (padding > 0) {
+            INT_VIEW.setRelease(buffer, index, -padding);
+            index = 0;
+        }
+        System.arraycopy(src, offset, buffer, index + HEADER, length);
+        INT_VIEW.setRelease(buffer, index, length);
+        return true;
+    }
+
+    /**
+     * Drain published records, only one thread should call this and handler should not throw.
+     *
+     * @return number of records handled.
+     */
+    public int drain(RecordHandler handler, int limit) {
+        long h = head;
+        int count = 0;
+        while (count < limit) {
+            final int index = (int) (h & mask);
+            final int header = (int) INT_VIEW.getAcquire(buffer, index);
+            if (0 == header) {
+                break; // empty or not published yet
+            }
+            final int recordLength;
+            if (header < 0) {
+                recordLength = -header;
+            } else {
+                recordLength = align(header);
+                handler.onRecord(buffer, index + HEADER, header);
+                ++count;
+            }
+            Arrays.fill(buffer, index, index + recordLength, (byte) 0);
+            h += recordLength;
+            head = h; // release space to producers
+        }
+        return count;
+    }
+}
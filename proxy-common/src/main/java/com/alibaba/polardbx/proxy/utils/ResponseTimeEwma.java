@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Lock-free exponentially weighted moving average of response time.
+ * Value halves every half-life without new sample, so a node recovered from a stall gets traffic again even if
+ * balancer rarely picks it.
+ */
+public final class ResponseTimeEwma {
+    // weight of new sample is 1 / (1 << shift)
+    private final int shift;
+    private final long halfLifeNanos;
+
+    private final AtomicLong value = new AtomicLong(0);
+    private volatile long lastUpdateNanos;
+
+    public ResponseTimeEwma(int shift, long halfLifeNanos) {
+        if (shift < 0 || shift > 16 || halfLifeNanos <= 0) {
+            throw new IllegalArgumentException("Bad EWMA shift or half-life.");
+        }
+        this.shift = shift;
+        this.halfLifeNanos = halfLifeNanos;
+        this.lastUpdateNanos = System.nanoTime();
+    }
+
+    private long decay(long v, long nowNanos) {
+        final long elapsed = nowNanos - lastUpdateNanos;
+        if (elapsed < halfLifeNanos || 0 == v) {
+            return v;
+        }
+        final long halves = elapsed / halfLifeNanos;
+        return halves >= 63 ? 0 : v >>> halves;
+    }
+
+    public void record(long responseNanos, long nowNanos) {
+        if (responseNanos < 0) {
+            return;
+        }
+        long before, after;
+        do {
+            before = value.get();
+            final long decayed = decay(before, nowNanos);
+            // first sample takes the place directly
+            after = 0 == decayed ? responseNanos : decayed + ((responseNanos - decayed) >> shift);
+        } while (!value.compareAndSet(before, after));
+        lastUpdateNanos = nowNanos;
+    }
+
+    /**
+     * Get the average, 0 if no sample(or fully decayed).
+     */
+    public long get(long nowNanos) {
+        return decay(value.get(), nowNanos);
+    }
+}
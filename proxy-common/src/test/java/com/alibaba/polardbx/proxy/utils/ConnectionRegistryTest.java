@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConnectionRegistryTest {
+    private static final class Conn {
+        private final long id;
+
+        private Conn(long id) {
+            this.id = id;
+        }
+    }
+
+    private static List<Long> ids(List<Conn> conns) {
+        final List<Long> ids = new ArrayList<>(conns.size());
+        for (final Conn conn : conns) {
+            ids.add(conn.id);
+        }
+        return ids;
+    }
+
+    @Test
+    public void testPage() {
+        final ConnectionRegistry<Conn> registry = new ConnectionRegistry<>(16);
+        for (long id = 100; id > 0; --id) {
+            Assert.assertTrue(registry.register(id, new Conn(id)));
+        }
+        Assert.assertFalse(registry.register(1, new Conn(1)));
+        Assert.assertFalse(registry.unregister(1, new Conn(1)));
+        Assert.assertEquals(100, registry.size());
+        Assert.assertEquals(7, registry.get(7).id);
+        Assert.assertNull(registry.get(101));
+
+        Assert.assertEquals(100, registry.page(null, 0, -1).size());
+        Assert.assertEquals(Arrays.asList(1L, 2L, 3L), ids(registry.page(null, 0, 3)));
+        Assert.assertEquals(Arrays.asList(11L, 12L), ids(registry.page(null, 10, 2)));
+        Assert.assertEquals(Arrays.asList(99L, 100L), ids(registry.page(null, 98, 10)));
+        Assert.assertTrue(registry.page(null, 100, 10).isEmpty());
+        Assert.assertTrue(registry.page(null, 0, 0).isEmpty());
+
+        // even ids only
+        Assert.assertEquals(Arrays.asList(6L, 8L), ids(registry.page(c -> 0 == (c.id & 1), 2, 2)));
+        Assert.assertEquals(Arrays.asList(96L, 98L, 100L), ids(registry.page(c -> 0 == (c.id & 1), 47, -1)));
+        Assert.assertEquals(Arrays.asList(100L), ids(registry.page(c -> 0 == (c.id & 1), 49, Integer.MAX_VALUE)));
+
+        for (long id = 1; id <= 100; ++id) {
+            Assert.assertTrue(registry.unregister(id, registry.get(id)));
+        }
+        Assert.assertEquals(0, registry.size());
+    }
+
+    @Test
+    public void testConcurrentConsistency() throws Exception {
+        final ConnectionRegistry<Conn> registry = new ConnectionRegistry<>();
+        final int threads = 8;
+        final int idsPerThread = 2000;
+        final int rounds = 200_000;
+        final AtomicBoolean stop = new AtomicBoolean(false);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final CountDownLatch start = new CountDownLatch(1);
+        final List<Thread> workers = new ArrayList<>();
+        final Conn[][] owned = new Conn[threads][idsPerThread];
+
+        // each worker owns an id range and randomly connects or disconnects in it
+        for (int i = 0; i < threads; ++i) {
+            final int worker = i;
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    final ThreadLocalRandom random = ThreadLocalRandom.current();
+                    final Conn[] mine = owned[worker];
+                    for (int r = 0; r < rounds; ++r) {
+                        final int slot = random.nextInt(idsPerThread);
+                        final long id = (long) worker * idsPerThread + slot;
+                        if (null == mine[slot]) {
+                            final Conn conn = new Conn(id);
+                            Assert.assertTrue(registry.register(id, conn));
+                            mine[slot] = conn;
+                        } else {
+                            Assert.assertSame(mine[slot], registry.get(id));
+                            Assert.assertTrue(registry.unregister(id, mine[slot]));
+                            mine[slot] = null;
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        // readers page through while connections come and go
+        for (int i = 0; i < 2; ++i) {
+            workers.add(new Thread(() -> {
+                try {
+                    start.await();
+                    while (!stop.get()) {
+                        final List<Conn> page = registry.page(c -> c.id % 3 != 0, 100, 500);
+                        Assert.assertTrue(page.size() <= 500);
+                        for (int j = 1; j < page.size(); ++j) {
+                            Assert.assertTrue(page.get(j - 1).id < page.get(j).id);
+                            Assert.assertNotEquals(0, page.get(j).id % 3);
+                        }
+                    }
+                } catch (Throwable t) {
+                    error.compareAndSet(null, t);
+                }
+            }));
+        }
+
+        for (final Thread worker : workers) {
+            worker.start();
+        }
+        start.countDown();
+        for (int i = 0; i < threads; ++i) {
+            workers.get(i).join();
+        }
+        stop.set(true);
+        for (int i = threads; i < workers.size(); ++i) {
+            workers.get(i).join();
+        }
+        if (error.get() != null) {
+            throw new AssertionError(error.get());
+        }
+
+        // registry must exactly match what workers think is alive
+        int alive = 0;
+        for (int worker = 0; worker < threads; ++worker) {
+            for (int slot = 0; slot < idsPerThread; ++slot) {
+                final long id = (long) worker * idsPerThread + slot;
+                Assert.assertSame(owned[worker][slot], registry.get(id));
+                if (owned[worker][slot] != null) {
+                    ++alive;
+                }
+            }
+        }
+        Assert.assertEquals(alive, registry.size());
+        final List<Conn> all = registry.page(null, 0, -1);
+        Assert.assertEquals(alive, all.size());
+        for (int j = 1; j < all.size(); ++j) {
+            Assert.assertTrue(all.get(j - 1).id < all.get(j).id);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class FastBufferPoolTest {
+    private static final int[] SIZES = {1024, 1024 * 8, 1024 * 64};
+    private static final int[] NUMBERS = {64, 8, 2};
+
+    @Test
+    public void sizeClassTest() {
+        final FastBufferPool pool = new FastBufferPool(SIZES, NUMBERS);
+        Assert.assertEquals(1024, pool.getBlockSize());
+        Assert.assertEquals(1024 * 64, pool.maxBlockSize());
+        Assert.assertEquals(1024 * 64, pool.capacity());
+        Assert.assertEquals(1024 * 64 + 1024 * 64 + 1024 * 128, pool.totalCapacity());
+        // large classes allocated on first use
+        Assert.assertEquals(1024 * 64, pool.allocatedCapacity());
+
+        final FastBufferPool.BufferHolder small = pool.allocateAndAddReference();
+        final FastBufferPool.BufferHolder mid = pool.allocateAndAddReference(1025);
+        Assert.assertEquals(1024 * 64 + 1024 * 64, pool.allocatedCapacity());
+        final FastBufferPool.BufferHolder large = pool.allocateAndAddReference(1024 * 64);
+        Assert.assertEquals(1024 * 64 + 1024 * 64 + 1024 * 128, pool.allocatedCapacity());
+        Assert.assertEquals(1024, small.size());
+        Assert.assertEquals(1024 * 8, mid.size());
+        Assert.assertEquals(1024 * 64, large.size());
+        Assert.assertEquals(1024 * 64, large.duplicateBuffer().remaining());
+
+        // too large
+        Assert.assertNull(pool.allocateAndAddReference(1024 * 64 + 1));
+
+        // exhaust the largest class
+        final FastBufferPool.BufferHolder another = pool.allocateAndAddReference(1024 * 64);
+        Assert.assertNotNull(another);
+        Assert.assertNull(pool.allocateAndAddReference(1024 * 64));
+        Assert.assertTrue(pool.sizeClassesInfo().contains("64K[idle=0/2,hit=0,miss=2,fallback=2]"));
+
+        small.subReference();
+        mid.subReference();
+        large.subReference();
+        another.subReference();
+        Assert.assertEquals(64, pool.estimatedFreeBlocks());
+        Assert.assertTrue(pool.sizeClassesInfo().contains("64K[idle=2/2"));
+    }
+
+    @Test
+    public void ignoreEmptyClassTest() {
+        final FastBufferPool pool = new FastBufferPool(SIZES, new int[] {4, 0, 1});
+        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference(1025);
+        Assert.assertEquals(1024 * 64, holder.size());
+        holder.subReference();
+        Assert.assertFalse(pool.sizeClassesInfo().contains("8K[idle"));
+        Assert.assertTrue(pool.sizeClassesInfo().endsWith(" 8K[disabled]"));
+    }
+
+    @Test
+    public void magazineTest() throws Exception {
+        final FastBufferPool pool = new FastBufferPool(SIZES, NUMBERS);
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        final Thread owner = new Thread(() -> {
+            try {
+                // first round from shared stack, and recycle to magazine
+                final List<FastBufferPool.BufferHolder> holders = new ArrayList<>();
+                for (int i = 0; i < 16; ++i) {
+                    holders.add(pool.allocateAndAddReference());
+                }
+                Assert.assertEquals(48, pool.estimatedFreeBlocks());
+                for (final FastBufferPool.BufferHolder holder : holders) {
+                    holder.subReference();
+                }
+                Assert.assertEquals(64, pool.estimatedFreeBlocks());
+                holders.clear();
+
+                // second round all from magazine
+                for (int i = 0; i < 16; ++i) {
+                    holders.add(pool.allocateAndAddReference());
+                }
+                for (final FastBufferPool.BufferHolder holder : holders) {
+                    holder.subReference();
+                }
+            } catch (Throwable t) {
+                error.set(t);
+            }
+        });
+        pool.bindOwner(owner);
+        owner.start();
+        owner.join();
+        Assert.assertNull(error.get());
+        Assert.assertTrue(pool.sizeClassesInfo(), pool.sizeClassesInfo().startsWith("1K[idle=64/64,hit=16,miss=16,"));
+
+        // blocks in magazine are still available for other threads
+        final List<FastBufferPool.BufferHolder> holders = new ArrayList<>();
+        FastBufferPool.BufferHolder holder;
+        while ((holder = pool.allocateAndAddReference()) != null) {
+            holders.add(holder);
+        }
+        Assert.assertEquals(64 - 16, holders.size());
+        for (final FastBufferPool.BufferHolder h : holders) {
+            h.subReference();
+        }
+    }
+
+    @Test
+    public void concurrentTest() throws Exception {
+        final FastBufferPool pool = new FastBufferPool(SIZES, NUMBERS);
+        final Thread[] threads = new Thread[8];
+        final AtomicReference<Throwable> error = new AtomicReference<>();
+        for (int t = 0; t < threads.length; ++t) {
+            threads[t] = new Thread(() -> {
+                try {
+                    for (int i = 0; i < 100000; ++i) {
+                        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference(1 + (i % 3) * 1024 * 8);
+                        if (holder != null) {
+                            holder.addReference();
+                            holder.subReference();
+                            holder.subReference();
+                        }
+                    }
+                } catch (Throwable e) {
+                    error.set(e);
+                }
+            });
+        }
+        pool.bindOwner(threads[0]);
+        for (final Thread t : threads) {
+            t.start();
+        }
+        for (final Thread t : threads) {
+            t.join();
+        }
+        Assert.assertNull(error.get());
+        Assert.assertEquals(64, pool.estimatedFreeBlocks());
+        Assert.assertTrue(pool.sizeClassesInfo(), pool.sizeClassesInfo().contains("8K[idle=8/8"));
+        Assert.assertTrue(pool.sizeClassesInfo(), pool.sizeClassesInfo().contains("64K[idle=2/2"));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ThreadLocalRandom;
+
+public class LatencyHistogramTest {
+    @Test
+    public void testBuckets() {
+        for (long v = 0; v < 1_000_000; v += ThreadLocalRandom.current().nextInt(1, 97)) {
+            final int index = LatencyHistogram.bucketIndex(v);
+            Assert.assertTrue(v <= LatencyHistogram.bucketUpperBound(index));
+            if (index > 0) {
+                Assert.assertTrue(v > LatencyHistogram.bucketUpperBound(index - 1));
+            }
+            // relative error under 1/16
+            Assert.assertTrue(LatencyHistogram.bucketUpperBound(index) - v <= v / 16);
+        }
+        // huge value clamped into last bucket
+        Assert.assertEquals(LatencyHistogram.bucketIndex(1L << 41), LatencyHistogram.bucketIndex(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void testPercentile() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10000; ++i) {
+            histogram.record(i * 1000L);
+        }
+        histogram.record(-1); // ignored
+        final LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        Assert.assertEquals(10000, snapshot.getCount());
+        Assert.assertEquals(10_000_000, snapshot.getMax());
+        Assert.assertEquals(5_000_500, snapshot.getMean());
+        assertNear(5_000_000, snapshot.getPercentile(50));
+        assertNear(9_900_000, snapshot.getPercentile(99));
+        Assert.assertEquals(10_000_000, snapshot.getPercentile(100));
+
+        histogram.reset();
+        Assert.assertEquals(0, histogram.snapshot().getCount());
+        Assert.assertEquals(0, histogram.snapshot().getPercentile(99));
+    }
+
+    @Test
+    public void testConcurrentRecord() throws Exception {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        final int threads = 4;
+        final int loops = 100000;
+        final CountDownLatch latch = new CountDownLatch(threads);
+        for (int t = 0; t < threads; ++t) {
+            new Thread(() -> {
+                for (int i = 0; i < loops; ++i) {
+                    histogram.record(i);
+                }
+                latch.countDown();
+            }).start();
+        }
+        latch.await();
+        Assert.assertEquals(threads * loops, histogram.snapshot().getCount());
+        Assert.assertEquals(loops - 1, histogram.snapshot().getMax());
+        Assert.assertEquals((loops - 1) / 2, histogram.snapshot().getMean());
+    }
+
+    private static void assertNear(long expected, long actual) {
+        Assert.assertTrue(actual + " vs " + expected, Math.abs(actual - expected) <= expected / 16);
+    }
+}
@@ -0,0 +1,114 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class MpscByteRingTest {
+    private static byte[] record(int producer, int seq, int length) {
+        final byte[] bytes = new byte[length];
+        ByteBuffer.wrap(bytes).putInt(producer).putInt(seq);
+        for (int i = 8; i < length; ++i) {
+            bytes[i] = (byte) (seq + i);
+        }
+        return bytes;
+    }
+
+    @Test
+    public void testWrapAndDrop() {
+        final MpscByteRing ring = new MpscByteRing(100);
+        Assert.assertEquals(128, ring.getCapacity());
+        final List<Integer> lengths = new ArrayList<>();
+        final MpscByteRing.RecordHandler handler = (buf, off, len) -> lengths.add(len);
+
+        // 3 records of 40 bytes(44 aligned to 48) can not all fit
+        Assert.assertTrue(ring.offer(record(0, 0, 40), 0, 40));
+        Assert.assertTrue(ring.offer(record(0, 1, 40), 0, 40));
+        Assert.assertFalse(ring.offer(record(0, 2, 40), 0, 40));
+        Assert.assertEquals(1, ring.getDropped());
+        Assert.assertEquals(2, ring.drain(handler, 10));
+
+        // next one wraps with padding
+        for (int i = 0; i < 20; ++i) {
+            Assert.assertTrue(ring.offer(record(0, i, 40), 0, 40));
+            Assert.assertTrue(ring.offer(record(0, i, 13), 0, 13));
+            Assert.assertEquals(2, ring.drain(handler, 10));
+        }
+        Assert.assertEquals(42, lengths.size());
+        Assert.assertEquals(0, ring.drain(handler, 10));
+
+        // too large
+        Assert.assertFalse(ring.offer(new byte[ring.getMaxRecordLength() + 1], 0, ring.getMaxRecordLength() + 1));
+        Assert.assertEquals(2, ring.getDropped());
+    }
+
+    @Test
+    public void testMultiProducer() throws Exception {
+        final MpscByteRing ring = new MpscByteRing(1 << 12);
+        final int producers = 4;
+        final int loops = 20000;
+        final CountDownLatch latch = new CountDownLatch(producers);
+        final AtomicBoolean corrupted = new AtomicBoolean(false);
+        for (int p = 0; p < producers; ++p) {
+            final int producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < loops; ++i) {
+                    final int length = 8 + (i % 50);
+                    final byte[] data = record(producer, i, length);
+                    while (!ring.offer(data, 0, length)) {
+                        Thread.yield();
+                    }
+                }
+                latch.countDown();
+            }).start();
+        }
+
+        final int[] nextSeq = new int[producers];
+        final MpscByteRing.RecordHandler handler = (buf, off, len) -> {
+            final ByteBuffer buffer = ByteBuffer.wrap(buf, off, len);
+            final int producer = buffer.getInt();
+            final int seq = buffer.getInt();
+            // per producer order kept and content intact
+            if (seq != nextSeq[producer]++ || len != 8 + (seq % 50)) {
+                corrupted.set(true);
+            }
+            for (int i = 8; i < len; ++i) {
+                if (buf[off + i] != (byte) (seq + i)) {
+                    corrupted.set(true);
+                }
+            }
+        };
+        while (latch.getCount() > 0) {
+            ring.drain(handler, 100);
+        }
+        while (ring.drain(handler, 100) > 0) {
+        }
+        Assert.assertFalse(corrupted.get());
+        for (int p = 0; p < producers; ++p) {
+            Assert.assertEquals(loops, nextSeq[p]);
+        }
+    }
+}
@@ -25,6 +25,7 @@ import com.alibaba.polardbx.proxy.common.ThreadNames;
 import com.alibaba.polardbx.proxy.config.ConfigLoader;
 import com.alibaba.polardbx.proxy.config.ConfigProps;
 import com.alibaba.polardbx.proxy.connection.FrontendConnection;
+import com.alibaba.polardbx.proxy.logger.SqlAuditLog;
 import com.alibaba.polardbx.proxy.net.NIOAcceptor;
 import com.alibaba.polardbx.proxy.net.NIOConnection;
 import com.alibaba.polardbx.proxy.net.NIOConnectionFactory;
@@ -60,7 +61,11 @@ public class ProxyServer implements NIOConnectionFactory {
 
         final int cpus = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.CPUS));
         final int factor = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.REACTOR_FACTOR));
-        this.worker = new NIOWorker((cpus <= 0 ? Runtime.getRuntime().availableProcessors() : cpus) * factor);
+        final int reactors = (cpus <= 0 ? Runtime.getRuntime().availableProcessors() : cpus) * factor;
+        this.worker = new NIOWorker(reactors);
+
+        // binary SQL audit log, one ring per reactor, started when enable_sql_log is on
+        SqlAuditLog.init(reactors);
 
         // init HA manager
         final int haWorkerThreads =
@@ -21,12 +21,14 @@ package com.alibaba.polardbx.proxy.callback;
 import com.alibaba.polardbx.proxy.ProxyExecutor;
 import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.connection.FrontendConnection;
+import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
 import com.alibaba.polardbx.proxy.context.BackendContext;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.help.PreparedStatementContext;
 import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
-import com.alibaba.polardbx.proxy.logger.ExtraLog;
-import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.logger.SqlAuditLog;
+import com.alibaba.polardbx.proxy.logger.SqlAuditRecord;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
 import com.alibaba.polardbx.proxy.protocol.common.ResultState;
@@ -35,13 +37,12 @@ import com.alibaba.polardbx.proxy.protocol.handler.result.ResultHandler;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtExecute;
 import com.alibaba.polardbx.proxy.protocol.prepare.ParameterRebind;
 import com.alibaba.polardbx.proxy.scheduler.Scheduler;
-import com.alibaba.polardbx.proxy.serverless.HaManager;
+import com.alibaba.polardbx.proxy.scheduler.StageLatency;
+import com.alibaba.polardbx.proxy.scheduler.StatementStats;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.slf4j.MDC;
 
-import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.List;
@@ -49,6 +50,8 @@ import java.util.List;
 public class QueryResultCallback extends ResultCallbackBase {
     private static final Logger LOGGER = LoggerFactory.getLogger(QueryResultCallback.class);
 
+    private static final byte[] UNKNOWN_SQL = "<unknown>".getBytes(StandardCharsets.UTF_8);
+
     private String traceId;
     private boolean rollbackDiscard = false;
 
@@ -68,6 +71,11 @@ public class QueryResultCallback extends ResultCallbackBase {
                 return; // ignore more result, keep the trx reference(skip super invoke)
             }
 
+            if (!Boolean.TRUE.equals(scheduler.getIsSlaveConnection()) && !isReadOnly()) {
+                // may write on leader, and following session consistent reads wait for LSN after it
+                context.markSessionWrite();
+            }
+
             // maintain trx state before super function's dereference
             try {
                 final FrontendTransactionContext trx = context.getTransactionContext();
@@ -124,25 +132,24 @@ public class QueryResultCallback extends ResultCallbackBase {
 
                     // hold the connection if any warnings occurs or hold connection is set
                     trx.setConnectionHold(context.getWarnings() > 0 || FastConfig.enableConnectionHold);
-                    trx.setTransactionStarted(context.isInTransaction());
+                    trx.updateTransactionStarted(context.isInTransaction(),
+                        Boolean.TRUE.equals(scheduler.getIsSlaveConnection()));
+                    if (!beforeInTrx && trx.isRoTransaction() && !backendContext.isUpToDate()) {
+                        // read only trx started on a follower which not caught up the LSN, snapshot is stale
+                        trx.setConnectionHold(false);
+                        trx.setTransactionStarted(false);
+                        trx.discard();
+                    }
 
                     // discard if rollback and abort
                     if (state.isAbort() && scheduler.getRequest() instanceof ComQuery) {
-                        final ComQuery query = (ComQuery) scheduler.getRequest();
-                        try {
-                            final SQLParser parser =
-                                new SQLParser(query.getQuery(), 0, query.getQuery().length,
-                                    context.getClientJavaCharset(),
-                                    context.getSqlMode(),
-                                    HaManager.getInstance().getVersion());
-                            // todo make sure is rollback and no other token
-                            if (parser.getFirstToken() == MySQLToken.KW_ROLLBACK) {
-                                rollbackDiscard = true;
-                                trx.setConnectionHold(false);
-                                trx.setTransactionStarted(false);
-                                trx.discard();
-                            }
-                        } catch (Throwable ignore) {
+                        final StatementClassification classification = scheduler.getClassification();
+                        // todo make sure is rollback and no other token
+                        if (classification != null && classification.getFirstToken() == MySQLToken.KW_ROLLBACK) {
+                            rollbackDiscard = true;
+                            trx.setConnectionHold(false);
+                            trx.setTransactionStarted(false);
+                            trx.discard();
                         }
                     }
 
@@ -166,30 +173,19 @@ public class QueryResultCallback extends ResultCallbackBase {
     }
 
     private boolean isReadOnly() {
-        final byte[] sql;
-        final Charset charset;
-        if (scheduler.getRequest() instanceof ComQuery) {
-            sql = ((ComQuery) scheduler.getRequest()).getQuery();
-            charset = context.getClientJavaCharset();
-        } else if (scheduler.getRequest() instanceof ComStmtExecute) {
-            sql = scheduler.getPreparedStatement().getPrepareSql().getBytes(StandardCharsets.UTF_8);
-            charset = StandardCharsets.UTF_8;
-        } else {
-            sql = null;
-            charset = null;
-        }
-        if (null == sql || null == charset) {
+        if (!(scheduler.getRequest() instanceof ComQuery) && !(scheduler.getRequest() instanceof ComStmtExecute)) {
             return false;
         }
-        try {
-            final SQLParser parser =
-                new SQLParser(sql, 0, sql.length, context.getClientJavaCharset(), context.getSqlMode(),
-                    HaManager.getInstance().getVersion());
-            return parser.isReadOnly();
-        } catch (Throwable t) {
-            LOGGER.error("error when parse for system views", t);
+        final StatementClassification classification = scheduler.getClassification();
+        return classification != null && classification.isReadOnly();
+    }
+
+    private boolean isStartTransaction() {
+        if (!(scheduler.getRequest() instanceof ComQuery)) {
             return false;
         }
+        final StatementClassification classification = scheduler.getClassification();
+        return classification != null && classification.isStartTransaction();
     }
 
     @Override
@@ -200,6 +196,14 @@ public class QueryResultCallback extends ResultCallbackBase {
             return; // ignore more result, keep the trx reference(skip super invoke, because no lazy trx free)
         }
 
+        // feed response time of the node for latency-aware read balancing
+        if (!state.isAbort() && scheduler.getForwardNanos() > 0) {
+            final BackendConnectionWrapper backend = scheduler.getBackend();
+            if (backend != null) {
+                backend.getBackendPool().recordResponseNanos(System.nanoTime() - scheduler.getForwardNanos());
+            }
+        }
+
         // finish lazy trx close
         super.onDone(handler, lastValidState, state);
 
@@ -210,7 +214,8 @@ public class QueryResultCallback extends ResultCallbackBase {
         //      more: record all select and dml affects in trx and retry same can do retransmit
         if (dealing.needRetransmit) {
             realRetransmit = !context.isAutoCommit() // not auto commit(when no active trx means this is the first stmt)
-                || isReadOnly(); // or read only
+                || isReadOnly() // or read only
+                || isStartTransaction(); // or start of trx
         } else {
             realRetransmit = false;
         }
@@ -243,47 +248,81 @@ public class QueryResultCallback extends ResultCallbackBase {
             }
         }
 
-        if (FastConfig.enableSqlLog && ExtraLog.SqlLog.isInfoEnabled()) {
-            // done and do sql log
-            final long currentNanos = System.nanoTime();
-            MDC.put("schema", context.getDatabase());
-            final String conn =
-                "user=" + context.getUsername() +
-                    ",host=" + context.getRemoteAddress().getHostString() +
-                    ",port=" + context.getRemoteAddress().getPort() +
-                    ",schema=" + context.getDatabase() +
-                    (context.isAutoCommit() ? "" : ",autocommit=0") +
-                    (scheduler.getIsSlaveConnection() ? ",lsn=" + scheduler.getSpecificLsn() : "");
-            MDC.put("CONNECTION", conn);
-            String sql;
-            if (scheduler.getRequest() instanceof ComQuery) {
-                sql = context.decodeStringClient(((ComQuery) scheduler.getRequest()).getQuery());
-            } else if (scheduler.getPreparedStatement() != null) {
-                sql = scheduler.getPreparedStatement().getPrepareSql();
-            } else {
-                sql = "<unknown>";
-            }
-            sql = sql.length() > FastConfig.logSqlMaxLength ?
-                sql.substring(0, FastConfig.logSqlMaxLength) + "..." : sql;
-            sql = sql.replaceAll("\\n+", " ");
-            if (scheduler.getRequest() instanceof ComStmtExecute) {
-                sql += ' ' + ((ComStmtExecute) scheduler.getRequest()).parametersLogString();
-                // todo and show long data parameters
-            }
-            final StringBuilder builder = new StringBuilder();
-            if (scheduler.getRetransmitDelayNanos() > 0 || scheduler.getFetchLsnNanos() > 0
-                || scheduler.getScheduleNanos() > 0 || scheduler.getWaitLsnNanos() > 0) {
-                builder.append(",retransmit_delay:").append(scheduler.getRetransmitDelayNanos() / 1e3)
-                    .append("us,fetch_lsn:").append(scheduler.getFetchLsnNanos() / 1e3).append("us,schedule:")
-                    .append(scheduler.getScheduleNanos() / 1e3).append("us,wait_lsn:")
-                    .append(scheduler.getWaitLsnNanos() / 1e3).append("us");
-            }
-            if (scheduler.getWaitLeaderNanos() > 0) {
-                builder.append(",wait_leader:").append(scheduler.getWaitLeaderNanos() / 1e3).append("us");
+        // stage latency histograms, recorded once per query after all retransmits
+        final BackendConnectionWrapper backend = scheduler.getBackend();
+        if (backend != null) {
+            StageLatency.record(scheduler, backend.getBackendPool(), System.nanoTime());
+        }
+
+        // per digest statement statistics, no digest if classified before statistics turned on
+        final StatementClassification classification = scheduler.getClassification();
+        if (classification != null && classification.getDigest() != null && FastConfig.statementStatsSize > 0) {
+            recordStatementStats(classification, (QueryResultHandler) handler, state);
+        }
+
+        if (FastConfig.enableSqlLog) {
+            final SqlAuditLog auditLog = SqlAuditLog.getInstance();
+            if (auditLog != null && auditLog.sample(!state.isOK() && !state.isEOF())) {
+                appendAuditLog(auditLog, state);
             }
-            ExtraLog.SqlLog.info("{} # [state:{},retry:{},total_time:{}us{}] # {}",
-                sql, state.name(), scheduler.getRescheduleCount(), (currentNanos - scheduler.getStartNanos()) / 1e3,
-                builder, null == traceId ? "<unknown>" : traceId);
         }
     }
+
+    private void recordStatementStats(StatementClassification classification, QueryResultHandler handler,
+                                      ResultState state) {
+        long rows = 0, bytes = 0;
+        QueryResultHandler now = handler;
+        do {
+            rows += now.getRowCount();
+            bytes += now.getForwardedBytes();
+        } while ((now = (QueryResultHandler) now.getPrevious()) != null);
+        StatementStats.getInstance().record(classification.getDigestHash(), classification.getDigest(),
+            System.nanoTime() - scheduler.getStartNanos(), !state.isOK() && !state.isEOF(), rows, bytes,
+            Boolean.TRUE.equals(scheduler.getIsSlaveConnection()));
+    }
+
+    private void appendAuditLog(SqlAuditLog auditLog, ResultState state) {
+        final SqlAuditRecord record = SqlAuditRecord.local();
+        record.startUtc = scheduler.getStartUTC();
+        record.state = state;
+        record.retry = scheduler.getRescheduleCount();
+        record.totalNanos = System.nanoTime() - scheduler.getStartNanos();
+        record.retransmitDelayNanos = scheduler.getRetransmitDelayNanos();
+        record.fetchLsnQueueNanos = scheduler.getFetchLsnQueueNanos();
+        record.fetchLsnNanos = scheduler.getFetchLsnNanos();
+        record.lsnCacheAgeNanos = scheduler.getLsnCacheAgeNanos();
+        record.scheduleNanos = scheduler.getScheduleNanos();
+        record.waitLsnNanos = scheduler.getWaitLsnNanos();
+        record.waitLeaderNanos = scheduler.getWaitLeaderNanos();
+        record.waitPoolNanos = scheduler.getWaitPoolNanos();
+        record.autoCommit = context.isAutoCommit();
+        if (Boolean.TRUE.equals(scheduler.getIsSlaveConnection()) && scheduler.getSpecificLsn() != null) {
+            record.lsn = scheduler.getSpecificLsn();
+        }
+        record.user = context.getUsername();
+        record.host = context.getRemoteAddress().getHostString();
+        record.port = context.getRemoteAddress().getPort();
+        record.schema = context.getDatabase();
+        record.traceId = traceId;
+        // raw bytes of query in client charset, decoded only by offline tool
+        final byte[] sql;
+        if (scheduler.getRequest() instanceof ComQuery) {
+            sql = ((ComQuery) scheduler.getRequest()).getQuery();
+            record.charset = context.getClientJavaCharset();
+        } else if (scheduler.getPreparedStatement() != null) {
+            sql = scheduler.getPreparedStatement().getPrepareSql().getBytes(StandardCharsets.UTF_8);
+            record.charset = StandardCharsets.UTF_8;
+        } else {
+            sql = UNKNOWN_SQL;
+            record.charset = StandardCharsets.UTF_8;
+        }
+        record.sql = null == sql ? UNKNOWN_SQL : sql;
+        record.sqlLength = Math.min(record.sql.length, FastConfig.logSqlMaxLength);
+        record.truncated = record.sqlLength < record.sql.length;
+        if (scheduler.getRequest() instanceof ComStmtExecute) {
+            record.parameters = ((ComStmtExecute) scheduler.getRequest()).parametersLogString();
+        }
+        auditLog.append(record);
+        record.sql = null; // not hold the query
+    }
 }
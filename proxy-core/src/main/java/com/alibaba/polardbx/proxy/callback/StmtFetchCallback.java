@@ -73,7 +73,8 @@ public class StmtFetchCallback extends ResultCallbackBase {
 
                     // hold the connection if any warnings occurs or hold connection is set
                     trx.setConnectionHold(context.getWarnings() > 0 || FastConfig.enableConnectionHold);
-                    trx.setTransactionStarted(context.isInTransaction());
+                    trx.updateTransactionStarted(context.isInTransaction(),
+                        Boolean.TRUE.equals(scheduler.getIsSlaveConnection()));
                 }
             } catch (Throwable t) {
                 LOGGER.error("Failed to update trx state when query finish", t);
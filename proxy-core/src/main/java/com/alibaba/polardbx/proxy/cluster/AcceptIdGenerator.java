@@ -35,6 +35,13 @@ public class AcceptIdGenerator {
         this.workerId = workerId;
     }
 
+    /**
+     * Worker id(cluster node id) of the proxy which generated the accept id.
+     */
+    public static int workerIdOf(int acceptId) {
+        return (int) (acceptId & MAX_WORKER_ID);
+    }
+
     public int nextAcceptId() {
         final int id;
         while (true) {
@@ -37,6 +37,7 @@ import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.result.ResultHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.result.StmtPrepareResultHandler;
 import com.alibaba.polardbx.proxy.utils.CaseInsensitiveString;
+import com.alibaba.polardbx.proxy.utils.ConnectionRegistry;
 import com.alibaba.polardbx.proxy.utils.Slice;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
@@ -55,8 +56,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Queue;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.FutureTask;
 import java.util.concurrent.TimeUnit;
@@ -66,7 +65,8 @@ import java.util.concurrent.atomic.AtomicReference;
 
 public class BackendConnection extends MysqlConnection {
     private static final Logger LOGGER = LoggerFactory.getLogger(BackendConnection.class);
-    public static final Set<BackendConnection> CONNECTIONS = new ConcurrentSkipListSet<>();
+    // indexed by internal id
+    public static final ConnectionRegistry<BackendConnection> CONNECTIONS = new ConnectionRegistry<>();
 
     private final AtomicBoolean resourceClosed = new AtomicBoolean(false);
 
@@ -97,6 +97,9 @@ public class BackendConnection extends MysqlConnection {
     // global variables ref
     private Map<CaseInsensitiveString, String> globalVariables;
 
+    // invoked once when closed, protected by synchronize on resourceClosed
+    private Runnable closeListener = null;
+
     private BackendConnection(SocketChannel channel, NIOProcessor processor, boolean connected, String username,
                               String encryptedPassword, String database) {
         super(channel, processor, connected);
@@ -104,8 +107,8 @@ public class BackendConnection extends MysqlConnection {
         authenticator =
             new BackendAuthenticator(remoteAddress(), contextReference, username, encryptedPassword, database);
 
-        // add to global set
-        CONNECTIONS.add(this);
+        // add to global registry
+        CONNECTIONS.register(getInternalId(), this);
     }
 
     public void setPoolInfo(boolean slave, ReadOnlyConfigs readOnlyConfigs,
@@ -115,6 +118,20 @@ public class BackendConnection extends MysqlConnection {
         this.globalVariables = globalVariables;
     }
 
+    /**
+     * Set listener invoked once when connection closed, and invoke it immediately if already closed.
+     */
+    public void setCloseListener(Runnable listener) {
+        // use resourceClosed as synchronize lock
+        synchronized (resourceClosed) {
+            if (!resourceClosed.getPlain()) {
+                closeListener = listener;
+                return;
+            }
+        }
+        listener.run();
+    }
+
     @Override
     protected void onEstablished() {
         // nothing to do
@@ -228,10 +245,13 @@ public class BackendConnection extends MysqlConnection {
         final boolean needClose;
         final BackendAuthenticator auth;
         final List<ResultHandler> handlers;
+        final Runnable listener;
         // use resourceClosed as synchronize lock
         synchronized (resourceClosed) {
             if (resourceClosed.compareAndSet(false, true)) {
                 needClose = true;
+                listener = closeListener;
+                closeListener = null;
                 // move all handlers and free outside
                 auth = authenticator;
                 authenticator = null;
@@ -245,6 +265,7 @@ public class BackendConnection extends MysqlConnection {
                 pendingData.clear();
             } else {
                 needClose = false;
+                listener = null;
                 assert null == authenticator;
                 assert null == nowResultHandler;
                 assert resultHandlers.isEmpty();
@@ -279,11 +300,19 @@ public class BackendConnection extends MysqlConnection {
             });
         }
 
-        // remove from global set
-        CONNECTIONS.remove(this);
+        // remove from global registry
+        CONNECTIONS.unregister(getInternalId(), this);
 
         // finalize the TCP close
         super.close();
+
+        if (listener != null) {
+            try {
+                listener.run();
+            } catch (Throwable t) {
+                LOGGER.error("close listener of connection {} failed", this, t);
+            }
+        }
     }
 
     // Caution: Packet and handler will close anyway.
@@ -22,10 +22,13 @@ import com.alibaba.polardbx.proxy.ProxyExecutor;
 import com.alibaba.polardbx.proxy.ProxyServer;
 import com.alibaba.polardbx.proxy.cluster.GlobalMock;
 import com.alibaba.polardbx.proxy.cluster.InstanceVersion;
+import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.MysqlContext;
 import com.alibaba.polardbx.proxy.net.NIOProcessor;
+import com.alibaba.polardbx.proxy.protocol.command.ComChangeUser;
 import com.alibaba.polardbx.proxy.protocol.command.StatusFlags;
+import com.alibaba.polardbx.proxy.protocol.common.CompressedPacketCodec;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlServerState;
 import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
 import com.alibaba.polardbx.proxy.protocol.connection.HandshakeV10;
@@ -33,20 +36,22 @@ import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
 import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
 import com.alibaba.polardbx.proxy.protocol.handler.FrontendAuthenticator;
 import com.alibaba.polardbx.proxy.protocol.handler.FrontendCommandHandler;
+import com.alibaba.polardbx.proxy.utils.ConnectionRegistry;
 import com.alibaba.polardbx.proxy.utils.RandomUtil;
 import com.alibaba.polardbx.proxy.utils.Slice;
+import com.github.luben.zstd.Zstd;
 import lombok.Getter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.channels.SocketChannel;
-import java.util.Set;
-import java.util.concurrent.ConcurrentSkipListSet;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 public class FrontendConnection extends MysqlConnection {
     private static final Logger LOGGER = LoggerFactory.getLogger(FrontendConnection.class);
-    public static final Set<FrontendConnection> CONNECTIONS = new ConcurrentSkipListSet<>();
+    // indexed by connection id
+    public static final ConnectionRegistry<FrontendConnection> CONNECTIONS = new ConnectionRegistry<>();
 
     private final AtomicBoolean resourceClosed = new AtomicBoolean(false);
 
@@ -58,19 +63,22 @@ public class FrontendConnection extends MysqlConnection {
     private volatile FrontendAuthenticator authenticator;
     private volatile FrontendCommandHandler commander;
 
+    // switch to compressed protocol after auth OK flushed(reactor thread only)
+    private boolean pendingCompress = false;
+
     public FrontendConnection(SocketChannel channel, NIOProcessor processor) {
         super(channel, processor, true);
-        this.context =
-            new FrontendContext(remoteAddress(), ProxyServer.getInstance().getAcceptIdGenerator().nextAcceptId(),
-                Capabilities.getBaseCapabilities());
+        this.context = new FrontendContext(remoteAddress(), nextConnectionId(), Capabilities.getBaseCapabilities());
         try {
             if (GlobalMock.forceFrontendNoDeprecateEof()) {
                 this.context.removeCapability(Capabilities.CLIENT_DEPRECATE_EOF);
             }
+            if (FastConfig.enableFrontendCompression) {
+                this.context.addCapability(Capabilities.CLIENT_COMPRESS);
+                this.context.addCapability(Capabilities.CLIENT_ZSTD_COMPRESSION_ALGORITHM);
+            }
             final boolean ignore = this.context.setCharset(MysqlContext.DEFAULT_CHARSET_INDEX);
-            final byte[] seed = RandomUtil.randomBytes(21);
-            seed[20] = 0; // with 0 terminator
-            this.authenticator = new FrontendAuthenticator(context, seed);
+            this.authenticator = new FrontendAuthenticator(context, newSeed());
         } catch (Throwable t) {
             // prevent leak
             this.context.close();
@@ -81,8 +89,25 @@ public class FrontendConnection extends MysqlConnection {
             throw t;
         }
 
-        // add to global set
-        CONNECTIONS.add(this);
+        // add to global registry
+        if (!CONNECTIONS.register(context.getConnectionId(), this)) {
+            LOGGER.warn("connection id {} of {} already registered", context.getConnectionId(), this);
+        }
+    }
+
+    private static byte[] newSeed() {
+        final byte[] seed = RandomUtil.randomBytes(21);
+        seed[20] = 0; // with 0 terminator
+        return seed;
+    }
+
+    private static int nextConnectionId() {
+        // accept id wraps after 2^27 connections, skip ones still held by long-lived connections
+        int id;
+        do {
+            id = ProxyServer.getInstance().getAcceptIdGenerator().nextAcceptId();
+        } while (CONNECTIONS.contains(id));
+        return id;
     }
 
     @Override
@@ -122,6 +147,9 @@ public class FrontendConnection extends MysqlConnection {
                 auth.handleFinish();
                 auth.close();
                 authenticator = null;
+                // already compressed if authenticated again by COM_CHANGE_USER
+                pendingCompress = !compressedPacket && (context.hasCapability(Capabilities.CLIENT_COMPRESS)
+                    || context.hasCapability(Capabilities.CLIENT_ZSTD_COMPRESSION_ALGORITHM));
             }
         } else {
             FrontendCommandHandler handler = commander;
@@ -142,6 +170,32 @@ public class FrontendConnection extends MysqlConnection {
         return taken;
     }
 
+    /**
+     * Authenticate again with COM_CHANGE_USER, authenticator is kept until auth switch response received.
+     * Each one challenges with a fresh seed, so a scramble captured from an earlier login can not be replayed.
+     */
+    public void changeUser(ComChangeUser request, Encoder encoder) throws IOException {
+        final FrontendAuthenticator auth = new FrontendAuthenticator(context, newSeed());
+        boolean keep = false;
+        try {
+            auth.changeUser(request, encoder);
+            if (MysqlServerState.AuthSwitched == context.getState()) {
+                // use resourceClosed as lock
+                synchronized (resourceClosed) {
+                    if (resourceClosed.getPlain()) {
+                        throw new IllegalStateException("connection is closed");
+                    }
+                    authenticator = auth;
+                    keep = true;
+                }
+            }
+        } finally {
+            if (!keep) {
+                auth.close();
+            }
+        }
+    }
+
     @Override
     protected void handleFinish() {
         // invoke handle finish with optimistic read
@@ -156,7 +210,23 @@ public class FrontendConnection extends MysqlConnection {
         // close connection if any error occurs
         if (MysqlServerState.Closed == context.getState()) {
             close();
+        } else if (pendingCompress) {
+            // OK packet of auth is flushed uncompressed, and all subsequent packets are compressed
+            pendingCompress = false;
+            setCompressedPacket(newCodec());
+        }
+    }
+
+    private CompressedPacketCodec newCodec() {
+        // zlib wins if both requested, same as MySQL server
+        if (context.hasCapability(Capabilities.CLIENT_COMPRESS)) {
+            return new CompressedPacketCodec(CompressedPacketCodec.Algorithm.ZLIB, FastConfig.frontendCompressionLevel,
+                FastConfig.maxAllowedPacket, processor.getBufferPool());
         }
+        final int level = context.getZstdCompressionLevel();
+        return new CompressedPacketCodec(CompressedPacketCodec.Algorithm.ZSTD,
+            level >= 1 && level <= Zstd.maxCompressionLevel() ? level : CompressedPacketCodec.DEFAULT_ZSTD_LEVEL,
+            FastConfig.maxAllowedPacket, processor.getBufferPool());
     }
 
     @Override
@@ -205,8 +275,8 @@ public class FrontendConnection extends MysqlConnection {
             });
         }
 
-        // remove from global set
-        CONNECTIONS.remove(this);
+        // remove from global registry
+        CONNECTIONS.unregister(context.getConnectionId(), this);
 
         // finalize the TCP close
         super.close();
@@ -21,6 +21,7 @@ package com.alibaba.polardbx.proxy.connection;
 import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.net.NIOConnection;
 import com.alibaba.polardbx.proxy.net.NIOProcessor;
+import com.alibaba.polardbx.proxy.protocol.common.CompressedPacketCodec;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
 import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
 import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
@@ -30,9 +31,12 @@ import com.alibaba.polardbx.proxy.utils.UnsafeBytes;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 import java.nio.channels.SocketChannel;
+import java.util.Collections;
+import java.util.zip.DataFormatException;
 
 public abstract class MysqlConnection extends NIOConnection {
     private static final Logger LOGGER = LoggerFactory.getLogger(MysqlConnection.class);
@@ -40,17 +44,24 @@ public abstract class MysqlConnection extends NIOConnection {
     protected boolean compressedPacket = false;
     protected int packetHeaderSize = MysqlPacket.NORMAL_HEADER_SIZE;
 
+    // codec of compressed protocol, also used as lock to keep compressed sequence and write order
+    private volatile CompressedPacketCodec codec = null;
+
     public MysqlConnection(SocketChannel channel, NIOProcessor processor, boolean connected) {
         super(channel, processor, connected, FastConfig.maxAllowedPacket, MysqlPacket.DEFAULT_RESERVE_BUFFER_SIZE);
     }
 
-    public void setCompressedPacket(boolean compressedPacket) {
-        if (compressedPacket) {
-            // todo
-            throw new UnsupportedOperationException();
-        }
-        this.compressedPacket = compressedPacket;
+    // Caution: Invoke on reactor thread after the last uncompressed packet flushed, null to switch back to normal.
+    public void setCompressedPacket(CompressedPacketCodec codec) {
+        final CompressedPacketCodec old = this.codec;
+        this.codec = codec;
+        this.compressedPacket = codec != null;
         this.packetHeaderSize = compressedPacket ? MysqlPacket.COMPRESSED_HEADER_SIZE : MysqlPacket.NORMAL_HEADER_SIZE;
+        if (old != null) {
+            synchronized (old) {
+                old.close();
+            }
+        }
     }
 
     private static int u24(ByteBuffer buf, int offset) {
@@ -72,6 +83,10 @@ public abstract class MysqlConnection extends NIOConnection {
         int totalSize = packetHeaderSize;
         int payloadSize = u24(buf, offset);
         totalSize += payloadSize;
+        if (compressedPacket) {
+            // compressed frame never continues, large packet is reassembled after decompress
+            return totalSize;
+        }
         // dealing large packet
         while (MysqlPacket.MAX_PAYLOAD_SIZE == payloadSize) {
             // extra packet needed
@@ -88,6 +103,70 @@ public abstract class MysqlConnection extends NIOConnection {
         return totalSize;
     }
 
+    @Override
+    public void write(AutoCloseableContainer<Slice> packets) throws IOException {
+        final CompressedPacketCodec codec = this.codec;
+        if (null == codec) {
+            super.write(packets);
+            return;
+        }
+        if (packets.isEmpty()) {
+            return;
+        }
+        synchronized (codec) {
+            final Slice frames = codec.compress(packets);
+            packets.close(); // all copied
+            super.write(frames);
+        }
+    }
+
+    @Override
+    public void write(Slice packet) throws IOException {
+        final CompressedPacketCodec codec = this.codec;
+        if (null == codec) {
+            super.write(packet);
+            return;
+        }
+        try {
+            synchronized (codec) {
+                final Slice frames = codec.compress(Collections.singletonList(packet));
+                packet.close(); // copied
+                packet = null;
+                super.write(frames);
+            }
+        } finally {
+            if (packet != null) {
+                packet.close();
+            }
+        }
+    }
+
+    private static void decompress(AutoCloseableContainer<Slice> frames, CompressedPacketCodec codec)
+        throws DataFormatException {
+        // take frames out and refill container with decompressed packets
+        final Slice[] taken = frames.toArray(new Slice[0]);
+        frames.clear();
+        DataFormatException err = null;
+        for (final Slice frame : taken) {
+            try {
+                if (null == err) {
+                    codec.decompress(frame);
+                    Slice packet;
+                    while ((packet = codec.poll()) != null) {
+                        frames.add(packet);
+                    }
+                }
+            } catch (DataFormatException e) {
+                err = e;
+            } finally {
+                frame.close();
+            }
+        }
+        if (err != null) {
+            throw err;
+        }
+    }
+
     protected abstract boolean handleAndTakePacket(Slice packet, Decoder decoder, Encoder encoder) throws Exception;
 
     protected abstract void handleFinish() throws Exception;
@@ -95,20 +174,18 @@ public abstract class MysqlConnection extends NIOConnection {
     @Override
     protected void onPacket(AutoCloseableContainer<Slice> packets) {
         try (final Encoder encoder = Encoder.create(processor.getBufferPool(), this::write)) {
+            final CompressedPacketCodec codec = this.codec;
+            if (codec != null) {
+                decompress(packets, codec);
+            }
+
             // free or release ownership instead of remove from container(impl of container is ArrayList)
             Throwable err = null;
             for (Slice packet : packets) {
                 try {
                     // handle and take ownership, or leave and free in finally
                     if (null == err) {
-                        final Decoder decoder;
-                        if (compressedPacket) {
-                            // todo dealing compressed
-                            throw new UnsupportedOperationException();
-                        } else {
-                            decoder = Decoder.decodeNormalPacket(packet);
-                        }
-
+                        final Decoder decoder = Decoder.decodeNormalPacket(packet);
                         encoder.setSeq(decoder.getLastSeq() + 1);
                         final boolean taken = handleAndTakePacket(packet, decoder, encoder);
                         if (taken) {
@@ -146,6 +223,18 @@ public abstract class MysqlConnection extends NIOConnection {
         }
     }
 
+    @Override
+    public void close() {
+        super.close();
+        // free native compress stream, write after close fails anyway
+        final CompressedPacketCodec codec = this.codec;
+        if (codec != null) {
+            synchronized (codec) {
+                codec.close();
+            }
+        }
+    }
+
     @Override
     public String toString() {
         try {
@@ -165,9 +165,13 @@ public class BackendConnectionWrapper implements AutoCloseable {
     public synchronized void restoreContext(FrontendContext frontendContext) throws IOException {
         final BackendContext backendContext = backendConnection.getContextReference().getAcquire();
         // check user and privileged host first if backend support user switch
-        if (backendPool.getProxyToken() != null && (null == backendContext || !Objects.equals(
+        final boolean switchUser = backendPool.getProxyToken() != null && (null == backendContext || !Objects.equals(
             frontendContext.getUsername(), backendContext.getUsername()) || !Objects.equals(
-            frontendContext.getPrivilegeHost(), backendContext.getPrivilegeHost()))) {
+            frontendContext.getPrivilegeHost(), backendContext.getPrivilegeHost()));
+        if (backendPool.getProxyToken() != null) {
+            backendPool.recordRestore(switchUser);
+        }
+        if (switchUser) {
             final String targetUser = frontendContext.getUsername();
             final String targetHost = frontendContext.getPrivilegeHost();
             backendConnection.sendQuery(
@@ -197,11 +201,15 @@ public class BackendConnectionWrapper implements AutoCloseable {
         }
 
         // restore schema
+        backendPool.recordRestore(
+            null == backendContext || !Objects.equals(frontendContext.getDatabase(), backendContext.getDatabase()));
         backendConnection.initDB(frontendContext.getDatabase(), MysqlContext.DEFAULT_CHARSET, true);
 
         // restore autocommit
         final boolean autoCommit = frontendContext.isAutoCommit();
-        if (null == backendContext || backendContext.isAutoCommit() != autoCommit) {
+        final boolean setAutoCommit = null == backendContext || backendContext.isAutoCommit() != autoCommit;
+        backendPool.recordRestore(setAutoCommit);
+        if (setAutoCommit) {
             final boolean inTrx = frontendContext.isInTransaction();
             // need set auto commit
             backendConnection.sendQuery("set autocommit=" + (frontendContext.isAutoCommit() ? '1' : '0'),
@@ -18,34 +18,47 @@
 
 package com.alibaba.polardbx.proxy.connection.pool;
 
+import com.alibaba.polardbx.proxy.ProxyExecutor;
 import com.alibaba.polardbx.proxy.common.ThreadNames;
 import com.alibaba.polardbx.proxy.config.ConfigLoader;
 import com.alibaba.polardbx.proxy.config.ConfigProps;
+import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.connection.BackendConnection;
 import com.alibaba.polardbx.proxy.connection.configs.ReadOnlyConfigs;
+import com.alibaba.polardbx.proxy.context.BackendContext;
+import com.alibaba.polardbx.proxy.net.NIOProcessor;
 import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.protocol.common.MysqlError;
 import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
 import com.alibaba.polardbx.proxy.utils.BytesTools;
 import com.alibaba.polardbx.proxy.utils.CaseInsensitiveString;
 import com.alibaba.polardbx.proxy.utils.CharsetMapping;
+import com.alibaba.polardbx.proxy.utils.ResponseTimeEwma;
 import lombok.Getter;
+import lombok.Setter;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.net.SocketAddress;
+import java.sql.SQLException;
 import java.util.Map;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.Executor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
 
 public class BackendPool implements AutoCloseable {
     private static final Logger LOGGER = LoggerFactory.getLogger(BackendPool.class);
 
+    // new sample weights 1/8, and halves every second without sample
+    private static final int RESPONSE_EWMA_SHIFT = 3;
+    private static final long RESPONSE_EWMA_HALF_LIFE = TimeUnit.SECONDS.toNanos(1);
+
     private final NIOWorker nioWorker;
     @Getter
     private final SocketAddress address;
@@ -55,10 +68,61 @@ public class BackendPool implements AutoCloseable {
     private final String encryptedPassword;
     private final String defaultDatabase;
 
-    private final Queue<BackendConnection> connections = new ConcurrentLinkedQueue<>();
+    private static final class StateKey {
+        private final NIOProcessor processor;
+        private final int stateHash;
+
+        private StateKey(NIOProcessor processor, int stateHash) {
+            this.processor = processor;
+            this.stateHash = stateHash;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            if (this == o) {
+                return true;
+            }
+            if (!(o instanceof StateKey)) {
+                return false;
+            }
+            final StateKey that = (StateKey) o;
+            return processor == that.processor && stateHash == that.stateHash;
+        }
+
+        @Override
+        public int hashCode() {
+            return 31 * System.identityHashCode(processor) + stateHash;
+        }
+    }
+
+    private static final class IdleConnection {
+        private final BackendConnection connection;
+        private final NIOProcessor processor; // reactor which owns the socket
+        private final StateKey stateKey; // null if backend context not ready
+        private final AtomicBoolean taken = new AtomicBoolean(false);
+
+        private IdleConnection(BackendConnection connection, Integer stateHash) {
+            this.connection = connection;
+            this.processor = connection.getProcessor();
+            this.stateKey = null == stateHash ? null : new StateKey(processor, stateHash);
+        }
+    }
+
+    // all idle connections in FIFO order, and entries taken via other index are removed lazily
+    private final Queue<IdleConnection> connections = new ConcurrentLinkedQueue<>();
+    // idle connections indexed by owner processor and backend session state hash
+    private final Map<StateKey, Queue<IdleConnection>> stateIndex = new ConcurrentHashMap<>();
+    // idle connections indexed by owner processor, so frontend and backend can be served in same reactor thread
+    private final Map<NIOProcessor, Queue<IdleConnection>> processorIndex = new ConcurrentHashMap<>();
+    private final AtomicInteger staleCount = new AtomicInteger(0);
     private final AtomicInteger connectionCount = new AtomicInteger(0);
     // package private
     final AtomicInteger connectionRunning = new AtomicInteger(0);
+    // live connections opened by this pool(idle and in use), new one is admitted only under max connections
+    private final AtomicInteger connectionOpen = new AtomicInteger(0);
+    // requests waiting for connection when pool is full
+    private final WaitQueue<BackendConnectionWrapper> waiters =
+        new WaitQueue<>(ProxyExecutor.getInstance().getExecutor(), ProxyExecutor.getInstance().getTimer());
 
     @Getter
     private volatile int maxPooled;
@@ -66,6 +130,10 @@ public class BackendPool implements AutoCloseable {
     // slave mark
     @Getter
     private final boolean slave;
+    // learner mark(slave only), distinguishes learner from follower in latency stats
+    @Getter
+    @Setter
+    private volatile boolean learner = false;
 
     @Getter
     private final ReadOnlyConfigs readOnlyConfigs = new ReadOnlyConfigs();
@@ -73,6 +141,23 @@ public class BackendPool implements AutoCloseable {
     private final Map<CaseInsensitiveString, String> globalVariables = new ConcurrentHashMap<>();
     private final AtomicLong globalVariablesRefreshTime = new AtomicLong(0);
 
+    // session state affinity stats
+    private final AtomicLong stateHits = new AtomicLong(0);
+    private final AtomicLong stateMisses = new AtomicLong(0);
+    private final AtomicLong restoreSent = new AtomicLong(0);
+    private final AtomicLong restoreAvoided = new AtomicLong(0);
+
+    // set read_lsn stats(slave only)
+    private final AtomicLong readLsnSent = new AtomicLong(0);
+    private final AtomicLong readLsnAvoided = new AtomicLong(0);
+    // set read_lsn failed on this node recently, wait for it before sending query rather than pipeline them
+    @Getter
+    @Setter
+    private volatile boolean readLsnLagging = false;
+
+    // response time of queries on this pool, for latency-aware read balancing
+    private final ResponseTimeEwma responseTime = new ResponseTimeEwma(RESPONSE_EWMA_SHIFT, RESPONSE_EWMA_HALF_LIFE);
+
     /**
      * Connection pool to backend.
      *
@@ -112,25 +197,336 @@ public class BackendPool implements AutoCloseable {
         return connectionRunning.getAcquire();
     }
 
-    public BackendConnectionWrapper getConnection() throws IOException {
-        while (true) {
-            BackendConnection connection = connections.poll();
-            if (connection != null) {
+    public int getNowOpenConnectionCount() {
+        return connectionOpen.getAcquire();
+    }
+
+    public int getNowWaitingCount() {
+        return waiters.size();
+    }
+
+    public long getWaitServed() {
+        return waiters.getServed();
+    }
+
+    public long getWaitServedNanos() {
+        return waiters.getServedWaitNanos();
+    }
+
+    public long getWaitTimeouts() {
+        return waiters.getTimeouts();
+    }
+
+    public long getWaitRejected() {
+        return waiters.getRejected();
+    }
+
+    public long getStateHits() {
+        return stateHits.get();
+    }
+
+    public long getStateMisses() {
+        return stateMisses.get();
+    }
+
+    public long getRestoreSent() {
+        return restoreSent.get();
+    }
+
+    public long getRestoreAvoided() {
+        return restoreAvoided.get();
+    }
+
+    public void recordRestore(boolean sent) {
+        (sent ? restoreSent : restoreAvoided).getAndIncrement();
+    }
+
+    public long getReadLsnSent() {
+        return readLsnSent.get();
+    }
+
+    public long getReadLsnAvoided() {
+        return readLsnAvoided.get();
+    }
+
+    public void recordReadLsn(boolean sent) {
+        (sent ? readLsnSent : readLsnAvoided).getAndIncrement();
+    }
+
+    public void recordResponseNanos(long nanos) {
+        responseTime.record(nanos, System.nanoTime());
+    }
+
+    public long getResponseNanosEwma() {
+        return responseTime.get(System.nanoTime());
+    }
+
+    private void unindexState(IdleConnection idle) {
+        if (idle.stateKey != null) {
+            stateIndex.computeIfPresent(idle.stateKey, (k, q) -> {
+                q.remove(idle); // mostly at head because both are FIFO
+                return q.isEmpty() ? null : q;
+            });
+        }
+    }
+
+    private void unindexProcessor(IdleConnection idle) {
+        final Queue<IdleConnection> queue = processorIndex.get(idle.processor);
+        if (queue != null) {
+            queue.remove(idle); // mostly at head because both are FIFO
+        }
+    }
+
+    // taken via index and left in FIFO queue, purge if too many
+    private void markStale() {
+        connectionCount.getAndDecrement();
+        if (staleCount.incrementAndGet() > Math.max(16, connectionCount.getAcquire())) {
+            staleCount.setRelease(0);
+            connections.removeIf(i -> i.taken.getAcquire());
+        }
+    }
+
+    private BackendConnection pollIdle() {
+        IdleConnection idle;
+        while ((idle = connections.poll()) != null) {
+            if (idle.taken.compareAndSet(false, true)) {
+                unindexState(idle);
+                unindexProcessor(idle);
                 connectionCount.getAndDecrement();
-                if (!connection.isGood()) {
-                    connection.close();
-                    continue;
+                return idle.connection;
+            }
+            staleCount.getAndDecrement();
+        }
+        return null;
+    }
+
+    private BackendConnection pollIdle(NIOProcessor processor, int stateHash) {
+        final StateKey key = new StateKey(processor, stateHash);
+        final Queue<IdleConnection> bucket = stateIndex.get(key);
+        if (null == bucket) {
+            return null;
+        }
+        IdleConnection idle;
+        while ((idle = bucket.poll()) != null) {
+            if (idle.taken.compareAndSet(false, true)) {
+                unindexProcessor(idle);
+                markStale();
+                break;
+            }
+        }
+        stateIndex.computeIfPresent(key, (k, q) -> q.isEmpty() ? null : q);
+        return null == idle ? null : idle.connection;
+    }
+
+    private BackendConnection pollIdle(NIOProcessor processor) {
+        final Queue<IdleConnection> queue = processorIndex.get(processor);
+        if (null == queue) {
+            return null;
+        }
+        IdleConnection idle;
+        while ((idle = queue.poll()) != null) {
+            if (idle.taken.compareAndSet(false, true)) {
+                unindexState(idle);
+                markStale();
+                return idle.connection;
+            }
+        }
+        return null;
+    }
+
+    private BackendConnection pollIdleAnyProcessor(int stateHash, NIOProcessor except) {
+        for (final NIOProcessor processor : nioWorker.getProcessors()) {
+            if (processor != except) {
+                final BackendConnection connection = pollIdle(processor, stateHash);
+                if (connection != null) {
+                    return connection;
                 }
-            } else {
-                connection =
-                    BackendConnection.connectNonBlocking(address, nioWorker.getProcessor(), username, encryptedPassword,
-                        defaultDatabase);
-                connection.setPoolInfo(slave, readOnlyConfigs, globalVariables);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Take idle connection in order of: same processor with same state, other processor with same state, same
+     * processor with any state and finally the oldest one. Restore statements cost a round trip to backend which is
+     * much more expensive than cross-thread hand-off, so state match goes first.
+     */
+    private BackendConnectionWrapper takeIdle(Integer stateHash, NIOProcessor processor) {
+        while (true) {
+            boolean matched = false;
+            BackendConnection connection = null;
+            if (stateHash != null) {
+                if (processor != null) {
+                    connection = pollIdle(processor, stateHash);
+                }
+                if (null == connection) {
+                    connection = pollIdleAnyProcessor(stateHash, processor);
+                }
+                matched = connection != null;
+            }
+            if (null == connection && processor != null) {
+                connection = pollIdle(processor);
+            }
+            if (null == connection) {
+                connection = pollIdle();
+            }
+            if (null == connection) {
+                return null;
+            }
+            if (!connection.isGood()) {
+                connection.close();
+                continue;
+            }
+            if (stateHash != null) {
+                (matched ? stateHits : stateMisses).getAndIncrement();
             }
             return new BackendConnectionWrapper(this, connection);
         }
     }
 
+    /**
+     * Open new connection.
+     *
+     * @param bounded Whether bounded by max connections.
+     * @param processor Preferred processor for new connection, null if no preference.
+     * @return new connection, or null if pool is full
+     */
+    private BackendConnection open(boolean bounded, NIOProcessor processor) throws IOException {
+        final int maxConnections = FastConfig.backendPoolMaxConnections;
+        while (true) {
+            final int now = connectionOpen.getAcquire();
+            if (bounded && maxConnections > 0 && now >= maxConnections) {
+                return null;
+            }
+            if (connectionOpen.compareAndSet(now, now + 1)) {
+                break;
+            }
+        }
+        final BackendConnection connection;
+        try {
+            connection = BackendConnection.connectNonBlocking(address, nioWorker.getProcessor(processor), username,
+                encryptedPassword, defaultDatabase);
+        } catch (Throwable t) {
+            connectionOpen.getAndDecrement();
+            throw t;
+        }
+        connection.setPoolInfo(slave, readOnlyConfigs, globalVariables);
+        connection.setCloseListener(this::onConnectionClosed);
+        return connection;
+    }
+
+    private void onConnectionClosed() {
+        connectionOpen.getAndDecrement();
+        if (!waiters.isEmpty()) {
+            serveWaiters();
+        }
+    }
+
+    private SQLException rejectError(String reason) {
+        return new SQLException("Too many connections to backend " + address + ", " + reason + '.',
+            MysqlError.CONNECTION_REJECTED_STATE, MysqlError.ER_CON_COUNT_ERROR);
+    }
+
+    /**
+     * Hand idle or newly admitted connections to waiters in FIFO order.
+     */
+    private void serveWaiters() {
+        while (!waiters.isEmpty()) {
+            BackendConnectionWrapper connection = takeIdle(null, null);
+            if (null == connection) {
+                if (maxPooled < 0) {
+                    waiters.failAll(new IOException("Backend pool " + address + " is closed."));
+                    return;
+                }
+                final BackendConnection opened;
+                try {
+                    opened = open(true, null);
+                } catch (Throwable t) {
+                    LOGGER.error("Failed to open connection to {} for waiters.", address, t);
+                    waiters.failAll(t);
+                    return;
+                }
+                if (null == opened) {
+                    return; // still full, and wait for release or close
+                }
+                connection = new BackendConnectionWrapper(this, opened);
+            }
+            if (!waiters.complete(connection)) {
+                connection.close(); // all waiters gone, just put it back
+                return;
+            }
+        }
+    }
+
+    /**
+     * Get connection for internal use(HA, kill, config loading etc.), which is never bounded by max connections.
+     */
+    public BackendConnectionWrapper getConnection() throws IOException {
+        final BackendConnectionWrapper idle = takeIdle(null, null);
+        return idle != null ? idle : new BackendConnectionWrapper(this, open(false, null));
+    }
+
+    /**
+     * Get connection and prefer idle one whose session state matches, so restore statements can be avoided.
+     * New connection is opened only when live connections is under backend_pool_max_connections, otherwise the
+     * request is rejected immediately.
+     *
+     * @param stateHash Session state hash of requester(see {@link BackendContext#stateHash()}), null if no preference.
+     */
+    public BackendConnectionWrapper getConnection(Integer stateHash) throws IOException, SQLException {
+        return getConnection(stateHash, null, null);
+    }
+
+    /**
+     * Get connection without processor preference, or queue the waiter if pool is full.
+     */
+    public BackendConnectionWrapper getConnection(Integer stateHash,
+                                                  WaitQueue.Callback<BackendConnectionWrapper> waiter)
+        throws IOException, SQLException {
+        return getConnection(stateHash, null, waiter);
+    }
+
+    /**
+     * Get connection, or queue the waiter if pool is full.
+     *
+     * @param stateHash Session state hash of requester, null if no preference.
+     * @param processor Processor of requester, and connection owned by it is preferred, null if no preference.
+     * @param waiter Waiter completed in executor when connection available or timeout, null to reject immediately.
+     * @return connection, or null if waiter queued
+     * @throws SQLException with ER_CON_COUNT_ERROR if pool is full and request rejected
+     */
+    public BackendConnectionWrapper getConnection(Integer stateHash, NIOProcessor processor,
+                                                  WaitQueue.Callback<BackendConnectionWrapper> waiter)
+        throws IOException, SQLException {
+        final BackendConnectionWrapper idle = takeIdle(stateHash, processor);
+        if (idle != null) {
+            return idle;
+        }
+        // never overtake earlier waiters
+        if (waiters.isEmpty()) {
+            final BackendConnection opened = open(true, processor);
+            if (opened != null) {
+                return new BackendConnectionWrapper(this, opened);
+            }
+        }
+        if (maxPooled < 0) {
+            throw new IOException("Backend pool " + address + " is closed.");
+        }
+
+        final int waitTimeout = FastConfig.backendPoolWaitTimeout;
+        if (null == waiter || waitTimeout <= 0) {
+            waiters.recordRejected();
+            throw rejectError("max connections " + FastConfig.backendPoolMaxConnections + " reached");
+        }
+        if (!waiters.offer(waiter, FastConfig.backendPoolMaxWaiters, TimeUnit.MILLISECONDS.toNanos(waitTimeout),
+            () -> rejectError("wait timeout " + waitTimeout + "ms"))) {
+            throw rejectError("max waiters " + FastConfig.backendPoolMaxWaiters + " reached");
+        }
+        // recheck in case of connection released or closed before queued
+        serveWaiters();
+        return null;
+    }
+
     // package invoke only
     void release(BackendConnection connection) {
         if (null == connection) {
@@ -157,11 +553,26 @@ public class BackendPool implements AutoCloseable {
             reuse = before < maxPooled;
         }
         if (reuse) {
-            connections.offer(connection);
+            final BackendContext context = connection.getContextReference().getAcquire();
+            final IdleConnection idle = new IdleConnection(connection, null == context ? null : context.stateHash());
+            if (idle.stateKey != null) {
+                stateIndex.compute(idle.stateKey, (k, q) -> {
+                    if (null == q) {
+                        q = new ConcurrentLinkedQueue<>();
+                    }
+                    q.offer(idle);
+                    return q;
+                });
+            }
+            processorIndex.computeIfAbsent(idle.processor, k -> new ConcurrentLinkedQueue<>()).offer(idle);
+            connections.offer(idle);
+            if (!waiters.isEmpty()) {
+                serveWaiters();
+            }
             return;
         }
         connectionCount.getAndDecrement();
-        connection.close();
+        connection.close(); // waiters are served in close listener
     }
 
     public void refreshPool(float ratio, long checkIdleThreshNanos, Executor executor, String sql, long timeoutNanos) {
@@ -169,11 +580,10 @@ public class BackendPool implements AutoCloseable {
         final int maxRefresh = (int) Math.ceil(maxLoop * ratio);
         int refreshed = 0;
         for (int i = 0; i < maxLoop; ++i) {
-            final BackendConnection connection = connections.poll();
+            final BackendConnection connection = pollIdle();
             if (null == connection) {
                 break;
             }
-            connectionCount.getAndDecrement();
             if (connection.idleTime() <= checkIdleThreshNanos) {
                 // ignore and put it back to pool
                 release(connection); // check good internal
@@ -275,9 +685,13 @@ public class BackendPool implements AutoCloseable {
         // synchronized and set max to 0
         maxPooled = Integer.MIN_VALUE;
         BackendConnection connection;
-        while ((connection = connections.poll()) != null) {
+        while ((connection = pollIdle()) != null) {
             connection.close();
         }
+        stateIndex.clear();
+        processorIndex.clear();
+        staleCount.setRelease(0);
         connectionCount.setRelease(0);
+        waiters.failAll(new IOException("Backend pool " + address + " is closed."));
     }
 }
@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.connection.pool;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * FIFO queue of requests waiting for a resource, and waiters are always completed in executor, so reactor threads
+ * never block on it.
+ */
+public class WaitQueue<T> {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WaitQueue.class);
+
+    public interface Callback<T> {
+        /**
+         * Invoked once in executor, with value or error. Value must be freed by callback.
+         */
+        void onDone(T value, Throwable error);
+    }
+
+    private static final class Waiter<T> {
+        private final Callback<T> callback;
+        private final long enqueueNanos;
+        private final AtomicBoolean done = new AtomicBoolean(false);
+        private volatile ScheduledFuture<?> timeoutFuture = null;
+
+        private Waiter(Callback<T> callback, long enqueueNanos) {
+            this.callback = callback;
+            this.enqueueNanos = enqueueNanos;
+        }
+    }
+
+    private final Executor executor;
+    private final ScheduledExecutorService timer;
+
+    private final Queue<Waiter<T>> queue = new ConcurrentLinkedQueue<>();
+    // live waiters, and entries completed by timeout are removed from queue eagerly
+    private final AtomicInteger size = new AtomicInteger(0);
+
+    // stats
+    private final AtomicLong served = new AtomicLong(0);
+    private final AtomicLong servedWaitNanos = new AtomicLong(0);
+    private final AtomicLong timeouts = new AtomicLong(0);
+    private final AtomicLong rejected = new AtomicLong(0);
+
+    public WaitQueue(Executor executor, ScheduledExecutorService timer) {
+        this.executor = executor;
+        this.timer = timer;
+    }
+
+    public int size() {
+        return size.getAcquire();
+    }
+
+    public boolean isEmpty() {
+        return 0 == size.getAcquire();
+    }
+
+    public long getServed() {
+        return served.get();
+    }
+
+    public long getServedWaitNanos() {
+        return servedWaitNanos.get();
+    }
+
+    public long getTimeouts() {
+        return timeouts.get();
+    }
+
+    public long getRejected() {
+        return rejected.get();
+    }
+
+    public void recordRejected() {
+        rejected.getAndIncrement();
+    }
+
+    /**
+     * Queue a waiter.
+     *
+     * @param callback Callback of waiter.
+     * @param maxWaiters Max live waiters in queue.
+     * @param timeoutNanos Wait timeout.
+     * @param timeoutError Error to fail waiter with when timeout.
+     * @return false if queue is full and waiter rejected
+     */
+    public boolean offer(Callback<T> callback, int maxWaiters, long timeoutNanos,
+                         Supplier<Throwable> timeoutError) {
+        while (true) {
+            final int now = size.getAcquire();
+            if (now >= maxWaiters) {
+                rejected.getAndIncrement();
+                return false;
+            }
+            if (size.compareAndSet(now, now + 1)) {
+                break;
+            }
+        }
+
+        final Waiter<T> waiter = new Waiter<>(callback, System.nanoTime());
+        queue.offer(waiter);
+        final ScheduledFuture<?> future = timer.schedule(() -> {
+            if (waiter.done.compareAndSet(false, true)) {
+                size.getAndDecrement();
+                queue.remove(waiter);
+                timeouts.getAndIncrement();
+                dispatch(waiter, null, timeoutError.get());
+            }
+        }, timeoutNanos, TimeUnit.NANOSECONDS);
+        waiter.timeoutFuture = future;
+        if (waiter.done.getAcquire()) {
+            future.cancel(false); // completed before timeout scheduled
+        }
+        return true;
+    }
+
+    /**
+     * Complete the longest waiting one with value.
+     *
+     * @return false if no waiter, and value is not taken
+     */
+    public boolean complete(T value) {
+        Waiter<T> waiter;
+        while ((waiter = queue.poll()) != null) {
+            if (waiter.done.compareAndSet(false, true)) {
+                size.getAndDecrement();
+                final ScheduledFuture<?> future = waiter.timeoutFuture;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                served.getAndIncrement();
+                servedWaitNanos.getAndAdd(System.nanoTime() - waiter.enqueueNanos);
+                dispatch(waiter, value, null);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Fail all waiters, e.g. when pool closed.
+     */
+    public void failAll(Throwable error) {
+        Waiter<T> waiter;
+        while ((waiter = queue.poll()) != null) {
+            if (waiter.done.compareAndSet(false, true)) {
+                size.getAndDecrement();
+                final ScheduledFuture<?> future = waiter.timeoutFuture;
+                if (future != null) {
+                    future.cancel(false);
+                }
+                dispatch(waiter, null, error);
+            }
+        }
+    }
+
+    private void dispatch(Waiter<T> waiter, T value, Throwable error) {
+        executor.execute(() -> {
+            try {
+                waiter.callback.onDone(value, error);
+            } catch (Throwable t) {
+                LOGGER.error("wait queue callback failed", t);
+            }
+        });
+    }
+}
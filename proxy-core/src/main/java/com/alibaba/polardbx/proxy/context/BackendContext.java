@@ -47,6 +47,9 @@ public class BackendContext extends MysqlContext {
     @Getter
     @Setter
     private boolean upToDate = true;
+    // highest LSN confirmed by set read_lsn on this connection(slave only), 0 if never
+    @Getter
+    private volatile long confirmedReadLsn = 0;
 
     private final AtomicReference<BackendConnectionWrapper> currentActiveBackend = new AtomicReference<>();
 
@@ -54,6 +57,12 @@ public class BackendContext extends MysqlContext {
         super(remoteAddress, connectionId, capabilities);
     }
 
+    public void confirmReadLsn(long lsn) {
+        if (lsn > confirmedReadLsn) {
+            confirmedReadLsn = lsn;
+        }
+    }
+
     // cache for prepared statement
     private volatile LruCache<ServerPreparedStatementKey, Integer> preparedStatementCache;
 
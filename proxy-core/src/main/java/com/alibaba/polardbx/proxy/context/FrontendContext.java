@@ -30,6 +30,7 @@ import com.alibaba.polardbx.proxy.protocol.common.MysqlServerState;
 import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
 import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
 import com.alibaba.polardbx.proxy.protocol.handler.MysqlForwarder;
+import com.alibaba.polardbx.proxy.utils.CaseInsensitiveString;
 import lombok.Getter;
 import lombok.Setter;
 import org.slf4j.Logger;
@@ -49,6 +50,11 @@ public class FrontendContext extends MysqlContext {
     @Setter
     private MysqlServerState state = MysqlServerState.Init;
 
+    // zstd_compression_level of handshake response, 0 if not given
+    @Getter
+    @Setter
+    private int zstdCompressionLevel = 0;
+
     public FrontendContext(InetSocketAddress remoteAddress, int connectionId, int capabilities) {
         super(remoteAddress, connectionId, capabilities);
     }
@@ -145,6 +151,30 @@ public class FrontendContext extends MysqlContext {
     @Getter
     private final Map<Integer, PreparedStatementContext> preparedStatementContexts = new ConcurrentHashMap<>();
 
+    // session consistency of slave read, LSN of leader which covers the last write of this session, and it is taken
+    // from the first LSN fetch after the write, 0 if never written
+    @Getter
+    private volatile long sessionLsn = 0;
+    // written on leader after session LSN taken
+    @Getter
+    private volatile boolean sessionLsnPending = false;
+    // time when the last write done, valid only if session LSN pending
+    @Getter
+    private volatile long sessionWriteNanos = 0;
+
+    public void markSessionWrite() {
+        sessionWriteNanos = System.nanoTime();
+        sessionLsnPending = true;
+    }
+
+    // statements of one session are sequential, so LSN fetched now covers all writes done before
+    public void updateSessionLsn(long lsn) {
+        if (lsn > sessionLsn) {
+            sessionLsn = lsn;
+        }
+        sessionLsnPending = false;
+    }
+
     public MysqlForwarder getForwarder(FrontendConnection connection) {
         MysqlForwarder forwarder = this.forwarder;
         if (null == forwarder) {
@@ -189,6 +219,11 @@ public class FrontendContext extends MysqlContext {
         return transactionContext;
     }
 
+    // post operation of last command may still hold the trx after response sent
+    public synchronized boolean isTransactionReferenced() {
+        return transactionRefer != 0;
+    }
+
     public synchronized void initNewQuery() {
         if (queryContext != null) {
             throw new IllegalStateException("query context is not cleanup");
@@ -235,6 +270,39 @@ public class FrontendContext extends MysqlContext {
         return trx;
     }
 
+    /**
+     * Reset session state for COM_RESET_CONNECTION, user and schema are kept.
+     * Backend state is not touched here, it is restored from this cleared context when backend is bound next time.
+     *
+     * @return detached transaction context which invoker should close
+     */
+    public FrontendTransactionContext resetSession() {
+        final FrontendTransactionContext trx;
+        synchronized (this) {
+            if (transactionRefer != 0) {
+                throw new IllegalStateException("reset connection when command is running");
+            }
+            trx = transactionContext;
+            transactionContext = null;
+        }
+        if (trx != null && !trx.canTrxFreeIfNoReference()) {
+            // started trx, held connection or open cursor, drop the backend to rollback and free all
+            trx.discard();
+        }
+
+        userVariables.clear();
+        systemVariables.clear();
+        preparedStatementContexts.clear();
+        warnings = 0;
+        inTransaction = false;
+        isAutoCommit = true;
+        cursorExists = false;
+        sqlMode = null == globalVariables ? null : globalVariables.get(new CaseInsensitiveString("sql_mode"));
+        lastError = null;
+        mock = null;
+        return trx;
+    }
+
     public void cleanupQuery() {
         final FrontendQueryContext query;
         synchronized (this) {
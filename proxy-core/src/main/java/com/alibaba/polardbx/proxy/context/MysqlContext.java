@@ -19,7 +19,7 @@
 package com.alibaba.polardbx.proxy.context;
 
 import com.alibaba.polardbx.proxy.connection.configs.ReadOnlyConfigs;
-import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.privilege.PrivilegeRefresher;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
 import com.alibaba.polardbx.proxy.protocol.command.StatusFlags;
@@ -28,7 +28,6 @@ import com.alibaba.polardbx.proxy.protocol.common.ResultState;
 import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtExecute;
 import com.alibaba.polardbx.proxy.scheduler.Scheduler;
-import com.alibaba.polardbx.proxy.serverless.HaManager;
 import com.alibaba.polardbx.proxy.utils.CaseInsensitiveString;
 import com.alibaba.polardbx.proxy.utils.CharsetMapping;
 import com.alibaba.polardbx.proxy.utils.LeakChecker;
@@ -182,6 +181,52 @@ public abstract class MysqlContext extends LeakChecker {
         return str.getBytes(resultsJavaCharset);
     }
 
+    /**
+     * Hash of session state which is restored on backend before use(user, schema, autocommit and variables). Same
+     * state gets same hash on frontend and backend context, and it is only a preference of idle connection selection,
+     * so collision is harmless.
+     */
+    public int stateHash() {
+        int hash = Objects.hashCode(username);
+        hash = 31 * hash + Objects.hashCode(privilegeHost);
+        hash = 31 * hash + Objects.hashCode(database);
+        hash = 31 * hash + (isAutoCommit ? 1 : 0);
+        hash = 31 * hash + userVariables.hashCode();
+        hash = 31 * hash + systemVariables.hashCode();
+        return hash;
+    }
+
+    private static final CaseInsensitiveString[] TRANSACTION_READ_ONLY_VARIABLES = new CaseInsensitiveString[] {
+        new CaseInsensitiveString("transaction_read_only"),
+        new CaseInsensitiveString("SESSION.transaction_read_only"),
+        new CaseInsensitiveString("tx_read_only"),
+        new CaseInsensitiveString("SESSION.tx_read_only")
+    };
+
+    /**
+     * Session default access mode of transaction, gathered from session variables or else the global one.
+     */
+    public boolean isTransactionReadOnly() {
+        for (final CaseInsensitiveString name : TRANSACTION_READ_ONLY_VARIABLES) {
+            final String value = systemVariables.get(name);
+            if (value != null) {
+                return isTrueValue(value);
+            }
+        }
+        if (globalVariables != null) {
+            final String value = globalVariables.get(TRANSACTION_READ_ONLY_VARIABLES[0]);
+            return value != null && isTrueValue(value);
+        }
+        return false;
+    }
+
+    private static boolean isTrueValue(String value) {
+        if (value.length() >= 2 && value.charAt(0) == '\'' && value.charAt(value.length() - 1) == '\'') {
+            value = value.substring(1, value.length() - 1);
+        }
+        return value.equals("1") || value.equalsIgnoreCase("ON");
+    }
+
     public void updateStatus(int warnings, int status) {
         this.warnings = warnings;
         this.inTransaction = (status & StatusFlags.SERVER_STATUS_IN_TRANS) != 0;
@@ -213,23 +258,17 @@ public abstract class MysqlContext extends LeakChecker {
                 return; // ignore if all failed
             }
 
-            final SQLParser parser;
             final MysqlPacket request = scheduler.getRequest();
-            if (request instanceof ComQuery) {
-                final byte[] query = ((ComQuery) request).getQuery();
-                parser = new SQLParser(query, 0, query.length, clientJavaCharset, sqlMode,
-                    HaManager.getInstance().getVersion());
-            } else if (request instanceof ComStmtExecute && !handlers.isEmpty()) {
-                final Charset defaultCharset = Charset.defaultCharset();
-                final byte[] bytes = scheduler.getPreparedStatement().getPrepareSql().getBytes(defaultCharset);
-                parser = new SQLParser(bytes, 0, bytes.length, defaultCharset, sqlMode,
-                    HaManager.getInstance().getVersion());
-            } else {
+            if (!(request instanceof ComQuery) && !(request instanceof ComStmtExecute && !handlers.isEmpty())) {
+                return;
+            }
+            final StatementClassification classification = scheduler.getClassification();
+            if (null == classification) {
                 return;
             }
 
             // refresh privilege & database info when something changed
-            if (parser.isPrivilegeDatabaseChanged()) {
+            if (classification.isPrivilegeDatabaseChanged()) {
                 if (LOGGER.isInfoEnabled()) {
                     final String sql =
                         request instanceof ComQuery ? decodeStringClient(((ComQuery) request).getQuery()) :
@@ -241,7 +280,7 @@ public abstract class MysqlContext extends LeakChecker {
 
             // todo use SERVER_STATUS_DB_DROPPED?
             // use db, drop db
-            final String newDB = parser.applyDatabase(database,
+            final String newDB = classification.applyDatabase(database,
                 null == backendContext.getReadOnlyConfigs() || backendContext.getReadOnlyConfigs()
                     .isLowerCaseTableNames(), success);
             if (!Objects.equals(newDB, database)) {
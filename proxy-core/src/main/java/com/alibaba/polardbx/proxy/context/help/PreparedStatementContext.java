@@ -18,11 +18,13 @@
 
 package com.alibaba.polardbx.proxy.context.help;
 
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.protocol.command.ColumnDefinition41;
 import com.alibaba.polardbx.proxy.protocol.handler.result.StmtPrepareResultHandler;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtPrepareOk;
 import com.alibaba.polardbx.proxy.protocol.prepare.ParameterRebind;
 import lombok.Getter;
+import lombok.Setter;
 
 import java.util.Arrays;
 import java.util.List;
@@ -44,6 +46,10 @@ public class PreparedStatementContext {
     // long data param flags
     private final byte[][] longDataParams;
 
+    // cached classification of prepare sql
+    @Setter
+    private volatile StatementClassification classification = null;
+
     public PreparedStatementContext(int statementId, String schema, String prepareSql,
                                     StmtPrepareResultHandler handler) {
         this.statementId = statementId;
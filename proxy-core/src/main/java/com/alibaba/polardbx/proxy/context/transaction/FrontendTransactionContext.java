@@ -23,8 +23,6 @@ import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
 import com.alibaba.polardbx.proxy.context.BackendContext;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.help.ServerPreparedStatementKey;
-import com.alibaba.polardbx.proxy.serverless.HaManager;
-import com.alibaba.polardbx.proxy.serverless.ReadWriteSplittingPool;
 import com.alibaba.polardbx.proxy.utils.LeakChecker;
 import lombok.Getter;
 import lombok.Setter;
@@ -55,6 +53,7 @@ public class FrontendTransactionContext extends LeakChecker {
     @Getter
     @Setter
     private boolean transactionStarted = false;
+    private boolean roTransaction = false; // started on RO connection
     private boolean forceDiscard = false;
 
     @Getter
@@ -89,6 +88,21 @@ public class FrontendTransactionContext extends LeakChecker {
         return statementCount.incrementAndGet();
     }
 
+    /**
+     * Update trx state after statement done. Trx started on RO connection is a read only one, and all following
+     * statements stick to that connection with the snapshot taken at start until trx ends.
+     */
+    public void updateTransactionStarted(boolean started, boolean onSlave) {
+        if (started && !transactionStarted) {
+            roTransaction = onSlave;
+        }
+        transactionStarted = started;
+    }
+
+    public boolean isRoTransaction() {
+        return transactionStarted && roTransaction;
+    }
+
     public boolean canTrxFreeIfNoReference() {
         return !connectionHold && !transactionStarted && activeBackendPreparedStatementMap.values().stream()
             .noneMatch(i -> i.cursorInUse);
@@ -98,58 +112,48 @@ public class FrontendTransactionContext extends LeakChecker {
         forceDiscard = true;
     }
 
-    private BackendConnectionWrapper getConnection(boolean createIfNotExist, FrontendContext frontendContext,
-                                                   boolean readOnly)
-        throws IOException {
+    private BackendConnectionWrapper getExistingConnection(boolean readOnly) {
         if (forceDiscard) {
             throw new IllegalStateException("transaction is in fatal error state and discarded");
         }
-        BackendConnectionWrapper conn = readOnly ? this.roConnection : this.rwConnection;
-        if (null == conn && createIfNotExist) {
-            synchronized (this) {
-                conn = readOnly ? this.roConnection : this.rwConnection;
-                if (null == conn) {
-                    if (leakCheckClosed.getPlain()) { // plain read in lock
-                        throw new IllegalStateException("transaction is closed");
-                    }
-                    final ReadWriteSplittingPool pool = HaManager.getInstance().getReadWriteSplittingPool();
-                    conn = readOnly ? pool.getRoConnection() : pool.getRwConnection();
-                    if (null == conn) {
-                        return null;
-                    }
-                    LOGGER.debug("allocate {} conn for trx", readOnly ? "RO" : "RW");
-                    if (readOnly) {
-                        this.roConnection = conn;
-                    } else {
-                        this.rwConnection = conn;
-                    }
-                    try {
-                        conn.restoreContext(frontendContext);
-                    } catch (Throwable t) {
-                        // force discard connection if any error occurs in context switch
-                        forceDiscard = true;
-                        throw t;
-                    }
-                }
+        return readOnly ? this.roConnection : this.rwConnection;
+    }
+
+    /**
+     * Bind connection got from pool to this transaction and restore session context on it.
+     * Connection is owned by transaction after invoked, even if any exception thrown.
+     */
+    public BackendConnectionWrapper bindConnection(BackendConnectionWrapper conn, FrontendContext frontendContext,
+                                                   boolean readOnly) throws IOException {
+        synchronized (this) {
+            if (forceDiscard || leakCheckClosed.getPlain() // plain read in lock
+                || (readOnly ? this.roConnection : this.rwConnection) != null) {
+                conn.close();
+                throw new IllegalStateException("transaction is discarded, closed or connection already bound");
+            }
+            LOGGER.debug("allocate {} conn for trx", readOnly ? "RO" : "RW");
+            if (readOnly) {
+                this.roConnection = conn;
+            } else {
+                this.rwConnection = conn;
+            }
+            try {
+                conn.restoreContext(frontendContext);
+            } catch (Throwable t) {
+                // force discard connection if any error occurs in context switch
+                forceDiscard = true;
+                throw t;
             }
         }
         return conn;
     }
 
-    public BackendConnectionWrapper getRwConnection(FrontendContext frontendContext) throws IOException {
-        return getConnection(true, frontendContext, false);
-    }
-
-    public BackendConnectionWrapper getRoConnection(FrontendContext frontendContext) throws IOException {
-        return getConnection(true, frontendContext, true);
-    }
-
     public BackendConnectionWrapper getExistingRwConnection() throws IOException {
-        return getConnection(false, null, false);
+        return getExistingConnection(false);
     }
 
     public BackendConnectionWrapper getExistingRoConnection() throws IOException {
-        return getConnection(false, null, true);
+        return getExistingConnection(true);
     }
 
     @Override
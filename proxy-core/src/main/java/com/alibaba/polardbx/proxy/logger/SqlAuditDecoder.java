@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.logger;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.util.Arrays;
+
+/**
+ * Offline tool to decode binary SQL audit log files into text lines.
+ * Usage: SqlAuditDecoder file...
+ */
+public class SqlAuditDecoder {
+    public static void main(String[] args) throws IOException {
+        if (0 == args.length) {
+            System.err.println("Usage: " + SqlAuditDecoder.class.getName() + " <sql-*.bin>...");
+            System.exit(1);
+        }
+        for (final String file : args) {
+            decode(file, System.out);
+        }
+        System.out.flush();
+    }
+
+    /**
+     * @return number of records decoded.
+     */
+    public static long decode(String file, PrintStream output) throws IOException {
+        long count = 0;
+        try (final DataInputStream in = new DataInputStream(
+            new BufferedInputStream(new FileInputStream(file), 1 << 16))) {
+            final byte[] magic = new byte[SqlAuditLog.MAGIC.length];
+            in.readFully(magic);
+            if (!Arrays.equals(magic, SqlAuditLog.MAGIC)) {
+                throw new IOException("Not a SQL audit log: " + file);
+            }
+            final int version = in.readUnsignedByte();
+            if (version != SqlAuditRecord.VERSION) {
+                throw new IOException("Unsupported SQL audit log version " + version + ": " + file);
+            }
+            byte[] buf = new byte[4096];
+            while (true) {
+                final int length;
+                try {
+                    length = readLength(in);
+                } catch (EOFException e) {
+                    break; // normal end
+                }
+                if (length > buf.length) {
+                    buf = new byte[length];
+                }
+                try {
+                    in.readFully(buf, 0, length);
+                } catch (EOFException e) {
+                    // last record partially written(still being written or crashed)
+                    System.err.println("Truncated record at the end of " + file);
+                    break;
+                }
+                output.println(SqlAuditRecord.decode(buf, 0, length).toText());
+                ++count;
+            }
+        }
+        return count;
+    }
+
+    private static int readLength(DataInputStream in) throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            final int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if (0 == (b & 0x80)) {
+                return v;
+            }
+        }
+        throw new IOException("Bad record length.");
+    }
+}
@@ -0,0 +1,305 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.logger;
+
+import com.alibaba.polardbx.proxy.common.ThreadNames;
+import com.alibaba.polardbx.proxy.config.ConfigLoader;
+import com.alibaba.polardbx.proxy.config.ConfigProps;
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.utils.MpscByteRing;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Binary SQL audit log.
+ * Query threads encode records into lock-free rings(one ring per reactor, and each thread is bound to a ring round
+ * robin on its first append) and never block, record is dropped and counted when ring is full. A dedicated writer
+ * thread drains rings into rotating files under logs/sql, which can be decoded by {@link SqlAuditDecoder}.
+ * Rings and writer are created on first use after enable_sql_log turned on.
+ * <p>
+ * File layout: magic "PXSQ", version byte, then records of varint length and {@link SqlAuditRecord} payload.
+ */
+public final class SqlAuditLog implements Runnable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(SqlAuditLog.class);
+
+    static final byte[] MAGIC = "PXSQ".getBytes(StandardCharsets.US_ASCII);
+    static final String FILE_PREFIX = "sql-";
+    static final String FILE_SUFFIX = ".bin";
+
+    private static final int DRAIN_BATCH = 1024;
+    // idle park doubles from min to max while nothing to drain
+    private static final long MIN_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+    private static final long MAX_IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(64);
+    private static final long DROP_REPORT_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    private final MpscByteRing[] rings;
+    private final int mask;
+
+    // ring of each thread, assigned round robin so threads spread evenly over rings
+    private static final AtomicInteger NEXT_STRIPE = new AtomicInteger(0);
+    private static final ThreadLocal<Integer> STRIPE = ThreadLocal.withInitial(NEXT_STRIPE::getAndIncrement);
+
+    private final File directory;
+    private final long maxFileBytes;
+    private final int maxFiles;
+
+    private final AtomicLong sampledOut = new AtomicLong(0);
+    private final AtomicLong written = new AtomicLong(0);
+
+    // writer thread only
+    private final MpscByteRing.RecordHandler handler = this::write;
+    private final byte[] lengthBuf = new byte[5];
+    private OutputStream out = null;
+    private long fileBytes = 0;
+    private int fileSequence = 0;
+    private boolean dirty = false;
+    private long reportedDrops = 0;
+    private long lastReportNanos = System.nanoTime();
+
+    SqlAuditLog(int stripes, int ringBytes, File directory, long maxFileBytes, int maxFiles) {
+        final int n = Integer.highestOneBit(Math.max(stripes, 1) * 2 - 1);
+        this.rings = new MpscByteRing[n];
+        for (int i = 0; i < n; ++i) {
+            rings[i] = new MpscByteRing(ringBytes);
+        }
+        this.mask = n - 1;
+        this.directory = directory;
+        this.maxFileBytes = maxFileBytes;
+        this.maxFiles = maxFiles;
+    }
+
+    private static volatile SqlAuditLog INSTANCE = null;
+    private static int STRIPES = 0;
+
+    /**
+     * Get the log, and start it on first call if enable_sql_log is on.
+     *
+     * @return null if not initialized or not enabled yet
+     */
+    public static SqlAuditLog getInstance() {
+        final SqlAuditLog log = INSTANCE;
+        return log != null || !FastConfig.enableSqlLog ? log : start();
+    }
+
+    /**
+     * Prepare the log, rings and writer are started now if enabled or later on first {@link #getInstance()}.
+     *
+     * @param stripes Number of ring stripes, usually the reactor count.
+     */
+    public static synchronized void init(int stripes) {
+        STRIPES = stripes;
+        if (FastConfig.enableSqlLog) {
+            start();
+        }
+    }
+
+    private static synchronized SqlAuditLog start() {
+        if (INSTANCE != null || STRIPES <= 0) {
+            return INSTANCE;
+        }
+        final int stripes = STRIPES;
+        final int ringBytes =
+            Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SQL_LOG_BUFFER_SIZE));
+        final long fileBytes =
+            Long.parseLong(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SQL_LOG_FILE_SIZE)) << 20;
+        final int maxFiles = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.SQL_LOG_MAX_FILES));
+        final File directory = new File(System.getProperty("loggerRoot", ".."), "logs" + File.separator + "sql");
+        final SqlAuditLog log = new SqlAuditLog(stripes, ringBytes, directory, fileBytes, maxFiles);
+        final Thread thread = new Thread(log, ThreadNames.SQL_AUDIT_WRITER);
+        thread.setDaemon(true);
+        thread.start();
+        INSTANCE = log;
+        LOGGER.info("SQL audit log started with {} rings of {} bytes, dir: {}", log.rings.length,
+            log.rings[0].getCapacity(), directory.getAbsolutePath());
+        return log;
+    }
+
+    /**
+     * Decide whether to log a finished query, errors are always logged regardless of sampling.
+     */
+    public boolean sample(boolean failed) {
+        final double ratio = FastConfig.sqlLogSampleRatio;
+        if (failed || ratio >= 1 || ThreadLocalRandom.current().nextDouble() < ratio) {
+            return true;
+        }
+        sampledOut.getAndIncrement();
+        return false;
+    }
+
+    /**
+     * Append encoded record, never blocks.
+     */
+    public boolean append(SqlAuditRecord record) {
+        final int length = record.encode();
+        return rings[STRIPE.get() & mask].offer(record.getScratch(), 0, length);
+    }
+
+    public long getDropped() {
+        long dropped = 0;
+        for (final MpscByteRing ring : rings) {
+            dropped += ring.getDropped();
+        }
+        return dropped;
+    }
+
+    public long getSampledOut() {
+        return sampledOut.get();
+    }
+
+    public long getWritten() {
+        return written.get();
+    }
+
+    @Override
+    public void run() {
+        long parkNanos = MIN_IDLE_PARK_NANOS;
+        while (true) {
+            try {
+                if (0 == drainOnce()) {
+                    idle();
+                    LockSupport.parkNanos(parkNanos);
+                    parkNanos = Math.min(parkNanos * 2, MAX_IDLE_PARK_NANOS);
+                } else {
+                    parkNanos = MIN_IDLE_PARK_NANOS;
+                }
+            } catch (Throwable t) {
+                LOGGER.error("SQL audit log writer error", t);
+                closeFile();
+                LockSupport.parkNanos(TimeUnit.SECONDS.toNanos(1));
+            }
+        }
+    }
+
+    int drainOnce() {
+        int total = 0;
+        for (final MpscByteRing ring : rings) {
+            total += ring.drain(handler, DRAIN_BATCH);
+        }
+        return total;
+    }
+
+    void idle() throws IOException {
+        if (dirty) {
+            out.flush();
+            dirty = false;
+        }
+        final long now = System.nanoTime();
+        if (now - lastReportNanos > DROP_REPORT_INTERVAL_NANOS) {
+            lastReportNanos = now;
+            final long dropped = getDropped();
+            if (dropped != reportedDrops) {
+                LOGGER.warn("SQL audit log dropped {} records since last report, total dropped {}",
+                    dropped - reportedDrops, dropped);
+                reportedDrops = dropped;
+            }
+        }
+    }
+
+    private void write(byte[] buffer, int offset, int length) {
+        try {
+            if (null == out) {
+                openFile();
+            }
+            int n = 0;
+            int v = length;
+            while ((v & ~0x7F) != 0) {
+                lengthBuf[n++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            lengthBuf[n++] = (byte) v;
+            out.write(lengthBuf, 0, n);
+            out.write(buffer, offset, length);
+            fileBytes += n + length;
+            dirty = true;
+            written.getAndIncrement();
+            if (fileBytes >= maxFileBytes) {
+                closeFile();
+            }
+        } catch (IOException e) {
+            // record lost, retry open on next one
+            LOGGER.error("Failed to write SQL audit log", e);
+            closeFile();
+        }
+    }
+
+    private void openFile() throws IOException {
+        if (!directory.isDirectory() && !directory.mkdirs()) {
+            throw new IOException("Failed to create SQL audit log dir " + directory);
+        }
+        final String stamp = new SimpleDateFormat("yyyyMMdd-HHmmss-SSS").format(new Date());
+        File file;
+        do {
+            // sequence keeps name order within same millisecond
+            file = new File(directory, FILE_PREFIX + stamp + String.format("-%04d", fileSequence++ % 10000)
+                + FILE_SUFFIX);
+        } while (file.exists());
+        out = new BufferedOutputStream(new FileOutputStream(file), 1 << 16);
+        out.write(MAGIC);
+        out.write(SqlAuditRecord.VERSION);
+        fileBytes = MAGIC.length + 1;
+        dirty = true;
+        purge();
+    }
+
+    private void closeFile() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                LOGGER.error("Failed to close SQL audit log", e);
+            }
+            out = null;
+            dirty = false;
+        }
+    }
+
+    // keep newest files, name contains creation time so name order is time order
+    private void purge() {
+        final File[] files =
+            directory.listFiles((dir, name) -> name.startsWith(FILE_PREFIX) && name.endsWith(FILE_SUFFIX));
+        if (null == files || files.length <= maxFiles) {
+            return;
+        }
+        Arrays.sort(files);
+        for (int i = 0; i < files.length - maxFiles; ++i) {
+            if (!files[i].delete()) {
+                LOGGER.warn("Failed to delete old SQL audit log {}", files[i]);
+            }
+        }
+    }
+
+    void flushAndClose() {
+        closeFile();
+    }
+}
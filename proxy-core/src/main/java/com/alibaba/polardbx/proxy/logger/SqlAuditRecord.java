@@ -0,0 +1,336 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.logger;
+
+import com.alibaba.polardbx.proxy.protocol.common.ResultState;
+
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.Arrays;
+import java.util.Date;
+
+/**
+ * One SQL audit record and its compact binary form(little endian varints and length prefixed strings).
+ * Producer fills a thread local instance and encodes it into a reusable scratch buffer, nothing is decoded or
+ * formatted on the query path. Raw SQL bytes are kept in client charset and only decoded by offline tool.
+ */
+public final class SqlAuditRecord {
+    static final byte VERSION = 1;
+
+    private static final int FLAG_AUTOCOMMIT_OFF = 1;
+    private static final int FLAG_LSN = 1 << 1;
+    private static final int FLAG_TRUNCATED = 1 << 2;
+    private static final int FLAG_LSN_CACHED = 1 << 3;
+
+    private static final ResultState[] STATES = ResultState.values();
+
+    private static final ThreadLocal<SqlAuditRecord> LOCAL = ThreadLocal.withInitial(SqlAuditRecord::new);
+
+    public long startUtc;
+    public ResultState state;
+    public long retry;
+    public long totalNanos;
+    public long retransmitDelayNanos;
+    public long fetchLsnQueueNanos;
+    public long fetchLsnNanos;
+    public long lsnCacheAgeNanos; // 0 if LSN not reused from cache
+    public long scheduleNanos;
+    public long waitLsnNanos;
+    public long waitLeaderNanos;
+    public long waitPoolNanos;
+    public boolean autoCommit;
+    public long lsn = -1; // -1 if not slave read
+    public String user;
+    public String host;
+    public int port;
+    public String schema;
+    public String traceId;
+    public Charset charset;
+    public byte[] sql;
+    public int sqlLength;
+    public boolean truncated;
+    public String parameters;
+
+    // encode scratch, grows to largest record and reused by the thread
+    private byte[] scratch = new byte[512];
+    private int position;
+
+    /**
+     * Get the thread local record for filling.
+     */
+    public static SqlAuditRecord local() {
+        final SqlAuditRecord record = LOCAL.get();
+        record.lsn = -1;
+        record.lsnCacheAgeNanos = 0;
+        record.traceId = null;
+        record.parameters = null;
+        record.truncated = false;
+        return record;
+    }
+
+    public byte[] getScratch() {
+        return scratch;
+    }
+
+    /**
+     * Encode into scratch.
+     *
+     * @return encoded length.
+     */
+    public int encode() {
+        position = 0;
+        putByte(VERSION);
+        putByte((autoCommit ? 0 : FLAG_AUTOCOMMIT_OFF) | (lsn >= 0 ? FLAG_LSN : 0)
+            | (truncated ? FLAG_TRUNCATED : 0) | (lsnCacheAgeNanos > 0 ? FLAG_LSN_CACHED : 0));
+        putVarLong(startUtc);
+        putByte(state.ordinal());
+        putVarLong(retry);
+        putVarLong(totalNanos);
+        putVarLong(retransmitDelayNanos);
+        putVarLong(fetchLsnQueueNanos);
+        putVarLong(fetchLsnNanos);
+        putVarLong(scheduleNanos);
+        putVarLong(waitLsnNanos);
+        putVarLong(waitLeaderNanos);
+        putVarLong(waitPoolNanos);
+        if (lsn >= 0) {
+            putVarLong(lsn);
+        }
+        if (lsnCacheAgeNanos > 0) {
+            putVarLong(lsnCacheAgeNanos);
+        }
+        putString(user);
+        putString(host);
+        putVarLong(port);
+        putString(schema);
+        putString(traceId);
+        putString(charset.name());
+        putVarLong(sqlLength);
+        ensure(sqlLength);
+        System.arraycopy(sql, 0, scratch, position, sqlLength);
+        position += sqlLength;
+        putString(parameters);
+        return position;
+    }
+
+    private void ensure(int more) {
+        if (position + more > scratch.length) {
+            scratch = Arrays.copyOf(scratch, Math.max(scratch.length << 1, position + more));
+        }
+    }
+
+    private void putByte(int b) {
+        ensure(1);
+        scratch[position++] = (byte) b;
+    }
+
+    private void putVarLong(long v) {
+        ensure(10);
+        while ((v & ~0x7FL) != 0) {
+            scratch[position++] = (byte) ((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        scratch[position++] = (byte) v;
+    }
+
+    private static int utf8Length(String str) {
+        int length = 0;
+        for (int i = 0; i < str.length(); ++i) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                ++length;
+            } else if (c < 0x800) {
+                length += 2;
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                && Character.isLowSurrogate(str.charAt(i + 1))) {
+                length += 4;
+                ++i;
+            } else {
+                length += 3;
+            }
+        }
+        return length;
+    }
+
+    // null and empty are distinguished by length + 1
+    private void putString(String str) {
+        if (null == str) {
+            putVarLong(0);
+            return;
+        }
+        final int length = utf8Length(str);
+        putVarLong(length + 1);
+        ensure(length);
+        for (int i = 0; i < str.length(); ++i) {
+            final char c = str.charAt(i);
+            if (c < 0x80) {
+                scratch[position++] = (byte) c;
+            } else if (c < 0x800) {
+                scratch[position++] = (byte) (0xC0 | (c >> 6));
+                scratch[position++] = (byte) (0x80 | (c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()
+                && Character.isLowSurrogate(str.charAt(i + 1))) {
+                final int cp = Character.toCodePoint(c, str.charAt(++i));
+                scratch[position++] = (byte) (0xF0 | (cp >> 18));
+                scratch[position++] = (byte) (0x80 | ((cp >> 12) & 0x3F));
+                scratch[position++] = (byte) (0x80 | ((cp >> 6) & 0x3F));
+                scratch[position++] = (byte) (0x80 | (cp & 0x3F));
+            } else {
+                scratch[position++] = (byte) (0xE0 | (c >> 12));
+                scratch[position++] = (byte) (0x80 | ((c >> 6) & 0x3F));
+                scratch[position++] = (byte) (0x80 | (c & 0x3F));
+            }
+        }
+    }
+
+    /**
+     * Decode one record, only used by offline tool and tests.
+     */
+    public static SqlAuditRecord decode(byte[] buf, int offset, int length) {
+        final Reader reader = new Reader(buf, offset, offset + length);
+        final SqlAuditRecord record = new SqlAuditRecord();
+        final int version = reader.getByte();
+        if (version != VERSION) {
+            throw new IllegalArgumentException("Unknown SQL audit record version " + version);
+        }
+        final int flags = reader.getByte();
+        record.autoCommit = 0 == (flags & FLAG_AUTOCOMMIT_OFF);
+        record.truncated = (flags & FLAG_TRUNCATED) != 0;
+        record.startUtc = reader.getVarLong();
+        record.state = STATES[reader.getByte()];
+        record.retry = reader.getVarLong();
+        record.totalNanos = reader.getVarLong();
+        record.retransmitDelayNanos = reader.getVarLong();
+        record.fetchLsnQueueNanos = reader.getVarLong();
+        record.fetchLsnNanos = reader.getVarLong();
+        record.scheduleNanos = reader.getVarLong();
+        record.waitLsnNanos = reader.getVarLong();
+        record.waitLeaderNanos = reader.getVarLong();
+        record.waitPoolNanos = reader.getVarLong();
+        if ((flags & FLAG_LSN) != 0) {
+            record.lsn = reader.getVarLong();
+        }
+        if ((flags & FLAG_LSN_CACHED) != 0) {
+            record.lsnCacheAgeNanos = reader.getVarLong();
+        }
+        record.user = reader.getString();
+        record.host = reader.getString();
+        record.port = (int) reader.getVarLong();
+        record.schema = reader.getString();
+        record.traceId = reader.getString();
+        record.charset = Charset.forName(reader.getString());
+        record.sqlLength = (int) reader.getVarLong();
+        record.sql = reader.getBytes(record.sqlLength);
+        record.parameters = reader.getString();
+        return record;
+    }
+
+    /**
+     * Same layout as the original text SQL log.
+     */
+    public String toText() {
+        final StringBuilder builder = new StringBuilder(256 + sqlLength);
+        builder.append(new SimpleDateFormat("yyyy-MM-dd HH:mm:ss.SSS").format(new Date(startUtc)))
+            .append(" - [user=").append(user)
+            .append(",host=").append(host)
+            .append(",port=").append(port)
+            .append(",schema=").append(schema);
+        if (!autoCommit) {
+            builder.append(",autocommit=0");
+        }
+        if (lsn >= 0) {
+            builder.append(",lsn=").append(lsn);
+        }
+        builder.append("] ").append(new String(sql, 0, sqlLength, charset).replaceAll("\\n+", " "));
+        if (truncated) {
+            builder.append("...");
+        }
+        if (parameters != null) {
+            builder.append(' ').append(parameters);
+        }
+        builder.append(" # [state:").append(state.name())
+            .append(",retry:").append(retry)
+            .append(",total_time:").append(totalNanos / 1e3).append("us");
+        if (retransmitDelayNanos > 0 || fetchLsnQueueNanos > 0 || fetchLsnNanos > 0 || scheduleNanos > 0
+            || waitLsnNanos > 0) {
+            builder.append(",retransmit_delay:").append(retransmitDelayNanos / 1e3)
+                .append("us,fetch_lsn_queue:").append(fetchLsnQueueNanos / 1e3)
+                .append("us,fetch_lsn:").append(fetchLsnNanos / 1e3)
+                .append("us,schedule:").append(scheduleNanos / 1e3)
+                .append("us,wait_lsn:").append(waitLsnNanos / 1e3).append("us");
+        }
+        if (lsnCacheAgeNanos > 0) {
+            builder.append(",lsn_cache_age:").append(lsnCacheAgeNanos / 1e3).append("us");
+        }
+        if (waitLeaderNanos > 0) {
+            builder.append(",wait_leader:").append(waitLeaderNanos / 1e3).append("us");
+        }
+        if (waitPoolNanos > 0) {
+            builder.append(",wait_pool:").append(waitPoolNanos / 1e3).append("us");
+        }
+        builder.append("] # ").append(null == traceId ? "<unknown>" : traceId);
+        return builder.toString();
+    }
+
+    private static final class Reader {
+        private final byte[] buf;
+        private int position;
+        private final int end;
+
+        private Reader(byte[] buf, int position, int end) {
+            this.buf = buf;
+            this.position = position;
+            this.end = end;
+        }
+
+        private int getByte() {
+            if (position >= end) {
+                throw new IllegalArgumentException("Truncated SQL audit record.");
+            }
+            return buf[position++] & 0xFF;
+        }
+
+        private long getVarLong() {
+            long v = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                final int b = getByte();
+                v |= (long) (b & 0x7F) << shift;
+                if (0 == (b & 0x80)) {
+                    return v;
+                }
+            }
+            throw new IllegalArgumentException("Bad varint in SQL audit record.");
+        }
+
+        private byte[] getBytes(int length) {
+            if (length < 0 || position + length > end) {
+                throw new IllegalArgumentException("Truncated SQL audit record.");
+            }
+            final byte[] bytes = Arrays.copyOfRange(buf, position, position + length);
+            position += length;
+            return bytes;
+        }
+
+        private String getString() {
+            final int length = (int) getVarLong();
+            return 0 == length ? null : new String(getBytes(length - 1), StandardCharsets.UTF_8);
+        }
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.protocol.command;
+
+import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
+import lombok.Getter;
+import lombok.Setter;
+
+import java.nio.charset.StandardCharsets;
+
+@Getter
+@Setter
+public class ComChangeUser implements MysqlPacket {
+    /**
+     * https://dev.mysql.com/doc/dev/mysql-server/latest/page_protocol_com_change_user.html
+     * <p>
+     * Type	Name	Description
+     * int<1>	command	0x11: COM_CHANGE_USER
+     * string<NUL>	user	user name
+     * if capabilities & CLIENT_RESERVED2(CLIENT_SECURE_CONNECTION) {
+     * int<1>	auth_plugin_data_len	length of auth_response
+     * $length	auth_response	authentication data
+     * } else {
+     * string<NUL>	auth_response	authentication data
+     * }
+     * string<NUL>	database	schema name
+     * if more data {
+     * int<2>	character_set	new connection character set
+     * if capabilities & CLIENT_PLUGIN_AUTH {
+     * string<NUL>	auth_plugin_name	client authentication plugin name
+     * }
+     * if capabilities & CLIENT_CONNECT_ATTRS {
+     * int<lenenc>	connection_attributes_length	ignored
+     * }
+     * }
+     */
+    private byte[] username;
+    private byte[] authResponse;
+    private byte[] database;
+    private int characterSet; // 0 if not provided
+    private byte[] authPluginName;
+
+    public ComChangeUser() {
+    }
+
+    @Override
+    public void decode(Decoder decoder, int capabilities) {
+        if (decoder.u8_s() != 0x11) {
+            throw new IllegalArgumentException("invalid command");
+        }
+        this.username = nulStr(decoder);
+        if ((capabilities & Capabilities.CLIENT_RESERVED2) != 0) {
+            final int authResponseLength = decoder.u8_s();
+            this.authResponse = 0 == authResponseLength ? null : decoder.str_s(authResponseLength);
+        } else {
+            this.authResponse = nulStr(decoder);
+        }
+        this.database = nulStr(decoder);
+        if (decoder.remaining() >= 2) {
+            this.characterSet = decoder.u16_s();
+            if ((capabilities & Capabilities.CLIENT_PLUGIN_AUTH) != 0 && decoder.remaining() > 0) {
+                this.authPluginName = decoder.str();
+            } else {
+                this.authPluginName = null;
+            }
+        } else {
+            this.characterSet = 0;
+            this.authPluginName = null;
+        }
+    }
+
+    // str() keeps the terminator of an empty string, which must be consumed when more fields follow
+    private static byte[] nulStr(Decoder decoder) {
+        if (decoder.remaining() > 0 && 0 == decoder.peek_s()) {
+            decoder.skip_s();
+            return null;
+        }
+        return decoder.str();
+    }
+
+    @Override
+    public String toString() {
+        return "ComChangeUser{" +
+            "username=" + (null == username ? "<null>" : new String(username, StandardCharsets.UTF_8)) +
+            ", database=" + (null == database ? "<null>" : new String(database, StandardCharsets.UTF_8)) +
+            ", characterSet=" + characterSet +
+            ", authPluginName=" + (null == authPluginName ? "<null>" :
+            new String(authPluginName, StandardCharsets.UTF_8)) +
+            '}';
+    }
+}
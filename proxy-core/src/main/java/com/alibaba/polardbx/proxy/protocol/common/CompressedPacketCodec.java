@@ -0,0 +1,463 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.protocol.common;
+
+import com.alibaba.polardbx.proxy.utils.FastBufferPool;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import com.github.luben.zstd.Zstd;
+import com.github.luben.zstd.ZstdCompressCtx;
+import com.github.luben.zstd.ZstdDecompressCtx;
+import com.github.luben.zstd.ZstdException;
+
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compressed protocol(zlib or zstd):
+ * https://dev.mysql.com/doc/dev/mysql-server/latest/page_protocol_basic_compression_packet.html
+ * <p>
+ * Each frame is 3 bytes compressed length, 1 byte compressed sequence and 3 bytes uncompressed length(0 when the
+ * payload is not compressed), followed by the payload which carries normal packets as a plain byte stream.
+ * Framing is same for both algorithms, only the payload is deflated by zlib or compressed by zstd.
+ * Decompress side is only driven by reactor thread, compress side should be guarded by caller to keep sequence
+ * and write order consistent.
+ * <p>
+ * Both sides work on direct scratch buffers kept by the codec, and frames and packets are handed out in blocks of
+ * the buffer pool, so nothing is allocated per call unless the pool runs out.
+ */
+public class CompressedPacketCodec implements AutoCloseable {
+    // payload shorter than this is sent raw, same as MySQL server
+    public static final int MIN_COMPRESS_LENGTH = 50;
+
+    // zstd level used by MySQL when client gives none
+    public static final int DEFAULT_ZSTD_LEVEL = 3;
+
+    // scratch grown beyond this by a large packet is dropped after use instead of being held by idle connection
+    private static final int MAX_KEPT_SCRATCH_SIZE = 1024 * 1024;
+
+    public enum Algorithm {
+        ZLIB,
+        ZSTD
+    }
+
+    private final Algorithm algorithm;
+    // max_allowed_packet, checked on decompressed data as compressed frame hides the real packet length
+    private final int maxPacketSize;
+    // blocks for frames and packets, or heap if null
+    private final FastBufferPool pool;
+    private final Deflater deflater;
+    private final Inflater inflater;
+    private final ZstdCompressCtx zstdCompressor;
+    private final ZstdDecompressCtx zstdDecompressor;
+
+    // compressed sequence is shared by both directions and reset by every frame received
+    private volatile int seq = 0;
+
+    // compress side(guarded by caller), gathered packets and zstd output
+    private ByteBuffer compressInput = null;
+    private ByteBuffer compressOutput = null;
+
+    // decompress side(reactor thread), guarded by itself only against close
+    private final Object decompressLock = new Object();
+    private boolean closed = false;
+    // heap frame copied out for zstd, which takes direct buffers only
+    private ByteBuffer decompressInput = null;
+    // decompressed stream which not yet forms a whole packet
+    private ByteBuffer pending = ByteBuffer.allocateDirect(MysqlPacket.DEFAULT_RESERVE_BUFFER_SIZE);
+    private int pendingStart = 0;
+    private int pendingEnd = 0;
+    // default size block which polled packets are sliced from
+    private FastBufferPool.BufferHolder pollHolder = null;
+    private int pollOffset = 0;
+
+    public CompressedPacketCodec(int level, int maxPacketSize) {
+        this(Algorithm.ZLIB, level, maxPacketSize, null);
+    }
+
+    public CompressedPacketCodec(Algorithm algorithm, int level, int maxPacketSize) {
+        this(algorithm, level, maxPacketSize, null);
+    }
+
+    public CompressedPacketCodec(Algorithm algorithm, int level, int maxPacketSize, FastBufferPool pool) {
+        this.algorithm = algorithm;
+        this.maxPacketSize = maxPacketSize;
+        this.pool = pool;
+        if (Algorithm.ZSTD == algorithm) {
+            this.deflater = null;
+            this.inflater = null;
+            this.zstdCompressor = new ZstdCompressCtx().setLevel(level);
+            this.zstdDecompressor = new ZstdDecompressCtx();
+        } else {
+            this.deflater = new Deflater(level);
+            this.inflater = new Inflater();
+            this.zstdCompressor = null;
+            this.zstdDecompressor = null;
+        }
+    }
+
+    public Algorithm getAlgorithm() {
+        return algorithm;
+    }
+
+    private static int u24(ByteBuffer buf, int index) {
+        return (buf.get(index) & 0xFF) | ((buf.get(index + 1) & 0xFF) << 8) | ((buf.get(index + 2) & 0xFF) << 16);
+    }
+
+    private static void writeHeader(ByteBuffer buf, int compressedLength, int seq, int uncompressedLength) {
+        buf.put((byte) compressedLength);
+        buf.put((byte) (compressedLength >>> 8));
+        buf.put((byte) (compressedLength >>> 16));
+        buf.put((byte) seq);
+        buf.put((byte) uncompressedLength);
+        buf.put((byte) (uncompressedLength >>> 8));
+        buf.put((byte) (uncompressedLength >>> 16));
+    }
+
+    // direct scratch with at least size capacity, content is not kept
+    private static ByteBuffer scratch(ByteBuffer buf, int size) {
+        if (buf != null && buf.capacity() >= size) {
+            return buf.clear();
+        }
+        int capacity = Math.max(MysqlPacket.DEFAULT_RESERVE_BUFFER_SIZE, null == buf ? 0 : buf.capacity() * 2);
+        if (capacity < size) {
+            capacity = size;
+        }
+        return ByteBuffer.allocateDirect(capacity);
+    }
+
+    private static ByteBuffer shrink(ByteBuffer buf) {
+        return buf != null && buf.capacity() > MAX_KEPT_SCRATCH_SIZE ? null : buf;
+    }
+
+    private void reservePending(int length) {
+        if (pendingEnd + length <= pending.capacity()) {
+            return;
+        }
+        final int remain = pendingEnd - pendingStart;
+        pending.limit(pendingEnd).position(pendingStart);
+        if (remain + length <= pending.capacity()) {
+            pending.compact();
+        } else {
+            final ByteBuffer next =
+                ByteBuffer.allocateDirect(Math.max(remain + length, pending.capacity() * 2));
+            next.put(pending);
+            pending = next;
+        }
+        pendingStart = 0;
+        pendingEnd = remain;
+    }
+
+    /**
+     * Decompress one whole frame(probed by compressed header) and append to the pending stream.
+     *
+     * @param frame whole compressed frame with header
+     */
+    public void decompress(Slice frame) throws DataFormatException {
+        final ByteBuffer buf = frame.duplicateBuffer();
+        buf.position(buf.position() + frame.getConsumed());
+        buf.limit(buf.position() + frame.getValid());
+        if (buf.remaining() < MysqlPacket.COMPRESSED_HEADER_SIZE) {
+            throw new DataFormatException("bad compressed frame length " + buf.remaining());
+        }
+        final int compressedLength = u24(buf, buf.position());
+        final int frameSeq = buf.get(buf.position() + 3);
+        final int uncompressedLength = u24(buf, buf.position() + 4);
+        buf.position(buf.position() + MysqlPacket.COMPRESSED_HEADER_SIZE);
+        if (compressedLength != buf.remaining()) {
+            throw new DataFormatException(
+                "bad compressed frame length " + buf.remaining() + " expected " + compressedLength);
+        }
+        if (Math.max(compressedLength, uncompressedLength) > maxPacketSize + MysqlPacket.NORMAL_HEADER_SIZE) {
+            throw new DataFormatException("compressed frame of " + Math.max(compressedLength, uncompressedLength)
+                + " bytes exceeds max_allowed_packet " + maxPacketSize);
+        }
+        seq = (frameSeq + 1) & 0xFF;
+
+        synchronized (decompressLock) {
+            if (closed) {
+                throw new DataFormatException("codec closed");
+            }
+            if (0 == uncompressedLength) {
+                reservePending(compressedLength);
+                pending.limit(pending.capacity()).position(pendingEnd);
+                pending.put(buf);
+                pendingEnd += compressedLength;
+            } else {
+                reservePending(uncompressedLength);
+                final int n = Algorithm.ZSTD == algorithm ?
+                    zstdDecompress(buf, compressedLength, uncompressedLength) : inflate(buf, uncompressedLength);
+                pendingEnd += n;
+            }
+        }
+    }
+
+    private int inflate(ByteBuffer buf, int uncompressedLength) throws DataFormatException {
+        inflater.reset();
+        inflater.setInput(buf);
+        pending.limit(pendingEnd + uncompressedLength).position(pendingEnd);
+        final int n = inflater.inflate(pending);
+        if (n != uncompressedLength || !inflater.finished()) {
+            throw new DataFormatException("bad compressed frame, inflate " + n + " expected " + uncompressedLength);
+        }
+        return n;
+    }
+
+    private int zstdDecompress(ByteBuffer buf, int compressedLength, int uncompressedLength)
+        throws DataFormatException {
+        final ByteBuffer src;
+        if (buf.isDirect()) {
+            src = buf;
+        } else {
+            // heap frame(fallback of reactor), zstd-jni takes both heap or both direct
+            src = decompressInput = scratch(decompressInput, compressedLength);
+            src.put(buf).flip();
+        }
+        final int n;
+        try {
+            n = zstdDecompressor.decompressDirectByteBuffer(pending, pendingEnd, uncompressedLength, src,
+                src.position(), compressedLength);
+        } catch (ZstdException e) {
+            throw new DataFormatException("bad compressed frame, zstd " + e.getMessage());
+        } finally {
+            decompressInput = shrink(decompressInput);
+        }
+        if (n != uncompressedLength) {
+            throw new DataFormatException("bad compressed frame, zstd " + n + " expected " + uncompressedLength);
+        }
+        return n;
+    }
+
+    // copy out of pending stream, small packets share one block as reactor does on read
+    private Slice takePacket(int total) {
+        pending.limit(pendingStart + total).position(pendingStart);
+        if (pool != null && total <= pool.getBlockSize()) {
+            if (pollHolder != null && pollHolder.size() - pollOffset < total) {
+                pollHolder.subReference();
+                pollHolder = null;
+            }
+            if (null == pollHolder) {
+                pollHolder = pool.allocateAndAddReference();
+                pollOffset = 0;
+            }
+            if (pollHolder != null) {
+                final ByteBuffer dst = pollHolder.duplicateBuffer();
+                dst.position(dst.position() + pollOffset);
+                dst.put(pending);
+                final Slice packet = new Slice(pollHolder, pollOffset, total);
+                pollOffset += total;
+                return packet;
+            }
+        } else if (pool != null) {
+            // large packet takes its own block, so large block is never pinned by small ones
+            final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference(total);
+            if (holder != null) {
+                try {
+                    final ByteBuffer dst = holder.duplicateBuffer();
+                    dst.put(pending);
+                    return new Slice(holder, 0, total);
+                } finally {
+                    holder.subReference();
+                }
+            }
+        }
+        // no pool or no free block
+        final ByteBuffer heap = ByteBuffer.allocate(total);
+        heap.put(pending);
+        return new Slice(heap, 0, total);
+    }
+
+    /**
+     * Take next whole normal packet(including continuation of large packet) from decompressed stream.
+     *
+     * @return packet in pool block(or heap if no free block) or null if not enough data
+     * @throws DataFormatException if payload of the packet exceeds max_allowed_packet
+     */
+    public Slice poll() throws DataFormatException {
+        synchronized (decompressLock) {
+            if (closed) {
+                throw new DataFormatException("codec closed");
+            }
+            pending.limit(pendingEnd);
+            int total = 0;
+            long payloadTotal = 0;
+            while (true) {
+                if (pendingEnd - pendingStart - total < MysqlPacket.NORMAL_HEADER_SIZE) {
+                    return null;
+                }
+                final int payloadSize = u24(pending, pendingStart + total);
+                // check with header only, before rest of a large packet accumulated
+                payloadTotal += payloadSize;
+                if (payloadTotal > maxPacketSize) {
+                    throw new DataFormatException(
+                        "packet of " + payloadTotal + "+ bytes exceeds max_allowed_packet " + maxPacketSize);
+                }
+                total += MysqlPacket.NORMAL_HEADER_SIZE + payloadSize;
+                if (pendingEnd - pendingStart < total) {
+                    return null;
+                }
+                if (payloadSize != MysqlPacket.MAX_PAYLOAD_SIZE) {
+                    break;
+                }
+            }
+            final Slice packet = takePacket(total);
+            pendingStart += total;
+            if (pendingStart == pendingEnd) {
+                pendingStart = pendingEnd = 0;
+                if (pending.capacity() > MAX_KEPT_SCRATCH_SIZE) {
+                    pending = ByteBuffer.allocateDirect(MysqlPacket.DEFAULT_RESERVE_BUFFER_SIZE);
+                }
+            }
+            return packet;
+        }
+    }
+
+    public boolean hasPending() {
+        return pendingEnd != pendingStart;
+    }
+
+    // compress src[offset, offset + length) as one frame to dst
+    private void frame(ByteBuffer src, int offset, int length, ByteBuffer dst) {
+        final int frameSeq = seq;
+        seq = (frameSeq + 1) & 0xFF;
+        final int start = dst.position();
+        src.limit(offset + length).position(offset);
+        if (length >= MIN_COMPRESS_LENGTH && Algorithm.ZSTD == algorithm) {
+            // zstd fails rather than stops when output is short, so compress to bound and check the size
+            final ByteBuffer out = compressOutput = scratch(compressOutput, (int) Zstd.compressBound(length));
+            final int n = zstdCompressor.compressDirectByteBuffer(out, 0, out.capacity(), src, offset, length);
+            if (n < length) {
+                writeHeader(dst, n, frameSeq, length);
+                dst.put(out.limit(n));
+                return;
+            }
+        } else if (length >= MIN_COMPRESS_LENGTH) {
+            deflater.reset();
+            deflater.setInput(src);
+            deflater.finish();
+            // deflate in place, no larger than raw, or fallback to raw
+            final int limit = dst.limit();
+            dst.limit(start + MysqlPacket.COMPRESSED_HEADER_SIZE + length)
+                .position(start + MysqlPacket.COMPRESSED_HEADER_SIZE);
+            final int n = deflater.deflate(dst);
+            dst.limit(limit);
+            if (deflater.finished() && n < length) {
+                dst.position(start);
+                writeHeader(dst, n, frameSeq, length);
+                dst.position(start + MysqlPacket.COMPRESSED_HEADER_SIZE + n);
+                return;
+            }
+            dst.position(start);
+            src.limit(offset + length).position(offset);
+        }
+        writeHeader(dst, length, frameSeq, 0);
+        dst.put(src);
+    }
+
+    /**
+     * Compress normal packets into compressed frames, split by max payload size.
+     *
+     * @param packets normal packets, not closed here
+     * @return frames in pool block(or heap if no free block)
+     */
+    public Slice compress(List<Slice> packets) {
+        int total = 0;
+        for (final Slice packet : packets) {
+            total += packet.getValid();
+        }
+
+        // single direct packet is compressed in place, others are gathered to direct scratch
+        ByteBuffer src = null;
+        if (1 == packets.size()) {
+            final Slice packet = packets.get(0);
+            final ByteBuffer buf = packet.duplicateBuffer();
+            if (buf.isDirect()) {
+                buf.position(buf.position() + packet.getConsumed());
+                buf.limit(buf.position() + packet.getValid());
+                src = buf.slice();
+            }
+        }
+        if (null == src) {
+            src = compressInput = scratch(compressInput, total);
+            for (final Slice packet : packets) {
+                final ByteBuffer buf = packet.duplicateBuffer();
+                buf.position(buf.position() + packet.getConsumed());
+                buf.limit(buf.position() + packet.getValid());
+                src.put(buf);
+            }
+        }
+
+        // raw frames are the worst case
+        final int frames = Math.max(1, (total + MysqlPacket.MAX_PAYLOAD_SIZE - 1) / MysqlPacket.MAX_PAYLOAD_SIZE);
+        final int size = total + frames * MysqlPacket.COMPRESSED_HEADER_SIZE;
+        final FastBufferPool.BufferHolder holder = null == pool ? null : size <= pool.getBlockSize() ?
+            pool.allocateAndAddReference() : pool.allocateAndAddReference(size);
+        try {
+            final ByteBuffer dst;
+            final int base;
+            if (holder != null) {
+                dst = holder.duplicateBuffer();
+                base = dst.position();
+            } else {
+                dst = ByteBuffer.allocate(size);
+                base = 0;
+            }
+            int offset = 0;
+            do {
+                final int len = Math.min(total - offset, MysqlPacket.MAX_PAYLOAD_SIZE);
+                frame(src, offset, len, dst);
+                offset += len;
+            } while (offset < total);
+
+            final Slice out = holder != null ? new Slice(holder, 0, size) : new Slice(dst, 0, size);
+            out.setValid(dst.position() - base);
+            return out;
+        } finally {
+            if (holder != null) {
+                holder.subReference();
+            }
+            compressInput = shrink(compressInput);
+            compressOutput = shrink(compressOutput);
+        }
+    }
+
+    @Override
+    public void close() {
+        if (deflater != null) {
+            deflater.end();
+        }
+        if (inflater != null) {
+            inflater.end();
+        }
+        if (zstdCompressor != null) {
+            zstdCompressor.close();
+        }
+        if (zstdDecompressor != null) {
+            zstdDecompressor.close();
+        }
+        synchronized (decompressLock) {
+            closed = true;
+            if (pollHolder != null) {
+                pollHolder.subReference();
+                pollHolder = null;
+            }
+        }
+    }
+}
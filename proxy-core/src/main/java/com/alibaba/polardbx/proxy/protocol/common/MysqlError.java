@@ -20,7 +20,9 @@ package com.alibaba.polardbx.proxy.protocol.common;
 
 public class MysqlError {
     public static final String GENERAL_STATE = "HY000";
+    public static final String CONNECTION_REJECTED_STATE = "08004";
 
+    public static final int ER_CON_COUNT_ERROR = 1040;
     public static final int ER_ACCESS_DENIED_ERROR = 1045;
     public static final int ER_DUP_ENTRY = 1062;
     public static final int ER_NO_SUCH_TABLE = 1146;
@@ -39,9 +39,10 @@ public class EncoderImpl extends Encoder {
     // last buffer writer, also indicate container empty or not
     private ByteBuffer writer = null;
 
-    private boolean allocateSlice() {
+    private boolean allocateSlice(int minSize) {
         assert pool != null;
-        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference();
+        final FastBufferPool.BufferHolder holder = minSize <= pool.getBlockSize() ?
+            pool.allocateAndAddReference() : pool.allocateAndAddReference(minSize);
         if (holder != null) {
             try {
                 final Slice slice = new Slice(holder, 0, holder.size());
@@ -62,7 +63,7 @@ public class EncoderImpl extends Encoder {
     }
 
     private void allocateSliceWithMinimumSize(int sz) {
-        if (pool != null && sz * 2 < pool.getBlockSize() && allocateSlice()) {
+        if (pool != null && sz * 2 <= pool.maxBlockSize() && allocateSlice(sz * 2)) {
             return; // new direct slice allocated
         }
         // failed or large space needed
@@ -25,6 +25,7 @@ import com.alibaba.polardbx.proxy.privilege.PrivilegeInfo;
 import com.alibaba.polardbx.proxy.privilege.Privileges;
 import com.alibaba.polardbx.proxy.privilege.ProxyPrivileges;
 import com.alibaba.polardbx.proxy.privilege.SecurityUtil;
+import com.alibaba.polardbx.proxy.protocol.command.ComChangeUser;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlError;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlProtocolHandler;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlServerState;
@@ -113,14 +114,10 @@ public class FrontendAuthenticator extends MysqlProtocolHandler {
         }
 
         final byte[] mysqlPassword = privilegeInfo.getAuthentication();
-        if (null == password && (null == mysqlPassword || 0 == mysqlPassword.length)) {
-            context.sendOk(encoder, false);
-            return true;
-        }
-
-        if (null == password || null == mysqlPassword || 0 == mysqlPassword.length ||
+        final boolean emptyPassword = null == password && (null == mysqlPassword || 0 == mysqlPassword.length);
+        if (!emptyPassword && (null == password || null == mysqlPassword || 0 == mysqlPassword.length ||
             !SecurityUtil.verify(password, mysqlPassword, seed, 0,
-                seed.length > 0 && 0 == seed[seed.length - 1] ? seed.length - 1 : seed.length)) {
+                seed.length > 0 && 0 == seed[seed.length - 1] ? seed.length - 1 : seed.length))) {
             context.sendErr(encoder, MysqlError.ER_ACCESS_DENIED_ERROR, MysqlError.GENERAL_STATE,
                 "Access denied for user '" + username + "'@'" + ip + "' because password is not correct");
             return false;
@@ -134,6 +131,34 @@ public class FrontendAuthenticator extends MysqlProtocolHandler {
         return true;
     }
 
+    /**
+     * Re-authenticate an established session with COM_CHANGE_USER.
+     * Client scrambles password of COM_CHANGE_USER with the seed of initial handshake, which could be replayed on the
+     * same connection, so it is ignored and the client is always challenged with the fresh seed of this
+     * authenticator by auth switch request. State is set to AuthSwitched if waiting for the auth switch response, or
+     * Closed on failure.
+     */
+    public void changeUser(ComChangeUser request, Encoder encoder) throws IOException {
+        if (request.getCharacterSet() != 0 && !context.setCharset(request.getCharacterSet())) {
+            context.sendErr(encoder, MysqlError.ER_ACCESS_DENIED_ERROR, MysqlError.GENERAL_STATE,
+                "Access denied because character set is not supported");
+            context.setState(MysqlServerState.Closed);
+            return;
+        }
+        // no encoding for username, so use utf8
+        username = null == request.getUsername() ? null : new String(request.getUsername(), StandardCharsets.UTF_8);
+        password = null;
+        database = context.decodeStringClient(request.getDatabase());
+        maxPacketSize = context.getMaxPacketSize();
+
+        // challenge with fresh seed even if auth method matches
+        final AuthSwitchRequest switchRequest = new AuthSwitchRequest();
+        switchRequest.setPluginName(AUTH_METHOD_BYTES);
+        switchRequest.setPluginData(seed);
+        switchRequest.encode(encoder, context.getCapabilities());
+        context.setState(MysqlServerState.AuthSwitched);
+    }
+
     @Override
     public boolean handleAndTakePacket(Slice packet, Decoder decoder) {
         throw new UnsupportedOperationException("Encoder must be provided when handling authenticate.");
@@ -147,6 +172,9 @@ public class FrontendAuthenticator extends MysqlProtocolHandler {
 
             // record useful data first
             context.mergeCapability(response.getClientFlag());
+            if (context.hasCapability(Capabilities.CLIENT_ZSTD_COMPRESSION_ALGORITHM)) {
+                context.setZstdCompressionLevel(response.getZstdCompressionLevel() & 0xFF);
+            }
             final boolean switchCharset = context.setCharset(response.getCharacterSet());
             if (!switchCharset) {
                 context.sendErr(encoder, MysqlError.ER_ACCESS_DENIED_ERROR, MysqlError.GENERAL_STATE,
@@ -189,6 +217,9 @@ public class FrontendAuthenticator extends MysqlProtocolHandler {
             final AuthSwitchResponse response = new AuthSwitchResponse();
             response.decode(decoder, 0);
             password = response.getData();
+            if (password != null && 0 == password.length) {
+                password = null;
+            }
         } else {
             LOGGER.warn("Unexpected state: {} when handling authenticate.", context.getState());
             context.setState(MysqlServerState.Closed);
@@ -112,16 +112,14 @@ public class FrontendCommandHandler extends MysqlProtocolHandler {
             break;
 
         case Commands.COM_RESET_CONNECTION:
-            // todo dealing reset and set all variables
             tag = "reset";
-            tasks = Pipelines.OK_ERR_STALE_SLAVE_TASKS;
+            tasks = Pipelines.COM_RESET_CONNECTION_TASKS;
             break;
 
         case Commands.COM_CHANGE_USER:
-            // denied and close connection
-            context.sendErr(encoder, MysqlError.ER_ACCESS_DENIED_ERROR, MysqlError.GENERAL_STATE, "Access denied.");
-            context.setState(MysqlServerState.Closed);
-            return false;
+            tag = "change user";
+            tasks = Pipelines.COM_CHANGE_USER_TASKS;
+            break;
 
         case Commands.COM_SET_OPTION:
             return setOption(packet, decoder, encoder);
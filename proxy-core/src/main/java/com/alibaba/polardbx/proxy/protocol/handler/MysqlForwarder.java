@@ -65,6 +65,16 @@ public class MysqlForwarder extends MysqlProtocolHandler {
         }
     }
 
+    // should invoke this in ResultHandler with the check of LSN, and slices are taken without copy
+    public synchronized void pushSlices(AutoCloseableContainer<Slice> slices) {
+        if (leakCheckClosed.getPlain()) {
+            slices.close();
+            throw new IllegalStateException("MysqlForwarder is closed");
+        }
+        packets.addAll(slices);
+        slices.clear(); // leave ownership to forwarder
+    }
+
     @Override
     public synchronized boolean handleAndTakePacket(Slice packet, Decoder decoder) {
         if (leakCheckClosed.getPlain()) {
@@ -28,13 +28,20 @@ import com.alibaba.polardbx.proxy.utils.CharsetMapping;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public class ShowBackendHandler extends SystemTableRequestHandler {
     private final boolean full;
+    private final String pattern; // LIKE pattern on user@host, null if all
+    private final int offset;
+    private final int limit; // negative if all
 
-    public ShowBackendHandler(FrontendContext context, boolean full) {
+    public ShowBackendHandler(FrontendContext context, boolean full, String pattern, int offset, int limit) {
         super(context);
         this.full = full;
+        this.pattern = pattern;
+        this.offset = offset;
+        this.limit = limit;
         setTag("ShowBackendHandler");
     }
 
@@ -72,7 +79,14 @@ public class ShowBackendHandler extends SystemTableRequestHandler {
 
     @Override
     protected void emitRows(RowConsumer consumer) throws IOException {
-        for (final BackendConnection connection : BackendConnection.CONNECTIONS) {
+        // skip ones not connected yet, so that they are not counted in the page
+        final Predicate<BackendConnection> filter = connection -> {
+            final BackendContext context = connection.getContextReference().getAcquire();
+            return context != null && (null == pattern || like(pattern,
+                context.getUsername() + '@' + context.getRemoteAddress().getHostString() + ':'
+                    + context.getRemoteAddress().getPort()));
+        };
+        for (final BackendConnection connection : BackendConnection.CONNECTIONS.page(filter, offset, limit)) {
             final BackendContext context = connection.getContextReference().getAcquire();
             if (null == context) {
                 continue;
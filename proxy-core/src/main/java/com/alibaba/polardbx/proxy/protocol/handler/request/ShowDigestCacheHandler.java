@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.protocol.handler.request;
+
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementDigestCache;
+import com.alibaba.polardbx.proxy.protocol.command.ColumnDefinition41;
+import com.alibaba.polardbx.proxy.utils.CharsetMapping;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ShowDigestCacheHandler extends SystemTableRequestHandler {
+    public ShowDigestCacheHandler(FrontendContext context) {
+        super(context);
+        setTag("ShowDigestCacheHandler");
+    }
+
+    private static final ColumnDefinition41[] fields = new ColumnDefinition41[] {
+        new ColumnDefinition41().fieldLong("capacity".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("size".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("hits".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("misses".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldVarchar("hit_rate".getBytes(StandardCharsets.UTF_8),
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 32).setNotNull(true),
+        new ColumnDefinition41().fieldLong("evictions".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("rotations".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("uncacheable".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("bypass".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true)
+    };
+
+    @Override
+    protected ColumnDefinition41[] getFields() {
+        return fields;
+    }
+
+    @Override
+    protected void emitRows(RowConsumer consumer) throws IOException {
+        final StatementDigestCache cache = StatementDigestCache.getInstance();
+        final long hits = cache.getHits();
+        final long misses = cache.getMisses();
+        final long lookups = hits + misses;
+        // build row
+        final byte[][] row = new byte[fields.length][];
+        row[0] = String.valueOf(FastConfig.sqlDigestCacheSize).getBytes(StandardCharsets.UTF_8);
+        row[1] = String.valueOf(cache.size()).getBytes(StandardCharsets.UTF_8);
+        row[2] = String.valueOf(hits).getBytes(StandardCharsets.UTF_8);
+        row[3] = String.valueOf(misses).getBytes(StandardCharsets.UTF_8);
+        row[4] = String.format("%.2f%%", 0 == lookups ? 0.0 : hits * 100.0 / lookups)
+            .getBytes(StandardCharsets.UTF_8);
+        row[5] = String.valueOf(cache.getEvictions()).getBytes(StandardCharsets.UTF_8);
+        row[6] = String.valueOf(cache.getRotations()).getBytes(StandardCharsets.UTF_8);
+        row[7] = String.valueOf(cache.getUncacheable()).getBytes(StandardCharsets.UTF_8);
+        row[8] = String.valueOf(cache.getBypass()).getBytes(StandardCharsets.UTF_8);
+
+        consumer.accept(row);
+    }
+}
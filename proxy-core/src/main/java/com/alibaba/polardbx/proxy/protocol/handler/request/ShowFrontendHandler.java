@@ -30,13 +30,20 @@ import com.alibaba.polardbx.proxy.utils.CharsetMapping;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.util.Map;
+import java.util.function.Predicate;
 
 public class ShowFrontendHandler extends SystemTableRequestHandler {
     private final boolean full;
+    private final String pattern; // LIKE pattern on user@host, null if all
+    private final int offset;
+    private final int limit; // negative if all
 
-    public ShowFrontendHandler(FrontendContext context, boolean full) {
+    public ShowFrontendHandler(FrontendContext context, boolean full, String pattern, int offset, int limit) {
         super(context);
         this.full = full;
+        this.pattern = pattern;
+        this.offset = offset;
+        this.limit = limit;
         setTag("ShowFrontendHandler");
     }
 
@@ -76,7 +83,12 @@ public class ShowFrontendHandler extends SystemTableRequestHandler {
 
     @Override
     protected void emitRows(RowConsumer consumer) throws IOException {
-        for (final FrontendConnection connection : FrontendConnection.CONNECTIONS) {
+        final Predicate<FrontendConnection> filter = null == pattern ? null : connection -> {
+            final FrontendContext context = connection.getContext();
+            return like(pattern, context.getUsername() + '@' + context.getRemoteAddress().getHostString() + ':'
+                + context.getRemoteAddress().getPort());
+        };
+        for (final FrontendConnection connection : FrontendConnection.CONNECTIONS.page(filter, offset, limit)) {
             final FrontendContext context = connection.getContext();
             // build row
             final byte[][] row = new byte[fields.length][];
@@ -0,0 +1,82 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.protocol.handler.request;
+
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.protocol.command.ColumnDefinition41;
+import com.alibaba.polardbx.proxy.scheduler.StageLatency;
+import com.alibaba.polardbx.proxy.utils.CharsetMapping;
+import com.alibaba.polardbx.proxy.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+public class ShowProxyLatencyHandler extends SystemTableRequestHandler {
+    public ShowProxyLatencyHandler(FrontendContext context) {
+        super(context);
+        setTag("ShowProxyLatencyHandler");
+    }
+
+    private static final ColumnDefinition41[] fields = new ColumnDefinition41[] {
+        new ColumnDefinition41().fieldVarchar("target".getBytes(StandardCharsets.UTF_8),
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 32).setNotNull(true),
+        new ColumnDefinition41().fieldVarchar("stage".getBytes(StandardCharsets.UTF_8),
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 32).setNotNull(true),
+        new ColumnDefinition41().fieldLong("count".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldFloat("avg(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("p50(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("p90(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("p99(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("p999(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("max(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true)
+    };
+
+    @Override
+    protected ColumnDefinition41[] getFields() {
+        return fields;
+    }
+
+    private static byte[] millis(long nanos) {
+        return String.valueOf(nanos / 1000000.f).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void emitRows(RowConsumer consumer) throws IOException {
+        for (final StageLatency.Target target : StageLatency.Target.values()) {
+            for (final StageLatency.Stage stage : StageLatency.Stage.values()) {
+                final LatencyHistogram.Snapshot snapshot = StageLatency.get(target, stage).snapshot();
+                if (0 == snapshot.getCount()) {
+                    continue; // stage never hit on this target
+                }
+                final byte[][] row = new byte[fields.length][];
+                row[0] = target.name().toLowerCase().getBytes(StandardCharsets.UTF_8);
+                row[1] = stage.name().toLowerCase().getBytes(StandardCharsets.UTF_8);
+                row[2] = String.valueOf(snapshot.getCount()).getBytes(StandardCharsets.UTF_8);
+                row[3] = millis(snapshot.getMean());
+                row[4] = millis(snapshot.getPercentile(50));
+                row[5] = millis(snapshot.getPercentile(90));
+                row[6] = millis(snapshot.getPercentile(99));
+                row[7] = millis(snapshot.getPercentile(99.9));
+                row[8] = millis(snapshot.getMax());
+                consumer.accept(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,104 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.protocol.handler.request;
+
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.protocol.command.ColumnDefinition41;
+import com.alibaba.polardbx.proxy.scheduler.StatementStats;
+import com.alibaba.polardbx.proxy.utils.CharsetMapping;
+import com.alibaba.polardbx.proxy.utils.LatencyHistogram;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class ShowProxyStatementsHandler extends SystemTableRequestHandler {
+    private final int offset;
+    private final int limit; // negative for all
+
+    public ShowProxyStatementsHandler(FrontendContext context, int offset, int limit) {
+        super(context);
+        setTag("ShowProxyStatementsHandler");
+        this.offset = offset;
+        this.limit = limit;
+    }
+
+    private static final ColumnDefinition41[] fields = new ColumnDefinition41[] {
+        new ColumnDefinition41().fieldVarchar("digest_hash".getBytes(StandardCharsets.UTF_8),
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 16).setNotNull(true),
+        new ColumnDefinition41().fieldVarchar("digest".getBytes(StandardCharsets.UTF_8),
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 1024).setNotNull(true),
+        new ColumnDefinition41().fieldLong("count".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("errors".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("rows_sent".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("bytes_sent".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("leader".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("slave".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldFloat("total(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("avg(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("p50(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("p99(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("max(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true)
+    };
+
+    @Override
+    protected ColumnDefinition41[] getFields() {
+        return fields;
+    }
+
+    private static byte[] millis(long nanos) {
+        return String.valueOf(nanos / 1000000.f).getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] number(long value) {
+        return String.valueOf(value).getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void emitRows(RowConsumer consumer) throws IOException {
+        final List<StatementStats.Entry> entries = StatementStats.getInstance().top(limit < 0 ? -1 : offset + limit);
+        for (int i = offset; i < entries.size(); ++i) {
+            final StatementStats.Entry entry = entries.get(i);
+            final LatencyHistogram.Snapshot snapshot = entry.getLatency().snapshot();
+            final long count = entry.getCount().get();
+            final long slave = entry.getSlave().sum();
+            final byte[][] row = new byte[fields.length][];
+            row[0] = String.format("%016x", entry.getHash()).getBytes(StandardCharsets.UTF_8);
+            row[1] = entry.getDigest().getBytes(StandardCharsets.UTF_8);
+            row[2] = number(count);
+            row[3] = number(entry.getErrors().sum());
+            row[4] = number(entry.getRows().sum());
+            row[5] = number(entry.getBytes().sum());
+            row[6] = number(Math.max(count - slave, 0));
+            row[7] = number(slave);
+            row[8] = millis(entry.getTotalNanos().sum());
+            row[9] = millis(snapshot.getMean());
+            row[10] = millis(snapshot.getPercentile(50));
+            row[11] = millis(snapshot.getPercentile(99));
+            row[12] = millis(snapshot.getMax());
+            consumer.accept(row);
+        }
+    }
+}
@@ -49,6 +49,12 @@ public class ShowReactorHandler extends SystemTableRequestHandler {
             .setNotNull(true).setBinary(true),
         new ColumnDefinition41().fieldLong("connects".getBytes(StandardCharsets.UTF_8))
             .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("write_syscalls".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("write_slices".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldLong("cross_thread_writes".getBytes(StandardCharsets.UTF_8))
+            .setNotNull(true).setBinary(true),
         new ColumnDefinition41().fieldLong("buffer".getBytes(StandardCharsets.UTF_8))
             .setNotNull(true).setBinary(true),
         new ColumnDefinition41().fieldLong("block".getBytes(StandardCharsets.UTF_8))
@@ -56,7 +62,9 @@ public class ShowReactorHandler extends SystemTableRequestHandler {
         new ColumnDefinition41().fieldLong("total".getBytes(StandardCharsets.UTF_8))
             .setNotNull(true).setBinary(true),
         new ColumnDefinition41().fieldLong("idle".getBytes(StandardCharsets.UTF_8))
-            .setNotNull(true).setBinary(true)
+            .setNotNull(true).setBinary(true),
+        new ColumnDefinition41().fieldVarchar("size_classes".getBytes(StandardCharsets.UTF_8),
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 1024).setNotNull(true)
     };
 
     @Override
@@ -78,10 +86,14 @@ public class ShowReactorHandler extends SystemTableRequestHandler {
             row[4] = String.valueOf(item.getReadCount()).getBytes(StandardCharsets.UTF_8);
             row[5] = String.valueOf(item.getWriteCount()).getBytes(StandardCharsets.UTF_8);
             row[6] = String.valueOf(item.getConnectCount()).getBytes(StandardCharsets.UTF_8);
-            row[7] = String.valueOf(item.getBufferSize()).getBytes(StandardCharsets.UTF_8);
-            row[8] = String.valueOf(item.getBufferBlockSize()).getBytes(StandardCharsets.UTF_8);
-            row[9] = String.valueOf(item.getBufferSize() / item.getBufferBlockSize()).getBytes(StandardCharsets.UTF_8);
-            row[10] = String.valueOf(item.getIdleBufferCount()).getBytes(StandardCharsets.UTF_8);
+            row[7] = String.valueOf(item.getWriteSyscallCount()).getBytes(StandardCharsets.UTF_8);
+            row[8] = String.valueOf(item.getWriteSliceCount()).getBytes(StandardCharsets.UTF_8);
+            row[9] = String.valueOf(item.getCrossThreadWriteCount()).getBytes(StandardCharsets.UTF_8);
+            row[10] = String.valueOf(item.getBufferSize()).getBytes(StandardCharsets.UTF_8);
+            row[11] = String.valueOf(item.getBufferBlockSize()).getBytes(StandardCharsets.UTF_8);
+            row[12] = String.valueOf(item.getBufferSize() / item.getBufferBlockSize()).getBytes(StandardCharsets.UTF_8);
+            row[13] = String.valueOf(item.getIdleBufferCount()).getBytes(StandardCharsets.UTF_8);
+            row[14] = item.getBufferSizeClasses().getBytes(StandardCharsets.UTF_8);
 
             consumer.accept(row);
         }
@@ -64,13 +64,7 @@ public class ShowRoHandler extends SystemTableRequestHandler {
             row[1] = String.valueOf(ro.getValue()).getBytes(StandardCharsets.UTF_8);
             final BackendPool pool =
                 HaManager.getInstance().getReadWriteSplittingPool().getRoPoolMap().get(ro.getKey());
-            if (null == pool) {
-                row[2] = row[3] = row[4] = null;
-            } else {
-                row[2] = String.valueOf(pool.getNowRunningConnectionCount()).getBytes(StandardCharsets.UTF_8);
-                row[3] = String.valueOf(pool.getNowIdleConnectionCount()).getBytes(StandardCharsets.UTF_8);
-                row[4] = String.valueOf(pool.getMaxPooled()).getBytes(StandardCharsets.UTF_8);
-            }
+            ShowRwHandler.fillPoolStats(row, pool);
             final XClusterNodeHealth health = healthMap.get(ro.getKey());
             if (null == health) {
                 row[5] = row[6] = row[7] = row[9] = null;
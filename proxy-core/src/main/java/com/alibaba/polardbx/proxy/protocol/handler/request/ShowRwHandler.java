@@ -52,9 +52,48 @@ public class ShowRwHandler extends SystemTableRequestHandler {
         new ColumnDefinition41().fieldFloat("rtt(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
         new ColumnDefinition41().fieldFloat("delay(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
         new ColumnDefinition41().fieldVarchar("update time".getBytes(StandardCharsets.UTF_8),
-            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 32)
+            CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci, 32),
+        new ColumnDefinition41().fieldLong("state hits".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("state misses".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("restore sent".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("restore avoided".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("response(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("open".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("waiting".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("wait served".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldFloat("wait avg(ms)".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("wait timeouts".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("rejected".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("read_lsn sent".getBytes(StandardCharsets.UTF_8)).setBinary(true),
+        new ColumnDefinition41().fieldLong("read_lsn avoided".getBytes(StandardCharsets.UTF_8)).setBinary(true)
     };
 
+    static void fillPoolStats(byte[][] row, BackendPool pool) {
+        if (null == pool) {
+            row[2] = row[3] = row[4] = row[10] = row[11] = row[12] = row[13] = row[14] = null;
+            row[15] = row[16] = row[17] = row[18] = row[19] = row[20] = row[21] = row[22] = null;
+        } else {
+            row[2] = String.valueOf(pool.getNowRunningConnectionCount()).getBytes(StandardCharsets.UTF_8);
+            row[3] = String.valueOf(pool.getNowIdleConnectionCount()).getBytes(StandardCharsets.UTF_8);
+            row[4] = String.valueOf(pool.getMaxPooled()).getBytes(StandardCharsets.UTF_8);
+            row[10] = String.valueOf(pool.getStateHits()).getBytes(StandardCharsets.UTF_8);
+            row[11] = String.valueOf(pool.getStateMisses()).getBytes(StandardCharsets.UTF_8);
+            row[12] = String.valueOf(pool.getRestoreSent()).getBytes(StandardCharsets.UTF_8);
+            row[13] = String.valueOf(pool.getRestoreAvoided()).getBytes(StandardCharsets.UTF_8);
+            row[14] = String.valueOf(pool.getResponseNanosEwma() / 1000000.f).getBytes(StandardCharsets.UTF_8);
+            row[15] = String.valueOf(pool.getNowOpenConnectionCount()).getBytes(StandardCharsets.UTF_8);
+            row[16] = String.valueOf(pool.getNowWaitingCount()).getBytes(StandardCharsets.UTF_8);
+            final long served = pool.getWaitServed();
+            row[17] = String.valueOf(served).getBytes(StandardCharsets.UTF_8);
+            row[18] = String.valueOf(0 == served ? 0.f : pool.getWaitServedNanos() / 1000000.f / served)
+                .getBytes(StandardCharsets.UTF_8);
+            row[19] = String.valueOf(pool.getWaitTimeouts()).getBytes(StandardCharsets.UTF_8);
+            row[20] = String.valueOf(pool.getWaitRejected()).getBytes(StandardCharsets.UTF_8);
+            row[21] = String.valueOf(pool.getReadLsnSent()).getBytes(StandardCharsets.UTF_8);
+            row[22] = String.valueOf(pool.getReadLsnAvoided()).getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
     @Override
     protected ColumnDefinition41[] getFields() {
         return fields;
@@ -68,14 +107,7 @@ public class ShowRwHandler extends SystemTableRequestHandler {
             final byte[][] row = new byte[fields.length][];
             row[0] = leader.getTag().getBytes(StandardCharsets.UTF_8);
             row[1] = "1".getBytes(StandardCharsets.UTF_8);
-            final BackendPool pool = HaManager.getInstance().getReadWriteSplittingPool().getRwPool();
-            if (null == pool) {
-                row[2] = row[3] = row[4] = null;
-            } else {
-                row[2] = String.valueOf(pool.getNowRunningConnectionCount()).getBytes(StandardCharsets.UTF_8);
-                row[3] = String.valueOf(pool.getNowIdleConnectionCount()).getBytes(StandardCharsets.UTF_8);
-                row[4] = String.valueOf(pool.getMaxPooled()).getBytes(StandardCharsets.UTF_8);
-            }
+            fillPoolStats(row, HaManager.getInstance().getReadWriteSplittingPool().getRwPool());
             row[5] = leader.getRole().getBytes(StandardCharsets.UTF_8);
             row[6] = null == leader.getProxyToken() ? null :
                 (leader.getProxyToken().substring(0, 4) + "***").getBytes(StandardCharsets.UTF_8);
@@ -53,6 +53,49 @@ public abstract class SystemTableRequestHandler extends MysqlProtocolHandler {
 
     protected abstract void emitRows(RowConsumer consumer) throws IOException;
 
+    /**
+     * Case insensitive SQL LIKE matching with '%', '_' and '\\' as escape.
+     */
+    protected static boolean like(String pattern, String text) {
+        int p = 0, t = 0;
+        int starP = -1, starT = -1;
+        while (t < text.length()) {
+            if (p < pattern.length()) {
+                final char c = pattern.charAt(p);
+                if ('%' == c) {
+                    starP = ++p;
+                    starT = t;
+                    continue;
+                }
+                if ('\\' == c && p + 1 < pattern.length()) {
+                    if (sameChar(pattern.charAt(p + 1), text.charAt(t))) {
+                        p += 2;
+                        ++t;
+                        continue;
+                    }
+                } else if ('_' == c || sameChar(c, text.charAt(t))) {
+                    ++p;
+                    ++t;
+                    continue;
+                }
+            }
+            if (starP < 0) {
+                return false;
+            }
+            // backtrack, let last '%' eat one more char
+            p = starP;
+            t = ++starT;
+        }
+        while (p < pattern.length() && '%' == pattern.charAt(p)) {
+            ++p;
+        }
+        return p == pattern.length();
+    }
+
+    private static boolean sameChar(char a, char b) {
+        return a == b || Character.toLowerCase(a) == Character.toLowerCase(b);
+    }
+
     @Override
     public boolean handleAndTakePacket(Slice packet, Decoder decoder, Encoder encoder) throws IOException {
         // send fields first
@@ -37,6 +37,7 @@ import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
 import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
 import com.alibaba.polardbx.proxy.protocol.handler.MysqlForwarder;
 import com.alibaba.polardbx.proxy.scheduler.Scheduler;
+import com.alibaba.polardbx.proxy.utils.AutoCloseableContainer;
 import com.alibaba.polardbx.proxy.utils.NotifyQueue;
 import com.alibaba.polardbx.proxy.utils.Slice;
 import lombok.Getter;
@@ -64,11 +65,14 @@ public class QueryResultHandler extends ResultHandler {
     @Getter
     private int columnCount;
     @Getter
-    private List<ColumnDefinition41> fields; // may null when no filed meta
+    private List<ColumnDefinition41> fields; // may null when no filed meta or passthrough
+    private int fieldsReceived = 0;
     @Getter
     private final boolean binaryProtocol;
     private final NotifyQueue<Object[]> rows = new NotifyQueue<>();
     @Getter
+    private long rowCount = 0; // rows received from backend
+    @Getter
     private ErrPacket err; // valid when state is Error
     @Getter
     private EofPacket eof; // valid when state is EOF
@@ -76,7 +80,8 @@ public class QueryResultHandler extends ResultHandler {
     private OkPacket ok; // valid when state is Ok
 
     // blocking head & fields for forwarding(this enabled error packet when abort state)
-    private final List<byte[]> pendingPackets;
+    // packets from backend are retained slices of read buffer, and no heap copy is made
+    private final AutoCloseableContainer<Slice> pendingPackets;
     private int compatibleSeqPatch = 0;
 
     // result set id
@@ -96,7 +101,7 @@ public class QueryResultHandler extends ResultHandler {
         super(contextReference, scheduler, forwarder, stateCallback);
         setTag("QueryResultHandler");
         this.binaryProtocol = false;
-        this.pendingPackets = null == forwarder ? null : new ArrayList<>();
+        this.pendingPackets = null == forwarder ? null : new AutoCloseableContainer<>();
         this.previous = null;
     }
 
@@ -106,7 +111,7 @@ public class QueryResultHandler extends ResultHandler {
         super(contextReference, scheduler, forwarder, stateCallback);
         setTag("QueryResultHandler");
         this.binaryProtocol = binaryProtocol;
-        this.pendingPackets = null == forwarder ? null : new ArrayList<>();
+        this.pendingPackets = null == forwarder ? null : new AutoCloseableContainer<>();
         this.previous = null;
     }
 
@@ -117,7 +122,7 @@ public class QueryResultHandler extends ResultHandler {
         super(contextReference, scheduler, forwarder, stateCallback, packetForwarded, packetDroppedByLsn);
         setTag("QueryResultHandler sub result");
         this.binaryProtocol = binaryProtocol;
-        this.pendingPackets = null == forwarder ? null : new ArrayList<>();
+        this.pendingPackets = null == forwarder ? null : new AutoCloseableContainer<>();
         this.previous = previous;
     }
 
@@ -133,8 +138,7 @@ public class QueryResultHandler extends ResultHandler {
             assert pendingPackets != null;
             // fields are ready, push it to forwarder if exists
             if (!pendingPackets.isEmpty()) {
-                pushPackets(pendingPackets);
-                pendingPackets.clear();
+                pushSlices(pendingPackets);
             }
             final FrontendContext forwardContext = forwarder.getContext();
             if (!forwardContext.hasCapability(Capabilities.CLIENT_DEPRECATE_EOF)) {
@@ -150,7 +154,7 @@ public class QueryResultHandler extends ResultHandler {
                         tmp.encode(encoder, forwardContext.getCapabilities());
                         encoder.flush();
                     }
-                    pendingPackets.add(output.getBytes());
+                    pendingPackets.add(wrap(output.getBytes()));
                 } catch (IOException e) {
                     throw new RuntimeException("Error when construct fields EOF packet", e);
                 }
@@ -165,6 +169,10 @@ public class QueryResultHandler extends ResultHandler {
             PacketDealing.DROP;
     }
 
+    private static Slice wrap(byte[] packet) {
+        return new Slice(ByteBuffer.wrap(packet), 0, packet.length);
+    }
+
     private void patchSequence(ByteBuffer duplicated, int nowSeq) {
         int pos = duplicated.position() + 3, limit = duplicated.limit();
         do {
@@ -204,8 +212,7 @@ public class QueryResultHandler extends ResultHandler {
             tmp.decode(decoder, context.getCapabilities());
             err = tmp;
             if (pendingPackets != null && !pendingPackets.isEmpty()) {
-                pushPackets(pendingPackets);
-                pendingPackets.clear();
+                pushSlices(pendingPackets);
             }
             rows.put(EOF_ROW); // end mark
             updateState(ResultState.Error);
@@ -253,7 +260,9 @@ public class QueryResultHandler extends ResultHandler {
                 assert columnCount > 0;
 
                 if (carryMeta) {
-                    fields = new ArrayList<>(columnCount);
+                    // column definitions are only decoded when rows consumed in proxy, or just forward them
+                    fields = null == forwarder ? new ArrayList<>(columnCount) : null;
+                    fieldsReceived = 0;
                     updateState(ResultState.Fields);
                     dealing = forwarder != null ? PacketDealing.PENDING : PacketDealing.DROP;
                 } else if (!context.hasCapability(Capabilities.CLIENT_DEPRECATE_EOF)) {
@@ -269,10 +278,12 @@ public class QueryResultHandler extends ResultHandler {
             break;
 
         case Fields: {
-            final ColumnDefinition41 definition = new ColumnDefinition41();
-            definition.decode(decoder, context.getCapabilities());
-            fields.add(definition);
-            if (fields.size() >= columnCount) {
+            if (fields != null) {
+                final ColumnDefinition41 definition = new ColumnDefinition41();
+                definition.decode(decoder, context.getCapabilities());
+                fields.add(definition);
+            }
+            if (++fieldsReceived >= columnCount) {
                 if (!context.hasCapability(Capabilities.CLIENT_DEPRECATE_EOF)) {
                     updateState(ResultState.FieldsEOF);
                     dealing = forwarder != null ? PacketDealing.PENDING : PacketDealing.DROP;
@@ -295,8 +306,7 @@ public class QueryResultHandler extends ResultHandler {
             if (forwarder != null) {
                 // following are rows, so push all pending packets
                 if (!pendingPackets.isEmpty()) {
-                    pushPackets(pendingPackets);
-                    pendingPackets.clear();
+                    pushSlices(pendingPackets);
                 }
                 if (forwarder.getContext().hasCapability(Capabilities.CLIENT_DEPRECATE_EOF)) {
                     // drop it and each following packets' seq sub 1
@@ -373,14 +383,13 @@ public class QueryResultHandler extends ResultHandler {
                                 }
                                 encoder.flush();
                             }
-                            pendingPackets.add(output.getBytes());
+                            pendingPackets.add(wrap(output.getBytes()));
                         } catch (IOException e) {
                             throw new RuntimeException("Error when construct fields EOF packet", e);
                         }
                         // push this rewrite packet
                         if (!pendingPackets.isEmpty()) {
-                            pushPackets(pendingPackets);
-                            pendingPackets.clear();
+                            pushSlices(pendingPackets);
                         }
                         // and drop original packet
                         dealing = PacketDealing.DROP;
@@ -391,6 +400,7 @@ public class QueryResultHandler extends ResultHandler {
                     dealing = PacketDealing.DROP;
                 }
             } else {
+                ++rowCount;
                 // new a row if no forwarder
                 if (null == forwarder) {
                     if (binaryProtocol) {
@@ -442,8 +452,9 @@ public class QueryResultHandler extends ResultHandler {
         // dealing pending and packet
         switch (dealing) {
         case PENDING:
-            pendingPackets.add(packet.dump()); // make a heap copy
-            // fall through
+            pendingPackets.add(packet); // retain the slice until pushed
+            return true; // taken
+
         case DROP:
         default:
             return false; // not taken
@@ -457,8 +468,7 @@ public class QueryResultHandler extends ResultHandler {
         case FORWARD_AND_PUSH:
             final boolean taken = forwardPacket(packet, decoder);
             if (!pendingPackets.isEmpty()) {
-                pushPackets(pendingPackets);
-                pendingPackets.clear();
+                pushSlices(pendingPackets);
             }
             return taken;
         }
@@ -500,6 +510,13 @@ public class QueryResultHandler extends ResultHandler {
         if (null == forwarder && getState().isAbort()) {
             rows.put(EOF_ROW);
         }
+
+        // free retained slices which never pushed
+        if (pendingPackets != null) {
+            synchronized (this) {
+                pendingPackets.close();
+            }
+        }
     }
 
     public byte[][] next(long timeout, TimeUnit unit) throws InterruptedException, TimeoutException, SQLException {
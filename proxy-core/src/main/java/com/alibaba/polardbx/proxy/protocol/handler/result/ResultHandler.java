@@ -25,6 +25,7 @@ import com.alibaba.polardbx.proxy.protocol.common.ResultState;
 import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
 import com.alibaba.polardbx.proxy.protocol.handler.MysqlForwarder;
 import com.alibaba.polardbx.proxy.scheduler.Scheduler;
+import com.alibaba.polardbx.proxy.utils.AutoCloseableContainer;
 import com.alibaba.polardbx.proxy.utils.Slice;
 import lombok.Getter;
 import lombok.Setter;
@@ -54,6 +55,9 @@ public abstract class ResultHandler extends MysqlProtocolHandler {
     // flag to check whether packet has been dropped by out-dated LSN
     @Getter
     protected boolean packetDroppedByLsn = false;
+    // bytes of packets forwarded to frontend, for statement statistics
+    @Getter
+    protected long forwardedBytes = 0;
 
     // flag for system internal request
     @Getter
@@ -94,50 +98,61 @@ public abstract class ResultHandler extends MysqlProtocolHandler {
         return state;
     }
 
-    protected void pushPackets(Collection<byte[]> packets) {
+    // check LSN once before first packet forwarded, and return true if packets should be dropped
+    private boolean droppedByLsn() {
         if (lsnChecked) {
-            if (packetDroppedByLsn) {
-                return;
-            }
-        } else {
-            lsnChecked = true; // mark checked
-            if (scheduler != null && scheduler.getSpecificLsn() != null) {
-                final BackendContext backendContext = contextReference.getAcquire();
-                assert backendContext != null;
-                if (!backendContext.isUpToDate()) {
-                    packetDroppedByLsn = true; // mark should drop
-                    return;
-                }
+            return packetDroppedByLsn;
+        }
+        lsnChecked = true; // mark checked
+        if (scheduler != null && scheduler.getSpecificLsn() != null) {
+            final BackendContext backendContext = contextReference.getAcquire();
+            assert backendContext != null;
+            if (!backendContext.isUpToDate()) {
+                packetDroppedByLsn = true; // mark should drop
             }
         }
+        return packetDroppedByLsn;
+    }
+
+    protected void pushPackets(Collection<byte[]> packets) {
+        if (droppedByLsn()) {
+            return;
+        }
         if (forwarder != null) {
             if (!packetForwarded) {
                 packetForwarded = true;
             }
+            for (final byte[] packet : packets) {
+                forwardedBytes += packet.length;
+            }
             forwarder.push(packets);
         }
     }
 
+    // take ownership of all slices in container, and container is empty after push
+    protected void pushSlices(AutoCloseableContainer<Slice> packets) {
+        if (droppedByLsn() || null == forwarder) {
+            packets.close();
+            return;
+        }
+        if (!packetForwarded) {
+            packetForwarded = true;
+        }
+        for (final Slice packet : packets) {
+            forwardedBytes += packet.getLength();
+        }
+        forwarder.pushSlices(packets);
+    }
+
     protected boolean forwardPacket(Slice packet, Decoder decoder) {
-        if (lsnChecked) {
-            if (packetDroppedByLsn) {
-                return false; // not taken and not forwarded
-            }
-        } else {
-            lsnChecked = true; // mark checked
-            if (scheduler != null && scheduler.getSpecificLsn() != null) {
-                final BackendContext backendContext = contextReference.getAcquire();
-                assert backendContext != null;
-                if (!backendContext.isUpToDate()) {
-                    packetDroppedByLsn = true; // mark should drop
-                    return false; // not taken and not forwarded
-                }
-            }
+        if (droppedByLsn()) {
+            return false; // not taken and not forwarded
         }
         if (forwarder != null) {
             if (!packetForwarded) {
                 packetForwarded = true;
             }
+            forwardedBytes += packet.getLength();
             return forwarder.handleAndTakePacket(packet, decoder);
         }
         return false; // not taken and not forwarded
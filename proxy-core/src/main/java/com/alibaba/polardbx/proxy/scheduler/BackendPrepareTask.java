@@ -19,11 +19,14 @@
 package com.alibaba.polardbx.proxy.scheduler;
 
 import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
 import com.alibaba.polardbx.proxy.context.BackendContext;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.help.PreparedStatementContext;
 import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.protocol.command.ErrPacket;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlError;
 import com.alibaba.polardbx.proxy.protocol.handler.result.StmtPrepareResultHandler;
@@ -33,12 +36,30 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.nio.charset.Charset;
 import java.sql.SQLException;
 import java.util.Objects;
 
 public class BackendPrepareTask implements ScheduleTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(BackendPrepareTask.class);
 
+    /**
+     * Prepare sql without proxy hints for backend. Classification of prepare sql is made on bytes of default
+     * charset(see DecodeComStmtExecuteTask), so strip on the same bytes.
+     */
+    static String backendPrepareSql(PreparedStatementContext preparedStatement) {
+        final String sql = preparedStatement.getPrepareSql();
+        final StatementClassification classification = preparedStatement.getClassification();
+        final ProxyHint hint = null == classification ? null : classification.getProxyHint();
+        if (null == hint || !FastConfig.stripProxyHint) {
+            return sql;
+        }
+        final Charset defaultCharset = Charset.defaultCharset();
+        final byte[] query = sql.getBytes(defaultCharset);
+        final byte[] stripped = hint.strip(query);
+        return stripped == query ? sql : new String(stripped, defaultCharset);
+    }
+
     private boolean prepareAndForward(Scheduler scheduler) throws IOException {
         final FrontendContext context = scheduler.getContext();
         final PreparedStatementContext preparedStatement = scheduler.getPreparedStatement();
@@ -53,7 +74,7 @@ public class BackendPrepareTask implements ScheduleTask {
             backend.initDB(preparedStatement.getSchema(), context.getClientJavaCharset(), true);
         }
 
-        backend.sendPrepare(preparedStatement.getPrepareSql(), context.getClientJavaCharset(),
+        backend.sendPrepare(backendPrepareSql(preparedStatement), context.getClientJavaCharset(),
             (handler, before, state) -> {
                 if (!state.isDone()) {
                     return;
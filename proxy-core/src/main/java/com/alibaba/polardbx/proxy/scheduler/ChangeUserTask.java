@@ -0,0 +1,65 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.connection.FrontendConnection;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.protocol.command.ComChangeUser;
+import com.alibaba.polardbx.proxy.protocol.common.MysqlServerState;
+import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ChangeUserTask implements ScheduleTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ChangeUserTask.class);
+
+    @Override
+    public Boolean forward(Scheduler scheduler) throws Exception {
+        final FrontendConnection frontend = scheduler.getFrontend();
+        final FrontendContext context = scheduler.getContext();
+        final ComChangeUser request = (ComChangeUser) scheduler.getRequest();
+        if (null == request) {
+            throw new IllegalStateException("COM_CHANGE_USER not decoded");
+        }
+
+        // session is reset as COM_RESET_CONNECTION, and backend switches user when bound next time
+        final FrontendTransactionContext trx = context.resetSession();
+        if (trx != null) {
+            trx.close();
+        }
+
+        // send auth switch request
+        if (null == scheduler.getEncoder()) {
+            // rescheduled, flush after new authenticator installed, and close here if failed
+            try (final Encoder encoder = Encoder.create(frontend.getProcessor().getBufferPool(), frontend::write)) {
+                frontend.changeUser(request, encoder);
+                encoder.flush();
+            }
+            if (MysqlServerState.Closed == context.getState()) {
+                frontend.close();
+            }
+        } else {
+            frontend.changeUser(request, scheduler.getEncoder());
+        }
+
+        LOGGER.debug("change user: {} challenged", frontend);
+        return false; // not taken
+    }
+}
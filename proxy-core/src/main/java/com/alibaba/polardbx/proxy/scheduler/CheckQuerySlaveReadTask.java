@@ -19,54 +19,52 @@
 package com.alibaba.polardbx.proxy.scheduler;
 
 import com.alibaba.polardbx.proxy.context.FrontendContext;
-import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtExecute;
-import com.alibaba.polardbx.proxy.serverless.HaManager;
-import org.slf4j.Logger;
-import org.slf4j.LoggerFactory;
-
-import java.nio.charset.Charset;
 
 public class CheckQuerySlaveReadTask implements ScheduleTask {
-    private static final Logger LOGGER = LoggerFactory.getLogger(CheckQuerySlaveReadTask.class);
-
     private boolean canQuerySlave(Scheduler scheduler) {
-        final FrontendContext context = scheduler.getContext();
         final MysqlPacket request = scheduler.getRequest();
-        try {
-            final SQLParser parser;
-            if (request instanceof ComQuery) {
-                final byte[] query = ((ComQuery) request).getQuery();
-                parser = new SQLParser(query, 0, query.length, context.getClientJavaCharset(), context.getSqlMode(),
-                    HaManager.getInstance().getVersion());
-            } else if (request instanceof ComStmtExecute) {
-                final Charset defaultCharset = Charset.defaultCharset();
-                final byte[] bytes = scheduler.getPreparedStatement().getPrepareSql().getBytes(defaultCharset);
-                parser = new SQLParser(bytes, 0, bytes.length, defaultCharset, context.getSqlMode(),
-                    HaManager.getInstance().getVersion());
-            } else {
-                return false;
-            }
+        if (!(request instanceof ComQuery) && !(request instanceof ComStmtExecute)) {
+            return false;
+        }
+        final StatementClassification classification = scheduler.getClassification();
+        return classification != null && classification.isSlaveReadable();
+    }
 
-            return parser.canSlaveRead();
-        } catch (Throwable t) {
-            LOGGER.error("error when parse for slave check", t);
+    private boolean startReadOnlyTransaction(Scheduler scheduler) {
+        if (!(scheduler.getRequest() instanceof ComQuery)) {
+            return false;
+        }
+        final StatementClassification classification = scheduler.getClassification();
+        if (null == classification || !classification.isStartTransaction()) {
             return false;
         }
+        final Boolean readOnly = classification.getStartTransactionReadOnly();
+        return null == readOnly ? scheduler.getContext().isTransactionReadOnly() : readOnly;
     }
 
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         if (null == scheduler.getSlaveRead()) {
             final FrontendContext context = scheduler.getContext();
-            // todo check START TRANSACTION READ ONLY and trx is RO trx
-            // only check when not in trx(include trx hold) or auto commit
-            if (context.getTransactionContext() != null || !context.isAutoCommit()) {
-                scheduler.setSlaveRead(false);
+            final FrontendTransactionContext trx = context.getTransactionContext();
+            final ProxyHint hint = scheduler.getProxyHint();
+            if (trx != null) {
+                // stick to RO connection of read only trx, or else go leader when in trx(include trx hold)
+                scheduler.setSlaveRead(trx.isRoTransaction());
+            } else if (hint != null && ProxyHint.Route.LEADER == hint.getRoute()) {
+                scheduler.setSlaveRead(false); // forced by hint
+            } else if (context.isAutoCommit()) {
+                // START TRANSACTION READ ONLY starts a trx on slave and all following statements go with it
+                scheduler.setSlaveRead(canQuerySlave(scheduler) || startReadOnlyTransaction(scheduler));
             } else {
-                scheduler.setSlaveRead(canQuerySlave(scheduler));
+                // first statement of implicit trx, go slave only if the session is read only
+                scheduler.setSlaveRead(context.isTransactionReadOnly() && canQuerySlave(scheduler));
             }
         }
         return null;
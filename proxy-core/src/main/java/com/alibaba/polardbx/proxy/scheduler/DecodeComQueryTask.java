@@ -18,16 +18,42 @@
 
 package com.alibaba.polardbx.proxy.scheduler;
 
-import com.alibaba.polardbx.proxy.protocol.command.ComInitDb;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementDigestCache;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
+import com.alibaba.polardbx.proxy.serverless.HaManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.nio.charset.Charset;
 
 public class DecodeComQueryTask implements ScheduleTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(DecodeComQueryTask.class);
+
+    /**
+     * Lex the sql only once(or hit the digest cache), and all following tasks and callbacks use the result.
+     *
+     * @return null if failed to classify(treated as unknown statement)
+     */
+    static StatementClassification classify(FrontendContext context, byte[] sql, Charset charset) {
+        try {
+            return StatementDigestCache.getInstance()
+                .classify(sql, charset, context.getSqlMode(), HaManager.getInstance().getVersion());
+        } catch (Throwable t) {
+            LOGGER.error("error when classify statement", t);
+            return null;
+        }
+    }
+
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         if (null == scheduler.getRequest() && scheduler.getDecoder() != null) {
+            final FrontendContext context = scheduler.getContext();
             final ComQuery query = new ComQuery();
-            query.decode(scheduler.getDecoder(), scheduler.getContext().getCapabilities());
+            query.decode(scheduler.getDecoder(), context.getCapabilities());
             scheduler.setRequest(query);
+            scheduler.setClassification(classify(context, query.getQuery(), context.getClientJavaCharset()));
         }
         return null;
     }
@@ -20,9 +20,13 @@ package com.alibaba.polardbx.proxy.scheduler;
 
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.help.PreparedStatementContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlError;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtExecute;
 import com.alibaba.polardbx.proxy.protocol.prepare.StmtUtils;
+import com.alibaba.polardbx.proxy.serverless.HaManager;
+
+import java.nio.charset.Charset;
 
 public class DecodeComStmtExecuteTask implements ScheduleTask {
     @Override
@@ -61,6 +65,17 @@ public class DecodeComStmtExecuteTask implements ScheduleTask {
                 });
             stmtExecute.decode(scheduler.getDecoder(), scheduler.getContext().getCapabilities());
             scheduler.setRequest(stmtExecute);
+
+            // prepare sql never changes, so classify once for all executions
+            StatementClassification classification = preparedStatementContext.getClassification();
+            if (null == classification
+                || !classification.isCompatible(context.getSqlMode(), HaManager.getInstance().getVersion())) {
+                final Charset defaultCharset = Charset.defaultCharset();
+                classification = DecodeComQueryTask.classify(context,
+                    preparedStatementContext.getPrepareSql().getBytes(defaultCharset), defaultCharset);
+                preparedStatementContext.setClassification(classification);
+            }
+            scheduler.setClassification(classification);
         }
         return null;
     }
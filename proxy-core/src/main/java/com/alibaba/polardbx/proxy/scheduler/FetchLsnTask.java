@@ -21,19 +21,31 @@ package com.alibaba.polardbx.proxy.scheduler;
 import com.alibaba.polardbx.proxy.ProxyExecutor;
 import com.alibaba.polardbx.proxy.cluster.GlobalMock;
 import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
 import com.alibaba.polardbx.proxy.serverless.GroupingLsnFetcher;
 import com.alibaba.polardbx.proxy.serverless.HaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
+import java.util.concurrent.TimeUnit;
 
 public class FetchLsnTask implements ScheduleTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(FetchLsnTask.class);
 
-    private boolean fetchLsnAndForward(Scheduler scheduler) {
-        final long fetchStartNanos = System.nanoTime();
-        GroupingLsnFetcher.fetchLsn(lsn -> {
+    /**
+     * Fetch LSN from leader and continue the pipeline in callback.
+     */
+    protected Boolean fetchLsnAndForward(Scheduler scheduler) {
+        final boolean roAvailable = HaManager.getInstance().getReadWriteSplittingPool().isRoAvailable();
+        if (!roAvailable) {
+            scheduler.setSlaveRead(false);
+            return null; // no slave
+        }
+
+        GroupingLsnFetcher.fetchLsn((lsn, queueNanos, fetchNanos) -> {
             scheduler.switchThread(); // mark thread switched
 
             final long fetchDoneNanos = System.nanoTime();
@@ -41,7 +53,8 @@ public class FetchLsnTask implements ScheduleTask {
                 boolean needFree = true;
                 try {
                     final long scheduleNanos = System.nanoTime();
-                    scheduler.addFetchLsnNanos(fetchDoneNanos - fetchStartNanos);
+                    scheduler.addFetchLsnQueueNanos(queueNanos);
+                    scheduler.addFetchLsnNanos(fetchNanos);
                     scheduler.addScheduleNanos(scheduleNanos - fetchDoneNanos);
 
                     final boolean taken;
@@ -51,7 +64,7 @@ public class FetchLsnTask implements ScheduleTask {
                         taken = scheduler.errorHandle(new IOException("Failed to fetch LSN from leader"));
                     } else {
                         // got LSN, go normal routine with specificLsn
-                        scheduler.setSpecificLsn(lsn);
+                        lsnFetched(scheduler, lsn);
                         taken = scheduler.forward();
                     }
                     if (taken) {
@@ -70,6 +83,50 @@ public class FetchLsnTask implements ScheduleTask {
         return true; // take packet and free it in dealing task
     }
 
+    // fetched after all previous statements of this session done, so it also covers the session's last write
+    static void lsnFetched(Scheduler scheduler, long lsn) {
+        scheduler.setSpecificLsn(lsn);
+        scheduler.getContext().updateSessionLsn(lsn);
+    }
+
+    /**
+     * Bounded staleness, reuse LSN fetched within the window. Writes of this session are never missed, so the cached
+     * one must be issued after the session's last write, or not older than the session LSN.
+     */
+    private static boolean reuseCachedLsn(Scheduler scheduler) {
+        final long nowNanos = System.nanoTime();
+        final GroupingLsnFetcher.CachedLsn cached =
+            GroupingLsnFetcher.getCachedLsn(nowNanos, TimeUnit.MILLISECONDS.toNanos(FastConfig.fetchLsnCacheWindow));
+        if (null == cached) {
+            return false;
+        }
+        final FrontendContext context = scheduler.getContext();
+        if (context.isSessionLsnPending() ? cached.issueNanos - context.getSessionWriteNanos() <= 0 :
+            cached.lsn < context.getSessionLsn()) {
+            return false;
+        }
+        lsnFetched(scheduler, cached.lsn);
+        scheduler.setLsnCacheAgeNanos(Math.max(1, nowNanos - cached.issueNanos));
+        return true;
+    }
+
+    private static ProxyHint.Consistency consistency(Scheduler scheduler) {
+        final ProxyHint hint = scheduler.getProxyHint();
+        if (hint != null && hint.getConsistency() != null) {
+            return hint.getConsistency();
+        }
+        if (FastConfig.enableStaleRead) {
+            return ProxyHint.Consistency.WEAK;
+        }
+        return FastConfig.enableSessionConsistency ? ProxyHint.Consistency.SESSION : ProxyHint.Consistency.STRONG;
+    }
+
+    // PROXY_CONSISTENCY(strong) asks for a fresh LSN, and the staleness window only relaxes the default
+    private static boolean strongByHint(Scheduler scheduler) {
+        final ProxyHint hint = scheduler.getProxyHint();
+        return hint != null && ProxyHint.Consistency.STRONG == hint.getConsistency();
+    }
+
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         if (null == scheduler.getSlaveRead() || !scheduler.getSlaveRead()) {
@@ -78,17 +135,28 @@ public class FetchLsnTask implements ScheduleTask {
         if (null != scheduler.getSpecificLsn()) {
             return null; // LSN got
         }
-        if (FastConfig.enableStaleRead) {
+        final FrontendTransactionContext trx = scheduler.getContext().getTransactionContext();
+        if (trx != null && trx.isRoTransaction()) {
+            return null; // read only trx, snapshot taken with LSN fetched at trx start
+        }
+        final ProxyHint.Consistency consistency = consistency(scheduler);
+        if (ProxyHint.Consistency.WEAK == consistency) {
             return null; // stale read
         }
         if (scheduler.getBackend() != null && !scheduler.getBackend().isSlave()) {
             return null; // go leader
         }
-
-        final boolean roAvailable = HaManager.getInstance().getReadWriteSplittingPool().isRoAvailable();
-        if (!roAvailable) {
-            scheduler.setSlaveRead(false);
-            return null; // no slave
+        final FrontendContext context = scheduler.getContext();
+        if (ProxyHint.Consistency.SESSION == consistency && !context.isSessionLsnPending()) {
+            // read your writes, only wait for LSN of the last write and no leader round-trip
+            final long sessionLsn = context.getSessionLsn();
+            if (sessionLsn > 0) {
+                scheduler.setSpecificLsn(sessionLsn);
+            }
+            return null;
+        }
+        if (FastConfig.fetchLsnCacheWindow > 0 && !strongByHint(scheduler) && reuseCachedLsn(scheduler)) {
+            return null; // within staleness budget, no fetcher thread hop
         }
 
         return fetchLsnAndForward(scheduler);
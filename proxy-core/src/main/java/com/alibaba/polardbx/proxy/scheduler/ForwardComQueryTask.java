@@ -21,15 +21,48 @@ package com.alibaba.polardbx.proxy.scheduler;
 import com.alibaba.polardbx.proxy.callback.QueryResultCallback;
 import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
 import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.result.ResultHandler;
+import com.alibaba.polardbx.proxy.utils.Slice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
 public class ForwardComQueryTask extends ForwardTaskBase {
     private static final Logger LOGGER = LoggerFactory.getLogger(ForwardComQueryTask.class);
 
+    /**
+     * Rebuild request without proxy hints. Query is the tail of COM_QUERY, so command and query attributes before it
+     * are copied as is. Large request which split into multiple packets is forwarded untouched.
+     *
+     * @return new heap packet, or null if nothing stripped
+     */
+    static byte[] stripProxyHint(byte[] packet, byte[] query, ProxyHint hint) {
+        final int payloadLength = packet.length - 4;
+        if (payloadLength >= 0xFFFFFF || payloadLength < query.length
+            || !Arrays.equals(packet, packet.length - query.length, packet.length, query, 0, query.length)) {
+            return null;
+        }
+        final byte[] stripped = hint.strip(query);
+        if (stripped == query) {
+            return null;
+        }
+        final int prefix = payloadLength - query.length;
+        final int newLength = prefix + stripped.length;
+        final byte[] result = new byte[4 + newLength];
+        result[0] = (byte) newLength;
+        result[1] = (byte) (newLength >>> 8);
+        result[2] = (byte) (newLength >>> 16);
+        result[3] = packet[3]; // seq
+        System.arraycopy(packet, 4, result, 4, prefix);
+        System.arraycopy(stripped, 0, result, 4 + prefix, stripped.length);
+        return result;
+    }
+
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         pre(scheduler);
@@ -49,6 +82,16 @@ public class ForwardComQueryTask extends ForwardTaskBase {
         final ResultHandler handler = new QueryResultHandler(scheduler.getBackend().getContextReference(), scheduler,
             context.getForwarder(scheduler.getFrontend()),
             new QueryResultCallback(scheduler.getFrontend(), context, scheduler));
-        return post(scheduler, scheduler.getPacket(), handler);
+        Slice packet = scheduler.getPacket();
+        final ProxyHint hint = scheduler.getProxyHint();
+        if (hint != null && FastConfig.stripProxyHint) {
+            final byte[] stripped =
+                stripProxyHint(packet.dump(), ((ComQuery) scheduler.getRequest()).getQuery(), hint);
+            if (stripped != null) {
+                packet.close(); // replaced by heap one
+                packet = new Slice(ByteBuffer.wrap(stripped), 0, stripped.length);
+            }
+        }
+        return post(scheduler, packet, handler);
     }
 }
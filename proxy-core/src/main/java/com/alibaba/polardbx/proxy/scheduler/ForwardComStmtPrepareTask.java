@@ -19,13 +19,19 @@
 package com.alibaba.polardbx.proxy.scheduler;
 
 import com.alibaba.polardbx.proxy.callback.StmtPrepareResultCallback;
+import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.protocol.handler.result.ResultHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.result.StmtPrepareResultHandler;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtPrepare;
+import com.alibaba.polardbx.proxy.utils.Slice;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.nio.ByteBuffer;
+
 public class ForwardComStmtPrepareTask extends ForwardTaskBase {
     private static final Logger LOGGER = LoggerFactory.getLogger(ForwardComStmtPrepareTask.class);
 
@@ -35,13 +41,28 @@ public class ForwardComStmtPrepareTask extends ForwardTaskBase {
 
         final FrontendContext context = scheduler.getContext();
         assert scheduler.getRequest() instanceof ComStmtPrepare;
-        final String query = context.decodeStringClient(((ComStmtPrepare) scheduler.getRequest()).getQuery());
+        final byte[] queryBytes = ((ComStmtPrepare) scheduler.getRequest()).getQuery();
+        final String query = context.decodeStringClient(queryBytes);
         LOGGER.debug("prepare: {}", query);
 
-        // build result handler
+        // build result handler, and prepare sql with proxy hints is kept for routing of executions
         final ResultHandler handler = new StmtPrepareResultHandler(scheduler.getBackend().getContextReference(),
             scheduler, context.getForwarder(scheduler.getFrontend()),
             new StmtPrepareResultCallback(scheduler.getFrontend(), context, scheduler, scheduler.getBackend(), query));
-        return post(scheduler, scheduler.getPacket(), handler);
+        Slice packet = scheduler.getPacket();
+        if (FastConfig.stripProxyHint) {
+            // prepare is not classified before forward, so only hint is parsed here
+            final StatementClassification classification =
+                DecodeComQueryTask.classify(context, queryBytes, context.getClientJavaCharset());
+            final ProxyHint hint = null == classification ? null : classification.getProxyHint();
+            if (hint != null) {
+                final byte[] stripped = ForwardComQueryTask.stripProxyHint(packet.dump(), queryBytes, hint);
+                if (stripped != null) {
+                    packet.close(); // replaced by heap one
+                    packet = new Slice(ByteBuffer.wrap(stripped), 0, stripped.length);
+                }
+            }
+        }
+        return post(scheduler, packet, handler);
     }
 }
@@ -78,6 +78,7 @@ public abstract class ForwardTaskBase implements ScheduleTask {
             // forward will take packet, dereference, or send error finally
             scheduler.setDereference(false);
             scheduler.setSendError(false);
+            scheduler.markForwarded();
             backend.forward(packet, handler);
 
             // schedule post operation
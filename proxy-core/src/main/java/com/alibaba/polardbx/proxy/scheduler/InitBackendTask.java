@@ -19,12 +19,77 @@
 package com.alibaba.polardbx.proxy.scheduler;
 
 import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.serverless.HaManager;
+import com.alibaba.polardbx.proxy.serverless.ReadWriteSplittingPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
-import java.io.IOException;
+import java.sql.SQLException;
 
 public class InitBackendTask implements ScheduleTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(InitBackendTask.class);
+
+    private static void resume(Scheduler scheduler, FrontendTransactionContext transaction, boolean readOnly,
+                               long startNanos, BackendConnectionWrapper connection, Throwable error) {
+        scheduler.switchThread(); // mark thread switched
+
+        boolean needFree = true;
+        try {
+            scheduler.addWaitPoolNanos(System.nanoTime() - startNanos);
+
+            final boolean taken;
+            if (error != null) {
+                if (error instanceof SQLException) {
+                    scheduler.setRetransmitLimitNanos(null); // rejected by pool, never retransmit
+                }
+                taken = scheduler.errorHandle(error);
+            } else {
+                boolean result;
+                try {
+                    scheduler.setBackend(transaction.bindConnection(connection, scheduler.getContext(), readOnly));
+                    result = scheduler.forward();
+                } catch (Throwable t) {
+                    result = scheduler.errorHandle(t);
+                }
+                taken = result;
+            }
+            if (taken) {
+                needFree = false;
+            }
+        } catch (Throwable t) {
+            LOGGER.error("backend pool wait callback failed", t);
+            scheduler.getFrontend().close(); // close frontend connection
+        } finally {
+            if (needFree) {
+                scheduler.getPacket().close();
+            }
+        }
+    }
+
+    private static Boolean acquire(Scheduler scheduler, FrontendTransactionContext transaction, BackendPool pool,
+                                   boolean readOnly) throws Exception {
+        final FrontendContext context = scheduler.getContext();
+        final long startNanos = System.nanoTime();
+        final BackendConnectionWrapper connection;
+        try {
+            // prefer connection with same session state to avoid restore, and owned by same reactor as frontend
+            connection = pool.getConnection(context.stateHash(), scheduler.getFrontend().getProcessor(),
+                (conn, error) -> resume(scheduler, transaction, readOnly, startNanos, conn, error));
+        } catch (SQLException e) {
+            scheduler.setRetransmitLimitNanos(null); // rejected by pool, never retransmit
+            throw e;
+        }
+        if (null == connection) {
+            return true; // wait in pool, take packet and free it in dealing task
+        }
+        scheduler.setBackend(transaction.bindConnection(connection, context, readOnly));
+        return null;
+    }
+
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         // start trx and get connection if needed
@@ -34,13 +99,29 @@ public class InitBackendTask implements ScheduleTask {
             final FrontendTransactionContext transaction = context.referenceTransaction(!goSlave);
             assert transaction != null;
             scheduler.setDereference(true);
-            BackendConnectionWrapper backend =
-                goSlave ? transaction.getRoConnection(context) : transaction.getRwConnection(context);
-            if (null == backend && goSlave) {
-                backend = transaction.getRwConnection(context);
+
+            final ReadWriteSplittingPool pool = HaManager.getInstance().getReadWriteSplittingPool();
+            BackendConnectionWrapper backend = null;
+            if (goSlave) {
+                backend = transaction.getExistingRoConnection();
+                if (null == backend) {
+                    final ProxyHint hint = scheduler.getProxyHint();
+                    final BackendPool roPool = null == hint || null == hint.getRoute() ? pool.pickRoPool() :
+                        pool.pickRoPool(hint.getRoute(), hint.getNode());
+                    if (roPool != null) {
+                        return acquire(scheduler, transaction, roPool, true);
+                    }
+                }
             }
             if (null == backend) {
-                throw new IOException("no backend connection available");
+                backend = transaction.getExistingRwConnection();
+                if (null == backend) {
+                    final BackendPool rwPool = pool.getRwPool();
+                    if (null == rwPool) {
+                        throw new IllegalStateException("Backend RW pool is not initialized.");
+                    }
+                    return acquire(scheduler, transaction, rwPool, false);
+                }
             }
             scheduler.setBackend(backend);
         }
@@ -83,6 +83,19 @@ public class Pipelines {
         new ForwardOkErrRequestTask()
     };
 
+    // COM_RESET_CONNECTION
+    public static final ScheduleTask[] COM_RESET_CONNECTION_TASKS = new ScheduleTask[] {
+        new WaitPostOperationTask(),
+        new ResetConnectionTask()
+    };
+
+    // COM_CHANGE_USER
+    public static final ScheduleTask[] COM_CHANGE_USER_TASKS = new ScheduleTask[] {
+        new DecodeComChangeUserTask(),
+        new WaitPostOperationTask(),
+        new ChangeUserTask()
+    };
+
     // COM_STMT_PREPARE
     public static final ScheduleTask[] COM_STMT_PREPARE_TASKS = new ScheduleTask[] {
         new DecodeComStmtPrepareTask(),
@@ -19,14 +19,18 @@
 package com.alibaba.polardbx.proxy.scheduler;
 
 import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
 
 public class PreferSlaveReadTask implements ScheduleTask {
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         if (null == scheduler.getSlaveRead()) {
             final FrontendContext context = scheduler.getContext();
-            // go slave when not in trx(include trx hold) or auto commit
-            if (context.getTransactionContext() != null || !context.isAutoCommit()) {
+            final FrontendTransactionContext trx = context.getTransactionContext();
+            // go slave when not in trx(include trx hold) or auto commit, or stick to RO connection of read only trx
+            if (trx != null) {
+                scheduler.setSlaveRead(trx.isRoTransaction());
+            } else if (!context.isAutoCommit()) {
                 scheduler.setSlaveRead(false);
             } else {
                 scheduler.setSlaveRead(true);
@@ -0,0 +1,49 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+public class ResetConnectionTask implements ScheduleTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ResetConnectionTask.class);
+
+    @Override
+    public Boolean forward(Scheduler scheduler) throws Exception {
+        final FrontendContext context = scheduler.getContext();
+
+        // clear session, and release backend to pool(or discard if it is dirty)
+        final FrontendTransactionContext trx = context.resetSession();
+        if (trx != null) {
+            trx.close();
+        }
+
+        // send ok
+        if (null == scheduler.getEncoder()) {
+            context.sendOk(scheduler.getFrontend(), false);
+        } else {
+            context.sendOk(scheduler.getEncoder(), false);
+        }
+
+        LOGGER.debug("reset connection: {} done", scheduler.getFrontend());
+        return false; // not taken
+    }
+}
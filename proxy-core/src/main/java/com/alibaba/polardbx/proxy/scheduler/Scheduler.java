@@ -26,6 +26,8 @@ import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.context.help.PreparedStatementContext;
 import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlError;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlServerState;
@@ -73,6 +75,8 @@ public class Scheduler {
 
     @Setter
     private MysqlPacket request;
+    @Setter
+    private StatementClassification classification; // classify once and shared by all tasks
 
     @Setter
     private Long retransmitLimitNanos;
@@ -83,6 +87,8 @@ public class Scheduler {
     private Boolean slaveRead;
     @Setter
     private Long specificLsn;
+    @Setter
+    private boolean readLsnWaited; // set read_lsn already waited on current backend before forward
 
     @Setter
     private PreparedStatementContext preparedStatement;
@@ -97,11 +103,16 @@ public class Scheduler {
     private boolean sendError;
 
     private long retransmitDelayNanos;
+    private long fetchLsnQueueNanos;
     private long fetchLsnNanos;
+    @Setter
+    private long lsnCacheAgeNanos; // age of reused LSN within the staleness window, 0 if not reused
     private long prepareNanos;
     private long scheduleNanos;
     private long waitLsnNanos;
     private long waitLeaderNanos;
+    private long waitPoolNanos;
+    private long forwardNanos; // timestamp when request forwarded to backend, 0 if not forwarded
 
     // post operation
     @Setter
@@ -128,10 +139,12 @@ public class Scheduler {
         this.decoder = decoder;
         this.encoder = encoder;
         this.request = null;
+        this.classification = null;
         this.retransmitLimitNanos = null;
         this.retransmitData = null;
         this.slaveRead = null;
         this.specificLsn = null;
+        this.readLsnWaited = false;
         this.preparedStatement = null;
         this.backend = null;
         this.isSlaveConnection = null;
@@ -139,15 +152,23 @@ public class Scheduler {
         this.dereference = false;
         this.sendError = true;
         this.retransmitDelayNanos = 0;
+        this.fetchLsnQueueNanos = 0;
         this.fetchLsnNanos = 0;
+        this.lsnCacheAgeNanos = 0;
         this.prepareNanos = 0;
         this.scheduleNanos = 0;
         this.waitLsnNanos = 0;
         this.waitLeaderNanos = 0;
+        this.waitPoolNanos = 0;
+        this.forwardNanos = 0;
         this.postOperationSql = null;
         this.postOperationCallback = null;
     }
 
+    public ProxyHint getProxyHint() {
+        return null == classification ? null : classification.getProxyHint();
+    }
+
     public void setBackend(BackendConnectionWrapper backend) {
         this.backend = backend;
         this.isSlaveConnection = backend.isSlave();
@@ -162,6 +183,10 @@ public class Scheduler {
         retransmitDelayNanos += nanos;
     }
 
+    public void addFetchLsnQueueNanos(long nanos) {
+        fetchLsnQueueNanos += nanos;
+    }
+
     public void addFetchLsnNanos(long nanos) {
         fetchLsnNanos += nanos;
     }
@@ -182,6 +207,14 @@ public class Scheduler {
         waitLeaderNanos += nanos;
     }
 
+    public void addWaitPoolNanos(long nanos) {
+        waitPoolNanos += nanos;
+    }
+
+    public void markForwarded() {
+        forwardNanos = System.nanoTime();
+    }
+
     /**
      * Build a new context for reschedule.
      */
@@ -198,6 +231,7 @@ public class Scheduler {
         this.decoder = null; // invalid if not in first schedule
         this.encoder = null; // invalid if not in first schedule
         this.request = old.request;
+        this.classification = old.classification;
 
         // copy retransmit context
         this.retransmitLimitNanos = old.retransmitLimitNanos;
@@ -206,6 +240,7 @@ public class Scheduler {
         // copy slave decision and fetched LSN
         this.slaveRead = old.slaveRead;
         this.specificLsn = old.specificLsn;
+        this.readLsnWaited = false; // backend is changed
 
         // copy frontend prepare context
         this.preparedStatement = old.preparedStatement;
@@ -220,11 +255,15 @@ public class Scheduler {
 
         // accumulate delay
         this.retransmitDelayNanos = old.retransmitDelayNanos;
+        this.fetchLsnQueueNanos = old.fetchLsnQueueNanos;
         this.fetchLsnNanos = old.fetchLsnNanos;
+        this.lsnCacheAgeNanos = old.lsnCacheAgeNanos;
         this.prepareNanos = old.prepareNanos;
         this.scheduleNanos = old.scheduleNanos;
         this.waitLsnNanos = old.waitLsnNanos;
         this.waitLeaderNanos = old.waitLeaderNanos;
+        this.waitPoolNanos = old.waitPoolNanos;
+        this.forwardNanos = 0; // backend is changed
 
         // reset and rebuild post ops(because backend,scheduler is changed, and may have side effect)
         this.postOperationSql = null;
@@ -18,18 +18,94 @@
 
 package com.alibaba.polardbx.proxy.scheduler;
 
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.callback.ResultCallback;
 import com.alibaba.polardbx.proxy.cluster.GlobalMock;
 import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
 import com.alibaba.polardbx.proxy.context.BackendContext;
 import com.alibaba.polardbx.proxy.context.FrontendContext;
 import com.alibaba.polardbx.proxy.protocol.common.ResultState;
 import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.handler.result.ResultHandler;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
+
 public class SetLsnTask implements ScheduleTask {
     private static final Logger LOGGER = LoggerFactory.getLogger(SetLsnTask.class);
 
+    // now within lock, and when error occurs, following read is not up-to-date
+    private static boolean recordSetLsn(ResultHandler handler, ResultState state, long lsn) {
+        final BackendContext backendContext = handler.getContextReference().getAcquire();
+        assert backendContext != null;
+        final boolean ok = ResultState.OK == state;
+        backendContext.setUpToDate(ok);
+        if (ok) {
+            backendContext.confirmReadLsn(lsn);
+        }
+        return ok;
+    }
+
+    /**
+     * Send set read_lsn and continue the pipeline only after it succeed, so nothing executed on a lagging slave.
+     */
+    private static Boolean setLsnAndWait(Scheduler scheduler, BackendConnectionWrapper backend, long lsn)
+        throws IOException {
+        final FrontendContext context = scheduler.getContext();
+        final BackendPool pool = backend.getBackendPool();
+        final long waitLsnStartNanos = System.nanoTime();
+        backend.sendQuery("set read_lsn=" + lsn, context.getClientJavaCharset(),
+            context.hasCapability(Capabilities.CLIENT_QUERY_ATTRIBUTES), new ResultCallback() {
+                @Override
+                public void onStateChangeWithinLock(ResultHandler handler, ResultState before, ResultState state) {
+                    if (null == handler || !recordSetLsn(handler, state, lsn)) {
+                        // throw and do fast abort to drop the connection
+                        throw new RuntimeException("failed to set read_lsn");
+                    }
+                }
+
+                @Override
+                public void onDone(ResultHandler handler, ResultState lastValidState, ResultState state) {
+                    scheduler.switchThread(); // mark thread switched
+
+                    final long waitDoneNanos = System.nanoTime();
+                    ProxyExecutor.getInstance().getExecutor().submit(() -> {
+                        boolean needFree = true;
+                        try {
+                            scheduler.addWaitLsnNanos(waitDoneNanos - waitLsnStartNanos);
+                            scheduler.addScheduleNanos(System.nanoTime() - waitDoneNanos);
+
+                            final boolean taken;
+                            if (handler != null && ResultState.OK == state) {
+                                // caught up, pipeline again and go on with LSN confirmed on this connection
+                                pool.setReadLsnLagging(false);
+                                scheduler.setReadLsnWaited(true);
+                                taken = scheduler.forward();
+                            } else {
+                                // force go leader
+                                scheduler.setSlaveRead(false);
+                                scheduler.setSpecificLsn(null);
+                                taken = scheduler.errorHandle(new IOException("Failed to wait LSN on slave"));
+                            }
+                            if (taken) {
+                                needFree = false;
+                            }
+                        } catch (Throwable t) {
+                            LOGGER.error("set read_lsn callback failed", t);
+                            scheduler.getFrontend().close(); // close frontend connection
+                        } finally {
+                            if (needFree) {
+                                scheduler.getPacket().close();
+                            }
+                        }
+                    });
+                }
+            });
+        return true; // take packet and free it in dealing task
+    }
+
     @Override
     public Boolean forward(Scheduler scheduler) throws Exception {
         final BackendConnectionWrapper backend = scheduler.getBackend();
@@ -48,22 +124,40 @@ public class SetLsnTask implements ScheduleTask {
             specificLsn = 9999999999L;
         }
 
+        if (scheduler.isReadLsnWaited()) {
+            return null; // waited and counted before pipeline rerun
+        }
+
+        // applied index of a node never goes back, so no need to wait again on same connection
+        final BackendPool pool = backend.getBackendPool();
+        final BackendContext confirmed = backend.getContextReference().getAcquire();
+        if (confirmed != null && confirmed.getConfirmedReadLsn() >= specificLsn) {
+            confirmed.setUpToDate(true);
+            pool.recordReadLsn(false);
+            return null;
+        }
+        pool.recordReadLsn(true);
+
         // enqueue wait LSN before request
         LOGGER.debug("get request with LSN {}", specificLsn);
 
+        final long lsn = specificLsn;
+        if (pool.isReadLsnLagging()) {
+            // query pipelined after a failed set read_lsn is executed and dropped, so wait for it on lagging node
+            return setLsnAndWait(scheduler, backend, lsn);
+        }
+
         // set LSN and record slave state in backend context
         final long waitLsnStartNanos = System.nanoTime();
-        backend.sendQuery("set read_lsn=" + specificLsn, context.getClientJavaCharset(),
+        backend.sendQuery("set read_lsn=" + lsn, context.getClientJavaCharset(),
             context.hasCapability(Capabilities.CLIENT_QUERY_ATTRIBUTES), (handler, before, state) -> {
                 if (null == handler) {
                     throw new RuntimeException("failed to set read_lsn with early abort");
                 }
-                // now within lock and when error occurs, following read is not up-to-date
-                final BackendContext backendContext = handler.getContextReference().getAcquire();
-                assert backendContext != null;
-                backendContext.setUpToDate(ResultState.OK == state);
+                final boolean ok = recordSetLsn(handler, state, lsn);
                 scheduler.addWaitLsnNanos(System.nanoTime() - waitLsnStartNanos);
-                if (state != ResultState.OK) {
+                if (!ok) {
+                    pool.setReadLsnLagging(true);
                     // throw and do fast abort and back to leader
                     throw new RuntimeException("failed to set read_lsn");
                 }
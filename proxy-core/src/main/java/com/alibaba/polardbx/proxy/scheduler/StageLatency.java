@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
+import com.alibaba.polardbx.proxy.utils.LatencyHistogram;
+
+/**
+ * Latency histograms of every stage timed by scheduler, broken down by routing target.
+ * Recorded once when query done(after all retransmits), values are in nanoseconds.
+ */
+public final class StageLatency {
+    public enum Target {
+        RW, RO_FOLLOWER, LEARNER
+    }
+
+    public enum Stage {
+        RETRANSMIT_DELAY, FETCH_LSN_QUEUE, FETCH_LSN, LSN_CACHE_AGE, PREPARE, SCHEDULE, WAIT_LSN, WAIT_LEADER,
+        WAIT_POOL, EXECUTE, TOTAL
+    }
+
+    private static final int TARGET_COUNT = Target.values().length;
+    private static final int STAGE_COUNT = Stage.values().length;
+
+    private static final LatencyHistogram[] HISTOGRAMS = new LatencyHistogram[TARGET_COUNT * STAGE_COUNT];
+
+    static {
+        for (int i = 0; i < HISTOGRAMS.length; ++i) {
+            HISTOGRAMS[i] = new LatencyHistogram();
+        }
+    }
+
+    private StageLatency() {
+    }
+
+    public static LatencyHistogram get(Target target, Stage stage) {
+        return HISTOGRAMS[target.ordinal() * STAGE_COUNT + stage.ordinal()];
+    }
+
+    public static Target targetOf(BackendPool pool) {
+        if (!pool.isSlave()) {
+            return Target.RW; // leader, including leader read in RO pool
+        }
+        return pool.isLearner() ? Target.LEARNER : Target.RO_FOLLOWER;
+    }
+
+    private static void record(int base, Stage stage, long nanos) {
+        // stages not involved are not recorded, or percentiles would be flooded by zeros
+        if (nanos > 0) {
+            HISTOGRAMS[base + stage.ordinal()].record(nanos);
+        }
+    }
+
+    public static void record(Scheduler scheduler, BackendPool pool, long nowNanos) {
+        final int base = targetOf(pool).ordinal() * STAGE_COUNT;
+        record(base, Stage.RETRANSMIT_DELAY, scheduler.getRetransmitDelayNanos());
+        record(base, Stage.FETCH_LSN_QUEUE, scheduler.getFetchLsnQueueNanos());
+        record(base, Stage.FETCH_LSN, scheduler.getFetchLsnNanos());
+        record(base, Stage.LSN_CACHE_AGE, scheduler.getLsnCacheAgeNanos());
+        record(base, Stage.PREPARE, scheduler.getPrepareNanos());
+        record(base, Stage.SCHEDULE, scheduler.getScheduleNanos());
+        record(base, Stage.WAIT_LSN, scheduler.getWaitLsnNanos());
+        record(base, Stage.WAIT_LEADER, scheduler.getWaitLeaderNanos());
+        record(base, Stage.WAIT_POOL, scheduler.getWaitPoolNanos());
+        if (scheduler.getForwardNanos() > 0) {
+            record(base, Stage.EXECUTE, nowNanos - scheduler.getForwardNanos());
+        }
+        record(base, Stage.TOTAL, nowNanos - scheduler.getStartNanos());
+    }
+}
@@ -0,0 +1,209 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.utils.LatencyHistogram;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Per digest statement statistics, keyed by digest hash of lexer token stream.
+ * Bounded by statement_stats_size with space saving top-K: when full, a new digest replaces the least weighted one of
+ * sampled entries and inherits its weight, so a new hot statement climbs over old ones instead of being evicted right
+ * away, while one-off statements replace each other. Weight of an idle entry halves every minute, so statements no
+ * longer running age out. Recording an existing digest is lock free, and only a new digest takes the lock.
+ */
+public final class StatementStats {
+    private static final StatementStats INSTANCE = new StatementStats();
+
+    private static final int EVICT_SAMPLES = 32; // all are checked if not more than this
+    private static final long DECAY_MILLIS = 60_000;
+
+    public static StatementStats getInstance() {
+        return INSTANCE;
+    }
+
+    @Getter
+    public static final class Entry {
+        private final long hash;
+        private final String digest;
+        private final long firstSeen = System.currentTimeMillis();
+        private volatile long lastSeen = firstSeen;
+        private final AtomicLong count = new AtomicLong(0);
+        private final AtomicLong weight; // count plus weight inherited from the evicted one(over-estimation)
+        private final LongAdder errors = new LongAdder();
+        private final LongAdder rows = new LongAdder();
+        private final LongAdder bytes = new LongAdder();
+        private final LongAdder slave = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final LatencyHistogram latency = new LatencyHistogram();
+        @Getter(AccessLevel.NONE)
+        private int slot; // guarded by StatementStats
+
+        Entry(long hash, String digest, long inheritedWeight) {
+            this.hash = hash;
+            this.digest = digest;
+            this.weight = new AtomicLong(inheritedWeight);
+        }
+
+        void record(long nanos, boolean error, long rows, long bytes, boolean slave) {
+            count.getAndIncrement();
+            weight.getAndIncrement();
+            if (error) {
+                this.errors.increment();
+            }
+            if (rows > 0) {
+                this.rows.add(rows);
+            }
+            if (bytes > 0) {
+                this.bytes.add(bytes);
+            }
+            if (slave) {
+                this.slave.increment();
+            }
+            totalNanos.add(nanos);
+            latency.record(nanos);
+            lastSeen = System.currentTimeMillis();
+        }
+
+        long decayedWeight(long nowMillis) {
+            final long halves = Math.max(0, nowMillis - lastSeen) / DECAY_MILLIS;
+            return halves >= Long.SIZE ? 0 : weight.get() >>> halves;
+        }
+    }
+
+    private final ConcurrentHashMap<Long, Entry> entries = new ConcurrentHashMap<>();
+    private final LongAdder evictions = new LongAdder();
+
+    // entries indexed by slot for sampling, guarded by this
+    private Entry[] slots = new Entry[0];
+    private int used = 0;
+
+    StatementStats() {
+    }
+
+    public int size() {
+        return entries.size();
+    }
+
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    public void record(long hash, String digest, long nanos, boolean error, long rows, long bytes, boolean slave) {
+        record(FastConfig.statementStatsSize, hash, digest, nanos, error, rows, bytes, slave);
+    }
+
+    void record(int capacity, long hash, String digest, long nanos, boolean error, long rows, long bytes,
+                boolean slave) {
+        Entry entry = entries.get(hash);
+        if (null == entry) {
+            if (capacity <= 0) {
+                return; // disabled
+            }
+            entry = insert(capacity, hash, digest);
+        }
+        entry.record(nanos, error, rows, bytes, slave);
+    }
+
+    private synchronized Entry insert(int capacity, long hash, String digest) {
+        Entry entry = entries.get(hash);
+        if (entry != null) {
+            return entry; // inserted by others
+        }
+        long inherited = 0;
+        while (used >= capacity) {
+            inherited = Math.max(inherited, evictOne()); // more than one if capacity is lowered
+        }
+        if (slots.length < capacity) {
+            slots = Arrays.copyOf(slots, capacity);
+        }
+        entry = new Entry(hash, digest, inherited);
+        entry.slot = used;
+        slots[used++] = entry;
+        entries.put(hash, entry);
+        return entry;
+    }
+
+    // evict the least weighted one of consecutive slots from a random start
+    private long evictOne() {
+        final long nowMillis = System.currentTimeMillis();
+        final int samples = Math.min(used, EVICT_SAMPLES);
+        final int start = ThreadLocalRandom.current().nextInt(used);
+        Entry victim = null;
+        long victimWeight = Long.MAX_VALUE;
+        for (int i = 0; i < samples; ++i) {
+            final Entry entry = slots[(start + i) % used];
+            final long weight = entry.decayedWeight(nowMillis);
+            if (weight < victimWeight) {
+                victim = entry;
+                victimWeight = weight;
+            }
+        }
+        assert victim != null;
+
+        // fill the hole with the last one
+        final Entry last = slots[--used];
+        slots[victim.slot] = last;
+        last.slot = victim.slot;
+        slots[used] = null;
+        entries.remove(victim.hash);
+        evictions.increment();
+        return victimWeight;
+    }
+
+    // values are captured first, because they keep changing while sorting
+    private List<Entry> sorted(ToLongFunction<Entry> key) {
+        final Map<Entry, Long> keys = new IdentityHashMap<>();
+        for (final Entry entry : entries.values()) {
+            keys.put(entry, key.applyAsLong(entry));
+        }
+        final List<Entry> all = new ArrayList<>(keys.keySet());
+        all.sort(Comparator.comparingLong(keys::get));
+        return all;
+    }
+
+    /**
+     * Top entries sorted by total latency desc, negative limit for all.
+     */
+    public List<Entry> top(int limit) {
+        final List<Entry> all = sorted(e -> -e.totalNanos.sum());
+        return limit >= 0 && limit < all.size() ? all.subList(0, limit) : all;
+    }
+
+    public synchronized void reset() {
+        entries.clear();
+        slots = new Entry[0];
+        used = 0;
+        evictions.reset();
+    }
+}
@@ -24,30 +24,37 @@ import com.alibaba.polardbx.proxy.parser.ast.expression.Expression;
 import com.alibaba.polardbx.proxy.parser.ast.expression.primary.SysVarPrimary;
 import com.alibaba.polardbx.proxy.parser.ast.expression.primary.VariableExpression;
 import com.alibaba.polardbx.proxy.parser.ast.expression.primary.literal.LiteralString;
+import com.alibaba.polardbx.proxy.parser.ast.fragment.Limit;
 import com.alibaba.polardbx.proxy.parser.ast.fragment.VariableScope;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.SQLStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.Kill;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResetProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowBackend;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowCluster;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDigestCache;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowFrontend;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProperties;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyLatency;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRO;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRW;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowReactor;
-import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
 import com.alibaba.polardbx.proxy.parser.util.Pair;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
 import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowBackendHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowClusterHandler;
+import com.alibaba.polardbx.proxy.protocol.handler.request.ShowDigestCacheHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowFrontendHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowPropertiesHandler;
+import com.alibaba.polardbx.proxy.protocol.handler.request.ShowProxyLatencyHandler;
+import com.alibaba.polardbx.proxy.protocol.handler.request.ShowProxyStatementsHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowReactorHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowRoHandler;
 import com.alibaba.polardbx.proxy.protocol.handler.request.ShowRwHandler;
-import com.alibaba.polardbx.proxy.serverless.HaManager;
 import com.alibaba.polardbx.proxy.sync.SyncService;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -69,28 +76,23 @@ public class SystemCommandTask implements ScheduleTask {
             return null;
         }
 
-        final ComQuery comQuery = (ComQuery) scheduler.getRequest();
-        final FrontendContext context = scheduler.getContext();
-        final List<SQLStatement> statements;
-        try {
-            final byte[] query = comQuery.getQuery();
-            final SQLParser parser =
-                new SQLParser(query, 0, query.length, context.getClientJavaCharset(), context.getSqlMode(),
-                    HaManager.getInstance().getVersion());
-
-            // only care about show/kill/set, and only deal with single statement
-            final MySQLToken firstToken = parser.getFirstToken();
-            if (firstToken != MySQLToken.KW_SHOW && firstToken != MySQLToken.KW_KILL
-                && firstToken != MySQLToken.KW_SET) {
-                return null;
-            }
+        final StatementClassification classification = scheduler.getClassification();
+        if (null == classification) {
+            return null;
+        }
 
-            statements = parser.parseMultiStatements();
-        } catch (Throwable t) {
-            LOGGER.error("error when parse for system views", t);
+        // only care about show/kill/set/reset, and only deal with single statement
+        final MySQLToken firstToken = classification.getFirstToken();
+        if (firstToken != MySQLToken.KW_SHOW && firstToken != MySQLToken.KW_KILL
+            && firstToken != MySQLToken.KW_SET && firstToken != MySQLToken.KW_RESET) {
             return null;
         }
+        final List<SQLStatement> statements = classification.getStatements();
+        if (null == statements) {
+            return null; // failed to parse
+        }
 
+        final FrontendContext context = scheduler.getContext();
         final Encoder encoder = scheduler.getEncoder();
         if (1 == statements.size() && statements.get(0) != null) {
             final SQLStatement statement = statements.get(0);
@@ -115,15 +117,38 @@ public class SystemCommandTask implements ScheduleTask {
                     return handler.handleAndTakePacket(null, null, encoder);
                 }
             } else if (statement instanceof ShowFrontend) {
-                try (final ShowFrontendHandler handler = new ShowFrontendHandler(context,
-                    ((ShowFrontend) statement).isFull())) {
+                final ShowFrontend show = (ShowFrontend) statement;
+                try (final ShowFrontendHandler handler = new ShowFrontendHandler(context, show.isFull(),
+                    null == show.getPattern() ? null : show.getPattern().getLikeUnescapedString(),
+                    limitOffset(show.getLimit()), limitSize(show.getLimit()))) {
                     return handler.handleAndTakePacket(null, null, encoder);
                 }
             } else if (statement instanceof ShowBackend) {
-                try (final ShowBackendHandler handler = new ShowBackendHandler(context,
-                    ((ShowBackend) statement).isFull())) {
+                final ShowBackend show = (ShowBackend) statement;
+                try (final ShowBackendHandler handler = new ShowBackendHandler(context, show.isFull(),
+                    null == show.getPattern() ? null : show.getPattern().getLikeUnescapedString(),
+                    limitOffset(show.getLimit()), limitSize(show.getLimit()))) {
                     return handler.handleAndTakePacket(null, null, encoder);
                 }
+            } else if (statement instanceof ShowDigestCache) {
+                try (final ShowDigestCacheHandler handler = new ShowDigestCacheHandler(context)) {
+                    return handler.handleAndTakePacket(null, null, encoder);
+                }
+            } else if (statement instanceof ShowProxyLatency) {
+                try (final ShowProxyLatencyHandler handler = new ShowProxyLatencyHandler(context)) {
+                    return handler.handleAndTakePacket(null, null, encoder);
+                }
+            } else if (statement instanceof ShowProxyStatements) {
+                final Limit limit = ((ShowProxyStatements) statement).getLimit();
+                try (final ShowProxyStatementsHandler handler = new ShowProxyStatementsHandler(context,
+                    limitOffset(limit), limitSize(limit))) {
+                    return handler.handleAndTakePacket(null, null, encoder);
+                }
+            } else if (statement instanceof ResetProxyStatements) {
+                StatementStats.getInstance().reset();
+                LOGGER.info("statement statistics reset");
+                context.sendOk(encoder, false);
+                return false; // not taken
             } else if (statement instanceof Kill) {
                 final Kill kill = (Kill) statement;
                 SyncService.kill(kill.getProcessId().getNumber().intValue(), kill.isConnection());
@@ -157,4 +182,12 @@ public class SystemCommandTask implements ScheduleTask {
         }
         return null;
     }
+
+    private static int limitOffset(Limit limit) {
+        return limit != null && limit.getOffset() instanceof Number ? ((Number) limit.getOffset()).intValue() : 0;
+    }
+
+    private static int limitSize(Limit limit) {
+        return limit != null && limit.getSize() instanceof Number ? ((Number) limit.getSize()).intValue() : -1;
+    }
 }
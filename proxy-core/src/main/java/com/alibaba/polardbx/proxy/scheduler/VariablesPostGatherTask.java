@@ -30,16 +30,14 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetCharacterSetStatemen
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetNamesStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.mts.MTSSetTransactionStatement;
-import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
 import com.alibaba.polardbx.proxy.parser.util.Pair;
 import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
 import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
 import com.alibaba.polardbx.proxy.protocol.prepare.ComStmtExecute;
-import com.alibaba.polardbx.proxy.serverless.HaManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.nio.charset.Charset;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
@@ -61,22 +59,16 @@ public class VariablesPostGatherTask implements ScheduleTask {
         final Set<String> userVariables = new HashSet<>(), systemVariables = new HashSet<>();
 
         try {
-            final SQLParser parser;
-            if (request instanceof ComQuery) {
-                final byte[] query = ((ComQuery) request).getQuery();
-                parser = new SQLParser(query, 0, query.length, context.getClientJavaCharset(), context.getSqlMode(),
-                    HaManager.getInstance().getVersion());
-            } else if (request instanceof ComStmtExecute) {
-                final Charset defaultCharset = Charset.defaultCharset();
-                final byte[] bytes = scheduler.getPreparedStatement().getPrepareSql().getBytes(defaultCharset);
-                parser = new SQLParser(bytes, 0, bytes.length, defaultCharset, context.getSqlMode(),
-                    HaManager.getInstance().getVersion());
-            } else {
+            if (!(request instanceof ComQuery) && !(request instanceof ComStmtExecute)) {
                 return null;
             }
+            final StatementClassification classification = scheduler.getClassification();
+            if (null == classification || null == classification.getStatements()) {
+                return null; // failed to parse
+            }
 
             // gather all variables which may changed with post query
-            final List<SQLStatement> statements = parser.parseMultiStatements();
+            final List<SQLStatement> statements = classification.getStatements();
             for (SQLStatement stmt : statements) {
                 if (stmt instanceof DALSetStatement) {
                     // SET variable = expr [, variable = expr] ...
@@ -96,6 +96,7 @@ public class VariablesRestoreTask implements ScheduleTask {
             }
         }
 
+        backend.getBackendPool().recordRestore(builder.length() > 0);
         if (builder.length() > 0) {
             // need send SET statement
             final String sql = "SET " + builder;
@@ -0,0 +1,68 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.protocol.common.MysqlServerState;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Session reset must wait for the post operation of last command(variables gathering), which is pipelined on backend
+ * after the response is sent to client and still holds the trx reference. Packet is taken and rescheduled until it
+ * is done.
+ */
+public class WaitPostOperationTask implements ScheduleTask {
+    private static final Logger LOGGER = LoggerFactory.getLogger(WaitPostOperationTask.class);
+
+    private static final long WAIT_INTERVAL_MILLIS = 1;
+
+    @Override
+    public Boolean forward(Scheduler scheduler) throws Exception {
+        final FrontendContext context = scheduler.getContext();
+        if (!context.isTransactionReferenced()) {
+            return null;
+        }
+
+        scheduler.switchThread();
+        ProxyExecutor.getInstance().getExecutor().schedule(() -> {
+            boolean needFree = true;
+            try {
+                if (MysqlServerState.Authenticated != context.getState()) {
+                    return; // frontend closed when waiting
+                }
+                final Scheduler newScheduler = new Scheduler(scheduler, scheduler.getPacket());
+                if (newScheduler.forward()) {
+                    needFree = false;
+                }
+            } catch (Throwable t) {
+                LOGGER.error("wait post operation of {} failed", scheduler.getFrontend(), t);
+                scheduler.getFrontend().close();
+            } finally {
+                if (needFree) {
+                    scheduler.getPacket().close();
+                }
+            }
+        }, WAIT_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+        return true; // packet taken
+    }
+}
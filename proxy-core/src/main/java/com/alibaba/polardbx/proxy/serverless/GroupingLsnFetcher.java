@@ -29,36 +29,58 @@ import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.function.Consumer;
-
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Fetch leader commit index for slave reads, and group waiters into one fetch.
+ * <p>
+ * Up to fetch_lsn_concurrency fetches are in flight at once, each on its own admin connection. A fetcher takes all
+ * waiters queued so far and then issues the query, so a waiter is only satisfied by a fetch issued after it
+ * arrived. When all fetchers are busy, new waiters accumulate and are grouped into the next fetch.
+ * <p>
+ * Latest fetched LSN is kept with the time its fetch issued, so callers with a staleness budget can reuse it without
+ * waiting for a fetcher.
+ */
 public class GroupingLsnFetcher {
     private static final Logger LOGGER = LoggerFactory.getLogger(GroupingLsnFetcher.class);
 
     private static final String FETCH_LSN_QUERY =
         "/* PolarDB-X-Proxy GroupingLsnFetcher */ select COMMIT_INDEX from information_schema.alisql_cluster_local limit 1";
 
+    @FunctionalInterface
+    public interface LsnConsumer {
+        /**
+         * @param lsn null if failed to fetch
+         * @param queueNanos time waited before the fetch which carried this waiter was issued
+         * @param fetchNanos time of fetch(include retries)
+         */
+        void accept(Long lsn, long queueNanos, long fetchNanos);
+    }
+
     private static class LsnCallback {
-        private final Consumer<Long> callback;
+        private final LsnConsumer callback;
         private final AtomicBoolean invoked = new AtomicBoolean(false);
+        private final long arriveNanos = System.nanoTime();
+        private long issueNanos;
 
-        public LsnCallback(Consumer<Long> callback) {
+        public LsnCallback(LsnConsumer callback) {
             this.callback = callback;
         }
 
-        public void invoke(long lsn) {
+        public void invoke(long lsn, long doneNanos) {
             if (invoked.compareAndSet(false, true)) {
                 try {
-                    callback.accept(lsn);
+                    callback.accept(lsn, issueNanos - arriveNanos, doneNanos - issueNanos);
                 } catch (Throwable t) {
                     LOGGER.warn("invoke lsn callback failed", t);
                 }
             }
         }
 
-        public void cancel() {
+        public void cancel(long doneNanos) {
             if (invoked.compareAndSet(false, true)) {
                 try {
-                    callback.accept(null);
+                    callback.accept(null, issueNanos - arriveNanos, doneNanos - issueNanos);
                 } catch (Throwable t) {
                     LOGGER.warn("invoke lsn callback failed", t);
                 }
@@ -66,24 +88,87 @@ public class GroupingLsnFetcher {
         }
     }
 
+    /**
+     * Leader commit index which covers all commits done before issueNanos.
+     */
+    public static final class CachedLsn {
+        public final long lsn;
+        public final long issueNanos;
+
+        private CachedLsn(long lsn, long issueNanos) {
+            this.lsn = lsn;
+            this.issueNanos = issueNanos;
+        }
+    }
+
+    private static final AtomicReference<CachedLsn> cachedLsn = new AtomicReference<>(null);
+
+    /**
+     * Get latest fetched LSN if its fetch was issued within the window, or null.
+     */
+    public static CachedLsn getCachedLsn(long nowNanos, long windowNanos) {
+        final CachedLsn cached = cachedLsn.getAcquire();
+        if (null == cached || nowNanos - cached.issueNanos > windowNanos) {
+            return null;
+        }
+        return cached;
+    }
+
+    // concurrent fetchers may finish out of order, keep the one issued last
+    private static void updateCachedLsn(long lsn, long issueNanos) {
+        final CachedLsn fetched = new CachedLsn(lsn, issueNanos);
+        cachedLsn.accumulateAndGet(fetched,
+            (prev, now) -> null == prev || now.issueNanos - prev.issueNanos > 0 ? now : prev);
+    }
+
+    // guarded by tasks
     private static final List<LsnCallback> tasks = new ArrayList<>();
+    private static int fetchers = 0;
+    private static int idleFetchers = 0;
+    private static long fetcherId = 0;
+
+    private static int maxFetchers() {
+        return Math.max(1, FastConfig.fetchLsnConcurrency);
+    }
 
-    private static void fetchLsnTask() {
-        List<LsnCallback> pending;
+    /**
+     * Take all queued waiters, or null if this fetcher should exit.
+     */
+    private static List<LsnCallback> takeTasks() {
         synchronized (tasks) {
             while (tasks.isEmpty()) {
+                if (fetchers > maxFetchers()) {
+                    --fetchers; // concurrency decreased
+                    return null;
+                }
+                ++idleFetchers;
                 try {
                     tasks.wait();
                 } catch (InterruptedException ignore) {
+                } finally {
+                    --idleFetchers;
                 }
             }
-            pending = new ArrayList<>(tasks);
+            final List<LsnCallback> pending = new ArrayList<>(tasks);
             tasks.clear();
+            return pending;
         }
+    }
+
+    private static long issue(List<LsnCallback> pending, int from) {
+        final long nowNanos = System.nanoTime();
+        for (int i = from; i < pending.size(); ++i) {
+            pending.get(i).issueNanos = nowNanos;
+        }
+        return nowNanos;
+    }
 
+    private static void fetchLsnTask(List<LsnCallback> pending) {
         // get LSN
         final AtomicLong commitIndex = new AtomicLong(0);
         int retryCount = 0;
+        int issued = 0;
+        long issueNanos;
 
         do {
             // add new waited
@@ -93,6 +178,8 @@ public class GroupingLsnFetcher {
                     tasks.clear();
                 }
             }
+            issueNanos = issue(pending, issued);
+            issued = pending.size();
 
             final long limitTimeNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(FastConfig.fetchLsnTimeout);
             try (final BackendConnectionWrapper connection = HaManager.getInstance().getAdminConnection()) {
@@ -109,38 +196,52 @@ public class GroupingLsnFetcher {
 
         // report success
         final long index = commitIndex.getPlain();
+        final long doneNanos = System.nanoTime();
         if (index != 0) {
+            updateCachedLsn(index, issueNanos);
             for (LsnCallback task : pending) {
-                task.invoke(index);
+                task.invoke(index, doneNanos);
             }
         } else {
             for (LsnCallback task : pending) {
-                task.cancel();
+                task.cancel(doneNanos);
             }
         }
     }
 
-    static {
-        final Runnable lsnAsyncTask = () -> {
-            while (true) {
-                try {
-                    fetchLsnTask();
-                } catch (Throwable t) {
-                    LOGGER.error("fetch lsn failed", t);
+    private static void fetcherLoop() {
+        while (true) {
+            try {
+                final List<LsnCallback> pending = takeTasks();
+                if (null == pending) {
+                    return;
                 }
+                fetchLsnTask(pending);
+            } catch (Throwable t) {
+                LOGGER.error("fetch lsn failed", t);
             }
-        };
-
-        final Thread thread = new Thread(lsnAsyncTask, "LsnFetcher");
-        thread.setDaemon(true);
-        thread.start();
+        }
     }
 
-    public static void fetchLsn(Consumer<Long> callback) {
+    public static void fetchLsn(LsnConsumer callback) {
         final LsnCallback task = new LsnCallback(callback);
+        final String newFetcher;
         synchronized (tasks) {
             tasks.add(task);
-            tasks.notify();
+            if (idleFetchers > 0) {
+                tasks.notify();
+                return;
+            }
+            if (fetchers >= maxFetchers()) {
+                return; // all busy, grouped into next fetch
+            }
+            ++fetchers;
+            newFetcher = "LsnFetcher-" + fetcherId++;
         }
+
+        // start fetcher on demand
+        final Thread thread = new Thread(GroupingLsnFetcher::fetcherLoop, newFetcher);
+        thread.setDaemon(true);
+        thread.start();
     }
 }
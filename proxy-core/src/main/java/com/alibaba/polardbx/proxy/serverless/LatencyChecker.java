@@ -23,7 +23,6 @@ import com.alibaba.polardbx.proxy.common.ThreadNames;
 import com.alibaba.polardbx.proxy.common.XClusterNodeHealth;
 import com.alibaba.polardbx.proxy.config.ConfigLoader;
 import com.alibaba.polardbx.proxy.config.ConfigProps;
-import com.alibaba.polardbx.proxy.connection.BackendConnection;
 import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
 import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
 import com.alibaba.polardbx.proxy.net.NIOWorker;
@@ -32,7 +31,6 @@ import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.net.InetSocketAddress;
 import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -53,23 +51,38 @@ public class LatencyChecker extends Thread {
         "/* PolarDB-X-Proxy LatencyChecker */ select ROLE, COMMIT_INDEX, LAST_APPLY_INDEX from information_schema.alisql_cluster_local limit 1";
     private static final String PROXY_TOKEN_QUERY = "/* PolarDB-X-Proxy HaManager */ call dbms_proxy.get_token()";
 
-    private final NIOWorker nioWorker;
     private final Executor executor;
     private final HaManager haManager;
 
     private final ConcurrentSkipListMap<Long, Long> latencyHistoryNanos = new ConcurrentSkipListMap<>();
     private final Map<String, Long> latencyMapNanos = new ConcurrentHashMap<>();
 
+    // reused connections to followers and learners
+    private final ProbeConnectionCache probeConnections;
+
     public LatencyChecker(@NotNull final NIOWorker nioWorker, @NotNull final Executor executor,
                           @NotNull final HaManager haManager) {
+        this(nioWorker, executor, haManager, true);
+    }
+
+    // package private for test
+    LatencyChecker(final NIOWorker nioWorker, final Executor executor, final HaManager haManager,
+                   final boolean start) {
         super(ThreadNames.LATENCY_CHECKER);
-        this.nioWorker = nioWorker;
         this.executor = executor;
         this.haManager = haManager;
+        this.probeConnections = new ProbeConnectionCache(nioWorker);
 
         // set thread and start
         setDaemon(true);
-        start();
+        if (start) {
+            start();
+        }
+    }
+
+    // package private for test
+    ProbeConnectionCache getProbeConnections() {
+        return probeConnections;
     }
 
     public Long getLatencyNanos(final String address) {
@@ -134,67 +147,70 @@ public class LatencyChecker extends Thread {
         return newNodeHealthRef.getPlain();
     }
 
-    private XClusterNodeHealth updateLatency(final String address) {
-        final InetSocketAddress socketAddress = AddressDecoder.decode(address);
+    // package private for test
+    XClusterNodeHealth updateLatency(final String address) {
         final String username = ConfigLoader.PROPERTIES.getProperty(ConfigProps.BACKEND_USERNAME);
         final String encryptedPassword = ConfigLoader.PROPERTIES.getProperty(ConfigProps.BACKEND_PASSWORD);
         final int timeout =
             Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.LATENCY_CHECK_TIMEOUT));
-        final long limitTimeNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
 
         final AtomicReference<XClusterNodeHealth> newNodeHealthRef = new AtomicReference<>();
-        try (final BackendConnection connection = BackendConnection.connectBlocking(socketAddress,
-            nioWorker.getProcessor(), username, encryptedPassword, null, timeout)) {
-            // refresh token first
-            final QueryResultHandler proxyTokenResult = connection.sendQuery(PROXY_TOKEN_QUERY);
-            final AtomicReference<String> proxyTokenRef = new AtomicReference<>();
-            try {
-                proxyTokenResult.consume(row -> proxyTokenRef.setPlain(new String(row[0])), limitTimeNs);
-            } catch (SQLException ignore) {
-                // may no such variable
-            }
-            final String proxyToken = proxyTokenRef.getPlain();
-
-            // record actual query send time
-            final long queryNanos = System.nanoTime();
-            final QueryResultHandler localResult = connection.sendQuery(CLUSTER_LOCAL_QUERY);
-            localResult.consume(row -> {
-                final String role;
-                if (row[0] != null && row[0].length > 0) {
-                    role = new String(row[0]);
-                } else {
-                    role = null;
+        try {
+            probeConnections.probe(address, username, encryptedPassword, timeout, connection -> {
+                // timeout starts after connection ready, so reconnect will not eat up the query time
+                final long limitTimeNs = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeout);
+                // refresh token first
+                final QueryResultHandler proxyTokenResult = connection.sendQuery(PROXY_TOKEN_QUERY);
+                final AtomicReference<String> proxyTokenRef = new AtomicReference<>();
+                try {
+                    proxyTokenResult.consume(row -> proxyTokenRef.setPlain(new String(row[0])), limitTimeNs);
+                } catch (SQLException ignore) {
+                    // may no such variable
                 }
-                if (role != null && row[1] != null && row[1].length > 0 && row[2] != null && row[2].length > 0) {
-                    final long commitIndex = Long.parseLong(new String(row[1]));
-                    final long applyIndex = Long.parseLong(new String(row[2]));
-                    final long nowNanos = System.nanoTime();
-                    final long rttNanos = nowNanos - queryNanos;
-                    final long indexNanos = queryNanos + rttNanos / 2;
-                    // calculate latency
-                    final Map.Entry<Long, Long> floor = latencyHistoryNanos.floorEntry(applyIndex);
-                    if (null == floor) {
-                        latencyMapNanos.put(address, Long.MAX_VALUE);
+                final String proxyToken = proxyTokenRef.getPlain();
+
+                // record actual query send time
+                final long queryNanos = System.nanoTime();
+                final QueryResultHandler localResult = connection.sendQuery(CLUSTER_LOCAL_QUERY);
+                localResult.consume(row -> {
+                    final String role;
+                    if (row[0] != null && row[0].length > 0) {
+                        role = new String(row[0]);
                     } else {
-                        if (applyIndex > floor.getKey()) {
-                            final Map.Entry<Long, Long> higher = latencyHistoryNanos.higherEntry(applyIndex);
-                            if (null == higher) {
-                                latencyMapNanos.put(address, 0L);
+                        role = null;
+                    }
+                    if (role != null && row[1] != null && row[1].length > 0 && row[2] != null && row[2].length > 0) {
+                        final long commitIndex = Long.parseLong(new String(row[1]));
+                        final long applyIndex = Long.parseLong(new String(row[2]));
+                        final long nowNanos = System.nanoTime();
+                        final long rttNanos = nowNanos - queryNanos;
+                        final long indexNanos = queryNanos + rttNanos / 2;
+                        // calculate latency
+                        final Map.Entry<Long, Long> floor = latencyHistoryNanos.floorEntry(applyIndex);
+                        if (null == floor) {
+                            latencyMapNanos.put(address, Long.MAX_VALUE);
+                        } else {
+                            if (applyIndex > floor.getKey()) {
+                                final Map.Entry<Long, Long> higher = latencyHistoryNanos.higherEntry(applyIndex);
+                                if (null == higher) {
+                                    latencyMapNanos.put(address, 0L);
+                                } else {
+                                    final long calculatedNanos = floor.getValue()
+                                        + (higher.getValue() - floor.getValue()) / (higher.getKey() - floor.getKey())
+                                        * (applyIndex - floor.getKey());
+                                    latencyMapNanos.put(address, Math.max(0, indexNanos - calculatedNanos));
+                                }
                             } else {
-                                final long calculatedNanos = floor.getValue()
-                                    + (higher.getValue() - floor.getValue()) / (higher.getKey() - floor.getKey())
-                                    * (applyIndex - floor.getKey());
-                                latencyMapNanos.put(address, Math.max(0, indexNanos - calculatedNanos));
+                                latencyMapNanos.put(address, Math.max(0, indexNanos - floor.getValue()));
                             }
-                        } else {
-                            latencyMapNanos.put(address, Math.max(0, indexNanos - floor.getValue()));
                         }
+                        // gen new health info
+                        newNodeHealthRef.setPlain(new XClusterNodeHealth(
+                            address, role, proxyToken, commitIndex, applyIndex, rttNanos, indexNanos));
                     }
-                    // gen new health info
-                    newNodeHealthRef.setPlain(new XClusterNodeHealth(
-                        address, role, proxyToken, commitIndex, applyIndex, rttNanos, indexNanos));
-                }
-            }, limitTimeNs);
+                }, limitTimeNs);
+                return null;
+            });
         } catch (Throwable t) {
             LOGGER.error("Failed to update latency", t);
         }
@@ -255,6 +271,17 @@ public class LatencyChecker extends Thread {
                         }
                         latencyMapNanos.keySet().removeIf(address -> !validSet.contains(address));
                     }
+
+                    // close probe connections of removed nodes
+                    final Set<String> nodes =
+                        new HashSet<>(serverless.getFollowers().size() + serverless.getLearners().size());
+                    for (final XClusterNodeHealth follower : serverless.getFollowers()) {
+                        nodes.add(follower.getTag());
+                    }
+                    for (final XClusterNodeHealth learner : serverless.getLearners()) {
+                        nodes.add(learner.getTag());
+                    }
+                    probeConnections.retain(nodes);
                 }
             } catch (Throwable t) {
                 LOGGER.error("Failed to update latency", t);
@@ -0,0 +1,123 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.serverless;
+
+import com.alibaba.polardbx.proxy.common.AddressDecoder;
+import com.alibaba.polardbx.proxy.connection.BackendConnection;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import org.jetbrains.annotations.NotNull;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Long-lived admin connections to cluster nodes for health probing.
+ * Connection is reused between probes and only reconnected after failure, so each probe tick costs no TCP
+ * connect or auth handshake on the node.
+ */
+public class ProbeConnectionCache implements AutoCloseable {
+    private static final Logger LOGGER = LoggerFactory.getLogger(ProbeConnectionCache.class);
+
+    @FunctionalInterface
+    public interface Probe<T> {
+        T apply(BackendConnection connection) throws Exception;
+    }
+
+    private final NIOWorker nioWorker;
+    private final Map<String, BackendConnection> connections = new ConcurrentHashMap<>();
+    private final AtomicLong connectCount = new AtomicLong(0);
+
+    public ProbeConnectionCache(@NotNull final NIOWorker nioWorker) {
+        this.nioWorker = nioWorker;
+    }
+
+    public long getConnectCount() {
+        return connectCount.get();
+    }
+
+    private static void closeQuietly(BackendConnection connection) {
+        try {
+            connection.close();
+        } catch (Throwable t) {
+            LOGGER.error("Failed to close probe connection: {}", connection, t);
+        }
+    }
+
+    /**
+     * Run probe on the cached connection of the node, connect if absent or broken.
+     * Connection is dropped if probe fails, because state of it is unknown(e.g. result pending after timeout).
+     * Probes on same address should not run concurrently.
+     */
+    public <T> T probe(@NotNull final String address, final String username, final String encryptedPassword,
+                       final int timeout, @NotNull final Probe<T> probe) throws Exception {
+        BackendConnection connection = connections.get(address);
+        if (connection != null && !connection.isValid()) {
+            connections.remove(address, connection);
+            closeQuietly(connection);
+            connection = null;
+        }
+        if (null == connection) {
+            connection = BackendConnection.connectBlocking(AddressDecoder.decode(address), nioWorker.getProcessor(),
+                username, encryptedPassword, null, timeout);
+            connectCount.getAndIncrement();
+            final BackendConnection replaced = connections.put(address, connection);
+            if (replaced != null) {
+                closeQuietly(replaced);
+            }
+            LOGGER.info("Probe connection to {} established.", address);
+        }
+        try {
+            return probe.apply(connection);
+        } catch (Throwable t) {
+            connections.remove(address, connection);
+            closeQuietly(connection);
+            throw t;
+        }
+    }
+
+    /**
+     * Close connections of nodes which not in the set.
+     */
+    public void retain(@NotNull final Set<String> addresses) {
+        final Iterator<Map.Entry<String, BackendConnection>> iterator = connections.entrySet().iterator();
+        while (iterator.hasNext()) {
+            final Map.Entry<String, BackendConnection> entry = iterator.next();
+            if (!addresses.contains(entry.getKey())) {
+                iterator.remove();
+                closeQuietly(entry.getValue());
+                LOGGER.info("Probe connection to {} removed.", entry.getKey());
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        final Iterator<BackendConnection> iterator = connections.values().iterator();
+        while (iterator.hasNext()) {
+            final BackendConnection connection = iterator.next();
+            iterator.remove();
+            closeQuietly(connection);
+        }
+    }
+}
@@ -22,9 +22,9 @@ import com.alibaba.polardbx.proxy.common.AddressDecoder;
 import com.alibaba.polardbx.proxy.common.XClusterNodeHealth;
 import com.alibaba.polardbx.proxy.config.ConfigLoader;
 import com.alibaba.polardbx.proxy.config.ConfigProps;
-import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
 import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
 import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
 import lombok.Getter;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
@@ -40,10 +40,13 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Random;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntToDoubleFunction;
 
 public class ReadWriteSplittingPool {
     private static final Logger LOGGER = LoggerFactory.getLogger(ReadWriteSplittingPool.class);
@@ -81,10 +84,25 @@ public class ReadWriteSplittingPool {
         }
     }
 
+    private static class SelectTable {
+        private final WeightTable[] tables;
+        private final int[] cumulativeWeights;
+
+        private SelectTable(WeightTable[] tables) {
+            this.tables = tables;
+            this.cumulativeWeights = new int[tables.length];
+            int sum = 0;
+            for (int i = 0; i < tables.length; ++i) {
+                sum += tables[i].weight;
+                cumulativeWeights[i] = sum;
+            }
+        }
+    }
+
     private final HaManager haManager;
     private final NIOWorker nioWorker;
     private final AtomicReference<BackendPool> rwPoolRef = new AtomicReference<>();
-    private final AtomicReference<WeightTable[]> weightTableRef = new AtomicReference<>();
+    private final AtomicReference<SelectTable> selectTableRef = new AtomicReference<>();
     @Getter
     private final Map<String, BackendPool> roPoolMap = new ConcurrentHashMap<>();
 
@@ -172,6 +190,7 @@ public class ReadWriteSplittingPool {
                     final BackendPool pool =
                         new BackendPool(nioWorker, AddressDecoder.decode(learner.getTag()), learner.getProxyToken(),
                             username, encryptedPassword, null, maxPooled, true);
+                    pool.setLearner(true);
                     pool.loadDbConfigs();
                     final BackendPool replaced = roPoolMap.put(learner.getTag(), pool);
                     if (null == replaced) {
@@ -289,9 +308,9 @@ public class ReadWriteSplittingPool {
             if (null == lastWeightTableList || !lastWeightTableList.isEmpty()) {
                 LOGGER.info("Backend cluster RO pool select table update to empty.");
                 lastWeightTableList = weights;
-                weightTableRef.setRelease(null);
+                selectTableRef.setRelease(null);
             } else {
-                assert null == weightTableRef.getAcquire();
+                assert null == selectTableRef.getAcquire();
                 assert lastWeightTableList.isEmpty();
             }
         } else {
@@ -300,9 +319,9 @@ public class ReadWriteSplittingPool {
                 LOGGER.info("Backend cluster RO pool select table update to: {}", weights);
                 lastWeightTableList = new ArrayList<>(weights); // store the sorted copy
                 Collections.shuffle(weights);
-                weightTableRef.setRelease(weights.toArray(WeightTable[]::new));
+                selectTableRef.setRelease(new SelectTable(weights.toArray(WeightTable[]::new)));
             } else {
-                assert weightTableRef.getAcquire() != null;
+                assert selectTableRef.getAcquire() != null;
                 assert lastWeightTableList.equals(weights);
             }
         }
@@ -340,65 +359,149 @@ public class ReadWriteSplittingPool {
         updateRoPools(serverless);
     }
 
-    public BackendConnectionWrapper getRwConnection() {
-        final BackendPool pool = rwPoolRef.getAcquire();
-        if (null == pool) {
-            throw new IllegalStateException("Backend RW pool is not initialized.");
-        }
-        try {
-            return pool.getConnection();
-        } catch (Exception e) {
-            LOGGER.error("Failed to get RW connection.", e);
-            throw new RuntimeException(e);
-        }
-    }
-
     public BackendPool getRwPool() {
         return rwPoolRef.getAcquire();
     }
 
     public boolean isRoAvailable() {
-        final WeightTable[] weightTable = weightTableRef.getAcquire();
-        return null != weightTable && weightTable.length > 0;
+        final SelectTable selectTable = selectTableRef.getAcquire();
+        return null != selectTable && selectTable.tables.length > 0;
+    }
+
+    /**
+     * Load score of a RO pool, lower is better.
+     * In-flight requests are multiplied by the recent response time, so a stalled node is avoided even if its
+     * requests are not piled up yet.
+     */
+    static double score(long inFlight, boolean slave, long responseNanosEwma) {
+        // prefer slave node if no active connection
+        return (double) (inFlight + (slave ? 0 : 1) + 1) * (responseNanosEwma + 1);
+    }
+
+    private static int sample(int[] cumulativeWeights, Random random) {
+        final int r = random.nextInt(cumulativeWeights[cumulativeWeights.length - 1]);
+        int low = 0, high = cumulativeWeights.length - 1;
+        while (low < high) {
+            final int mid = (low + high) >>> 1;
+            if (cumulativeWeights[mid] > r) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Power of two choices: sample two distinct candidates by weight, and pick the one with lower score.
+     *
+     * @return index of the picked candidate, -1 if no candidate with positive weight
+     */
+    static int pickTwoChoices(int[] cumulativeWeights, Random random, IntToDoubleFunction score) {
+        final int n = cumulativeWeights.length;
+        if (0 == n || cumulativeWeights[n - 1] <= 0) {
+            return -1;
+        }
+        final int first = sample(cumulativeWeights, random);
+        int second = sample(cumulativeWeights, random);
+        if (second == first) {
+            // move to next candidate with positive weight
+            do {
+                second = (second + 1) % n;
+            } while (second != first && cumulativeWeights[second] == (0 == second ? 0 : cumulativeWeights[second - 1]));
+            if (second == first) {
+                return first; // only one candidate
+            }
+        }
+        return score.applyAsDouble(second) < score.applyAsDouble(first) ? second : first;
     }
 
-    public BackendConnectionWrapper getRoConnection() {
-        final WeightTable[] weightTable = weightTableRef.getAcquire();
-        if (null == weightTable || 0 == weightTable.length) {
+    private double score(BackendPool pool) {
+        return null == pool ? Double.POSITIVE_INFINITY :
+            score(pool.getNowRunningConnectionCount(), pool.isSlave(), pool.getResponseNanosEwma());
+    }
+
+    /**
+     * Pick RO pool by weights and load.
+     *
+     * @return RO pool, or null if no RO available
+     */
+    public BackendPool pickRoPool() {
+        final SelectTable selectTable = selectTableRef.getAcquire();
+        if (null == selectTable || 0 == selectTable.tables.length) {
             return null; // no available RO
         }
-        float smallest = Float.MAX_VALUE;
-        BackendPool pool = null;
-        for (final WeightTable w : weightTable) {
-            final BackendPool p = roPoolMap.get(w.tag);
-            if (null == p) {
-                continue;
+        final WeightTable[] tables = selectTable.tables;
+        final int idx = pickTwoChoices(selectTable.cumulativeWeights, ThreadLocalRandom.current(),
+            i -> score(roPoolMap.get(tables[i].tag)));
+        if (idx < 0) {
+            return null; // all weights are zero
+        }
+        BackendPool pool = roPoolMap.get(tables[idx].tag);
+        if (null == pool) {
+            // pool map is changing, fallback to scan
+            double smallest = Double.POSITIVE_INFINITY;
+            for (final WeightTable w : tables) {
+                final BackendPool p;
+                if (w.weight <= 0 || null == (p = roPoolMap.get(w.tag))) {
+                    continue;
+                }
+                final double s = score(p);
+                if (s < smallest) {
+                    smallest = s;
+                    pool = p;
+                }
             }
-            // prefer slave node if no active connection
-            final float load = ((float) p.getNowRunningConnectionCount() + (p.isSlave() ? 0 : 1)) / w.weight;
-            if (load < smallest) {
-                smallest = load;
-                pool = p;
+            if (null == pool) {
+                return null; // pool not found
             }
         }
-        if (null == pool) {
-            return null; // pool not found
+        return pool;
+    }
+
+    /**
+     * Pick RO pool required by route hint, and lower load one is preferred. Node route takes any known RO node even
+     * if it is not weighted, follower and learner routes only pick among weighted ones.
+     *
+     * @return RO pool, or normal pick if no required node available
+     */
+    public BackendPool pickRoPool(ProxyHint.Route route, String node) {
+        if (ProxyHint.Route.NODE == route) {
+            final BackendPool pool = roPoolMap.get(node);
+            return pool != null ? pool : pickRoPool();
+        }
+        final SelectTable selectTable = selectTableRef.getAcquire();
+        if (null == selectTable || 0 == selectTable.tables.length) {
+            return null; // no available RO
         }
-        try {
-            return pool.getConnection();
-        } catch (Exception e) {
-            LOGGER.error("Failed to get RO connection.", e);
-            throw new RuntimeException(e);
+        BackendPool picked = null;
+        double smallest = Double.POSITIVE_INFINITY;
+        for (final WeightTable w : selectTable.tables) {
+            final BackendPool p;
+            if (w.weight <= 0 || null == (p = roPoolMap.get(w.tag))) {
+                continue;
+            }
+            final boolean match = ProxyHint.Route.LEARNER == route ? p.isLearner() :
+                ProxyHint.Route.FOLLOWER == route && p.isSlave() && !p.isLearner();
+            if (!match) {
+                continue;
+            }
+            final double s = score(p);
+            if (s < smallest) {
+                smallest = s;
+                picked = p;
+            }
         }
+        return picked != null ? picked : pickRoPool();
     }
 
     public Map<String, Integer> getNowRoWeights() {
-        final WeightTable[] weightTable = weightTableRef.getAcquire();
-        if (null == weightTable || 0 == weightTable.length) {
+        final SelectTable selectTable = selectTableRef.getAcquire();
+        if (null == selectTable || 0 == selectTable.tables.length) {
             return Collections.emptyMap();
         }
         final Map<String, Integer> weights = new HashMap<>();
-        for (final WeightTable w : weightTable) {
+        for (final WeightTable w : selectTable.tables) {
             weights.put(w.tag, w.weight);
         }
         return Collections.unmodifiableMap(weights);
@@ -56,13 +56,10 @@ public class KillService implements ServiceHandler {
             final KillMessage killMessage = SyncService.GSON.fromJson(requestJson, KillMessage.class);
             LOGGER.debug("Received synced kill message: {}", killMessage);
 
-            // find frontend connection
+            // find frontend connection by id
+            final FrontendConnection frontend = FrontendConnection.CONNECTIONS.get(killMessage.getProcessId());
             int found = 0;
-            for (final FrontendConnection frontend : FrontendConnection.CONNECTIONS) {
-                if (frontend.getContext().getConnectionId() != killMessage.getProcessId()) {
-                    continue;
-                }
-
+            if (frontend != null) {
                 if (killMessage.isConnection()) {
                     // kill connection
                     frontend.close();
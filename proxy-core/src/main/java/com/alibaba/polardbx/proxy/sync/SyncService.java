@@ -20,6 +20,7 @@ package com.alibaba.polardbx.proxy.sync;
 
 import com.alibaba.polardbx.proxy.GeneralService;
 import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.cluster.AcceptIdGenerator;
 import com.alibaba.polardbx.proxy.cluster.NodeWatchdog;
 import com.alibaba.polardbx.proxy.common.AddressDecoder;
 import com.alibaba.polardbx.proxy.config.ConfigLoader;
@@ -30,31 +31,140 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 
 public class SyncService {
     private static final Logger LOGGER = LoggerFactory.getLogger(SyncService.class);
 
     public static final Gson GSON = new GsonBuilder().create();
 
+    public static final String KILL = "kill";
+    public static final String NODE_ID = "node_id";
+
+    // node id is static config, but a restarted peer on same address may change it
+    private static final long NODE_ID_TTL_MILLIS = 60_000;
+    private static final int UNKNOWN_NODE_ID = -1;
+
+    private static final class NodeId {
+        private final int id;
+        private final long learnedMillis;
+
+        private NodeId(int id, long learnedMillis) {
+            this.id = id;
+            this.learnedMillis = learnedMillis;
+        }
+    }
+
+    // <rpc tag(ip:port), node id of peer>, learned in background on demand
+    private static final Map<String, NodeId> NODE_IDS = new ConcurrentHashMap<>();
+    // peers with node id query in flight
+    private static final Set<String> LEARNING = ConcurrentHashMap.newKeySet();
+
+    /**
+     * Kill on the proxy which owns the connection, worker id in low bits of connection id is the cluster node id
+     * of owner(see {@link AcceptIdGenerator}). Peers with unknown node id(old version, unreachable or not learned
+     * yet) still get the kill, so it never misses and never waits for node id queries.
+     */
     public static void kill(final int processId, final boolean connection) {
-        final KillMessage killMessage = new KillMessage(processId, connection);
+        final String[] nodes = NodeWatchdog.getInstance().getNodes();
+        if (null == nodes) {
+            LOGGER.warn("Cluster nodes not ready, kill {} ignored", processId);
+            return;
+        }
         final int timeout = Integer.parseInt(ConfigLoader.PROPERTIES.getProperty(ConfigProps.GENERAL_SERVICE_TIMEOUT));
+        ProxyExecutor.getInstance().getExecutor().submit(() -> {
+            try {
+                killOn(nodes, processId, connection, timeout);
+            } catch (Throwable t) {
+                LOGGER.error("Failed to send kill message of {}", processId, t);
+            }
+        });
+    }
 
-        final String[] nodes = NodeWatchdog.getInstance().getNodes();
-        for (String node : nodes) {
+    /**
+     * @return nodes which kill message sent to
+     */
+    static List<String> killOn(final String[] nodes, final int processId, final boolean connection,
+                               final long timeoutMillis) {
+        forgetLeftNodes(nodes);
+
+        final int workerId = AcceptIdGenerator.workerIdOf(processId);
+        final long nowMillis = System.currentTimeMillis();
+        final List<String> targets = new ArrayList<>(1);
+        for (final String node : nodes) {
+            final NodeId cached = NODE_IDS.get(node);
+            if (null == cached || nowMillis - cached.learnedMillis >= NODE_ID_TTL_MILLIS) {
+                learnNodeId(node, timeoutMillis);
+                targets.add(node); // unknown for now
+            } else if (cached.id == workerId || UNKNOWN_NODE_ID == cached.id) {
+                targets.add(node);
+            }
+        }
+
+        final String json = GSON.toJson(new KillMessage(processId, connection));
+        for (final String node : targets) {
+            try {
+                final InetSocketAddress address = AddressDecoder.decode(node);
+                GeneralService.invoke(address.getHostString(), address.getPort(), KILL, json, timeoutMillis);
+            } catch (Throwable t) {
+                LOGGER.error("Failed to send kill message to {}", node, t);
+            }
+        }
+        return targets;
+    }
+
+    private static void learnNodeId(final String node, final long timeoutMillis) {
+        if (!LEARNING.add(node)) {
+            return; // in flight
+        }
+        try {
             ProxyExecutor.getInstance().getExecutor().submit(() -> {
                 try {
                     final InetSocketAddress address = AddressDecoder.decode(node);
-                    GeneralService.invoke(
-                        address.getHostString(), address.getPort(), "kill", GSON.toJson(killMessage), timeout);
+                    final String result =
+                        GeneralService.invoke(address.getHostString(), address.getPort(), NODE_ID, "", timeoutMillis);
+                    // no handler means old version peer, remember it as unknown and always send to it
+                    final int nodeId = null == result ? UNKNOWN_NODE_ID : Integer.parseInt(result);
+                    NODE_IDS.put(node, new NodeId(nodeId, System.currentTimeMillis()));
                 } catch (Throwable t) {
-                    LOGGER.error("Failed to send kill message to {}", node, t);
+                    // not cached, and retry next time
+                    LOGGER.warn("Failed to get node id of {}", node, t);
+                } finally {
+                    LEARNING.remove(node);
                 }
             });
+        } catch (Throwable t) {
+            LEARNING.remove(node);
+            LOGGER.warn("Failed to learn node id of {}", node, t);
+        }
+    }
+
+    // package private for test
+    static boolean isNodeIdLearned(final String node) {
+        return NODE_IDS.containsKey(node);
+    }
+
+    private static void forgetLeftNodes(final String[] nodes) {
+        final Set<String> alive = new HashSet<>(Arrays.asList(nodes));
+        if (NODE_IDS.keySet().retainAll(alive)) {
+            final Set<String> channels = new HashSet<>(alive.size());
+            for (final String node : alive) {
+                final InetSocketAddress address = AddressDecoder.decode(node);
+                channels.add(address.getHostString() + ':' + address.getPort());
+            }
+            GeneralService.retainChannels(channels);
         }
     }
 
     public static void init() {
-        GeneralService.registerHandler("kill", new KillService());
+        GeneralService.registerHandler(KILL, new KillService());
+        final String nodeId = ConfigLoader.PROPERTIES.getProperty(ConfigProps.CLUSTER_NODE_ID).trim();
+        GeneralService.registerHandler(NODE_ID, json -> nodeId);
     }
 }
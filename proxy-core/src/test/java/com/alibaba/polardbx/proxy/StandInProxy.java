@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy;
+
+import com.alibaba.polardbx.proxy.cluster.AcceptIdGenerator;
+import com.alibaba.polardbx.proxy.cluster.FastIdGenerator;
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
+import com.alibaba.polardbx.proxy.net.NIOAcceptor;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.privilege.SecurityUtil;
+import com.alibaba.polardbx.proxy.scheduler.StandInMysqlServer;
+import com.alibaba.polardbx.proxy.serverless.HaManager;
+import com.alibaba.polardbx.proxy.serverless.ReadWriteSplittingPool;
+import com.alibaba.polardbx.proxy.utils.UnsafeBytes;
+import lombok.Getter;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * In-process proxy listens on an ephemeral port and forwards everything to a {@link StandInMysqlServer} leader, so a
+ * real client(connector-j) can talk to proxy without any X-Cluster.
+ * <p>
+ * Singletons of proxy server and HA manager are replaced with ones built without constructor(no HA thread and no
+ * latency checker), and restored on close. Connects from 127.0.0.1 with user polardbx_root as trusted IP, so no
+ * privilege is needed.
+ */
+public class StandInProxy implements AutoCloseable {
+    public static final String USER = "polardbx_root";
+
+    @Getter
+    private final StandInMysqlServer leader;
+    private final BackendPool rwPool;
+    private final NIOAcceptor acceptor;
+
+    private final Object originalServer;
+    private final Object originalHaManager;
+
+    private static Field field(Class<?> clazz, String name) throws NoSuchFieldException {
+        final Field field = clazz.getDeclaredField(name);
+        field.setAccessible(true);
+        return field;
+    }
+
+    public StandInProxy() throws Exception {
+        ProxyExecutor.init();
+        this.leader = new StandInMysqlServer();
+        final NIOWorker worker = StandInMysqlServer.worker();
+
+        // proxy server without privilege refresher and HA
+        final ProxyServer server = (ProxyServer) UnsafeBytes.UNSAFE.allocateInstance(ProxyServer.class);
+        field(ProxyServer.class, "acceptIdGenerator").set(server, new AcceptIdGenerator(1));
+        field(ProxyServer.class, "trxIdGenerator").set(server, new FastIdGenerator(1));
+        field(ProxyServer.class, "worker").set(server, worker);
+
+        // HA manager with stand-in leader only
+        final HaManager haManager = (HaManager) UnsafeBytes.UNSAFE.allocateInstance(HaManager.class);
+        field(HaManager.class, "clusterIdRef").set(haManager, new AtomicLong(-1));
+        field(HaManager.class, "globalPortGapRef").set(haManager, new AtomicInteger(0));
+        field(HaManager.class, "clusterPeersRef").set(haManager, new AtomicReference<>());
+        field(HaManager.class, "clusterServerlessRef").set(haManager, new AtomicReference<>());
+        field(HaManager.class, "adminPoolRef").set(haManager, new AtomicReference<>());
+        field(HaManager.class, "version").set(haManager, new AtomicInteger(80032));
+        field(HaManager.class, "leaderTransferInfoRef").set(haManager, new AtomicReference<>());
+        field(HaManager.class, "leaderTransferredTask").set(haManager, new ConcurrentLinkedQueue<>());
+        final ReadWriteSplittingPool rwSplittingPool = new ReadWriteSplittingPool(haManager, worker);
+        field(HaManager.class, "readWriteSplittingPool").set(haManager, rwSplittingPool);
+        this.rwPool = new BackendPool(worker, leader.address(), null, "user", SecurityUtil.encrypt("pwd"), null, 8,
+            false);
+        ((AtomicReference<BackendPool>) field(ReadWriteSplittingPool.class, "rwPoolRef").get(rwSplittingPool)).set(
+            rwPool);
+
+        this.originalServer = field(ProxyServer.class, "INSTANCE").get(null);
+        this.originalHaManager = field(HaManager.class, "INSTANCE").get(null);
+        field(ProxyServer.class, "INSTANCE").set(null, server);
+        field(HaManager.class, "INSTANCE").set(null, haManager);
+
+        this.acceptor = new NIOAcceptor("StandInProxy", 0, worker, server);
+        this.acceptor.setDaemon(true);
+        this.acceptor.start();
+    }
+
+    public int getPort() {
+        return acceptor.getPort();
+    }
+
+    /**
+     * @param props extra connection properties, e.g. "useCompression=true"
+     */
+    public String url(String props) {
+        return "jdbc:mysql://127.0.0.1:" + getPort() + "/?useSSL=false&allowPublicKeyRetrieval=true"
+            + (null == props || props.isEmpty() ? "" : "&" + props);
+    }
+
+    @Override
+    public void close() throws Exception {
+        acceptor.offline();
+        field(ProxyServer.class, "INSTANCE").set(null, originalServer);
+        field(HaManager.class, "INSTANCE").set(null, originalHaManager);
+        rwPool.close();
+        try {
+            leader.close();
+        } catch (IOException ignore) {
+        }
+    }
+}
@@ -0,0 +1,273 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.connection;
+
+import com.alibaba.polardbx.proxy.StandInProxy;
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.protocol.common.CompressedPacketCodec;
+import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import com.mysql.cj.jdbc.JdbcConnection;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Compressed protocol with connector-j(useCompression=true), which covers capability negotiation in handshake,
+ * switching to compressed packet after auth OK, and compressed sequence reset on every command.
+ * <p>
+ * Classic protocol of connector-j only speaks zlib, so zstd is driven by a raw socket client which negotiates
+ * CLIENT_ZSTD_COMPRESSION_ALGORITHM with zstd_compression_level in handshake response as mysql client does.
+ */
+public class FrontendCompressionTest {
+    private boolean originalEnable;
+    private StandInProxy proxy;
+
+    @Before
+    public void before() throws Exception {
+        originalEnable = FastConfig.enableFrontendCompression;
+        FastConfig.enableFrontendCompression = true;
+        proxy = new StandInProxy();
+    }
+
+    @After
+    public void after() throws Exception {
+        FastConfig.enableFrontendCompression = originalEnable;
+        proxy.close();
+    }
+
+    private static String repeat(int size) {
+        final StringBuilder builder = new StringBuilder(size);
+        for (int i = 0; i < size; ++i) {
+            builder.append((char) ('a' + i % 7));
+        }
+        return builder.toString();
+    }
+
+    private static FrontendConnection frontend(Connection conn) throws Exception {
+        final FrontendConnection frontend =
+            FrontendConnection.CONNECTIONS.get(conn.unwrap(JdbcConnection.class).getId());
+        assertNotNull(frontend);
+        return frontend;
+    }
+
+    private static void roundTrip(Connection conn) throws Exception {
+        try (final Statement stmt = conn.createStatement()) {
+            // short ones are sent uncompressed in compressed frame, and long ones are deflated
+            for (final int size : new int[] {1, 40, 60, 1000, 100_000, 1_000_000}) {
+                final String value = repeat(size);
+                try (final ResultSet rs = stmt.executeQuery("select '" + value + "' as v")) {
+                    assertTrue(rs.next());
+                    assertEquals(value, rs.getString(1));
+                    assertFalse(rs.next());
+                }
+            }
+
+            // multi packets of result set in one command, and sequence reset on next command
+            for (int i = 0; i < 20; ++i) {
+                stmt.execute("set @a='" + i + "'");
+                try (final ResultSet rs = stmt.executeQuery("select @a, 'x', null")) {
+                    assertTrue(rs.next());
+                    assertEquals(Integer.toString(i), rs.getString(1));
+                    assertEquals("x", rs.getString(2));
+                    assertEquals(null, rs.getString(3));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testCompressedRoundTrip() throws Exception {
+        try (final Connection conn = DriverManager.getConnection(proxy.url("useCompression=true"),
+            StandInProxy.USER, "")) {
+            assertTrue(frontend(conn).compressedPacket);
+            roundTrip(conn);
+            assertTrue(conn.isValid(5)); // COM_PING after queries
+        }
+    }
+
+    @Test
+    public void testUncompressedClient() throws Exception {
+        // compression is enabled on proxy but not requested by client
+        try (final Connection conn = DriverManager.getConnection(proxy.url("useCompression=false"),
+            StandInProxy.USER, "")) {
+            assertFalse(frontend(conn).compressedPacket);
+            roundTrip(conn);
+        }
+    }
+
+    @Test
+    public void testCompressionDisabled() throws Exception {
+        // client asks for compression but not announced by proxy
+        FastConfig.enableFrontendCompression = false;
+        try (final Connection conn = DriverManager.getConnection(proxy.url("useCompression=true"),
+            StandInProxy.USER, "")) {
+            assertFalse(frontend(conn).compressedPacket);
+            roundTrip(conn);
+        }
+    }
+
+    private static byte[] readPacket(DataInputStream in) throws Exception {
+        final byte[] header = new byte[MysqlPacket.NORMAL_HEADER_SIZE];
+        in.readFully(header);
+        final int len = (header[0] & 0xFF) | ((header[1] & 0xFF) << 8) | ((header[2] & 0xFF) << 16);
+        final byte[] payload = new byte[len];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private static Slice packet(int seq, byte[] payload) {
+        final byte[] bytes = new byte[MysqlPacket.NORMAL_HEADER_SIZE + payload.length];
+        bytes[0] = (byte) payload.length;
+        bytes[1] = (byte) (payload.length >>> 8);
+        bytes[2] = (byte) (payload.length >>> 16);
+        bytes[3] = (byte) seq;
+        System.arraycopy(payload, 0, bytes, MysqlPacket.NORMAL_HEADER_SIZE, payload.length);
+        return new Slice(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static String zstdQuery(DataInputStream in, OutputStream out, CompressedPacketCodec codec, String value)
+        throws Exception {
+        final byte[] sql = ("select '" + value + "' as v").getBytes(StandardCharsets.UTF_8);
+        final byte[] query = new byte[1 + sql.length];
+        query[0] = 0x03; // COM_QUERY
+        System.arraycopy(sql, 0, query, 1, sql.length);
+        out.write(codec.compress(Collections.singletonList(packet(0, query))).dump());
+        out.flush();
+
+        // column count, column def, EOF, row, EOF(no CLIENT_DEPRECATE_EOF)
+        final List<byte[]> packets = new ArrayList<>();
+        int eof = 0;
+        while (eof < 2) {
+            final byte[] header = new byte[MysqlPacket.COMPRESSED_HEADER_SIZE];
+            in.readFully(header);
+            final int len = (header[0] & 0xFF) | ((header[1] & 0xFF) << 8) | ((header[2] & 0xFF) << 16);
+            final byte[] frame = new byte[header.length + len];
+            System.arraycopy(header, 0, frame, 0, header.length);
+            in.readFully(frame, header.length, len);
+            codec.decompress(new Slice(ByteBuffer.wrap(frame), 0, frame.length));
+            Slice slice;
+            while ((slice = codec.poll()) != null) {
+                final byte[] payload = new byte[slice.getValid() - MysqlPacket.NORMAL_HEADER_SIZE];
+                System.arraycopy(slice.dump(), MysqlPacket.NORMAL_HEADER_SIZE, payload, 0, payload.length);
+                assertTrue((payload[0] & 0xFF) != 0xFF); // no ERR
+                if ((payload[0] & 0xFF) == 0xFE && payload.length < 9) {
+                    ++eof;
+                }
+                packets.add(payload);
+            }
+        }
+        assertFalse(codec.hasPending());
+        assertEquals(5, packets.size());
+
+        // row of one length encoded string
+        final byte[] row = packets.get(3);
+        final int first = row[0] & 0xFF;
+        final int len;
+        final int offset;
+        if (first < 0xFB) {
+            len = first;
+            offset = 1;
+        } else if (0xFC == first) {
+            len = (row[1] & 0xFF) | ((row[2] & 0xFF) << 8);
+            offset = 3;
+        } else {
+            assertEquals(0xFD, first);
+            len = (row[1] & 0xFF) | ((row[2] & 0xFF) << 8) | ((row[3] & 0xFF) << 16);
+            offset = 4;
+        }
+        return new String(row, offset, len, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void testZstdRoundTrip() throws Exception {
+        try (final Socket socket = new Socket("127.0.0.1", proxy.getPort())) {
+            socket.setSoTimeout(10_000);
+            final DataInputStream in = new DataInputStream(socket.getInputStream());
+            final OutputStream out = socket.getOutputStream();
+
+            // handshake announces both algorithms
+            final byte[] handshake = readPacket(in);
+            int pos = 1;
+            while (handshake[pos] != 0) {
+                ++pos;
+            }
+            ++pos;
+            final int connectionId = ByteBuffer.wrap(handshake, pos, 4).order(ByteOrder.LITTLE_ENDIAN).getInt();
+            pos += 4 + 8 + 1;
+            final int capabilities = ((handshake[pos] & 0xFF) | ((handshake[pos + 1] & 0xFF) << 8))
+                | (((handshake[pos + 5] & 0xFF) | ((handshake[pos + 6] & 0xFF) << 8)) << 16);
+            assertTrue((capabilities & Capabilities.CLIENT_COMPRESS) != 0);
+            assertTrue((capabilities & Capabilities.CLIENT_ZSTD_COMPRESSION_ALGORITHM) != 0);
+
+            // zstd only, as mysql --compression-algorithms=zstd --zstd-compression-level=7
+            final int flags = Capabilities.CLIENT_LONG_PASSWORD | Capabilities.CLIENT_PROTOCOL_41
+                | Capabilities.CLIENT_RESERVED2 | Capabilities.CLIENT_TRANSACTIONS | Capabilities.CLIENT_PLUGIN_AUTH
+                | Capabilities.CLIENT_ZSTD_COMPRESSION_ALGORITHM;
+            final ByteArrayOutputStream response = new ByteArrayOutputStream();
+            final ByteBuffer fixed = ByteBuffer.allocate(32).order(ByteOrder.LITTLE_ENDIAN);
+            fixed.putInt(flags).putInt(MysqlPacket.MAX_PAYLOAD_SIZE).put((byte) 45); // utf8mb4_general_ci
+            response.write(fixed.array());
+            response.write(StandInProxy.USER.getBytes(StandardCharsets.UTF_8));
+            response.write(0);
+            response.write(0); // empty auth response
+            response.write("mysql_native_password".getBytes(StandardCharsets.UTF_8));
+            response.write(0);
+            response.write(7); // zstd_compression_level
+            out.write(packet(1, response.toByteArray()).dump());
+            out.flush();
+
+            final byte[] ok = readPacket(in);
+            assertEquals(0, ok[0]);
+
+            final CompressedPacketCodec codec = new CompressedPacketCodec(CompressedPacketCodec.Algorithm.ZSTD,
+                CompressedPacketCodec.DEFAULT_ZSTD_LEVEL, 64 * 1024 * 1024);
+            try {
+                for (final int size : new int[] {1, 60, 1000, 100_000}) {
+                    final String value = repeat(size);
+                    assertEquals(value, zstdQuery(in, out, codec, value));
+                }
+                assertTrue(FrontendConnection.CONNECTIONS.get(connectionId).compressedPacket);
+            } finally {
+                codec.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.connection.pool;
+
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.protocol.common.MysqlError;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.sql.SQLException;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class BackendPoolAdmissionTest {
+
+    private ServerSocket serverSocket;
+    private final List<Socket> accepted = new CopyOnWriteArrayList<>();
+    private BackendPool pool;
+
+    private int maxConnections, waitTimeout, maxWaiters;
+
+    @BeforeClass
+    public static void beforeClass() {
+        ProxyExecutor.init();
+    }
+
+    @Before
+    public void before() throws IOException {
+        maxConnections = FastConfig.backendPoolMaxConnections;
+        waitTimeout = FastConfig.backendPoolWaitTimeout;
+        maxWaiters = FastConfig.backendPoolMaxWaiters;
+
+        // silent backend which only accepts, admission never depends on login
+        serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(() -> {
+            try {
+                while (true) {
+                    accepted.add(serverSocket.accept());
+                }
+            } catch (IOException ignore) {
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+
+        pool = new BackendPool(new NIOWorker(1),
+            new InetSocketAddress(InetAddress.getLoopbackAddress(), serverSocket.getLocalPort()), null, "user", "pwd",
+            null, 4, false);
+    }
+
+    @After
+    public void after() throws IOException {
+        pool.close();
+        serverSocket.close();
+        for (final Socket socket : accepted) {
+            socket.close();
+        }
+        FastConfig.backendPoolMaxConnections = maxConnections;
+        FastConfig.backendPoolWaitTimeout = waitTimeout;
+        FastConfig.backendPoolMaxWaiters = maxWaiters;
+    }
+
+    private static final class Result {
+        private final CountDownLatch done = new CountDownLatch(1);
+        private final AtomicReference<BackendConnectionWrapper> connection = new AtomicReference<>();
+        private final AtomicReference<Throwable> error = new AtomicReference<>();
+
+        private WaitQueue.Callback<BackendConnectionWrapper> callback() {
+            return (conn, err) -> {
+                connection.set(conn);
+                error.set(err);
+                done.countDown();
+            };
+        }
+
+        private void await() throws InterruptedException {
+            assertTrue(done.await(5, TimeUnit.SECONDS));
+        }
+    }
+
+    private static void assertRejected(Throwable t) {
+        assertTrue(t instanceof SQLException);
+        assertEquals(MysqlError.ER_CON_COUNT_ERROR, ((SQLException) t).getErrorCode());
+    }
+
+    @Test
+    public void testRejectWithoutWaiter() throws Exception {
+        FastConfig.backendPoolMaxConnections = 1;
+        try (final BackendConnectionWrapper first = pool.getConnection(null)) {
+            assertNotNull(first);
+            try {
+                pool.getConnection(null);
+                fail("should be rejected");
+            } catch (SQLException e) {
+                assertRejected(e);
+            }
+            assertEquals(1, pool.getNowOpenConnectionCount());
+            assertEquals(1, pool.getWaitRejected());
+
+            // internal connection is never bounded
+            try (final BackendConnectionWrapper internal = pool.getConnection()) {
+                assertNotNull(internal);
+                assertEquals(2, pool.getNowOpenConnectionCount());
+            }
+        }
+    }
+
+    @Test
+    public void testWaiterServedInOrder() throws Exception {
+        FastConfig.backendPoolMaxConnections = 1;
+        FastConfig.backendPoolWaitTimeout = 5000;
+        final BackendConnectionWrapper first = pool.getConnection(null);
+        assertNotNull(first);
+
+        final Result second = new Result();
+        final Result third = new Result();
+        assertNull(pool.getConnection(null, second.callback()));
+        assertNull(pool.getConnection(null, third.callback()));
+        assertEquals(2, pool.getNowWaitingCount());
+
+        // connection not logged in is closed when released, and slot is handed to the first waiter
+        first.close();
+        second.await();
+        assertNull(second.error.get());
+        assertNotNull(second.connection.get());
+        assertEquals(1, third.done.getCount());
+        assertEquals(1, pool.getNowWaitingCount());
+
+        second.connection.get().close();
+        third.await();
+        assertNull(third.error.get());
+        third.connection.get().close();
+
+        assertEquals(0, pool.getNowWaitingCount());
+        assertEquals(2, pool.getWaitServed());
+        assertTrue(pool.getNowOpenConnectionCount() <= 1);
+    }
+
+    @Test
+    public void testWaitTimeoutAndQueueFull() throws Exception {
+        FastConfig.backendPoolMaxConnections = 1;
+        FastConfig.backendPoolWaitTimeout = 100;
+        FastConfig.backendPoolMaxWaiters = 1;
+        try (final BackendConnectionWrapper first = pool.getConnection(null)) {
+            assertNotNull(first);
+            final Result waiter = new Result();
+            assertNull(pool.getConnection(null, waiter.callback()));
+            try {
+                pool.getConnection(null, new Result().callback());
+                fail("should be rejected");
+            } catch (SQLException e) {
+                assertRejected(e);
+            }
+
+            waiter.await();
+            assertNull(waiter.connection.get());
+            assertRejected(waiter.error.get());
+            assertEquals(1, pool.getWaitTimeouts());
+            assertEquals(1, pool.getWaitRejected());
+            assertEquals(0, pool.getNowWaitingCount());
+        }
+    }
+
+    @Test
+    public void testWaiterFailedWhenPoolClosed() throws Exception {
+        FastConfig.backendPoolMaxConnections = 1;
+        FastConfig.backendPoolWaitTimeout = 5000;
+        try (final BackendConnectionWrapper first = pool.getConnection(null)) {
+            assertNotNull(first);
+            final Result waiter = new Result();
+            assertNull(pool.getConnection(null, waiter.callback()));
+            pool.close();
+            waiter.await();
+            assertNull(waiter.connection.get());
+            assertTrue(waiter.error.get() instanceof IOException);
+        }
+    }
+}
@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.context;
+
+import com.alibaba.polardbx.proxy.protocol.command.StatusFlags;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.utils.CaseInsensitiveString;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Collections;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class FrontendContextTest {
+
+    @Test
+    public void testResetSession() {
+        try (final FrontendContext context = new FrontendContext(
+            new InetSocketAddress("127.0.0.1", 3306), 1, Capabilities.getBaseCapabilities())) {
+            context.setUsername("usr");
+            context.setPrivilegeHost("%");
+            context.setDatabase("db");
+            context.setConfigsAndGlobalVariables(null,
+                Collections.singletonMap(new CaseInsensitiveString("sql_mode"), "'STRICT_TRANS_TABLES'"));
+            final int cleanHash = context.stateHash();
+
+            // dirty the session
+            context.getUserVariables().put(new CaseInsensitiveString("a"), "1");
+            context.getSystemVariables().put(new CaseInsensitiveString("sql_mode"), "''");
+            context.setSqlMode("''");
+            context.setMock("mock");
+            context.updateStatus(3, StatusFlags.SERVER_STATUS_IN_TRANS);
+            assertFalse(context.isAutoCommit());
+            assertTrue(context.isInTransaction());
+
+            assertNull(context.resetSession());
+
+            assertTrue(context.getUserVariables().isEmpty());
+            assertTrue(context.getSystemVariables().isEmpty());
+            assertTrue(context.getPreparedStatementContexts().isEmpty());
+            assertTrue(context.isAutoCommit());
+            assertFalse(context.isInTransaction());
+            assertEquals(0, context.getWarnings());
+            assertEquals("'STRICT_TRANS_TABLES'", context.getSqlMode());
+            assertNull(context.getMock());
+            // user and schema are kept
+            assertEquals("usr", context.getUsername());
+            assertEquals("db", context.getDatabase());
+            // same state as fresh session, so pooled backend with clean state is preferred
+            assertEquals(cleanHash, context.stateHash());
+        }
+    }
+}
@@ -0,0 +1,135 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.logger;
+
+import com.alibaba.polardbx.proxy.protocol.common.ResultState;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+public class SqlAuditLogTest {
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private static SqlAuditRecord fill(int i) {
+        final SqlAuditRecord record = SqlAuditRecord.local();
+        record.startUtc = 1700000000000L + i;
+        record.state = 0 == i % 2 ? ResultState.OK : ResultState.Error;
+        record.retry = i % 3;
+        record.totalNanos = 123456 + i;
+        record.fetchLsnNanos = 0 == i % 2 ? 1000 : 0;
+        record.scheduleNanos = 2000;
+        record.autoCommit = i % 2 != 0;
+        record.lsn = 0 == i % 2 ? 98765 : -1;
+        record.lsnCacheAgeNanos = 0 == i % 4 ? 1500 : 0;
+        record.user = "user";
+        record.host = "127.0.0.1";
+        record.port = 3306;
+        record.schema = 0 == i % 3 ? null : "db";
+        record.traceId = "trx-" + i;
+        record.charset = StandardCharsets.UTF_8;
+        record.sql = ("select '\u4e2d\u6587\n', " + i).getBytes(StandardCharsets.UTF_8);
+        record.sqlLength = record.sql.length;
+        record.parameters = 0 == i % 5 ? "[@1=1]" : null;
+        return record;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        final SqlAuditRecord record = fill(10);
+        final String text = record.toText();
+        final int length = record.encode();
+        final SqlAuditRecord decoded = SqlAuditRecord.decode(record.getScratch(), 0, length);
+        Assert.assertEquals(text, decoded.toText());
+        Assert.assertTrue(text, text.contains(",lsn=98765] select '\u4e2d\u6587 ', 10 [@1=1] # [state:OK,retry:1,"));
+        Assert.assertTrue(text, text.endsWith(",fetch_lsn:1.0us,schedule:2.0us,wait_lsn:0.0us] # trx-10"));
+        Assert.assertTrue(decoded.autoCommit == record.autoCommit && "db".equals(decoded.schema));
+    }
+
+    @Test
+    public void testLsnCacheAge() {
+        final SqlAuditRecord record = fill(12);
+        final String text = record.toText();
+        final int length = record.encode();
+        final SqlAuditRecord decoded = SqlAuditRecord.decode(record.getScratch(), 0, length);
+        Assert.assertEquals(1500, decoded.lsnCacheAgeNanos);
+        Assert.assertEquals(98765, decoded.lsn);
+        Assert.assertEquals(text, decoded.toText());
+        Assert.assertTrue(text, text.endsWith(",wait_lsn:0.0us,lsn_cache_age:1.5us] # trx-12"));
+    }
+
+    @Test
+    public void testWriteRotateAndDecode() throws Exception {
+        final File dir = folder.newFolder();
+        // tiny file size to force rotation, at most 3 files kept
+        final SqlAuditLog log = new SqlAuditLog(2, 1 << 12, dir, 1024, 3);
+        final String[] expected = new String[100];
+        for (int i = 0; i < expected.length; ++i) {
+            final SqlAuditRecord record = fill(i);
+            expected[i] = record.toText();
+            Assert.assertTrue(log.append(record));
+            if (7 == i % 8) {
+                log.drainOnce();
+            }
+        }
+        log.drainOnce();
+        log.idle();
+        log.flushAndClose();
+        Assert.assertEquals(expected.length, log.getWritten());
+        Assert.assertEquals(0, log.getDropped());
+
+        final File[] files = dir.listFiles();
+        Assert.assertNotNull(files);
+        Assert.assertEquals(3, files.length);
+        Arrays.sort(files);
+        final ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        long count = 0;
+        try (final PrintStream out = new PrintStream(bytes, true, "UTF-8")) {
+            for (final File file : files) {
+                count += SqlAuditDecoder.decode(file.getPath(), out);
+            }
+        }
+        // oldest files purged, remaining ones are the tail in order
+        final String[] lines = bytes.toString("UTF-8").split("\n");
+        Assert.assertEquals(count, lines.length);
+        Assert.assertTrue(count > 0 && count < expected.length);
+        Assert.assertArrayEquals(Arrays.copyOfRange(expected, expected.length - lines.length, expected.length),
+            lines);
+    }
+
+    @Test
+    public void testDropWhenFull() {
+        final SqlAuditLog log = new SqlAuditLog(1, 256, folder.getRoot(), 1 << 20, 3);
+        int accepted = 0;
+        for (int i = 0; i < 10; ++i) {
+            if (log.append(fill(i))) {
+                ++accepted;
+            }
+        }
+        Assert.assertTrue(accepted > 0 && accepted < 10);
+        Assert.assertEquals(10 - accepted, log.getDropped());
+    }
+}
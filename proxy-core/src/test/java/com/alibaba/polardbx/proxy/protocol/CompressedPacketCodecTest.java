@@ -0,0 +1,319 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.protocol;
+
+import com.alibaba.polardbx.proxy.protocol.common.CompressedPacketCodec;
+import com.alibaba.polardbx.proxy.protocol.common.MysqlPacket;
+import com.alibaba.polardbx.proxy.utils.FastBufferPool;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class CompressedPacketCodecTest {
+    private static final int MAX_PACKET = 64 * 1024 * 1024;
+
+    private static byte[] packet(int seq, byte[] payload, int offset, int length) {
+        final byte[] bytes = new byte[MysqlPacket.NORMAL_HEADER_SIZE + length];
+        bytes[0] = (byte) length;
+        bytes[1] = (byte) (length >>> 8);
+        bytes[2] = (byte) (length >>> 16);
+        bytes[3] = (byte) seq;
+        System.arraycopy(payload, offset, bytes, MysqlPacket.NORMAL_HEADER_SIZE, length);
+        return bytes;
+    }
+
+    private static byte[] logicalPacket(byte[] payload) {
+        // split into normal packets as large packet does
+        final List<byte[]> parts = new ArrayList<>();
+        int offset = 0;
+        int seq = 0;
+        while (true) {
+            final int len = Math.min(payload.length - offset, MysqlPacket.MAX_PAYLOAD_SIZE);
+            parts.add(packet(seq++, payload, offset, len));
+            offset += len;
+            if (len < MysqlPacket.MAX_PAYLOAD_SIZE) {
+                break;
+            }
+        }
+        final int total = parts.stream().mapToInt(p -> p.length).sum();
+        final byte[] bytes = new byte[total];
+        int pos = 0;
+        for (final byte[] p : parts) {
+            System.arraycopy(p, 0, bytes, pos, p.length);
+            pos += p.length;
+        }
+        return bytes;
+    }
+
+    private static Slice wrap(byte[] bytes) {
+        return new Slice(ByteBuffer.wrap(bytes), 0, bytes.length);
+    }
+
+    private static Slice direct(byte[] bytes) {
+        final ByteBuffer buf = ByteBuffer.allocateDirect(bytes.length);
+        buf.put(bytes);
+        return new Slice(buf, 0, bytes.length);
+    }
+
+    private static List<Slice> splitFrames(Slice frames) {
+        final byte[] bytes = frames.dump();
+        final List<Slice> list = new ArrayList<>();
+        int pos = 0;
+        while (pos < bytes.length) {
+            final int len = (bytes[pos] & 0xFF) | ((bytes[pos + 1] & 0xFF) << 8) | ((bytes[pos + 2] & 0xFF) << 16);
+            list.add(wrap(Arrays.copyOfRange(bytes, pos, pos + MysqlPacket.COMPRESSED_HEADER_SIZE + len)));
+            pos += MysqlPacket.COMPRESSED_HEADER_SIZE + len;
+        }
+        return list;
+    }
+
+    @Test
+    public void testSmallPacketSentRaw() throws Exception {
+        final CompressedPacketCodec client = new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MAX_PACKET);
+        final CompressedPacketCodec server = new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MAX_PACKET);
+        final byte[] ping = packet(0, new byte[] {0x0e}, 0, 1);
+
+        final List<Slice> frames = splitFrames(client.compress(Collections.singletonList(wrap(ping))));
+        assertEquals(1, frames.size());
+        final byte[] frame = frames.get(0).dump();
+        assertEquals(MysqlPacket.COMPRESSED_HEADER_SIZE + ping.length, frame.length);
+        assertEquals(0, frame[3]); // seq
+        assertEquals(0, frame[4] | frame[5] | frame[6]); // not compressed
+
+        server.decompress(frames.get(0));
+        assertArrayEquals(ping, server.poll().dump());
+        assertNull(server.poll());
+        assertFalse(server.hasPending());
+
+        // response continues the sequence of request
+        final byte[] ok = server.compress(Collections.singletonList(wrap(ping))).dump();
+        assertEquals(1, ok[3]);
+    }
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        final CompressedPacketCodec client = new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MAX_PACKET);
+        final CompressedPacketCodec server = new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MAX_PACKET);
+        final Random random = new Random(0);
+
+        final byte[] query = ("select * from t where id in (" + String.join(",", Collections.nCopies(200, "1")) + ")")
+            .getBytes();
+        final byte[] noise = new byte[1000];
+        random.nextBytes(noise);
+        final byte[] large = new byte[MysqlPacket.MAX_PAYLOAD_SIZE + 100];
+        for (int i = 0; i < large.length; ++i) {
+            large[i] = (byte) (i % 7);
+        }
+
+        final List<byte[]> packets = Arrays.asList(
+            logicalPacket(query), logicalPacket(noise), logicalPacket(large), logicalPacket(new byte[0]));
+        final List<Slice> slices = new ArrayList<>();
+        for (final byte[] p : packets) {
+            slices.add(wrap(p));
+        }
+        final Slice compressed = client.compress(slices);
+        final int raw = packets.stream().mapToInt(p -> p.length).sum();
+        assertTrue(compressed.getValid() < raw / 10);
+
+        final List<Slice> frames = splitFrames(compressed);
+        assertEquals(2, frames.size()); // split by max payload size
+        final List<byte[]> got = new ArrayList<>();
+        for (final Slice frame : frames) {
+            server.decompress(frame);
+            Slice packet;
+            while ((packet = server.poll()) != null) {
+                got.add(packet.dump());
+            }
+        }
+        assertEquals(packets.size(), got.size());
+        for (int i = 0; i < packets.size(); ++i) {
+            assertArrayEquals(packets.get(i), got.get(i));
+        }
+        assertFalse(server.hasPending());
+    }
+
+    @Test
+    public void testPacketTooLarge() throws Exception {
+        final CompressedPacketCodec client = new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MAX_PACKET);
+
+        // tiny frame inflates beyond limit is rejected before inflate
+        final Slice bomb = client.compress(Collections.singletonList(wrap(logicalPacket(new byte[1024 * 1024]))));
+        assertTrue(bomb.getValid() < 4096);
+        try {
+            new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, 64 * 1024).decompress(bomb);
+            fail();
+        } catch (DataFormatException e) {
+            assertTrue(e.getMessage().contains("max_allowed_packet"));
+        }
+
+        // large packet continues across frames is rejected by accumulated payload
+        final CompressedPacketCodec server =
+            new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MysqlPacket.MAX_PAYLOAD_SIZE);
+        final List<Slice> frames = splitFrames(client.compress(
+            Collections.singletonList(wrap(logicalPacket(new byte[MysqlPacket.MAX_PAYLOAD_SIZE + 100])))));
+        assertEquals(2, frames.size());
+        server.decompress(frames.get(0));
+        assertNull(server.poll());
+        server.decompress(frames.get(1));
+        try {
+            server.poll();
+            fail();
+        } catch (DataFormatException e) {
+            assertTrue(e.getMessage().contains("max_allowed_packet"));
+        }
+    }
+
+    @Test
+    public void testZstdRoundTrip() throws Exception {
+        final CompressedPacketCodec client =
+            new CompressedPacketCodec(CompressedPacketCodec.Algorithm.ZSTD, CompressedPacketCodec.DEFAULT_ZSTD_LEVEL,
+                MAX_PACKET);
+        final CompressedPacketCodec server =
+            new CompressedPacketCodec(CompressedPacketCodec.Algorithm.ZSTD, CompressedPacketCodec.DEFAULT_ZSTD_LEVEL,
+                MAX_PACKET);
+        final Random random = new Random(0);
+
+        final byte[] noise = new byte[1000];
+        random.nextBytes(noise);
+        final byte[] large = new byte[MysqlPacket.MAX_PAYLOAD_SIZE + 100];
+        for (int i = 0; i < large.length; ++i) {
+            large[i] = (byte) (i % 7);
+        }
+        final List<byte[]> packets = Arrays.asList(
+            logicalPacket(new byte[] {0x0e}), logicalPacket(noise), logicalPacket(large));
+        final List<Slice> slices = new ArrayList<>();
+        for (final byte[] p : packets) {
+            slices.add(wrap(p));
+        }
+        final Slice compressed = client.compress(slices);
+        assertTrue(compressed.getValid() < packets.stream().mapToInt(p -> p.length).sum() / 10);
+
+        final List<byte[]> got = new ArrayList<>();
+        for (final Slice frame : splitFrames(compressed)) {
+            server.decompress(frame);
+            Slice packet;
+            while ((packet = server.poll()) != null) {
+                got.add(packet.dump());
+            }
+        }
+        assertEquals(packets.size(), got.size());
+        for (int i = 0; i < packets.size(); ++i) {
+            assertArrayEquals(packets.get(i), got.get(i));
+        }
+        assertFalse(server.hasPending());
+
+        // incompressible payload falls back to raw frame
+        final List<Slice> raw = splitFrames(client.compress(Collections.singletonList(wrap(logicalPacket(noise)))));
+        assertEquals(1, raw.size());
+        final byte[] frame = raw.get(0).dump();
+        assertEquals(0, frame[4] | frame[5] | frame[6]);
+
+        // zlib stream is rejected by zstd
+        final Slice zlib = new CompressedPacketCodec(Deflater.DEFAULT_COMPRESSION, MAX_PACKET)
+            .compress(Collections.singletonList(wrap(logicalPacket(large))));
+        try {
+            server.decompress(splitFrames(zlib).get(0));
+            fail();
+        } catch (DataFormatException e) {
+            assertTrue(e.getMessage().contains("zstd"));
+        }
+        client.close();
+        server.close();
+    }
+
+    @Test
+    public void testPooledBuffers() throws Exception {
+        final FastBufferPool pool = new FastBufferPool(new int[] {8 * 1024, 1024 * 1024}, new int[] {8, 2});
+        final byte[] query = logicalPacket(
+            ("select * from t where id in (" + String.join(",", Collections.nCopies(200, "1")) + ")").getBytes());
+        final byte[] noise = new byte[1000];
+        new Random(0).nextBytes(noise);
+        final byte[] large = new byte[64 * 1024];
+        for (int i = 0; i < large.length; ++i) {
+            large[i] = (byte) (i % 7);
+        }
+        final byte[] largePacket = logicalPacket(large);
+        final byte[] noisePacket = logicalPacket(noise);
+
+        for (final CompressedPacketCodec.Algorithm algorithm : CompressedPacketCodec.Algorithm.values()) {
+            final CompressedPacketCodec client = new CompressedPacketCodec(algorithm, 1, MAX_PACKET, pool);
+            final CompressedPacketCodec server = new CompressedPacketCodec(algorithm, 1, MAX_PACKET, pool);
+
+            // single direct packet is compressed in place, mixed ones are gathered
+            final List<Slice> sent = new ArrayList<>();
+            sent.add(client.compress(Collections.singletonList(direct(largePacket))));
+            sent.add(client.compress(Arrays.asList(direct(query), wrap(noisePacket), direct(query))));
+            final List<byte[]> expected = Arrays.asList(largePacket, query, noisePacket, query);
+
+            final List<byte[]> got = new ArrayList<>();
+            for (int i = 0; i < sent.size(); ++i) {
+                final Slice frame = sent.get(i);
+                assertNull(frame.getHeapBuffer()); // in pool block
+                // heap copy of frame(fallback of reactor) is also accepted
+                server.decompress(0 == i ? frame : splitFrames(frame).get(0));
+                frame.close();
+                Slice packet;
+                while ((packet = server.poll()) != null) {
+                    assertNull(packet.getHeapBuffer());
+                    got.add(packet.dump());
+                    packet.close();
+                }
+            }
+            assertEquals(expected.size(), got.size());
+            for (int i = 0; i < expected.size(); ++i) {
+                assertArrayEquals(expected.get(i), got.get(i));
+            }
+            assertFalse(server.hasPending());
+
+            // heap fallback when pool is exhausted
+            final List<FastBufferPool.BufferHolder> held = new ArrayList<>();
+            FastBufferPool.BufferHolder holder;
+            while ((holder = pool.allocateAndAddReference()) != null) {
+                held.add(holder);
+            }
+            final Slice heap = client.compress(Collections.singletonList(direct(query)));
+            assertNotNull(heap.getHeapBuffer());
+            server.decompress(heap);
+            try (final Slice packet = server.poll()) {
+                assertArrayEquals(query, packet.dump());
+            }
+            held.forEach(FastBufferPool.BufferHolder::subReference);
+
+            client.close();
+            server.close();
+        }
+        // all blocks returned
+        assertEquals(8, pool.estimatedFreeBlocks());
+    }
+}
@@ -0,0 +1,113 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.protocol.command;
+
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.decoder.SimpleDecoder;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class ComChangeUserTest {
+
+    private static void cstr(ByteArrayOutputStream out, String s) {
+        final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.write(bytes, 0, bytes.length);
+        out.write(0);
+    }
+
+    private static ComChangeUser decode(byte[] payload, int capabilities) {
+        final ComChangeUser packet = new ComChangeUser();
+        packet.decode(new SimpleDecoder(ByteBuffer.wrap(payload), 0, payload.length), capabilities);
+        return packet;
+    }
+
+    @Test
+    public void testSecureConnection() {
+        final byte[] auth = new byte[20];
+        for (int i = 0; i < auth.length; ++i) {
+            auth[i] = (byte) (i + 1);
+        }
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x11);
+        cstr(out, "app");
+        out.write(auth.length);
+        out.write(auth, 0, auth.length);
+        cstr(out, "db1");
+        out.write(45); // utf8mb4_general_ci
+        out.write(0);
+        cstr(out, "mysql_native_password");
+
+        final ComChangeUser packet =
+            decode(out.toByteArray(), Capabilities.CLIENT_RESERVED2 | Capabilities.CLIENT_PLUGIN_AUTH);
+        assertEquals("app", new String(packet.getUsername()));
+        assertArrayEquals(auth, packet.getAuthResponse());
+        assertEquals("db1", new String(packet.getDatabase()));
+        assertEquals(45, packet.getCharacterSet());
+        assertEquals("mysql_native_password", new String(packet.getAuthPluginName()));
+    }
+
+    @Test
+    public void testEmptyPasswordWithoutTail() {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x11);
+        cstr(out, "app");
+        out.write(0);
+        cstr(out, "");
+
+        final ComChangeUser packet = decode(out.toByteArray(), Capabilities.CLIENT_RESERVED2);
+        assertEquals("app", new String(packet.getUsername()));
+        assertNull(packet.getAuthResponse());
+        assertNull(packet.getDatabase());
+        assertEquals(0, packet.getCharacterSet());
+        assertNull(packet.getAuthPluginName());
+    }
+
+    @Test
+    public void testEmptyDatabaseWithTail() {
+        // as connector-j sends without password and database
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0x11);
+        cstr(out, "app");
+        out.write(0);
+        cstr(out, "");
+        out.write(0xFF); // utf8mb4_0900_ai_ci
+        out.write(0);
+        cstr(out, "mysql_native_password");
+
+        final ComChangeUser packet =
+            decode(out.toByteArray(), Capabilities.CLIENT_RESERVED2 | Capabilities.CLIENT_PLUGIN_AUTH);
+        assertEquals("app", new String(packet.getUsername()));
+        assertNull(packet.getAuthResponse());
+        assertNull(packet.getDatabase());
+        assertEquals(255, packet.getCharacterSet());
+        assertEquals("mysql_native_password", new String(packet.getAuthPluginName()));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testBadCommand() {
+        decode(new byte[] {0x03, 0}, Capabilities.CLIENT_RESERVED2);
+    }
+}
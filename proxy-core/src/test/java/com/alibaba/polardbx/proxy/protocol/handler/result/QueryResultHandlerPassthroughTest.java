@@ -0,0 +1,283 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.alibaba.polardbx.proxy.protocol.handler.result;
+
+import com.alibaba.polardbx.proxy.connection.FrontendConnection;
+import com.alibaba.polardbx.proxy.context.BackendContext;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.net.NIOConnection;
+import com.alibaba.polardbx.proxy.protocol.command.ColumnDefinition41;
+import com.alibaba.polardbx.proxy.protocol.command.EofPacket;
+import com.alibaba.polardbx.proxy.protocol.command.FieldType;
+import com.alibaba.polardbx.proxy.protocol.command.OkPacket;
+import com.alibaba.polardbx.proxy.protocol.common.ResultState;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.decoder.Decoder;
+import com.alibaba.polardbx.proxy.protocol.encoder.Encoder;
+import com.alibaba.polardbx.proxy.protocol.handler.MysqlForwarder;
+import com.alibaba.polardbx.proxy.utils.AutoCloseableContainer;
+import com.alibaba.polardbx.proxy.utils.CharsetMapping;
+import com.alibaba.polardbx.proxy.utils.FastBufferPool;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import com.alibaba.polardbx.proxy.utils.UnsafeBytes;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+public class QueryResultHandlerPassthroughTest {
+    private static final int COLUMNS = 3;
+    private static final int ROWS = 2;
+
+    private final FastBufferPool pool = new FastBufferPool(8192, 4);
+    private final List<AutoCloseable> resources = new ArrayList<>();
+
+    private static final class CaptureForwarder extends MysqlForwarder {
+        private final ByteArrayOutputStream forwarded = new ByteArrayOutputStream();
+        private int pushedSlices = 0;
+
+        CaptureForwarder(FrontendConnection connection, FrontendContext context) {
+            super(connection, context);
+        }
+
+        @Override
+        public synchronized void pushSlices(AutoCloseableContainer<Slice> slices) {
+            for (final Slice slice : slices) {
+                forwarded.writeBytes(slice.dump());
+            }
+            pushedSlices += slices.size();
+            slices.close();
+        }
+
+        @Override
+        public synchronized boolean handleAndTakePacket(Slice packet, Decoder decoder) {
+            forwarded.writeBytes(packet.dump());
+            packet.close();
+            return true;
+        }
+
+        @Override
+        public synchronized void handleFinish() {
+        }
+    }
+
+    /**
+     * FrontendConnection needs a running ProxyServer, so allocate a detached one with only the flow control state
+     * which QueryResultHandler touches.
+     */
+    private static FrontendConnection detachedFrontend() throws Exception {
+        final FrontendConnection connection =
+            (FrontendConnection) UnsafeBytes.UNSAFE.allocateInstance(FrontendConnection.class);
+        final Field writeBlocking = NIOConnection.class.getDeclaredField("writeBlocking");
+        writeBlocking.setAccessible(true);
+        writeBlocking.set(connection, new AtomicBoolean(false));
+        final Field writeResumeListener = NIOConnection.class.getDeclaredField("writeResumeListener");
+        writeResumeListener.setAccessible(true);
+        writeResumeListener.set(connection, new CopyOnWriteArrayList<>());
+        return connection;
+    }
+
+    private interface PacketWriter {
+        void write(Encoder encoder) throws IOException;
+    }
+
+    private static byte[] build(int seq, PacketWriter writer) throws IOException {
+        try (final Encoder.BytesOutput output = new Encoder.BytesOutput()) {
+            try (final Encoder encoder = Encoder.create(null, output)) {
+                encoder.setSeq(seq);
+                writer.write(encoder);
+                encoder.flush();
+            }
+            return output.getBytes();
+        }
+    }
+
+    private static List<byte[]> resultSet(int capabilities) throws IOException {
+        final boolean deprecateEof = (capabilities & Capabilities.CLIENT_DEPRECATE_EOF) != 0;
+        final List<byte[]> packets = new ArrayList<>();
+        int seq = 1;
+        packets.add(build(seq++, encoder -> {
+            encoder.begin();
+            encoder.lei(COLUMNS);
+            encoder.end();
+        }));
+        for (int i = 0; i < COLUMNS; ++i) {
+            final ColumnDefinition41 column = new ColumnDefinition41();
+            column.setCatalog("def".getBytes(StandardCharsets.UTF_8));
+            column.setName(("c" + i).getBytes(StandardCharsets.UTF_8));
+            column.setCharacterSet(CharsetMapping.MYSQL_COLLATION_INDEX_utf8mb4_general_ci);
+            column.setType((byte) FieldType.MYSQL_TYPE_VAR_STRING);
+            packets.add(build(seq++, encoder -> column.encode(encoder, capabilities)));
+        }
+        if (!deprecateEof) {
+            packets.add(build(seq++, encoder -> new EofPacket().encode(encoder, capabilities)));
+        }
+        for (int i = 0; i < ROWS; ++i) {
+            final byte[] value = ("row" + i).getBytes(StandardCharsets.UTF_8);
+            packets.add(build(seq++, encoder -> {
+                encoder.begin();
+                for (int c = 0; c < COLUMNS; ++c) {
+                    encoder.le_str(value);
+                }
+                encoder.end();
+            }));
+        }
+        packets.add(build(seq, encoder -> {
+            if (deprecateEof) {
+                final OkPacket ok = new OkPacket();
+                ok.setEOF(true);
+                ok.encode(encoder, capabilities);
+            } else {
+                new EofPacket().encode(encoder, capabilities);
+            }
+        }));
+        return packets;
+    }
+
+    private <T extends AutoCloseable> T hold(T resource) {
+        resources.add(resource);
+        return resource;
+    }
+
+    @Before
+    public void before() {
+        assertEquals(4, pool.estimatedFreeBlocks());
+    }
+
+    @After
+    public void after() throws Exception {
+        for (final AutoCloseable resource : resources) {
+            resource.close();
+        }
+        // all retained slices released
+        assertEquals(4, pool.estimatedFreeBlocks());
+    }
+
+    /**
+     * Feed packets sliced from one pooled block like the reactor read buffer.
+     */
+    private void feed(QueryResultHandler handler, List<byte[]> packets, int count) {
+        final FastBufferPool.BufferHolder holder = pool.allocateAndAddReference();
+        assertNotNull(holder);
+        try {
+            final ByteBuffer buffer = holder.duplicateBuffer();
+            final int base = buffer.position();
+            int offset = 0;
+            for (int i = 0; i < count; ++i) {
+                final byte[] packet = packets.get(i);
+                buffer.put(packet);
+                final Slice slice = new Slice(holder, offset, packet.length);
+                offset += packet.length;
+                if (!handler.handleAndTakePacket(slice, Decoder.decodeNormalPacket(slice))) {
+                    slice.close();
+                }
+            }
+            assertEquals(base + offset, buffer.position());
+            handler.handleFinish();
+        } finally {
+            holder.subReference();
+        }
+    }
+
+    private void assertPassthrough(int capabilities) throws Exception {
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 3306);
+        final BackendContext backendContext = hold(new BackendContext(address, 1, capabilities));
+        final FrontendContext frontendContext = hold(new FrontendContext(address, 2, capabilities));
+        final CaptureForwarder forwarder = hold(new CaptureForwarder(detachedFrontend(), frontendContext));
+        final QueryResultHandler handler =
+            new QueryResultHandler(new AtomicReference<>(backendContext), null, forwarder, null);
+        final List<byte[]> packets = resultSet(capabilities);
+        try {
+            feed(handler, packets, packets.size());
+            assertEquals((capabilities & Capabilities.CLIENT_DEPRECATE_EOF) != 0 ? ResultState.OK : ResultState.EOF,
+                handler.getState());
+        } finally {
+            handler.close();
+        }
+
+        // column definitions never decoded but forwarded as is
+        assertNull(handler.getFields());
+        assertEquals(COLUMNS, handler.getColumnCount());
+        final ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        for (final byte[] packet : packets) {
+            expected.writeBytes(packet);
+        }
+        assertArrayEquals(expected.toByteArray(), forwarder.forwarded.toByteArray());
+    }
+
+    @Test
+    public void testPassthroughDeprecateEof() throws Exception {
+        assertPassthrough(Capabilities.getBaseCapabilities() | Capabilities.CLIENT_DEPRECATE_EOF);
+    }
+
+    @Test
+    public void testPassthroughWithEof() throws Exception {
+        assertPassthrough(Capabilities.getBaseCapabilities() & ~Capabilities.CLIENT_DEPRECATE_EOF);
+    }
+
+    @Test
+    public void testPendingReleasedOnAbort() throws Exception {
+        final int capabilities = Capabilities.getBaseCapabilities() | Capabilities.CLIENT_DEPRECATE_EOF;
+        final InetSocketAddress address = new InetSocketAddress("127.0.0.1", 3306);
+        final BackendContext backendContext = hold(new BackendContext(address, 1, capabilities));
+        final FrontendContext frontendContext = hold(new FrontendContext(address, 2, capabilities));
+        final CaptureForwarder forwarder = hold(new CaptureForwarder(detachedFrontend(), frontendContext));
+        final QueryResultHandler handler =
+            new QueryResultHandler(new AtomicReference<>(backendContext), null, forwarder, null);
+
+        // column count and part of definitions are pending
+        feed(handler, resultSet(capabilities), 2);
+        assertEquals(3, pool.estimatedFreeBlocks());
+        handler.close();
+        assertEquals(ResultState.Abort, handler.getState());
+        assertEquals(0, forwarder.forwarded.size());
+    }
+
+    @Test
+    public void testFieldsDecodedWithoutForwarder() throws Exception {
+        final int capabilities = Capabilities.getBaseCapabilities() | Capabilities.CLIENT_DEPRECATE_EOF;
+        final BackendContext backendContext =
+            hold(new BackendContext(new InetSocketAddress("127.0.0.1", 3306), 1, capabilities));
+        final QueryResultHandler handler =
+            new QueryResultHandler(new AtomicReference<>(backendContext), null, null, null);
+        try {
+            final List<byte[]> packets = resultSet(capabilities);
+            feed(handler, packets, packets.size());
+            assertEquals(COLUMNS, handler.getFields().size());
+            assertEquals("c2", new String(handler.getFields().get(2).getName(), StandardCharsets.UTF_8));
+        } finally {
+            handler.close();
+        }
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.StandInProxy;
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ProxyHintTest {
+    private static Scheduler schedule(FrontendContext context, String sql) throws Exception {
+        final Scheduler scheduler = new Scheduler(null, context, "test", null, new ScheduleTask[0], null, null);
+        final ComQuery query = new ComQuery();
+        query.setQuery(sql.getBytes(StandardCharsets.UTF_8));
+        scheduler.setRequest(query);
+        scheduler.setClassification(new SQLParser(sql).classify());
+        return scheduler;
+    }
+
+    private static byte[] packet(int seq, byte[] payload) {
+        final byte[] packet = new byte[payload.length + 4];
+        packet[0] = (byte) payload.length;
+        packet[1] = (byte) (payload.length >>> 8);
+        packet[2] = (byte) (payload.length >>> 16);
+        packet[3] = (byte) seq;
+        System.arraycopy(payload, 0, packet, 4, payload.length);
+        return packet;
+    }
+
+    @Test
+    public void testRouteAndConsistency() throws Exception {
+        try (final FrontendContext context = new FrontendContext(new InetSocketAddress("127.0.0.1", 3306), 1,
+            Capabilities.getBaseCapabilities())) {
+            Scheduler scheduler = schedule(context, "select 1");
+            new CheckQuerySlaveReadTask().forward(scheduler);
+            assertTrue(scheduler.getSlaveRead());
+
+            scheduler = schedule(context, "select /*+ PROXY_ROUTE(leader) */ 1");
+            new CheckQuerySlaveReadTask().forward(scheduler);
+            assertFalse(scheduler.getSlaveRead());
+
+            // route hint never makes unsafe statement go slave
+            scheduler = schedule(context, "select /*+ PROXY_ROUTE(follower) */ 1 for update");
+            new CheckQuerySlaveReadTask().forward(scheduler);
+            assertFalse(scheduler.getSlaveRead());
+
+            // weak consistency skips LSN fetch
+            scheduler = schedule(context, "select /*+ PROXY_ROUTE(learner) PROXY_CONSISTENCY(weak) */ 1");
+            new CheckQuerySlaveReadTask().forward(scheduler);
+            assertTrue(scheduler.getSlaveRead());
+            assertEquals(ProxyHint.Route.LEARNER, scheduler.getProxyHint().getRoute());
+            assertNull(new FetchLsnTask().forward(scheduler));
+            assertNull(scheduler.getSpecificLsn());
+            assertTrue(scheduler.getSlaveRead());
+        }
+    }
+
+    @Test
+    public void testStrip() throws Exception {
+        final String sql = "select /*+ PROXY_CONSISTENCY(weak) */ 1";
+        final byte[] query = sql.getBytes(StandardCharsets.UTF_8);
+        final ProxyHint hint = new SQLParser(sql).classify().getProxyHint();
+
+        // COM_QUERY with query attributes(parameter count 0 and parameter set count 1) before query
+        final byte[] prefix = new byte[] {0x03, 0, 1};
+        final byte[] payload = new byte[prefix.length + query.length];
+        System.arraycopy(prefix, 0, payload, 0, prefix.length);
+        System.arraycopy(query, 0, payload, prefix.length, query.length);
+
+        final byte[] expectedQuery = "select  1".getBytes(StandardCharsets.UTF_8);
+        final byte[] expected = new byte[prefix.length + expectedQuery.length];
+        System.arraycopy(prefix, 0, expected, 0, prefix.length);
+        System.arraycopy(expectedQuery, 0, expected, prefix.length, expectedQuery.length);
+        assertArrayEquals(packet(0, expected), ForwardComQueryTask.stripProxyHint(packet(0, payload), query, hint));
+
+        // nothing to strip or query not match the packet
+        final byte[] other = "select 1".getBytes(StandardCharsets.UTF_8);
+        assertNull(ForwardComQueryTask.stripProxyHint(packet(0, other), other, hint));
+        assertNull(ForwardComQueryTask.stripProxyHint(packet(0, other), query, hint));
+    }
+
+    @Test
+    public void testStripOnPrepare() throws Exception {
+        final boolean originalStrip = FastConfig.stripProxyHint;
+        try (final StandInProxy proxy = new StandInProxy();
+            final Connection conn = DriverManager.getConnection(proxy.url("useServerPrepStmts=true"),
+                StandInProxy.USER, "");
+            final Connection other = DriverManager.getConnection(proxy.url(""), StandInProxy.USER, "")) {
+            FastConfig.stripProxyHint = true;
+            final StandInMysqlServer leader = proxy.getLeader();
+            try (final PreparedStatement ps = conn.prepareStatement("select /*+ PROXY_ROUTE(leader) */ 'x' as p")) {
+                assertEquals(1, leader.prepares.size());
+                try (final ResultSet rs = ps.executeQuery()) {
+                    assertTrue(rs.next());
+                    assertEquals("x", rs.getString(1));
+                }
+
+                // hold the only idle backend in a transaction, so next execution prepares again on a new one
+                try (final Statement stmt = other.createStatement()) {
+                    stmt.execute("begin");
+                    stmt.execute("select 1");
+                    try (final ResultSet rs = ps.executeQuery()) {
+                        assertTrue(rs.next());
+                        assertEquals("x", rs.getString(1));
+                    }
+                    stmt.execute("rollback");
+                }
+            }
+            assertEquals(2, leader.prepares.size());
+            for (final String prepare : leader.prepares) {
+                assertEquals("select  'x' as p", prepare);
+            }
+
+            // forwarded as is when disabled
+            FastConfig.stripProxyHint = false;
+            try (final PreparedStatement ignore = conn.prepareStatement("select /*+ PROXY_ROUTE(leader) */ 'y'")) {
+                assertEquals("select /*+ PROXY_ROUTE(leader) */ 'y'", leader.prepares.get(2));
+            }
+        } finally {
+            FastConfig.stripProxyHint = originalStrip;
+        }
+    }
+}
@@ -0,0 +1,223 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.ProxyServer;
+import com.alibaba.polardbx.proxy.cluster.FastIdGenerator;
+import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
+import com.alibaba.polardbx.proxy.context.BackendContext;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.privilege.SecurityUtil;
+import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
+import com.alibaba.polardbx.proxy.utils.CaseInsensitiveString;
+import com.alibaba.polardbx.proxy.utils.UnsafeBytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class ReadOnlyTransactionTest {
+
+    private static ProxyServer originalServer;
+
+    private StandInMysqlServer leader;
+    private StandInMysqlServer follower;
+    private BackendPool rwPool;
+    private BackendPool roPool;
+    private FrontendContext context;
+    private long lsnFetches;
+
+    private static Field instanceField() throws Exception {
+        final Field field = ProxyServer.class.getDeclaredField("INSTANCE");
+        field.setAccessible(true);
+        return field;
+    }
+
+    /**
+     * Transaction context needs a ProxyServer for trx id, so allocate a detached one with only the id generator.
+     */
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        ProxyExecutor.init();
+        originalServer = (ProxyServer) instanceField().get(null);
+        final ProxyServer server = (ProxyServer) UnsafeBytes.UNSAFE.allocateInstance(ProxyServer.class);
+        final Field generator = ProxyServer.class.getDeclaredField("trxIdGenerator");
+        generator.setAccessible(true);
+        generator.set(server, new FastIdGenerator(1));
+        instanceField().set(null, server);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        instanceField().set(null, originalServer);
+    }
+
+    @Before
+    public void before() throws IOException {
+        leader = new StandInMysqlServer();
+        follower = new StandInMysqlServer();
+        final NIOWorker worker = StandInMysqlServer.worker();
+        final String password = SecurityUtil.encrypt("pwd");
+        rwPool = new BackendPool(worker, leader.address(), null, "user", password, null, 4, false);
+        roPool = new BackendPool(worker, follower.address(), null, "user", password, null, 4, true);
+        context = new FrontendContext(new InetSocketAddress("127.0.0.1", 3306), 1, Capabilities.getBaseCapabilities());
+        context.setCharset(0x21);
+        lsnFetches = 0;
+    }
+
+    @After
+    public void after() throws IOException {
+        context.close();
+        rwPool.close();
+        roPool.close();
+        leader.close();
+        follower.close();
+    }
+
+    /**
+     * Route and run one statement through the read/write splitting tasks, and backend is picked as InitBackendTask
+     * does. LSN fetch from leader is counted when the statement really needs one.
+     *
+     * @return first column of result or null if no result set
+     */
+    private String execute(String sql) throws Exception {
+        final Scheduler scheduler = new Scheduler(null, context, "test", null, new ScheduleTask[0], null, null);
+        final ComQuery query = new ComQuery();
+        query.setQuery(sql.getBytes(StandardCharsets.UTF_8));
+        scheduler.setRequest(query);
+        scheduler.setClassification(new SQLParser(sql).classify());
+        assertNull(new CheckQuerySlaveReadTask().forward(scheduler));
+
+        final boolean goSlave = scheduler.getSlaveRead();
+        final FrontendTransactionContext trx = context.referenceTransaction(!goSlave);
+        try {
+            BackendConnectionWrapper backend = goSlave ? trx.getExistingRoConnection() : trx.getExistingRwConnection();
+            if (null == backend) {
+                backend = trx.bindConnection((goSlave ? roPool : rwPool).getConnection(context.stateHash()), context,
+                    goSlave);
+            }
+            scheduler.setBackend(backend);
+
+            if (goSlave && !trx.isRoTransaction()) {
+                // what GroupingLsnFetcher does
+                scheduler.setSpecificLsn(leader.appliedLsn.get());
+                ++lsnFetches;
+            }
+            assertNull(new FetchLsnTask().forward(scheduler));
+            assertNull(new SetLsnTask().forward(scheduler));
+
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+            final QueryResultHandler handler =
+                backend.sendQuery(sql, StandardCharsets.UTF_8, false, (h, before, state) -> {
+                    if (state.isDone() && h != null) {
+                        // what QueryResultCallback does
+                        final BackendContext backendContext = h.getContextReference().getAcquire();
+                        context.updateStatus(backendContext);
+                        trx.updateTransactionStarted(context.isInTransaction(),
+                            Boolean.TRUE.equals(scheduler.getIsSlaveConnection()));
+                        done.complete(null);
+                    }
+                });
+            final List<String> values = new ArrayList<>();
+            handler.consume(row -> values.add(new String(row[0], StandardCharsets.UTF_8)),
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+            done.get(5, TimeUnit.SECONDS);
+            return values.isEmpty() ? null : values.get(0);
+        } finally {
+            final FrontendTransactionContext free = context.dereferenceTransaction();
+            if (free != null) {
+                free.close();
+            }
+        }
+    }
+
+    @Test
+    public void testSnapshotConsistency() throws Exception {
+        assertNull(execute("start transaction read only"));
+        assertTrue(context.getTransactionContext().isRoTransaction());
+        assertEquals(1, lsnFetches);
+        assertEquals(1, follower.count("set read_lsn=100"));
+
+        // follower keeps applying, but statements in trx see the snapshot taken at start
+        for (int i = 1; i <= 3; ++i) {
+            follower.appliedLsn.addAndGet(50);
+            leader.appliedLsn.addAndGet(50);
+            assertEquals("100", execute("select lsn from t"));
+        }
+        assertNull(execute("commit"));
+
+        // all in one follower connection with single LSN fetch and set
+        assertEquals(1, lsnFetches);
+        assertEquals(1, follower.count("set read_lsn"));
+        assertEquals(5, follower.count("start") + follower.count("select") + follower.count("commit"));
+        assertEquals(0, leader.count("select") + leader.count("start") + leader.count("commit"));
+        assertNull(context.getTransactionContext());
+
+        // back to per statement LSN after trx end
+        assertEquals("250", execute("select lsn from t"));
+        assertEquals(2, lsnFetches);
+        assertEquals(1, follower.count("set read_lsn=250"));
+    }
+
+    @Test
+    public void testSessionAccessMode() throws Exception {
+        // read write trx goes leader and all statements stick to it
+        execute("start transaction");
+        assertFalse(context.getTransactionContext().isRoTransaction());
+        execute("select lsn from t");
+        execute("commit");
+        assertEquals(3, leader.count("start") + leader.count("select") + leader.count("commit"));
+
+        // session default access mode
+        context.getSystemVariables().put(new CaseInsensitiveString("transaction_read_only"), "1");
+        execute("begin");
+        assertTrue(context.getTransactionContext().isRoTransaction());
+        execute("commit");
+        assertEquals(2, follower.count("begin") + follower.count("commit"));
+
+        // explicit access mode overrides session one
+        execute("start transaction read write");
+        assertFalse(context.getTransactionContext().isRoTransaction());
+        execute("commit");
+        assertEquals(1, leader.count("start transaction read write"));
+        assertEquals(1, lsnFetches);
+    }
+}
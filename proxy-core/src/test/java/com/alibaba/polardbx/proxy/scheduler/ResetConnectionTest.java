@@ -0,0 +1,197 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.StandInProxy;
+import com.alibaba.polardbx.proxy.connection.FrontendConnection;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.mysql.cj.jdbc.ConnectionImpl;
+import com.mysql.cj.jdbc.JdbcConnection;
+import com.mysql.cj.protocol.a.NativeConstants;
+import com.mysql.cj.protocol.a.NativePacketPayload;
+import com.mysql.cj.protocol.a.NativeProtocol;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * COM_RESET_CONNECTION sent by connector-j(as pools do when connection is returned), and all session states should be
+ * cleared on proxy and not leaked by the backend connection which is reused.
+ */
+public class ResetConnectionTest {
+    private StandInProxy proxy;
+
+    @Before
+    public void before() throws Exception {
+        proxy = new StandInProxy();
+    }
+
+    @After
+    public void after() throws Exception {
+        proxy.close();
+    }
+
+    private static FrontendContext context(Connection conn) throws Exception {
+        final FrontendConnection frontend =
+            FrontendConnection.CONNECTIONS.get(conn.unwrap(JdbcConnection.class).getId());
+        assertNotNull(frontend);
+        return frontend.getContext();
+    }
+
+    // connector-j resets with COM_CHANGE_USER, so send COM_RESET_CONNECTION through its protocol as pools do
+    private static void resetConnection(Connection conn) throws Exception {
+        final NativeProtocol protocol = ((ConnectionImpl) conn.unwrap(JdbcConnection.class)).getSession().getProtocol();
+        final NativePacketPayload packet = new NativePacketPayload(1);
+        packet.writeInteger(NativeConstants.IntegerDataType.INT1, NativeConstants.COM_RESET_CONNECTION);
+        protocol.sendCommand(packet, false, 0);
+    }
+
+    @Test
+    public void testResetConnection() throws Exception {
+        final String globalSqlMode = StandInMysqlServer.GLOBAL_VARIABLES.get("sql_mode");
+        try (final Connection conn = DriverManager.getConnection(proxy.url("useServerPrepStmts=true"),
+            StandInProxy.USER, "")) {
+            final FrontendContext context = context(conn);
+            final PreparedStatement ps = conn.prepareStatement("select 'ps' as p");
+            try (final Statement stmt = conn.createStatement()) {
+                stmt.execute("set @a = 1, session sql_mode = '', @@session.time_zone = '+08:00'");
+                stmt.execute("set session mock = 'noop'");
+                conn.setAutoCommit(false);
+                stmt.execute("select lsn from t"); // trx started on backend
+                stmt.execute("do 1");
+            }
+            context.setLastError("last error");
+
+            // all states are recorded before reset
+            assertEquals("1", context.getUserVariables().values().iterator().next().replace("'", ""));
+            assertFalse(context.getSystemVariables().isEmpty());
+            assertFalse(context.getPreparedStatementContexts().isEmpty());
+            assertNotNull(context.getTransactionContext());
+            assertTrue(context.isInTransaction());
+            assertFalse(context.isAutoCommit());
+            assertEquals(1, context.getWarnings());
+            assertEquals("''", context.getSqlMode()); // kept as SQL literal
+            assertEquals("noop", context.getMock());
+            assertEquals("last error", context.getLastError());
+            assertEquals(0, proxy.getLeader().rollbacks.get());
+
+            resetConnection(conn);
+
+            // cleared on proxy
+            assertTrue(context.getUserVariables().isEmpty());
+            assertTrue(context.getSystemVariables().isEmpty());
+            assertTrue(context.getPreparedStatementContexts().isEmpty());
+            assertNull(context.getTransactionContext());
+            assertFalse(context.isInTransaction());
+            assertTrue(context.isAutoCommit());
+            assertEquals(0, context.getWarnings());
+            assertNull(context.getSqlMode()); // global one and no global variables gathered
+            assertNull(context.getMock());
+            assertNull(context.getLastError());
+
+            // trx is rolled back by dropping the backend connection
+            final long deadline = System.currentTimeMillis() + 5000;
+            while (0 == proxy.getLeader().rollbacks.get() && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(1, proxy.getLeader().rollbacks.get());
+
+            // and nothing leaked to backend
+            conn.setAutoCommit(true);
+            try (final Statement stmt = conn.createStatement();
+                 final ResultSet rs = stmt.executeQuery(
+                     "select @a, @@autocommit, @@sql_mode, @@time_zone")) {
+                assertTrue(rs.next());
+                assertNull(rs.getString(1));
+                assertEquals("1", rs.getString(2));
+                assertEquals(globalSqlMode, rs.getString(3));
+                assertEquals(StandInMysqlServer.GLOBAL_VARIABLES.get("time_zone"), rs.getString(4));
+            }
+
+            // prepared statement is closed
+            try {
+                ps.executeQuery();
+                fail("prepared statement should be closed by reset");
+            } catch (SQLException e) {
+                assertTrue(e.getMessage(), e.getMessage().contains("Unknown prepared statement"));
+            }
+        }
+    }
+
+    // COM_CHANGE_USER is always challenged with a fresh seed by auth switch request, connector-j follows it
+    @Test
+    public void testChangeUser() throws Exception {
+        try (final Connection conn = DriverManager.getConnection(proxy.url(""), StandInProxy.USER, "")) {
+            final FrontendContext context = context(conn);
+            try (final Statement stmt = conn.createStatement()) {
+                stmt.execute("set @a = 1");
+                // variables are gathered after OK of set, so sync with next query on the same backend
+                try (final ResultSet rs = stmt.executeQuery("select @a")) {
+                    assertTrue(rs.next());
+                    assertEquals("1", rs.getString(1));
+                }
+                assertFalse(context.getUserVariables().isEmpty());
+
+                stmt.execute("set @b = 2");
+            }
+
+            // change user waits until the running post operation(held trx reference here) done
+            assertNotNull(context.referenceTransaction(false));
+            final AtomicBoolean resetEarly = new AtomicBoolean(false);
+            final Thread postOperation = new Thread(() -> {
+                try {
+                    Thread.sleep(100);
+                } catch (InterruptedException ignore) {
+                }
+                resetEarly.set(context.getUserVariables().isEmpty());
+                final FrontendTransactionContext trx = context.dereferenceTransaction();
+                if (trx != null) {
+                    trx.close();
+                }
+            });
+            postOperation.start();
+            conn.unwrap(JdbcConnection.class).changeUser(StandInProxy.USER, "");
+            postOperation.join();
+            assertFalse(resetEarly.get());
+            assertTrue(context.getUserVariables().isEmpty());
+            try (final Statement stmt = conn.createStatement();
+                 final ResultSet rs = stmt.executeQuery("select @a, @b")) {
+                assertTrue(rs.next());
+                assertNull(rs.getString(1));
+                assertNull(rs.getString(2));
+            }
+        }
+    }
+}
@@ -0,0 +1,313 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.ProxyServer;
+import com.alibaba.polardbx.proxy.cluster.FastIdGenerator;
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
+import com.alibaba.polardbx.proxy.context.BackendContext;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.context.transaction.FrontendTransactionContext;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.privilege.SecurityUtil;
+import com.alibaba.polardbx.proxy.protocol.command.ComQuery;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
+import com.alibaba.polardbx.proxy.serverless.GroupingLsnFetcher;
+import com.alibaba.polardbx.proxy.utils.UnsafeBytes;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SessionConsistencyTest {
+
+    private static ProxyServer originalServer;
+
+    private StandInMysqlServer leader;
+    private StandInMysqlServer follower;
+    private BackendPool rwPool;
+    private BackendPool roPool;
+    private FrontendContext context;
+    private long lsnFetches;
+    private Scheduler lastScheduler;
+
+    // LSN fetch from leader as GroupingLsnFetcher does, but in current thread
+    private final FetchLsnTask fetchLsnTask = new FetchLsnTask() {
+        @Override
+        protected Boolean fetchLsnAndForward(Scheduler scheduler) {
+            ++lsnFetches;
+            lsnFetched(scheduler, leader.appliedLsn.get());
+            return null;
+        }
+    };
+
+    private static Field instanceField() throws Exception {
+        final Field field = ProxyServer.class.getDeclaredField("INSTANCE");
+        field.setAccessible(true);
+        return field;
+    }
+
+    private static Field cachedLsnField() throws Exception {
+        final Field field = GroupingLsnFetcher.class.getDeclaredField("cachedLsn");
+        field.setAccessible(true);
+        return field;
+    }
+
+    // as a fetch issued at issueNanos done
+    private static void cacheLsn(long lsn, long issueNanos) throws Exception {
+        final Method method = GroupingLsnFetcher.class.getDeclaredMethod("updateCachedLsn", long.class, long.class);
+        method.setAccessible(true);
+        method.invoke(null, lsn, issueNanos);
+    }
+
+    @BeforeClass
+    public static void beforeClass() throws Exception {
+        ProxyExecutor.init();
+        originalServer = (ProxyServer) instanceField().get(null);
+        final ProxyServer server = (ProxyServer) UnsafeBytes.UNSAFE.allocateInstance(ProxyServer.class);
+        final Field generator = ProxyServer.class.getDeclaredField("trxIdGenerator");
+        generator.setAccessible(true);
+        generator.set(server, new FastIdGenerator(1));
+        instanceField().set(null, server);
+    }
+
+    @AfterClass
+    public static void afterClass() throws Exception {
+        instanceField().set(null, originalServer);
+    }
+
+    @Before
+    public void before() throws IOException {
+        leader = new StandInMysqlServer();
+        follower = new StandInMysqlServer();
+        final NIOWorker worker = StandInMysqlServer.worker();
+        final String password = SecurityUtil.encrypt("pwd");
+        rwPool = new BackendPool(worker, leader.address(), null, "user", password, null, 4, false);
+        roPool = new BackendPool(worker, follower.address(), null, "user", password, null, 4, true);
+        context = new FrontendContext(new InetSocketAddress("127.0.0.1", 3306), 1, Capabilities.getBaseCapabilities());
+        context.setCharset(0x21);
+        lsnFetches = 0;
+    }
+
+    @After
+    public void after() throws Exception {
+        FastConfig.enableSessionConsistency = false;
+        FastConfig.fetchLsnCacheWindow = 0;
+        ((AtomicReference<?>) cachedLsnField().get(null)).set(null);
+        context.close();
+        rwPool.close();
+        roPool.close();
+        leader.close();
+        follower.close();
+    }
+
+    /**
+     * Route and run one statement through the read/write splitting tasks, and leader writes are recorded as
+     * QueryResultCallback does.
+     *
+     * @return first column of result or null if no result set
+     */
+    private String execute(String sql) throws Exception {
+        final Scheduler scheduler = new Scheduler(null, context, "test", null, new ScheduleTask[0], null, null);
+        lastScheduler = scheduler;
+        final ComQuery query = new ComQuery();
+        query.setQuery(sql.getBytes(StandardCharsets.UTF_8));
+        scheduler.setRequest(query);
+        scheduler.setClassification(new SQLParser(sql).classify());
+        assertNull(new CheckQuerySlaveReadTask().forward(scheduler));
+
+        final boolean goSlave = scheduler.getSlaveRead();
+        final FrontendTransactionContext trx = context.referenceTransaction(!goSlave);
+        try {
+            final BackendConnectionWrapper backend =
+                trx.bindConnection((goSlave ? roPool : rwPool).getConnection(context.stateHash()), context, goSlave);
+            scheduler.setBackend(backend);
+            assertNull(fetchLsnTask.forward(scheduler));
+            assertNull(new SetLsnTask().forward(scheduler));
+
+            final CompletableFuture<Void> done = new CompletableFuture<>();
+            final QueryResultHandler handler =
+                backend.sendQuery(sql, StandardCharsets.UTF_8, false, (h, before, state) -> {
+                    if (state.isDone() && h != null) {
+                        final BackendContext backendContext = h.getContextReference().getAcquire();
+                        context.updateStatus(backendContext);
+                        if (!goSlave && !scheduler.getClassification().isReadOnly()) {
+                            context.markSessionWrite();
+                        }
+                        done.complete(null);
+                    }
+                });
+            final List<String> values = new ArrayList<>();
+            handler.consume(row -> values.add(new String(row[0], StandardCharsets.UTF_8)),
+                System.nanoTime() + TimeUnit.SECONDS.toNanos(5));
+            done.get(5, TimeUnit.SECONDS);
+            return values.isEmpty() ? null : values.get(0);
+        } finally {
+            final FrontendTransactionContext free = context.dereferenceTransaction();
+            if (free != null) {
+                free.close();
+            }
+        }
+    }
+
+    @Test
+    public void testReadYourWrites() throws Exception {
+        FastConfig.enableSessionConsistency = true;
+
+        // nothing written by this session, no LSN to wait
+        assertEquals("100", execute("select lsn from t"));
+        assertEquals(0, lsnFetches);
+        assertEquals(0, follower.count("set read_lsn"));
+
+        // first read after write fetches LSN once, and following reads reuse it
+        execute("insert into t values (1)");
+        assertTrue(context.isSessionLsnPending());
+        follower.appliedLsn.set(101);
+        assertEquals("101", execute("select lsn from t"));
+        assertEquals(1, lsnFetches);
+        assertEquals(101, context.getSessionLsn());
+        assertFalse(context.isSessionLsnPending());
+
+        // other sessions' writes move leader forward, but reads of this session only wait for its own write
+        leader.appliedLsn.addAndGet(10);
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("101", execute("select lsn from t"));
+        }
+        assertEquals(1, lsnFetches);
+        assertEquals(4, roPool.getReadLsnSent() + roPool.getReadLsnAvoided());
+        assertEquals(roPool.getReadLsnSent(), follower.count("set read_lsn=101"));
+        assertEquals(0, leader.count("select"));
+
+        // follower not caught up with the new write, and read is aborted(retransmitted by callback)
+        execute("update t set a = 2");
+        try {
+            execute("select lsn from t");
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Query abort.", e.getMessage());
+        }
+        assertEquals(2, lsnFetches);
+        assertEquals(112, context.getSessionLsn());
+        // waiting read_lsn on lagging follower is covered by SetLsnTaskTest
+        assertTrue(roPool.isReadLsnLagging());
+        roPool.setReadLsnLagging(false);
+
+        // retry after follower caught up, and no more fetch
+        follower.appliedLsn.set(112);
+        assertEquals("112", execute("select lsn from t"));
+        assertEquals(2, lsnFetches);
+        assertEquals(2, follower.count("set read_lsn=112"));
+    }
+
+    @Test
+    public void testHint() throws Exception {
+        execute("insert into t values (1)");
+        follower.appliedLsn.set(101);
+
+        // strong consistency by default and fetch for every read
+        execute("select lsn from t");
+        execute("select lsn from t");
+        assertEquals(2, lsnFetches);
+
+        // LSN fetched by strong read also covers the write
+        for (int i = 0; i < 3; ++i) {
+            assertEquals("101", execute("select /*+ PROXY_CONSISTENCY(session) */ lsn from t"));
+        }
+        assertEquals(2, lsnFetches);
+        assertEquals(5, roPool.getReadLsnSent() + roPool.getReadLsnAvoided());
+        assertEquals(roPool.getReadLsnSent(), follower.count("set read_lsn=101"));
+    }
+
+    @Test
+    public void testBoundedStaleness() throws Exception {
+        FastConfig.fetchLsnCacheWindow = 1000;
+
+        // LSN fetched within the window is reused
+        cacheLsn(100, System.nanoTime());
+        assertEquals("100", execute("select lsn from t"));
+        assertEquals(0, lsnFetches);
+        assertTrue(lastScheduler.getLsnCacheAgeNanos() > 0);
+        assertEquals(1, follower.count("set read_lsn=100"));
+
+        // cached one issued before write of this session is not enough
+        execute("insert into t values (1)");
+        follower.appliedLsn.set(101);
+        assertEquals("101", execute("select lsn from t"));
+        assertEquals(1, lsnFetches);
+        assertEquals(0, lastScheduler.getLsnCacheAgeNanos());
+
+        // but fetched by others after the write is, and no older than the session LSN
+        cacheLsn(101, System.nanoTime());
+        execute("select lsn from t");
+        assertEquals(1, lsnFetches);
+        assertEquals(3, roPool.getReadLsnSent() + roPool.getReadLsnAvoided());
+        assertEquals(roPool.getReadLsnSent(), follower.count("set read_lsn"));
+
+        // out of window
+        leader.appliedLsn.set(105);
+        follower.appliedLsn.set(105);
+        FastConfig.fetchLsnCacheWindow = 1;
+        Thread.sleep(5);
+        assertEquals("105", execute("select lsn from t"));
+        assertEquals(2, lsnFetches);
+    }
+
+    @Test
+    public void testStrongHintSkipsCachedLsn() throws Exception {
+        FastConfig.fetchLsnCacheWindow = 1000;
+        cacheLsn(100, System.nanoTime());
+        leader.appliedLsn.set(103);
+        follower.appliedLsn.set(103);
+
+        // strong by default reuses the cached one within the window
+        assertEquals("103", execute("select lsn from t"));
+        assertEquals(0, lsnFetches);
+        assertTrue(lastScheduler.getLsnCacheAgeNanos() > 0);
+        assertEquals(100, (long) lastScheduler.getSpecificLsn());
+
+        // while explicit strong read always fetches
+        assertEquals("103", execute("select /*+ PROXY_CONSISTENCY(strong) */ lsn from t"));
+        assertEquals(1, lsnFetches);
+        assertEquals(0, lastScheduler.getLsnCacheAgeNanos());
+        assertEquals(103, (long) lastScheduler.getSpecificLsn());
+    }
+}
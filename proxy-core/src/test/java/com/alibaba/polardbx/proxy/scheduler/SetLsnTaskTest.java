@@ -0,0 +1,170 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.connection.pool.BackendConnectionWrapper;
+import com.alibaba.polardbx.proxy.connection.pool.BackendPool;
+import com.alibaba.polardbx.proxy.context.FrontendContext;
+import com.alibaba.polardbx.proxy.privilege.SecurityUtil;
+import com.alibaba.polardbx.proxy.protocol.connection.Capabilities;
+import com.alibaba.polardbx.proxy.protocol.handler.result.QueryResultHandler;
+import com.alibaba.polardbx.proxy.utils.Slice;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class SetLsnTaskTest {
+    private static final String SQL = "select lsn from t";
+
+    private StandInMysqlServer follower;
+    private BackendPool roPool;
+    private FrontendContext context;
+
+    @BeforeClass
+    public static void beforeClass() {
+        ProxyExecutor.init();
+    }
+
+    @Before
+    public void before() throws IOException {
+        follower = new StandInMysqlServer();
+        roPool = new BackendPool(StandInMysqlServer.worker(), follower.address(), null, "user",
+            SecurityUtil.encrypt("pwd"), null, 4, true);
+        context = new FrontendContext(new InetSocketAddress("127.0.0.1", 3306), 1, Capabilities.getBaseCapabilities());
+        context.setCharset(0x21);
+    }
+
+    @After
+    public void after() throws IOException {
+        context.close();
+        roPool.close();
+        follower.close();
+    }
+
+    /**
+     * Slave read with LSN through SetLsnTask, and a stand-in forward task sends the query on the slave connection.
+     *
+     * @return first column of result, or null if it fell back to leader without executing on slave
+     */
+    private String read(BackendConnectionWrapper backend, long lsn) throws Exception {
+        final CompletableFuture<QueryResultHandler> sent = new CompletableFuture<>();
+        final ScheduleTask forward = s -> {
+            sent.complete(backend.sendQuery(SQL, StandardCharsets.UTF_8, false, (h, before, state) -> {
+            }));
+            return true;
+        };
+        final byte[] packet = new byte[] {1, 0, 0, 0, 0x03};
+        final Scheduler scheduler = new Scheduler(null, context, "test",
+            new Slice(ByteBuffer.wrap(packet), 0, packet.length), new ScheduleTask[] {new SetLsnTask(), forward},
+            null, null);
+        scheduler.setSendError(false);
+        scheduler.setSlaveRead(true);
+        scheduler.setBackend(backend);
+        scheduler.setSpecificLsn(lsn);
+        scheduler.forward();
+
+        // forwarded, or back to leader after waiting LSN failed
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!sent.isDone() && scheduler.getSlaveRead()) {
+            assertTrue(System.nanoTime() < deadline);
+            Thread.sleep(1);
+        }
+        if (!sent.isDone()) {
+            return null;
+        }
+        final List<String> values = new ArrayList<>();
+        sent.get().consume(row -> values.add(new String(row[0], StandardCharsets.UTF_8)), deadline);
+        return values.get(0);
+    }
+
+    @Test
+    public void testElideConfirmed() throws Exception {
+        follower.appliedLsn.set(200);
+        try (final BackendConnectionWrapper backend = roPool.getConnection(context.stateHash())) {
+            assertEquals("200", read(backend, 150));
+            assertEquals(1, follower.count("set read_lsn=150"));
+
+            // confirmed at or beyond on this connection
+            assertEquals("200", read(backend, 150));
+            assertEquals("200", read(backend, 120));
+            assertEquals(1, follower.count("set read_lsn"));
+            assertEquals(1, roPool.getReadLsnSent());
+            assertEquals(2, roPool.getReadLsnAvoided());
+
+            assertEquals("200", read(backend, 180));
+            assertEquals(2, follower.count("set read_lsn"));
+            assertEquals(4, follower.count("select"));
+        }
+    }
+
+    @Test
+    public void testNoExecutionOnLaggingSlave() throws Exception {
+        // first failure is found after the pipelined query already executed
+        try (final BackendConnectionWrapper backend = roPool.getConnection(context.stateHash())) {
+            read(backend, 150);
+            fail();
+        } catch (RuntimeException e) {
+            assertEquals("Query abort.", e.getMessage());
+        }
+        assertEquals(1, follower.count("select"));
+        assertTrue(roPool.isReadLsnLagging());
+
+        // then wait for set read_lsn before sending query on the lagging node
+        try (final BackendConnectionWrapper backend = roPool.getConnection(context.stateHash())) {
+            assertNull(read(backend, 150));
+        }
+        assertEquals(2, follower.count("set read_lsn=150"));
+        assertEquals(1, follower.count("select"));
+        assertTrue(roPool.isReadLsnLagging());
+
+        // caught up, and pipeline again
+        follower.appliedLsn.set(150);
+        try (final BackendConnectionWrapper backend = roPool.getConnection(context.stateHash())) {
+            assertEquals("150", read(backend, 150));
+            assertFalse(roPool.isReadLsnLagging());
+            assertEquals(2, follower.count("select"));
+            // waited once and not counted again when pipeline rerun
+            assertEquals(3, roPool.getReadLsnSent());
+            assertEquals(0, roPool.getReadLsnAvoided());
+
+            follower.appliedLsn.set(160);
+            assertEquals("160", read(backend, 160));
+            assertEquals(3, follower.count("select"));
+            assertEquals(4, roPool.getReadLsnSent());
+            assertEquals(0, roPool.getReadLsnAvoided());
+        }
+    }
+}
@@ -0,0 +1,532 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Minimal MySQL server keeps an applied LSN for read/write splitting tests. Writes move the LSN forward, select
+ * returns it(or snapshot of it taken when trx starts), and set read_lsn fails when the LSN is not applied yet.
+ * <p>
+ * Variables, autocommit and prepared statements are kept per connection, and select without table returns values
+ * of variables and literals, which is enough for a real client(connector-j) talking through the proxy.
+ */
+public class StandInMysqlServer implements AutoCloseable {
+    private static final int CAPABILITIES = 0x1 | 0x200 | 0x2000 | 0x8000 | 0x10000 | 0x20000 | 0x80000;
+    private static final int STATUS_IN_TRANS = 0x1;
+    private static final int STATUS_AUTOCOMMIT = 0x2;
+
+    public static final Map<String, String> GLOBAL_VARIABLES = new HashMap<>();
+
+    static {
+        GLOBAL_VARIABLES.put("auto_increment_increment", "1");
+        GLOBAL_VARIABLES.put("character_set_client", "utf8mb4");
+        GLOBAL_VARIABLES.put("character_set_connection", "utf8mb4");
+        GLOBAL_VARIABLES.put("character_set_results", "utf8mb4");
+        GLOBAL_VARIABLES.put("character_set_server", "utf8mb4");
+        GLOBAL_VARIABLES.put("collation_server", "utf8mb4_general_ci");
+        GLOBAL_VARIABLES.put("collation_connection", "utf8mb4_general_ci");
+        GLOBAL_VARIABLES.put("init_connect", "");
+        GLOBAL_VARIABLES.put("interactive_timeout", "28800");
+        GLOBAL_VARIABLES.put("license", "GPL");
+        GLOBAL_VARIABLES.put("lower_case_table_names", "1");
+        GLOBAL_VARIABLES.put("max_allowed_packet", "67108864");
+        GLOBAL_VARIABLES.put("net_write_timeout", "60");
+        GLOBAL_VARIABLES.put("performance_schema", "0");
+        GLOBAL_VARIABLES.put("sql_mode", "ONLY_FULL_GROUP_BY,STRICT_TRANS_TABLES");
+        GLOBAL_VARIABLES.put("system_time_zone", "UTC");
+        GLOBAL_VARIABLES.put("time_zone", "SYSTEM");
+        GLOBAL_VARIABLES.put("transaction_isolation", "REPEATABLE-READ");
+        GLOBAL_VARIABLES.put("transaction_read_only", "0");
+        GLOBAL_VARIABLES.put("wait_timeout", "28800");
+    }
+
+    private static NIOWorker worker = null;
+
+    private final ServerSocket serverSocket;
+    public final AtomicLong appliedLsn = new AtomicLong(100);
+    public final List<String> queries = new CopyOnWriteArrayList<>();
+    public final List<String> prepares = new CopyOnWriteArrayList<>();
+    public final AtomicLong rollbacks = new AtomicLong(0); // by rollback or disconnect within trx
+
+    public StandInMysqlServer() throws IOException {
+        this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+        final Thread acceptor = new Thread(() -> {
+            while (!serverSocket.isClosed()) {
+                try {
+                    final Socket socket = serverSocket.accept();
+                    final Thread session = new Thread(() -> new Session().serve(socket));
+                    session.setDaemon(true);
+                    session.start();
+                } catch (IOException ignore) {
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * NIO worker shared by backend pools of all tests, because worker holds direct buffers and never shutdown.
+     */
+    public static synchronized NIOWorker worker() {
+        if (null == worker) {
+            worker = new NIOWorker(1);
+        }
+        return worker;
+    }
+
+    public InetSocketAddress address() {
+        return new InetSocketAddress("127.0.0.1", serverSocket.getLocalPort());
+    }
+
+    public long count(String prefix) {
+        return queries.stream().filter(q -> q.startsWith(prefix)).count();
+    }
+
+    private static void writePacket(OutputStream out, int seq, byte[] payload) throws IOException {
+        out.write(payload.length & 0xFF);
+        out.write((payload.length >>> 8) & 0xFF);
+        out.write((payload.length >>> 16) & 0xFF);
+        out.write(seq);
+        out.write(payload);
+    }
+
+    private static byte[] readPacket(DataInputStream in) throws IOException {
+        final int length = in.readUnsignedByte() | (in.readUnsignedByte() << 8) | (in.readUnsignedByte() << 16);
+        in.readUnsignedByte(); // seq
+        final byte[] payload = new byte[length];
+        in.readFully(payload);
+        return payload;
+    }
+
+    private static void lenenc(ByteArrayOutputStream out, String str) {
+        if (null == str) {
+            out.write(0xFB);
+            return;
+        }
+        final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length < 251) {
+            out.write(bytes.length);
+        } else if (bytes.length < 0x10000) {
+            out.write(0xFC);
+            out.write(bytes.length & 0xFF);
+            out.write((bytes.length >>> 8) & 0xFF);
+        } else {
+            out.write(0xFD);
+            out.write(bytes.length & 0xFF);
+            out.write((bytes.length >>> 8) & 0xFF);
+            out.write((bytes.length >>> 16) & 0xFF);
+        }
+        out.write(bytes, 0, bytes.length);
+    }
+
+    private static byte[] handshake(int connectionId) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(10);
+        out.writeBytes("8.0.32-stand-in".getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        for (int i = 0; i < 4; ++i) {
+            out.write((connectionId >>> (i * 8)) & 0xFF);
+        }
+        out.writeBytes("abcdefgh".getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        out.write(CAPABILITIES & 0xFF);
+        out.write((CAPABILITIES >>> 8) & 0xFF);
+        out.write(0x21); // utf8_general_ci
+        out.write(STATUS_AUTOCOMMIT);
+        out.write(0);
+        out.write((CAPABILITIES >>> 16) & 0xFF);
+        out.write((CAPABILITIES >>> 24) & 0xFF);
+        out.write(21);
+        out.writeBytes(new byte[10]);
+        out.writeBytes("ijklmnopqrst".getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        out.writeBytes("mysql_native_password".getBytes(StandardCharsets.UTF_8));
+        out.write(0);
+        return out.toByteArray();
+    }
+
+    private static byte[] ok(int status) {
+        return ok(status, 0);
+    }
+
+    private static byte[] ok(int status, int warnings) {
+        return new byte[] {0, 0, 0, (byte) status, 0, (byte) warnings, 0};
+    }
+
+    private static byte[] eof(int status) {
+        return new byte[] {(byte) 0xFE, 0, 0, (byte) status, 0};
+    }
+
+    private static byte[] err(int code, String message) {
+        final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(0xFF);
+        out.write(code & 0xFF);
+        out.write((code >>> 8) & 0xFF);
+        out.writeBytes("#HY000".getBytes(StandardCharsets.UTF_8));
+        out.writeBytes(message.getBytes(StandardCharsets.UTF_8));
+        return out.toByteArray();
+    }
+
+    private static byte[] columnDefinition(String column) {
+        final ByteArrayOutputStream def = new ByteArrayOutputStream();
+        lenenc(def, "def");
+        lenenc(def, "");
+        lenenc(def, "");
+        lenenc(def, "");
+        lenenc(def, column);
+        lenenc(def, column);
+        def.writeBytes(new byte[] {0x0C, 0x21, 0, (byte) 0xFF, 0, 0, 0, (byte) 0xFD, 0, 0, 0, 0, 0});
+        return def.toByteArray();
+    }
+
+    private static void writeResultSet(OutputStream out, List<String> columns, List<String> values, int status,
+                                       boolean binary) throws IOException {
+        int seq = 1;
+        writePacket(out, seq++, new byte[] {(byte) columns.size()});
+        for (final String column : columns) {
+            writePacket(out, seq++, columnDefinition(column));
+        }
+        writePacket(out, seq++, eof(status));
+        final ByteArrayOutputStream data = new ByteArrayOutputStream();
+        if (binary) {
+            data.write(0);
+            final byte[] nulls = new byte[(values.size() + 7 + 2) / 8];
+            for (int i = 0; i < values.size(); ++i) {
+                if (null == values.get(i)) {
+                    nulls[(i + 2) / 8] |= (byte) (1 << ((i + 2) % 8));
+                }
+            }
+            data.writeBytes(nulls);
+            for (final String value : values) {
+                if (value != null) {
+                    lenenc(data, value);
+                }
+            }
+        } else {
+            for (final String value : values) {
+                lenenc(data, value);
+            }
+        }
+        writePacket(out, seq++, data.toByteArray());
+        writePacket(out, seq, eof(status));
+        out.flush();
+    }
+
+    private static String stripComments(String sql) {
+        String stripped = sql.trim();
+        while (stripped.startsWith("/*") && stripped.contains("*/")) {
+            stripped = stripped.substring(stripped.indexOf("*/") + 2).trim();
+        }
+        return stripped;
+    }
+
+    // split by top level comma, and quoted ones are kept
+    private static List<String> splitList(String list) {
+        final List<String> items = new ArrayList<>();
+        int depth = 0;
+        char quote = 0;
+        int start = 0;
+        for (int i = 0; i < list.length(); ++i) {
+            final char ch = list.charAt(i);
+            if (quote != 0) {
+                if (ch == quote) {
+                    quote = 0;
+                }
+            } else if ('\'' == ch || '"' == ch || '`' == ch) {
+                quote = ch;
+            } else if ('(' == ch) {
+                ++depth;
+            } else if (')' == ch) {
+                --depth;
+            } else if (',' == ch && 0 == depth) {
+                items.add(list.substring(start, i).trim());
+                start = i + 1;
+            }
+        }
+        items.add(list.substring(start).trim());
+        return items;
+    }
+
+    private static String unquote(String value) {
+        if (value.length() >= 2 && (value.charAt(0) == '\'' || value.charAt(0) == '"')
+            && value.charAt(value.length() - 1) == value.charAt(0)) {
+            return value.substring(1, value.length() - 1);
+        }
+        return value;
+    }
+
+    // strip scope of system variable, or null if global
+    private static String sessionName(String name) {
+        final String lower = name.toLowerCase();
+        if (lower.startsWith("global ") || lower.startsWith("@@global.")) {
+            return null;
+        }
+        for (final String prefix : new String[] {"@@session.", "@@local.", "@@", "session ", "local "}) {
+            if (lower.startsWith(prefix)) {
+                return lower.substring(prefix.length()).trim();
+            }
+        }
+        return lower;
+    }
+
+    private class Session {
+        private final Map<String, String> userVariables = new HashMap<>();
+        private final Map<String, String> systemVariables = new HashMap<>();
+        private final Map<Integer, String> statements = new HashMap<>();
+        private int nextStatementId = 1;
+        private boolean autoCommit = true;
+        private Long snapshot = null; // LSN seen by the active trx
+
+        private int status() {
+            return (autoCommit ? STATUS_AUTOCOMMIT : 0) | (snapshot != null ? STATUS_IN_TRANS : 0);
+        }
+
+        private void beginImplicitly() {
+            if (!autoCommit && null == snapshot) {
+                snapshot = appliedLsn.get();
+            }
+        }
+
+        private void rollback() {
+            if (snapshot != null) {
+                rollbacks.incrementAndGet();
+                snapshot = null;
+            }
+        }
+
+        private String variable(String name) {
+            final String lower = name.toLowerCase();
+            if (lower.startsWith("@@global.")) {
+                return GLOBAL_VARIABLES.get(lower.substring("@@global.".length()));
+            }
+            if (lower.startsWith("@@")) {
+                final String sysName = sessionName(lower);
+                if ("autocommit".equals(sysName)) {
+                    return autoCommit ? "1" : "0";
+                }
+                return systemVariables.getOrDefault(sysName, GLOBAL_VARIABLES.get(sysName));
+            }
+            return userVariables.get(lower.substring(1));
+        }
+
+        private void set(String assignments) {
+            for (final String assignment : splitList(assignments)) {
+                final int eq = assignment.indexOf('=');
+                if (eq < 0) {
+                    continue; // SET NAMES etc.
+                }
+                final String name = assignment.substring(0, eq).trim();
+                final String rawValue = assignment.substring(eq + 1).trim();
+                if (name.startsWith("@") && !name.startsWith("@@")) {
+                    final String value = rawValue.equalsIgnoreCase("null") ? null : unquote(rawValue);
+                    if (null == value) {
+                        userVariables.remove(name.substring(1).toLowerCase());
+                    } else {
+                        userVariables.put(name.substring(1).toLowerCase(), value);
+                    }
+                    continue;
+                }
+                final String sysName = sessionName(name);
+                if (null == sysName) {
+                    continue; // global ignored
+                }
+                final String value = rawValue.equalsIgnoreCase("default") ? GLOBAL_VARIABLES.get(sysName) :
+                    unquote(rawValue);
+                if ("autocommit".equals(sysName)) {
+                    autoCommit = "1".equals(value) || "on".equalsIgnoreCase(value) || "true".equalsIgnoreCase(value);
+                    if (autoCommit) {
+                        snapshot = null; // implicit commit
+                    }
+                } else {
+                    systemVariables.put(sysName, value);
+                }
+            }
+        }
+
+        // select of variables and literals
+        private void select(String list, List<String> columns, List<String> values) {
+            for (final String item : splitList(list)) {
+                final int as = item.toLowerCase().lastIndexOf(" as ");
+                final String expr = as < 0 ? item : item.substring(0, as).trim();
+                columns.add(as < 0 ? item : unquote(item.substring(as + 4).trim()));
+                if (expr.startsWith("@")) {
+                    values.add(variable(expr));
+                } else if (expr.equalsIgnoreCase("null")) {
+                    values.add(null);
+                } else {
+                    values.add(unquote(expr));
+                }
+            }
+        }
+
+        // returns true if result set sent
+        private boolean query(OutputStream out, String query, boolean binary) throws IOException {
+            final String stmt = stripComments(query);
+            final String lower = stmt.toLowerCase();
+            if (lower.startsWith("start transaction") || lower.startsWith("begin")) {
+                snapshot = appliedLsn.get();
+            } else if (lower.startsWith("commit")) {
+                snapshot = null;
+            } else if (lower.startsWith("rollback")) {
+                rollback();
+            } else if (lower.startsWith("insert") || lower.startsWith("update") || lower.startsWith("delete")) {
+                beginImplicitly();
+                appliedLsn.incrementAndGet();
+            } else if (lower.startsWith("select")) {
+                beginImplicitly();
+                final List<String> columns = new ArrayList<>();
+                final List<String> values = new ArrayList<>();
+                if (lower.contains(" from ")) {
+                    columns.add("lsn");
+                    values.add(Long.toString(null == snapshot ? appliedLsn.get() : snapshot));
+                } else {
+                    select(stmt.substring("select".length()).trim(), columns, values);
+                }
+                writeResultSet(out, columns, values, status(), binary);
+                return true;
+            } else if (lower.startsWith("set read_lsn=")) {
+                if (Long.parseLong(lower.substring("set read_lsn=".length()).trim()) > appliedLsn.get()) {
+                    writePacket(out, 1, err(7541, "Wait read_lsn timeout"));
+                    out.flush();
+                    return false;
+                }
+            } else if (lower.startsWith("set ")) {
+                set(stmt.substring("set ".length()));
+            } else if (lower.startsWith("do ")) {
+                writePacket(out, 1, ok(status(), 1)); // expression evaluated with a warning
+                out.flush();
+                return false;
+            }
+            writePacket(out, 1, ok(status()));
+            out.flush();
+            return false;
+        }
+
+        private void prepare(OutputStream out, String sql) throws IOException {
+            final int id = nextStatementId++;
+            statements.put(id, sql);
+            final String stmt = stripComments(sql);
+            int params = 0;
+            for (int i = 0; i < stmt.length(); ++i) {
+                if ('?' == stmt.charAt(i)) {
+                    ++params;
+                }
+            }
+            final List<String> columns = new ArrayList<>();
+            if (stmt.toLowerCase().startsWith("select")) {
+                if (stmt.toLowerCase().contains(" from ")) {
+                    columns.add("lsn");
+                } else {
+                    select(stmt.substring("select".length()).trim(), columns, new ArrayList<>());
+                }
+            }
+            int seq = 1;
+            writePacket(out, seq++, new byte[] {
+                0, (byte) id, (byte) (id >>> 8), (byte) (id >>> 16), (byte) (id >>> 24),
+                (byte) columns.size(), 0, (byte) params, 0, 0, 0, 0});
+            if (params > 0) {
+                for (int i = 0; i < params; ++i) {
+                    writePacket(out, seq++, columnDefinition("?"));
+                }
+                writePacket(out, seq++, eof(status()));
+            }
+            if (!columns.isEmpty()) {
+                for (final String column : columns) {
+                    writePacket(out, seq++, columnDefinition(column));
+                }
+                writePacket(out, seq, eof(status()));
+            }
+            out.flush();
+        }
+
+        private static final int COM_QUIT = 0x01;
+        private static final int COM_QUERY = 0x03;
+        private static final int COM_STMT_PREPARE = 0x16;
+        private static final int COM_STMT_EXECUTE = 0x17;
+        private static final int COM_STMT_CLOSE = 0x19;
+
+        private void serve(Socket socket) {
+            try (final Socket ignored = socket) {
+                final DataInputStream in = new DataInputStream(socket.getInputStream());
+                final OutputStream out = socket.getOutputStream();
+                writePacket(out, 0, handshake(socket.getPort()));
+                out.flush();
+                readPacket(in); // handshake response, password is not checked
+                writePacket(out, 2, ok(STATUS_AUTOCOMMIT));
+                out.flush();
+                while (true) {
+                    final byte[] payload = readPacket(in);
+                    final int command = payload[0] & 0xFF;
+                    if (COM_QUIT == command) {
+                        return;
+                    } else if (COM_QUERY == command) {
+                        final String query = new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+                        queries.add(query);
+                        query(out, query, false);
+                    } else if (COM_STMT_PREPARE == command) {
+                        final String sql = new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+                        prepares.add(sql);
+                        prepare(out, sql);
+                    } else if (COM_STMT_EXECUTE == command || COM_STMT_CLOSE == command) {
+                        final int id = (payload[1] & 0xFF) | ((payload[2] & 0xFF) << 8) | ((payload[3] & 0xFF) << 16)
+                            | ((payload[4] & 0xFF) << 24);
+                        if (COM_STMT_CLOSE == command) {
+                            statements.remove(id); // no response
+                        } else if (!statements.containsKey(id)) {
+                            writePacket(out, 1, err(1243, "Unknown prepared statement handler"));
+                            out.flush();
+                        } else {
+                            query(out, statements.get(id), true);
+                        }
+                    } else {
+                        writePacket(out, 1, ok(status()));
+                        out.flush();
+                    }
+                }
+            } catch (IOException ignore) {
+                // closed
+            } finally {
+                rollback(); // disconnect within trx
+            }
+        }
+    }
+
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+    }
+}
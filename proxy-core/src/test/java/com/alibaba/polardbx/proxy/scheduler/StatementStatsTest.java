@@ -0,0 +1,118 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.scheduler;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.List;
+
+public class StatementStatsTest {
+    @Test
+    public void testRecord() {
+        final StatementStats stats = new StatementStats();
+        stats.record(10, 1, "SELECT ?", 1000000, false, 3, 300, false);
+        stats.record(10, 1, "SELECT ?", 3000000, true, 0, 50, true);
+        stats.record(10, 2, "UPDATE t SET a = ?", 500000, false, 0, 11, false);
+
+        final List<StatementStats.Entry> top = stats.top(-1);
+        Assert.assertEquals(2, top.size());
+        final StatementStats.Entry entry = top.get(0);
+        Assert.assertEquals("SELECT ?", entry.getDigest());
+        Assert.assertEquals(2, entry.getCount().get());
+        Assert.assertEquals(1, entry.getErrors().sum());
+        Assert.assertEquals(3, entry.getRows().sum());
+        Assert.assertEquals(350, entry.getBytes().sum());
+        Assert.assertEquals(1, entry.getSlave().sum());
+        Assert.assertEquals(4000000, entry.getTotalNanos().sum());
+        Assert.assertEquals(3000000, entry.getLatency().snapshot().getMax());
+        Assert.assertEquals(1, stats.top(1).size());
+
+        stats.reset();
+        Assert.assertEquals(0, stats.size());
+        stats.record(0, 1, "SELECT ?", 1000, false, 0, 0, false);
+        Assert.assertEquals(0, stats.size()); // disabled
+    }
+
+    @Test
+    public void testTopKEviction() {
+        final StatementStats stats = new StatementStats();
+        // 10 hot statements, well above total/capacity which space saving guarantees to keep
+        for (int round = 0; round < 200; ++round) {
+            for (long hash = 0; hash < 10; ++hash) {
+                stats.record(20, hash, "hot " + hash, 1000, false, 0, 0, false);
+            }
+        }
+        // flood of one-off statements
+        for (long hash = 100; hash < 1100; ++hash) {
+            stats.record(20, hash, "cold " + hash, 1000, false, 0, 0, false);
+            Assert.assertTrue(stats.size() <= 20);
+        }
+        Assert.assertTrue(stats.getEvictions() >= 1000 - 10);
+        int hot = 0;
+        for (final StatementStats.Entry entry : stats.top(-1)) {
+            if (entry.getDigest().startsWith("hot ")) {
+                Assert.assertEquals(200, entry.getCount().get());
+                ++hot;
+            }
+        }
+        Assert.assertEquals(10, hot);
+    }
+
+    @Test
+    public void testNewHotDisplacesOld() {
+        final StatementStats stats = new StatementStats();
+        // full of old statements
+        for (int round = 0; round < 50; ++round) {
+            for (long hash = 0; hash < 10; ++hash) {
+                stats.record(10, hash, "old " + hash, 1000, false, 0, 0, false);
+            }
+        }
+        // new hot statements come in and are not evicted by each other
+        for (int round = 0; round < 100; ++round) {
+            for (long hash = 100; hash < 103; ++hash) {
+                stats.record(10, hash, "new " + hash, 1000, false, 0, 0, false);
+            }
+        }
+        Assert.assertEquals(10, stats.size());
+        Assert.assertEquals(3, stats.getEvictions());
+        int old = 0;
+        for (final StatementStats.Entry entry : stats.top(-1)) {
+            if (entry.getDigest().startsWith("new ")) {
+                Assert.assertEquals(100, entry.getCount().get());
+                Assert.assertEquals(150, entry.getWeight().get()); // inherited from the evicted
+            } else {
+                ++old;
+            }
+        }
+        Assert.assertEquals(7, old);
+    }
+
+    @Test
+    public void testIdleDecay() {
+        final StatementStats stats = new StatementStats();
+        for (int i = 0; i < 100; ++i) {
+            stats.record(10, 1, "SELECT ?", 1000, false, 0, 0, false);
+        }
+        final StatementStats.Entry entry = stats.top(-1).get(0);
+        Assert.assertEquals(100, entry.decayedWeight(entry.getLastSeen()));
+        Assert.assertEquals(25, entry.decayedWeight(entry.getLastSeen() + 2 * 60_000));
+        Assert.assertEquals(0, entry.decayedWeight(entry.getLastSeen() + 100 * 60_000));
+    }
+}
@@ -0,0 +1,288 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.serverless;
+
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.common.XClusterNodeHealth;
+import com.alibaba.polardbx.proxy.config.ConfigLoader;
+import com.alibaba.polardbx.proxy.config.ConfigProps;
+import com.alibaba.polardbx.proxy.net.NIOWorker;
+import com.alibaba.polardbx.proxy.privilege.SecurityUtil;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+
+public class LatencyCheckerTest {
+
+    /**
+     * Minimal MySQL server which answers probe queries and counts handshakes.
+     */
+    private static class StandInServer implements AutoCloseable {
+        private static final int CAPABILITIES = 0x1 | 0x200 | 0x2000 | 0x8000 | 0x10000 | 0x20000 | 0x80000;
+
+        private final ServerSocket serverSocket;
+        private final AtomicInteger handshakes = new AtomicInteger(0);
+        private final AtomicInteger queries = new AtomicInteger(0);
+        private final Set<Socket> clients = ConcurrentHashMap.newKeySet();
+
+        private StandInServer() throws IOException {
+            this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+            final Thread acceptor = new Thread(() -> {
+                while (!serverSocket.isClosed()) {
+                    try {
+                        final Socket socket = serverSocket.accept();
+                        clients.add(socket);
+                        final Thread session = new Thread(() -> serve(socket));
+                        session.setDaemon(true);
+                        session.start();
+                    } catch (IOException ignore) {
+                    }
+                }
+            });
+            acceptor.setDaemon(true);
+            acceptor.start();
+        }
+
+        private String address() {
+            return "127.0.0.1:" + serverSocket.getLocalPort();
+        }
+
+        private void kickAll() throws IOException {
+            for (final Socket socket : clients) {
+                socket.close();
+            }
+        }
+
+        private static void writePacket(OutputStream out, int seq, byte[] payload) throws IOException {
+            out.write(payload.length & 0xFF);
+            out.write((payload.length >>> 8) & 0xFF);
+            out.write((payload.length >>> 16) & 0xFF);
+            out.write(seq);
+            out.write(payload);
+        }
+
+        private static byte[] readPacket(DataInputStream in) throws IOException {
+            final int length = in.readUnsignedByte() | (in.readUnsignedByte() << 8) | (in.readUnsignedByte() << 16);
+            in.readUnsignedByte(); // seq
+            final byte[] payload = new byte[length];
+            in.readFully(payload);
+            return payload;
+        }
+
+        private static void lenenc(ByteArrayOutputStream out, String str) {
+            final byte[] bytes = str.getBytes(StandardCharsets.UTF_8);
+            out.write(bytes.length);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private static byte[] handshake(int connectionId) {
+            final ByteArrayOutputStream out = new ByteArrayOutputStream();
+            out.write(10);
+            out.writeBytes("8.0.32-stand-in".getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+            for (int i = 0; i < 4; ++i) {
+                out.write((connectionId >>> (i * 8)) & 0xFF);
+            }
+            out.writeBytes("abcdefgh".getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+            out.write(CAPABILITIES & 0xFF);
+            out.write((CAPABILITIES >>> 8) & 0xFF);
+            out.write(0x21); // utf8_general_ci
+            out.write(2); // SERVER_STATUS_AUTOCOMMIT
+            out.write(0);
+            out.write((CAPABILITIES >>> 16) & 0xFF);
+            out.write((CAPABILITIES >>> 24) & 0xFF);
+            out.write(21);
+            out.writeBytes(new byte[10]);
+            out.writeBytes("ijklmnopqrst".getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+            out.writeBytes("mysql_native_password".getBytes(StandardCharsets.UTF_8));
+            out.write(0);
+            return out.toByteArray();
+        }
+
+        private static byte[] ok() {
+            return new byte[] {0, 0, 0, 2, 0, 0, 0};
+        }
+
+        private static byte[] eof() {
+            return new byte[] {(byte) 0xFE, 0, 0, 2, 0};
+        }
+
+        private static void writeResultSet(OutputStream out, String[] columns, String[] row) throws IOException {
+            int seq = 1;
+            writePacket(out, seq++, new byte[] {(byte) columns.length});
+            for (final String column : columns) {
+                final ByteArrayOutputStream def = new ByteArrayOutputStream();
+                lenenc(def, "def");
+                lenenc(def, "");
+                lenenc(def, "");
+                lenenc(def, "");
+                lenenc(def, column);
+                lenenc(def, column);
+                def.writeBytes(new byte[] {0x0C, 0x21, 0, (byte) 0xFF, 0, 0, 0, (byte) 0xFD, 0, 0, 0, 0, 0});
+                writePacket(out, seq++, def.toByteArray());
+            }
+            writePacket(out, seq++, eof());
+            final ByteArrayOutputStream data = new ByteArrayOutputStream();
+            for (final String value : row) {
+                lenenc(data, value);
+            }
+            writePacket(out, seq++, data.toByteArray());
+            writePacket(out, seq, eof());
+            out.flush();
+        }
+
+        private void serve(Socket socket) {
+            try (final Socket ignored = socket) {
+                final DataInputStream in = new DataInputStream(socket.getInputStream());
+                final OutputStream out = socket.getOutputStream();
+                writePacket(out, 0, handshake(socket.getPort()));
+                out.flush();
+                readPacket(in); // handshake response, password is not checked
+                handshakes.getAndIncrement();
+                writePacket(out, 2, ok());
+                out.flush();
+                while (true) {
+                    final byte[] payload = readPacket(in);
+                    if (0x01 == payload[0]) {
+                        return; // COM_QUIT
+                    }
+                    final String query = new String(payload, 1, payload.length - 1, StandardCharsets.UTF_8);
+                    queries.getAndIncrement();
+                    if (query.contains("get_token")) {
+                        writeResultSet(out, new String[] {"token"}, new String[] {"stand-in-token"});
+                    } else if (query.contains("alisql_cluster_local")) {
+                        writeResultSet(out, new String[] {"ROLE", "COMMIT_INDEX", "LAST_APPLY_INDEX"},
+                            new String[] {"Follower", "100", "99"});
+                    } else {
+                        writePacket(out, 1, ok());
+                        out.flush();
+                    }
+                }
+            } catch (IOException ignore) {
+                // closed
+            } finally {
+                clients.remove(socket);
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            serverSocket.close();
+            kickAll();
+        }
+    }
+
+    private StandInServer server;
+    private LatencyChecker checker;
+
+    @BeforeClass
+    public static void beforeClass() {
+        ProxyExecutor.init();
+    }
+
+    @Before
+    public void before() throws IOException {
+        ConfigLoader.PROPERTIES.setProperty(ConfigProps.BACKEND_USERNAME, "probe");
+        ConfigLoader.PROPERTIES.setProperty(ConfigProps.BACKEND_PASSWORD, SecurityUtil.encrypt("probe"));
+        server = new StandInServer();
+        checker = new LatencyChecker(new NIOWorker(1), Runnable::run, null, false);
+    }
+
+    @After
+    public void after() throws IOException {
+        checker.getProbeConnections().close();
+        server.close();
+        ConfigLoader.PROPERTIES.remove(ConfigProps.BACKEND_USERNAME);
+        ConfigLoader.PROPERTIES.remove(ConfigProps.BACKEND_PASSWORD);
+    }
+
+    @Test
+    public void testReuseConnection() {
+        for (int i = 0; i < 5; ++i) {
+            final XClusterNodeHealth health = checker.updateLatency(server.address());
+            assertNotNull(health);
+            assertEquals("Follower", health.getRole());
+            assertEquals("stand-in-token", health.getProxyToken());
+            assertEquals(99, health.getApplyIndex());
+        }
+        assertNotNull(checker.getLatencyNanos(server.address()));
+        assertEquals(1, server.handshakes.get());
+        assertEquals(1, checker.getProbeConnections().getConnectCount());
+        assertEquals(10, server.queries.get());
+    }
+
+    @Test
+    public void testReconnectAfterFailure() throws Exception {
+        assertNotNull(checker.updateLatency(server.address()));
+        server.kickAll();
+
+        // first probe may fail on the broken connection, then reconnect
+        XClusterNodeHealth health = null;
+        for (int i = 0; i < 3 && null == health; ++i) {
+            health = checker.updateLatency(server.address());
+        }
+        assertNotNull(health);
+        assertEquals(2, server.handshakes.get());
+
+        // stable again
+        assertNotNull(checker.updateLatency(server.address()));
+        assertEquals(2, server.handshakes.get());
+    }
+
+    @Test
+    public void testRetain() throws Exception {
+        assertNotNull(checker.updateLatency(server.address()));
+        assertEquals(1, server.clients.size());
+
+        checker.getProbeConnections().retain(Collections.singleton(server.address()));
+        assertNotNull(checker.updateLatency(server.address()));
+        assertEquals(1, server.handshakes.get());
+
+        checker.getProbeConnections().retain(Collections.emptySet());
+        final long deadline = System.currentTimeMillis() + 3000;
+        while (!server.clients.isEmpty() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(server.clients.isEmpty());
+
+        assertNotNull(checker.updateLatency(server.address()));
+        assertEquals(2, server.handshakes.get());
+    }
+}
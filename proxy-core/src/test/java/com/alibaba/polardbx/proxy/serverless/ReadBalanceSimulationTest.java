@@ -0,0 +1,154 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.serverless;
+
+import com.alibaba.polardbx.proxy.utils.ResponseTimeEwma;
+import org.junit.Test;
+
+import java.util.PriorityQueue;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class ReadBalanceSimulationTest {
+
+    private static final long MS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private static class FakeNode {
+        private final ResponseTimeEwma ewma;
+        private int inFlight = 0;
+        private long latencyNanos = MS;
+
+        private FakeNode(long baseNanos) {
+            this.ewma = new ResponseTimeEwma(3, TimeUnit.SECONDS.toNanos(1));
+            // make first decay computed on virtual clock
+            this.ewma.record(MS, baseNanos);
+        }
+    }
+
+    private static class Completion {
+        private final long doneNanos;
+        private final FakeNode node;
+        private final long startNanos;
+
+        private Completion(long doneNanos, FakeNode node, long startNanos) {
+            this.doneNanos = doneNanos;
+            this.node = node;
+            this.startNanos = startNanos;
+        }
+    }
+
+    private static int[] cumulative(int... weights) {
+        final int[] cumulative = new int[weights.length];
+        int sum = 0;
+        for (int i = 0; i < weights.length; ++i) {
+            sum += weights[i];
+            cumulative[i] = sum;
+        }
+        return cumulative;
+    }
+
+    @Test
+    public void testStalledNodeAvoidedAndRecovered() {
+        final long base = System.nanoTime();
+        final FakeNode[] nodes = new FakeNode[] {new FakeNode(base), new FakeNode(base), new FakeNode(base)};
+        final int[] cumulativeWeights = cumulative(1, 1, 1);
+        final Random random = new Random(42);
+        final PriorityQueue<Completion> pending = new PriorityQueue<>((a, b) -> Long.compare(a.doneNanos, b.doneNanos));
+
+        final long interval = TimeUnit.MICROSECONDS.toNanos(100); // 10k qps
+        final long stallStart = TimeUnit.SECONDS.toNanos(2);
+        final long stallEnd = TimeUnit.SECONDS.toNanos(4);
+        final long end = TimeUnit.SECONDS.toNanos(12);
+
+        final long[] warm = new long[nodes.length];
+        final long[] stall = new long[nodes.length];
+        final long[] tail = new long[nodes.length];
+        for (long t = 0; t < end; t += interval) {
+            final long now = base + t;
+            // finish requests
+            while (!pending.isEmpty() && pending.peek().doneNanos <= now) {
+                final Completion c = pending.poll();
+                --c.node.inFlight;
+                c.node.ewma.record(c.doneNanos - c.startNanos, c.doneNanos);
+            }
+
+            // inject stall on node 2
+            nodes[2].latencyNanos = t >= stallStart && t < stallEnd ? 50 * MS : MS;
+
+            final int idx = ReadWriteSplittingPool.pickTwoChoices(cumulativeWeights, random,
+                i -> ReadWriteSplittingPool.score(nodes[i].inFlight, true, nodes[i].ewma.get(now)));
+            final FakeNode node = nodes[idx];
+            ++node.inFlight;
+            pending.add(new Completion(now + node.latencyNanos, node, now));
+
+            if (t < stallStart) {
+                ++warm[idx];
+            } else if (t >= stallStart + 200 * MS && t < stallEnd) {
+                ++stall[idx];
+            } else if (t >= end - TimeUnit.SECONDS.toNanos(2)) {
+                ++tail[idx];
+            }
+        }
+
+        final long warmTotal = warm[0] + warm[1] + warm[2];
+        final long stallTotal = stall[0] + stall[1] + stall[2];
+        final long tailTotal = tail[0] + tail[1] + tail[2];
+        // balanced when all healthy
+        for (final long w : warm) {
+            assertTrue((double) w / warmTotal > 0.25);
+        }
+        // stalled node gets few requests
+        assertTrue((double) stall[2] / stallTotal < 0.05);
+        // traffic comes back after recovery
+        assertTrue((double) tail[2] / tailTotal > 0.25);
+    }
+
+    @Test
+    public void testWeights() {
+        final Random random = new Random(7);
+        final int[] cumulativeWeights = cumulative(0, 3, 0, 1);
+        final int[] hits = new int[4];
+        for (int i = 0; i < 10000; ++i) {
+            // equal score, so first sample wins and distribution follows weight
+            ++hits[ReadWriteSplittingPool.pickTwoChoices(cumulativeWeights, random, idx -> 1)];
+        }
+        assertEquals(0, hits[0]);
+        assertEquals(0, hits[2]);
+        assertTrue(hits[1] > 6500 && hits[1] < 8500);
+
+        // single candidate or no candidate
+        assertEquals(1, ReadWriteSplittingPool.pickTwoChoices(cumulative(0, 5, 0), random, idx -> 1));
+        assertEquals(-1, ReadWriteSplittingPool.pickTwoChoices(cumulative(0, 0), random, idx -> 1));
+        assertEquals(-1, ReadWriteSplittingPool.pickTwoChoices(new int[0], random, idx -> 1));
+    }
+
+    @Test
+    public void testLowerScoreWins() {
+        final Random random = new Random(1);
+        final int[] cumulativeWeights = cumulative(1, 1);
+        for (int i = 0; i < 100; ++i) {
+            // two candidates are always both sampled
+            assertEquals(1, ReadWriteSplittingPool.pickTwoChoices(cumulativeWeights, random,
+                idx -> ReadWriteSplittingPool.score(idx == 0 ? 3 : 0, true, MS)));
+        }
+    }
+}
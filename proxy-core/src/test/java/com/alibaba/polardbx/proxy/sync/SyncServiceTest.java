@@ -0,0 +1,142 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.sync;
+
+import com.alibaba.polardbx.proxy.GeneralService;
+import com.alibaba.polardbx.proxy.ProxyExecutor;
+import com.alibaba.polardbx.proxy.cluster.AcceptIdGenerator;
+import io.grpc.ManagedChannelBuilder;
+import io.grpc.Server;
+import io.grpc.inprocess.InProcessChannelBuilder;
+import io.grpc.inprocess.InProcessServerBuilder;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class SyncServiceTest {
+    private static final int PROXIES = 4;
+
+    private final List<Server> servers = new ArrayList<>();
+    private final String[] nodes = new String[PROXIES];
+    private final AtomicInteger[] kills = new AtomicInteger[PROXIES];
+    private final AtomicInteger[] nodeIdQueries = new AtomicInteger[PROXIES];
+    private final AtomicInteger channelBuilds = new AtomicInteger(0);
+
+    @Before
+    public void setUp() throws Exception {
+        ProxyExecutor.init();
+        GeneralService.setChannelBuilder((host, port) -> {
+            channelBuilds.incrementAndGet();
+            return InProcessChannelBuilder.forName(host + ':' + port).directExecutor();
+        });
+        // proxy 0~2 with node id 0~2, and proxy 3 is an old version without node id service
+        for (int i = 0; i < PROXIES; ++i) {
+            final int nodeId = i;
+            nodes[i] = "127.0.0.1:" + (19000 + i);
+            kills[i] = new AtomicInteger(0);
+            nodeIdQueries[i] = new AtomicInteger(0);
+            final GeneralService service = new GeneralService();
+            service.register(SyncService.KILL, json -> {
+                final KillMessage message = SyncService.GSON.fromJson(json, KillMessage.class);
+                Assert.assertFalse(message.isConnection());
+                kills[nodeId].incrementAndGet();
+                return "{}";
+            });
+            if (i < PROXIES - 1) {
+                service.register(SyncService.NODE_ID, json -> {
+                    nodeIdQueries[nodeId].incrementAndGet();
+                    return String.valueOf(nodeId);
+                });
+            }
+            servers.add(InProcessServerBuilder.forName(nodes[i]).directExecutor().addService(service).build().start());
+        }
+    }
+
+    @After
+    public void tearDown() {
+        for (final Server server : servers) {
+            server.shutdownNow();
+        }
+        GeneralService.retainChannels(Collections.emptySet());
+        GeneralService.setChannelBuilder((host, port) -> ManagedChannelBuilder.forAddress(host, port).usePlaintext());
+    }
+
+    // node ids are learned in background
+    private void awaitLearned(String[] targets) throws InterruptedException {
+        final long deadline = System.currentTimeMillis() + 5000;
+        for (final String node : targets) {
+            while (!SyncService.isNodeIdLearned(node) && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            Assert.assertTrue(SyncService.isNodeIdLearned(node));
+        }
+    }
+
+    @Test
+    public void testTargetedKill() throws InterruptedException {
+        final int processId = new AcceptIdGenerator(1).nextAcceptId();
+        Assert.assertEquals(1, AcceptIdGenerator.workerIdOf(processId));
+
+        // node ids are not known yet, send to all without waiting
+        List<String> targets = SyncService.killOn(nodes, processId, false, 1000);
+        Assert.assertEquals(PROXIES, targets.size());
+        for (int i = 0; i < PROXIES; ++i) {
+            Assert.assertEquals(1, kills[i].get());
+        }
+        awaitLearned(nodes);
+
+        // owner and the one can not tell its node id
+        targets = SyncService.killOn(nodes, processId, false, 1000);
+        Assert.assertEquals(2, targets.size());
+        Assert.assertEquals(1, kills[0].get());
+        Assert.assertEquals(2, kills[1].get());
+        Assert.assertEquals(1, kills[2].get());
+        Assert.assertEquals(2, kills[3].get());
+
+        // node ids and channels are cached
+        for (int i = 0; i < 10; ++i) {
+            targets = SyncService.killOn(nodes, new AcceptIdGenerator(2).nextAcceptId(), false, 1000);
+            Assert.assertEquals(2, targets.size());
+        }
+        Assert.assertEquals(1, kills[0].get());
+        Assert.assertEquals(2, kills[1].get());
+        Assert.assertEquals(11, kills[2].get());
+        Assert.assertEquals(12, kills[3].get());
+        for (int i = 0; i < PROXIES - 1; ++i) {
+            Assert.assertEquals(1, nodeIdQueries[i].get());
+        }
+        Assert.assertEquals(PROXIES, channelBuilds.get());
+
+        // left node is forgotten with its channel
+        final String[] left = new String[] {nodes[0], nodes[1]};
+        SyncService.killOn(left, processId, false, 1000);
+        Assert.assertEquals(3, kills[1].get());
+        SyncService.killOn(nodes, processId, false, 1000);
+        Assert.assertEquals(12, kills[2].get()); // sent again before its node id is learned
+        awaitLearned(nodes);
+        Assert.assertEquals(PROXIES + 2, channelBuilds.get());
+        Assert.assertEquals(2, nodeIdQueries[2].get());
+    }
+}
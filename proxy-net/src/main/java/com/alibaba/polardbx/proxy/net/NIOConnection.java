@@ -19,6 +19,7 @@
 package com.alibaba.polardbx.proxy.net;
 
 import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.perf.ReactorPerfCollection;
 import com.alibaba.polardbx.proxy.utils.AutoCloseableContainer;
 import com.alibaba.polardbx.proxy.utils.FastBufferPool;
 import com.alibaba.polardbx.proxy.utils.Slice;
@@ -39,6 +40,7 @@ import java.nio.ByteOrder;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -51,6 +53,7 @@ import java.util.concurrent.locks.ReentrantLock;
 public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConnection> {
     private static final Logger LOGGER = LoggerFactory.getLogger(NIOConnection.class);
     private static final AtomicLong INTERNAL_ID_GENERATOR = new AtomicLong(0);
+    @Getter
     private final long internalId = INTERNAL_ID_GENERATOR.incrementAndGet();
 
     // for client send_buf is small, recv_buf is large
@@ -58,6 +61,9 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
     private static final int socketLargeBuffer = 64 * 1024;
     private static final int socketSmallBuffer = 16 * 1024;
 
+    // max slices gathered in one write syscall(less than IOV_MAX)
+    private static final int MAX_GATHERING_WRITE = 64;
+
     public static void ensureMinimumTcpBuffer(Socket s, int sendBuffer, int receiveBuffer) throws SocketException {
         if (s.getSendBufferSize() < sendBuffer) {
             s.setSendBufferSize(sendBuffer);
@@ -194,6 +200,8 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
     private Slice lastWrite = null;
     private final AtomicBoolean writeBlocking = new AtomicBoolean(false);
     private final List<WeakReference<Runnable>> writeResumeListener = new CopyOnWriteArrayList<>();
+    // buffers for gathering write, only touched with the write lock
+    private final ByteBuffer[] writeVector = new ByteBuffer[MAX_GATHERING_WRITE];
 
     // for idle time check
     private final AtomicLong lastSend = new AtomicLong(0);
@@ -479,19 +487,18 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
                             if (packetSize <= pool.getBlockSize()) {
                                 // allocate new block
                                 newHolder = pool.allocateAndAddReference();
-                                if (newHolder != null) {
-                                    newBuffer = newHolder.duplicateBuffer();
-                                    newBase = newBuffer.position();
-                                    newCapcity = newBuffer.limit() - newBase;
-                                } else {
-                                    newBuffer = ByteBuffer.allocate(pool.getBlockSize());
-                                    newBase = 0;
-                                    newCapcity = newBuffer.capacity();
-                                }
                             } else {
-                                // large block needed
-                                newHolder = null;
-                                newBuffer = ByteBuffer.allocate(Math.min(maxPacketSize, 2 * packetSize));
+                                // large block needed, try large size classes
+                                newHolder = pool.allocateAndAddReference(packetSize);
+                            }
+                            if (newHolder != null) {
+                                newBuffer = newHolder.duplicateBuffer();
+                                newBase = newBuffer.position();
+                                newCapcity = newBuffer.limit() - newBase;
+                            } else {
+                                // fallback to heap
+                                newBuffer = ByteBuffer.allocate(packetSize <= pool.getBlockSize() ?
+                                    pool.getBlockSize() : Math.min(maxPacketSize, 2 * packetSize));
                                 newBase = 0;
                                 newCapcity = newBuffer.capacity();
                             }
@@ -590,24 +597,47 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
         // record time use fast nanos
         lastSend.set(System.nanoTime());
 
-        Slice top;
-        while ((top = writeQueue.peek()) != null) {
-            // gen buffer for write
-            final ByteBuffer buf = top.duplicateBuffer();
-            buf.position(buf.position() + top.getConsumed());
-            buf.limit(buf.position() + top.getValid());
-            final int written = channel.write(buf);
+        final ReactorPerfCollection perf = processor.getPerfCollection();
+        while (!writeQueue.isEmpty()) {
+            // gather buffers for one vectored write
+            int count = 0;
+            long expected = 0;
+            for (final Slice s : writeQueue) {
+                final ByteBuffer buf = s.duplicateBuffer();
+                buf.position(buf.position() + s.getConsumed());
+                buf.limit(buf.position() + s.getValid());
+                writeVector[count++] = buf;
+                expected += s.getValid();
+                if (count >= MAX_GATHERING_WRITE) {
+                    break;
+                }
+            }
+
+            final long written;
+            try {
+                written = 1 == count ? channel.write(writeVector[0]) : channel.write(writeVector, 0, count);
+            } finally {
+                Arrays.fill(writeVector, 0, count, null);
+            }
 
             // record perf data
+            perf.getWriteSyscallCount().getAndIncrement();
             if (written > 0) {
                 sendBytes.getAndAdd(written);
             }
 
-            if (buf.hasRemaining()) {
-                // update pos
-                top.consume(written);
-                return false;
-            } else {
+            // free the slices which fully written, and update pos of the partial one
+            long rest = written;
+            for (int i = 0; i < count; ++i) {
+                final Slice top = writeQueue.peek();
+                assert top != null;
+                if (rest < top.getValid()) {
+                    // slices actually written, include the partial one
+                    perf.getWriteSliceCount().getAndAdd(rest > 0 ? i + 1 : i);
+                    top.consume((int) rest);
+                    return false;
+                }
+                rest -= top.getValid();
                 if (lastWrite == top) {
                     // clear last
                     lastWrite = null;
@@ -616,6 +646,11 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
                 assert removed == top;
                 removed.close();
             }
+            perf.getWriteSliceCount().getAndAdd(count);
+
+            if (written < expected) {
+                return false;
+            }
         }
         return true;
     }
@@ -688,9 +723,16 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
         writeResumeListener.removeIf(ref -> null == ref.get() || runnable == ref.get());
     }
 
+    private void recordCrossThreadWrite() {
+        if (Thread.currentThread() != processor) {
+            processor.getPerfCollection().getCrossThreadWriteCount().getAndIncrement();
+        }
+    }
+
     // Caution: Invoke with try-with-resource on packets container to ensure resource free.
     //          Packets which used will be taken from container.
     public void write(AutoCloseableContainer<Slice> packets) throws IOException {
+        recordCrossThreadWrite();
         writeLock.lock();
         try {
             if (tcpClosed.getPlain()) { // in lock so plain read
@@ -734,6 +776,7 @@ public abstract class NIOConnection implements AutoCloseable, Comparable<NIOConn
     // Caution: Packet will close anyway.
     public void write(Slice packet) throws IOException {
         try {
+            recordCrossThreadWrite();
             writeLock.lock();
             try {
                 if (tcpClosed.getPlain()) { // in lock so plain read
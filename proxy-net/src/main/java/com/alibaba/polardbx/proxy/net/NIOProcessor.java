@@ -37,6 +37,11 @@ import java.util.concurrent.ConcurrentLinkedQueue;
 public class NIOProcessor extends Thread {
     public static final int DEFAULT_BLOCK_SIZE = 1024 * 8; // 8k
     public static final int DEFAULT_BLOCK_NUMBER = 2048;
+    // size classes for large packets, slab allocated only when buffer budget is enough
+    // the largest one holds a max-size packet: 16M-1 payload with header(7 bytes of compressed one is the larger)
+    public static final int MAX_PACKET_BLOCK_SIZE = 1024 * 1024 * 16 - 1 + 7;
+    public static final int[] LARGE_BLOCK_SIZES = {1024 * 64, 1024 * 1024, MAX_PACKET_BLOCK_SIZE}; // 64k, 1M, 16M+6
+    public static final int[] LARGE_BLOCK_MAX_NUMBERS = {64, 8, 2};
 
     private static final Logger LOGGER = LoggerFactory.getLogger(NIOProcessor.class);
 
@@ -54,8 +59,13 @@ public class NIOProcessor extends Thread {
     }
 
     public NIOProcessor(String name, int blockSize, int blockNumber) throws IOException {
+        this(name, new int[] {blockSize}, new int[] {blockNumber});
+    }
+
+    public NIOProcessor(String name, int[] blockSizes, int[] blockNumbers) throws IOException {
         this.name = name;
-        this.bufferPool = new FastBufferPool(blockSize, blockNumber);
+        this.bufferPool = new FastBufferPool(blockSizes, blockNumbers);
+        this.bufferPool.bindOwner(this); // magazines for reactor thread
         this.selector = Selector.open();
         this.registerQueue = new ConcurrentLinkedQueue<>();
 
@@ -123,10 +133,14 @@ public class NIOProcessor extends Thread {
         item.setReadCount(perfCollection.getReadCount().getAcquire());
         item.setWriteCount(perfCollection.getWriteCount().getAcquire());
         item.setConnectCount(perfCollection.getConnectCount().getAcquire());
+        item.setWriteSyscallCount(perfCollection.getWriteSyscallCount().getAcquire());
+        item.setWriteSliceCount(perfCollection.getWriteSliceCount().getAcquire());
+        item.setCrossThreadWriteCount(perfCollection.getCrossThreadWriteCount().getAcquire());
 
         item.setBufferSize(bufferPool.capacity());
         item.setBufferBlockSize(bufferPool.getBlockSize());
         item.setIdleBufferCount(bufferPool.estimatedFreeBlocks());
+        item.setBufferSizeClasses(bufferPool.sizeClassesInfo());
 
         return item;
     }
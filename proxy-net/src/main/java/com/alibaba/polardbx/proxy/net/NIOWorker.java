@@ -60,17 +60,43 @@ public class NIOWorker {
         if (threadNumber > MAX_THREADS) {
             threadNumber = MAX_THREADS;
         }
-        long bufNumPerThread = MAX_BUF_SIZE / threadNumber / NIOProcessor.DEFAULT_BLOCK_SIZE;
+        final long bufPerThread = MAX_BUF_SIZE / threadNumber;
+        long bufNumPerThread = bufPerThread / NIOProcessor.DEFAULT_BLOCK_SIZE;
         if (bufNumPerThread > NIOProcessor.DEFAULT_BLOCK_NUMBER) {
             bufNumPerThread = NIOProcessor.DEFAULT_BLOCK_NUMBER;
         }
-        LOGGER.info("NIOWorker start with {} processors and {} MB buf per processor.",
-            threadNumber, bufNumPerThread * NIOProcessor.DEFAULT_BLOCK_SIZE / 1024 / 1024.f);
+
+        // large size classes use the rest budget
+        final int[] blockSizes = new int[NIOProcessor.LARGE_BLOCK_SIZES.length + 1];
+        final int[] blockNumbers = new int[blockSizes.length];
+        blockSizes[0] = NIOProcessor.DEFAULT_BLOCK_SIZE;
+        blockNumbers[0] = (int) bufNumPerThread;
+        long rest = bufPerThread - bufNumPerThread * NIOProcessor.DEFAULT_BLOCK_SIZE;
+        long largeBuf = 0;
+        final StringBuilder disabled = new StringBuilder();
+        for (int i = 0; i < NIOProcessor.LARGE_BLOCK_SIZES.length; ++i) {
+            final int size = NIOProcessor.LARGE_BLOCK_SIZES[i];
+            final int number = (int) Math.min(NIOProcessor.LARGE_BLOCK_MAX_NUMBERS[i], rest / size);
+            blockSizes[i + 1] = size;
+            blockNumbers[i + 1] = number;
+            rest -= (long) number * size;
+            largeBuf += (long) number * size;
+            if (0 == number) {
+                disabled.append(disabled.length() > 0 ? ", " : "").append(size);
+            }
+        }
+        if (disabled.length() > 0) {
+            LOGGER.warn("NIOWorker large buffer classes of [{}] bytes disabled for no buffer budget left, "
+                + "packets of these sizes fall back to heap buffer.", disabled);
+        }
+
+        LOGGER.info("NIOWorker start with {} processors and {} MB buf per processor, {} MB large buf per processor.",
+            threadNumber, bufNumPerThread * NIOProcessor.DEFAULT_BLOCK_SIZE / 1024 / 1024.f,
+            largeBuf / 1024 / 1024.f);
         processors = new NIOProcessor[threadNumber];
         try {
             for (int i = 0; i < threadNumber; ++i) {
-                processors[i] = new NIOProcessor(
-                    ThreadNames.NIO_PROCESSOR + "-" + i, NIOProcessor.DEFAULT_BLOCK_SIZE, (int) bufNumPerThread);
+                processors[i] = new NIOProcessor(ThreadNames.NIO_PROCESSOR + "-" + i, blockSizes, blockNumbers);
                 processors[i].start();
             }
         } catch (Throwable t) {
@@ -87,6 +113,21 @@ public class NIOWorker {
         return processors[idx];
     }
 
+    /**
+     * Get processor for new connection, and use the preferred one if it belongs to this worker, so that paired
+     * frontend and backend connections are served by the same reactor thread.
+     */
+    public NIOProcessor getProcessor(NIOProcessor preferred) {
+        if (preferred != null) {
+            for (final NIOProcessor processor : processors) {
+                if (processor == preferred) {
+                    return processor;
+                }
+            }
+        }
+        return getProcessor();
+    }
+
     @Override
     public String toString() {
         return "NIOWorker{" +
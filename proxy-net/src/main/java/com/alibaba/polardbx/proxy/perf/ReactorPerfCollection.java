@@ -30,4 +30,11 @@ public class ReactorPerfCollection {
     private final AtomicLong readCount = new AtomicLong(0);
     private final AtomicLong writeCount = new AtomicLong(0);
     private final AtomicLong connectCount = new AtomicLong(0);
+
+    // gathering write, slices per syscall = writeSliceCount / writeSyscallCount
+    private final AtomicLong writeSyscallCount = new AtomicLong(0);
+    private final AtomicLong writeSliceCount = new AtomicLong(0);
+
+    // writes issued from other threads than the owner reactor, which contend on write lock of connection
+    private final AtomicLong crossThreadWriteCount = new AtomicLong(0);
 }
@@ -33,8 +33,12 @@ public class ReactorPerfItem {
     private long readCount;
     private long writeCount;
     private long connectCount;
+    private long writeSyscallCount;
+    private long writeSliceCount;
+    private long crossThreadWriteCount;
 
     private long bufferSize;
     private long bufferBlockSize;
     private long idleBufferCount;
+    private String bufferSizeClasses;
 }
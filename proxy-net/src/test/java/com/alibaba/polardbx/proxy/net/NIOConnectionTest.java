@@ -366,6 +366,37 @@ public class NIOConnectionTest {
         connection.close();
     }
 
+    @Test
+    public void testCrossThreadWriteCounted() throws IOException, InterruptedException {
+        Thread acceptThread = new Thread(() -> {
+            try {
+                serverSocket.accept();
+            } catch (IOException ignored) {
+            }
+        });
+        acceptThread.start();
+
+        SocketChannel channel = NIOConnection.connectBlocking(
+            new InetSocketAddress("127.0.0.1", testPort), 5000);
+
+        TestConnection connection = new TestConnection(channel, processor, true);
+        processor.postRegister(connection);
+        final long deadline = System.currentTimeMillis() + 5000;
+        while (!connection.isEstablished() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertTrue(connection.isEstablished());
+        final long before = processor.getPerfCollection().getCrossThreadWriteCount().get();
+
+        // Write from test thread rather than owner reactor
+        ByteBuffer buf = ByteBuffer.allocate(10);
+        connection.write(new Slice(buf, 0, 10));
+        assertEquals(before + 1, processor.getPerfCollection().getCrossThreadWriteCount().get());
+        assertEquals(before + 1, processor.getPerfItem().getCrossThreadWriteCount());
+
+        connection.close();
+    }
+
     @Test
     public void testWriteResumeListener() throws IOException {
         Thread acceptThread = new Thread(() -> {
@@ -527,4 +558,65 @@ public class NIOConnectionTest {
             }
         }
     }
+
+    @Test
+    public void testGatheringWrite() throws Exception {
+        final AtomicReference<Socket> accepted = new AtomicReference<>();
+        final CountDownLatch acceptLatch = new CountDownLatch(1);
+        Thread acceptThread = new Thread(() -> {
+            try {
+                accepted.set(serverSocket.accept());
+                acceptLatch.countDown();
+            } catch (IOException ignored) {
+            }
+        });
+        acceptThread.start();
+
+        SocketChannel channel = NIOConnection.connectBlocking(
+            new InetSocketAddress("127.0.0.1", testPort), 5000);
+        TestConnection connection = new TestConnection(channel, processor, true);
+        processor.postRegister(connection);
+        assertTrue(acceptLatch.await(5, TimeUnit.SECONDS));
+        Thread.sleep(100);
+
+        // interleaved slices from two buffers, so no one can be merged
+        final int count = 200, size = 16;
+        final ByteBuffer even = ByteBuffer.allocate(count * size);
+        final ByteBuffer odd = ByteBuffer.allocate(count * size);
+        final byte[] expected = new byte[count * size];
+        for (int i = 0; i < expected.length; ++i) {
+            expected[i] = (byte) i;
+        }
+        final long syscallsBefore = processor.getPerfCollection().getWriteSyscallCount().get();
+        final long slicesBefore = processor.getPerfCollection().getWriteSliceCount().get();
+        try (AutoCloseableContainer<Slice> container = new AutoCloseableContainer<>()) {
+            for (int i = 0; i < count; ++i) {
+                final ByteBuffer target = 0 == (i & 1) ? even : odd;
+                target.duplicate().position(i * size).put(expected, i * size, size);
+                container.add(new Slice(target, i * size, size));
+            }
+            connection.write(container);
+        }
+
+        // read all and check order
+        final byte[] got = new byte[expected.length];
+        final Socket peer = accepted.get();
+        peer.setSoTimeout(5000);
+        int pos = 0;
+        while (pos < got.length) {
+            final int n = peer.getInputStream().read(got, pos, got.length - pos);
+            assertTrue(n > 0);
+            pos += n;
+        }
+        assertArrayEquals(expected, got);
+
+        // slices per syscall should be greater than 1
+        final long syscalls = processor.getPerfCollection().getWriteSyscallCount().get() - syscallsBefore;
+        final long slices = processor.getPerfCollection().getWriteSliceCount().get() - slicesBefore;
+        assertEquals(count, slices);
+        assertTrue(syscalls > 0 && syscalls < slices);
+
+        peer.close();
+        connection.close();
+    }
 }
@@ -41,6 +41,18 @@ public class NIOWorkerTest {
         assertTrue(worker.getProcessors().length <= 100);
     }
 
+    @Test
+    public void testLargestClassHoldsMaxPacket() {
+        // 16M-1 payload with 4 bytes normal header or 7 bytes compressed header
+        final int[] sizes = NIOProcessor.LARGE_BLOCK_SIZES;
+        assertTrue(sizes[sizes.length - 1] >= 0xFFFFFF + 7);
+
+        // every class is either pooled or shown as disabled
+        NIOWorker worker = new NIOWorker(1);
+        final String info = worker.getProcessors()[0].getBufferPool().sizeClassesInfo();
+        assertEquals(sizes.length + 1, info.split(" ").length);
+    }
+
     @Test
     public void testGetProcessorRoundRobin() {
         NIOWorker worker = new NIOWorker(3);
@@ -60,6 +72,22 @@ public class NIOWorkerTest {
         assertEquals(p0, p3);
     }
 
+    @Test
+    public void testGetProcessorPreferred() {
+        NIOWorker worker = new NIOWorker(2);
+        NIOProcessor preferred = worker.getProcessors()[1];
+
+        // Preferred processor is always returned if it belongs to the worker
+        for (int i = 0; i < 10; i++) {
+            assertSame(preferred, worker.getProcessor(preferred));
+        }
+
+        // Fall back to round-robin if no preference
+        NIOProcessor p0 = worker.getProcessor(null);
+        NIOProcessor p1 = worker.getProcessor(null);
+        assertNotSame(p0, p1);
+    }
+
     @Test
     public void testGetProcessorNeverReturnsNull() {
         NIOWorker worker = new NIOWorker(4);
@@ -18,19 +18,29 @@
 
 package com.alibaba.polardbx.proxy.parser.ast.stmt.dal;
 
+import com.alibaba.polardbx.proxy.parser.ast.expression.primary.literal.LiteralString;
+import com.alibaba.polardbx.proxy.parser.ast.fragment.Limit;
 import com.alibaba.polardbx.proxy.parser.visitor.SQLASTVisitor;
 import lombok.Getter;
 
 @Getter
 public class ShowBackend extends DALShowStatement {
     private final boolean full;
+    private final LiteralString pattern; // matches user@host, null if all
+    private final Limit limit; // null if all
 
     public ShowBackend() {
-        this.full = false;
+        this(false);
     }
 
     public ShowBackend(boolean full) {
+        this(full, null, null);
+    }
+
+    public ShowBackend(boolean full, LiteralString pattern, Limit limit) {
         this.full = full;
+        this.pattern = pattern;
+        this.limit = limit;
     }
 
     @Override
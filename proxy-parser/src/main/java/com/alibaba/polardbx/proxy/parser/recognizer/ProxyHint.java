@@ -0,0 +1,206 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.parser.recognizer;
+
+import com.alibaba.polardbx.proxy.parser.util.FastCharTypes;
+import lombok.Getter;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Routing and consistency control of single statement, given in optimizer hint comment started with '/*+', like
+ * {@code PROXY_ROUTE(leader|follower|learner|node=ip:port)} and {@code PROXY_CONSISTENCY(weak|session|strong)}.
+ * <p>
+ * Recognized by {@link com.alibaba.polardbx.proxy.parser.recognizer.mysql.lexer.MySQLLexer} when it skips the
+ * comment, so no extra scan on the sql. Other hints in the same comment are kept when proxy ones stripped.
+ */
+@Getter
+public class ProxyHint {
+    public enum Route {
+        LEADER, FOLLOWER, LEARNER, NODE
+    }
+
+    public enum Consistency {
+        WEAK, SESSION, STRONG
+    }
+
+    private static final String PROXY_ROUTE = "PROXY_ROUTE";
+    private static final String PROXY_CONSISTENCY = "PROXY_CONSISTENCY";
+
+    private Route route = null;
+    private String node = null; // ip:port for NODE route
+    private Consistency consistency = null;
+
+    // original hint comments and the replacement without proxy hints, for strip
+    private final List<byte[]> comments = new ArrayList<>(1);
+    private final List<byte[]> replacements = new ArrayList<>(1);
+
+    /**
+     * Parse hint comment(include the leading slash star plus and the tailing star slash) in sql[from, to), and
+     * merge into existing one. First setting of each item wins.
+     *
+     * @return merged hint, or existing one(may be null) if no proxy hint in the comment
+     */
+    public static ProxyHint parse(ProxyHint existing, byte[] sql, int from, int to) {
+        final ByteArrayOutputStream kept = new ByteArrayOutputStream(to - from);
+        kept.write(sql, from, 3); // slash star plus
+        final int end = to - 2;
+        boolean found = false;
+        boolean others = false;
+        ProxyHint hint = existing;
+        int pos = from + 3;
+        while (pos < end) {
+            // keep separators
+            final int itemStart = pos;
+            while (pos < end && FastCharTypes.isIdentifier(sql[pos])) {
+                ++pos;
+            }
+            if (pos == itemStart) {
+                kept.write(sql[pos++]);
+                continue;
+            }
+            final int nameEnd = pos;
+            while (pos < end && FastCharTypes.isSpace(sql[pos])) {
+                ++pos;
+            }
+            if (pos >= end || sql[pos] != '(') {
+                kept.write(sql, itemStart, pos - itemStart);
+                others = true;
+                continue;
+            }
+            final int argStart = pos + 1;
+            while (pos < end && sql[pos] != ')') {
+                ++pos;
+            }
+            if (pos >= end) {
+                // unclosed, keep the rest as is
+                kept.write(sql, itemStart, end - itemStart);
+                others = true;
+                break;
+            }
+            final int argEnd = pos++;
+            final String name = new String(sql, itemStart, nameEnd - itemStart, StandardCharsets.UTF_8);
+            final boolean isRoute = PROXY_ROUTE.equalsIgnoreCase(name);
+            if (!isRoute && !PROXY_CONSISTENCY.equalsIgnoreCase(name)) {
+                kept.write(sql, itemStart, pos - itemStart);
+                others = true;
+                continue;
+            }
+            found = true;
+            if (null == hint) {
+                hint = new ProxyHint();
+            }
+            final String arg = new String(sql, argStart, argEnd - argStart, StandardCharsets.UTF_8).trim();
+            if (isRoute) {
+                hint.applyRoute(arg);
+            } else {
+                hint.applyConsistency(arg);
+            }
+        }
+        if (!found) {
+            return existing;
+        }
+        hint.comments.add(Arrays.copyOfRange(sql, from, to));
+        if (others) {
+            kept.write(sql, end, 2); // star slash
+            hint.replacements.add(kept.toByteArray());
+        } else {
+            hint.replacements.add(new byte[0]);
+        }
+        return hint;
+    }
+
+    private void applyRoute(String arg) {
+        if (route != null) {
+            return;
+        }
+        final int eq = arg.indexOf('=');
+        if (eq > 0 && arg.substring(0, eq).trim().equalsIgnoreCase("node")) {
+            String tag = arg.substring(eq + 1).trim();
+            if (tag.length() >= 2 && (tag.charAt(0) == '\'' || tag.charAt(0) == '"')
+                && tag.charAt(tag.length() - 1) == tag.charAt(0)) {
+                tag = tag.substring(1, tag.length() - 1);
+            }
+            if (!tag.isEmpty()) {
+                route = Route.NODE;
+                node = tag;
+            }
+            return;
+        }
+        for (final Route r : Route.values()) {
+            if (r != Route.NODE && r.name().equalsIgnoreCase(arg)) {
+                route = r;
+                return;
+            }
+        }
+    }
+
+    private void applyConsistency(String arg) {
+        if (consistency != null) {
+            return;
+        }
+        for (final Consistency c : Consistency.values()) {
+            if (c.name().equalsIgnoreCase(arg)) {
+                consistency = c;
+                return;
+            }
+        }
+    }
+
+    /**
+     * Remove proxy hints from the query, other hints in the same comment are kept.
+     *
+     * @return stripped query, or the same array if no hint comment found
+     */
+    public byte[] strip(byte[] query) {
+        byte[] result = query;
+        for (int i = 0; i < comments.size(); ++i) {
+            final byte[] comment = comments.get(i);
+            final int idx = indexOf(result, comment);
+            if (idx < 0) {
+                continue;
+            }
+            final byte[] replacement = replacements.get(i);
+            final byte[] stripped = new byte[result.length - comment.length + replacement.length];
+            System.arraycopy(result, 0, stripped, 0, idx);
+            System.arraycopy(replacement, 0, stripped, idx, replacement.length);
+            System.arraycopy(result, idx + comment.length, stripped, idx + replacement.length,
+                result.length - idx - comment.length);
+            result = stripped;
+        }
+        return result;
+    }
+
+    private static int indexOf(byte[] bytes, byte[] target) {
+        outer:
+        for (int i = 0; i <= bytes.length - target.length; ++i) {
+            for (int j = 0; j < target.length; ++j) {
+                if (bytes[i + j] != target[j]) {
+                    continue outer;
+                }
+            }
+            return i;
+        }
+        return -1;
+    }
+}
@@ -18,6 +18,7 @@
 
 package com.alibaba.polardbx.proxy.parser.recognizer;
 
+import com.alibaba.polardbx.proxy.config.FastConfig;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.SQLStatement;
 import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
 import com.alibaba.polardbx.proxy.parser.recognizer.mysql.lexer.MySQLLexer;
@@ -31,12 +32,22 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.sql.SQLSyntaxErrorException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class SQLParser {
     private final MySQLLexer lexer;
     @Getter
     private final MySQLToken firstToken;
+    private final boolean noBackslashEscapes;
+    private final int version;
+
+    // number of full lexer scans on this sql
+    @Getter
+    private int scans = 0;
+
+    // result of last classify
+    private StatementClassification classification = null;
 
     public SQLParser(@NotNull final String sql) throws SQLSyntaxErrorException {
         this(sql.getBytes(StandardCharsets.UTF_8), 0, sql.length(), StandardCharsets.UTF_8, null,
@@ -45,132 +56,170 @@ public class SQLParser {
 
     public SQLParser(final byte @NotNull [] sql, final int offset, final int length, @NotNull final Charset charset,
                      String sqlMode, int version) throws SQLSyntaxErrorException {
-        final boolean noBackslashEscapes = sqlMode != null && sqlMode.contains("NO_BACKSLASH_ESCAPES");
+        this.noBackslashEscapes = isNoBackslashEscapes(sqlMode);
+        this.version = version;
         this.lexer = new MySQLLexer(sql, charset, noBackslashEscapes, version, offset, length);
         this.firstToken = this.lexer.nextToken();
     }
 
-    public boolean isMultiStatement() throws SQLSyntaxErrorException {
+    public static boolean isNoBackslashEscapes(String sqlMode) {
+        return sqlMode != null && sqlMode.contains("NO_BACKSLASH_ESCAPES");
+    }
+
+    private void rescan() {
         lexer.reset();
-        MySQLToken token;
-        while ((token = lexer.nextToken()) != MySQLToken.EOF) {
-            if (MySQLToken.PUNC_SEMICOLON == token) {
-                return MySQLToken.EOF != lexer.nextToken();
-            }
+        ++scans;
+    }
+
+    private static String unquoteIdentifier(String name) {
+        if (name.length() >= 2 && name.charAt(0) == '`' && name.charAt(name.length() - 1) == '`') {
+            return name.substring(1, name.length() - 1).replace("``", "`");
         }
-        return false;
+        return name;
+    }
+
+    public boolean isMultiStatement() throws SQLSyntaxErrorException {
+        return classified().isMultiStatement();
     }
 
     public boolean canSlaveRead() throws SQLSyntaxErrorException {
-        lexer.reset();
-        MySQLToken token = lexer.nextToken();
-        // first should be select
-        while (MySQLToken.KW_SELECT == token) {
-            token = lexer.nextToken();
+        return classified().isSlaveReadable();
+    }
 
-            // SELECT with PROCEDURE syntax is deprecated as of MySQL 5.7.18, and is removed in MySQL 8.0.
-            // So ignore the procedure syntax.
-
-            /*
-             * Check lock syntax.
-             *
-             * [FOR {UPDATE | SHARE}
-             *     [OF tbl_name [, tbl_name] ...]
-             *     [NOWAIT | SKIP LOCKED]
-             *   | LOCK IN SHARE MODE]
-             */
-            while (token != MySQLToken.EOF && token != MySQLToken.PUNC_SEMICOLON) {
-                if (MySQLToken.KW_FOR == token) {
-                    token = lexer.nextToken();
-                    if (MySQLToken.KW_UPDATE == token || MySQLToken.KW_SHARE == token) {
-                        return false;
-                    }
-                    continue;
-                } else if (MySQLToken.KW_LOCK == token) {
-                    token = lexer.nextToken();
-                    if (MySQLToken.KW_IN == token) {
-                        token = lexer.nextToken();
-                        if (MySQLToken.KW_SHARE == token) {
-                            token = lexer.nextToken();
-                            if (MySQLToken.KW_MODE == token) {
-                                return false;
-                            }
-                        }
-                    }
-                    continue;
-                }
-                token = lexer.nextToken();
-            }
+    public boolean isReadOnly() throws SQLSyntaxErrorException {
+        return classified().isReadOnly();
+    }
 
-            if (token == MySQLToken.EOF) {
-                return true;
-            }
-            // else continue check next statement
-            token = lexer.nextToken();
-        }
-        return false;
+    public boolean isPrivilegeDatabaseChanged() throws SQLSyntaxErrorException {
+        return classified().isPrivilegeDatabaseChanged();
     }
 
-    public boolean isReadOnly() throws SQLSyntaxErrorException {
-        lexer.reset();
-        MySQLToken token = lexer.nextToken();
-        while (MySQLToken.KW_SELECT == token) {
-            // first should be select
-            token = lexer.nextToken();
+    public String applyDatabase(String nowDatabase, boolean lowerCase) throws SQLSyntaxErrorException {
+        return applyDatabase(nowDatabase, lowerCase, null);
+    }
 
-            // SELECT with PROCEDURE syntax is deprecated as of MySQL 5.7.18, and is removed in MySQL 8.0.
-            // So ignore the procedure syntax.
+    public String applyDatabase(String nowDatabase, boolean lowerCase, boolean[] stmtGood)
+        throws SQLSyntaxErrorException {
+        return classified().applyDatabase(nowDatabase, lowerCase, stmtGood);
+    }
 
-            // consume to end of statement
-            while (token != MySQLToken.EOF && token != MySQLToken.PUNC_SEMICOLON) {
-                token = lexer.nextToken();
-            }
+    /**
+     * Checks above share the classification, so any number of them costs a single lexer scan.
+     */
+    private StatementClassification classified() throws SQLSyntaxErrorException {
+        return null == classification ? classify() : classification;
+    }
 
-            if (token == MySQLToken.EOF) {
-                return true;
-            }
-            // else continue check next statement
-            token = lexer.nextToken();
-        }
-        return false;
+    /**
+     * Classify all statements in a single lexer scan. {@link #canSlaveRead()}, {@link #isReadOnly()},
+     * {@link #isMultiStatement()}, {@link #isPrivilegeDatabaseChanged()}, {@link #applyDatabase(String, boolean,
+     * boolean[])} and {@link #parseMultiStatements()} are answered by the result without lexing again.
+     * Digest of the token stream is built in the same scan only if statement statistics are enabled.
+     */
+    public StatementClassification classify() throws SQLSyntaxErrorException {
+        return classify(FastConfig.statementStatsSize > 0);
     }
 
-    public boolean isPrivilegeDatabaseChanged() throws SQLSyntaxErrorException {
-        lexer.reset();
+    /**
+     * @param withDigest build digest of the token stream, see {@link StatementDigest}, or leave it null
+     */
+    public StatementClassification classify(boolean withDigest) throws SQLSyntaxErrorException {
+        final StatementClassification result = new StatementClassification(firstToken, noBackslashEscapes, version);
+        rescan();
+        final StatementDigest digest = withDigest ? new StatementDigest(StatementDigest.DEFAULT_MAX_LENGTH) : null;
+        lexer.setDigest(digest);
         MySQLToken token = lexer.nextToken();
+        int stmtId = 0;
         while (true) {
-            // check first token
-            if (MySQLToken.KW_FLUSH == token) {
+            final boolean explain = MySQLToken.KW_EXPLAIN == token;
+            if (explain) {
+                result.readOnly = result.slaveReadable = false;
                 token = lexer.nextToken();
-                if (MySQLToken.KW_PRIVILEGES == token) {
-                    return true;
-                }
-            } else if (MySQLToken.KW_CREATE == token) {
+            }
+
+            SQLStatement stmt = null;
+            switch (token) {
+            case KW_SET:
+                result.readOnly = result.slaveReadable = false;
                 token = lexer.nextToken();
-                if (MySQLToken.KW_DATABASE == token || MySQLToken.KW_SCHEMA == token || MySQLToken.KW_USER == token) {
-                    return true;
+                if (MySQLToken.KW_PASSWORD == token) {
+                    if (!explain) {
+                        result.privilegeDatabaseChanged = true;
+                    }
+                    break; // not parsed and leave it null
                 }
-            } else if (MySQLToken.KW_DROP == token) {
+                stmt = parseStatement(result, token);
+                token = lexer.token();
+                break;
+
+            case KW_SHOW:
+            case KW_KILL:
+                result.readOnly = result.slaveReadable = false;
+                stmt = parseStatement(result, token);
+                token = lexer.token();
+                break;
+
+            case KW_RESET:
+                result.readOnly = result.slaveReadable = false;
                 token = lexer.nextToken();
-                if (MySQLToken.KW_DATABASE == token || MySQLToken.KW_SCHEMA == token || MySQLToken.KW_USER == token) {
-                    return true;
+                if (MySQLToken.KW_PROXY == token) {
+                    stmt = parseStatement(result, MySQLToken.KW_RESET);
+                    token = lexer.token();
                 }
-            } else if (MySQLToken.KW_ALTER == token) {
-                token = lexer.nextToken();
-                if (MySQLToken.KW_USER == token) {
-                    return true;
+                break; // others are not parsed and leave it null
+
+            case KW_SELECT:
+                if (explain) {
+                    break;
                 }
-            } else if (MySQLToken.KW_RENAME == token) {
                 token = lexer.nextToken();
-                if (MySQLToken.KW_USER == token) {
-                    return true;
+
+                // SELECT with PROCEDURE syntax is deprecated as of MySQL 5.7.18, and is removed in MySQL 8.0.
+                // So ignore the procedure syntax.
+
+                /*
+                 * Check lock syntax.
+                 *
+                 * [FOR {UPDATE | SHARE}
+                 *     [OF tbl_name [, tbl_name] ...]
+                 *     [NOWAIT | SKIP LOCKED]
+                 *   | LOCK IN SHARE MODE]
+                 */
+                while (token != MySQLToken.EOF && token != MySQLToken.PUNC_SEMICOLON) {
+                    if (MySQLToken.KW_FOR == token) {
+                        token = lexer.nextToken();
+                        if (MySQLToken.KW_UPDATE == token || MySQLToken.KW_SHARE == token) {
+                            result.slaveReadable = false;
+                        }
+                        continue;
+                    } else if (MySQLToken.KW_LOCK == token) {
+                        token = lexer.nextToken();
+                        if (MySQLToken.KW_IN == token) {
+                            token = lexer.nextToken();
+                            if (MySQLToken.KW_SHARE == token) {
+                                token = lexer.nextToken();
+                                if (MySQLToken.KW_MODE == token) {
+                                    result.slaveReadable = false;
+                                }
+                            }
+                        }
+                        continue;
+                    }
+                    token = lexer.nextToken();
                 }
-            } else if (MySQLToken.KW_SET == token) {
-                token = lexer.nextToken();
-                if (MySQLToken.KW_PASSWORD == token) {
-                    return true;
+                break;
+
+            default:
+                result.readOnly = result.slaveReadable = false;
+                if (!explain) {
+                    token = classifyOthers(result, token, stmtId);
                 }
+                break;
             }
+            if (result.statements != null) {
+                result.statements.add(stmt);
+            }
+            ++result.statementCount;
 
             // consume to end of statement
             while (token != MySQLToken.EOF && token != MySQLToken.PUNC_SEMICOLON) {
@@ -178,79 +227,140 @@ public class SQLParser {
             }
 
             if (MySQLToken.EOF == token) {
-                return false;
+                break;
             }
             // else continue check next statement
             token = lexer.nextToken();
+            if (token != MySQLToken.EOF) {
+                result.multiStatement = true;
+            }
+            ++stmtId;
+        }
+        if (result.multiStatement) {
+            result.startTransaction = false; // only single statement one is routed as trx start
+            result.startTransactionReadOnly = null;
+        }
+        result.proxyHint = lexer.getProxyHint();
+        if (digest != null) {
+            lexer.setDigest(null);
+            result.digest = digest.getText();
+            result.digestHash = digest.getHash();
+        }
+        if (result.statements != null) {
+            result.statements = Collections.unmodifiableList(result.statements);
         }
+        classification = result;
+        return result;
     }
 
-    public String applyDatabase(String nowDatabase, boolean lowerCase) throws SQLSyntaxErrorException {
-        return applyDatabase(nowDatabase, lowerCase, null);
+    private SQLStatement parseStatement(StatementClassification result, MySQLToken token) {
+        try {
+            final SQLStatement stmt;
+            switch (token) {
+            case KW_SHOW:
+                stmt = new MySQLDALParser(lexer, new MySQLExprParser(lexer)).show();
+                break;
+            case KW_KILL:
+                stmt = new KillParser(lexer).kill();
+                break;
+            case KW_RESET:
+                // RESET is consumed
+                stmt = new MySQLDALParser(lexer, new MySQLExprParser(lexer)).resetAfterKeyword();
+                break;
+            default:
+                // SET is consumed
+                stmt = new MySQLDALParser(lexer, new MySQLExprParser(lexer)).setAfterKeyword();
+                break;
+            }
+            if (lexer.token() == MySQLToken.EOF || lexer.token() == MySQLToken.PUNC_SEMICOLON) {
+                return stmt;
+            }
+        } catch (Exception ignore) {
+        }
+        // same as parseMultiStatements which fails the whole query
+        result.statements = null;
+        return null;
     }
 
-    public String applyDatabase(String nowDatabase, boolean lowerCase, boolean[] stmtGood)
+    private MySQLToken classifyOthers(StatementClassification result, MySQLToken token, int stmtId)
         throws SQLSyntaxErrorException {
-        lexer.reset();
-        MySQLToken token = lexer.nextToken();
-        int stmtId = 0;
-        while (true) {
-            do {
-                if (stmtGood != null && stmtId < stmtGood.length && !stmtGood[stmtId]) {
-                    break; // ignore stmt which is not success
-                }
-
-                if (MySQLToken.KW_DROP == token) {
+        // privilege or database changes, and USE db or DROP DATABASE db are recorded for applyDatabase
+        switch (token) {
+        case KW_FLUSH:
+            token = lexer.nextToken();
+            if (MySQLToken.KW_PRIVILEGES == token) {
+                result.privilegeDatabaseChanged = true;
+            }
+            break;
+        case KW_CREATE:
+            token = lexer.nextToken();
+            if (MySQLToken.KW_DATABASE == token || MySQLToken.KW_SCHEMA == token || MySQLToken.KW_USER == token) {
+                result.privilegeDatabaseChanged = true;
+            }
+            break;
+        case KW_DROP:
+            token = lexer.nextToken();
+            if (MySQLToken.KW_USER == token) {
+                result.privilegeDatabaseChanged = true;
+            } else if (MySQLToken.KW_DATABASE == token || MySQLToken.KW_SCHEMA == token) {
+                result.privilegeDatabaseChanged = true;
+                token = lexer.nextToken();
+                if (MySQLToken.KW_IF == token) {
                     token = lexer.nextToken();
-                    if (MySQLToken.KW_DATABASE == token || MySQLToken.KW_SCHEMA == token) {
-                        token = lexer.nextToken();
-                        if (MySQLToken.KW_IF == token) {
-                            token = lexer.nextToken();
-                            if (MySQLToken.KW_EXISTS == token) {
-                                lexer.nextToken();
-                            } else {
-                                break;
-                            }
-                        }
-                        String db = lexer.originalStringValue();
-                        if (db.length() >= 2 && db.charAt(0) == '`' && db.charAt(db.length() - 1) == '`') {
-                            db = db.substring(1, db.length() - 1).replace("``", "`");
-                        }
-
-                        // clear current db if same
-                        if (lowerCase) {
-                            if (db.equalsIgnoreCase(nowDatabase)) {
-                                nowDatabase = null;
-                            }
-                        } else if (db.equals(nowDatabase)) {
-                            nowDatabase = null;
-                        }
-                    }
-                } else if (MySQLToken.KW_USE == token) {
-                    lexer.nextToken();
-                    String db = lexer.originalStringValue();
-                    if (db.length() >= 2 && db.charAt(0) == '`' && db.charAt(db.length() - 1) == '`') {
-                        db = db.substring(1, db.length() - 1).replace("``", "`");
+                    if (MySQLToken.KW_EXISTS != token) {
+                        break;
                     }
-
-                    // switch db
-                    nowDatabase = db;
+                    token = lexer.nextToken();
                 }
-            } while (false);
-
-            // consume to end of statement
-            while (token != MySQLToken.EOF && token != MySQLToken.PUNC_SEMICOLON) {
+                result.databaseChanges.add(new StatementClassification.DatabaseChange(stmtId, false,
+                    unquoteIdentifier(lexer.originalStringValue())));
+            }
+            break;
+        case KW_ALTER:
+        case KW_RENAME:
+            token = lexer.nextToken();
+            if (MySQLToken.KW_USER == token) {
+                result.privilegeDatabaseChanged = true;
+            }
+            break;
+        case KW_BEGIN:
+            token = lexer.nextToken();
+            if (MySQLToken.KW_WORK == token) {
                 token = lexer.nextToken();
             }
-
-            if (MySQLToken.EOF == token) {
+            // BEGIN can also be the start of compound statement, which is not allowed here
+            result.startTransaction = MySQLToken.EOF == token || MySQLToken.PUNC_SEMICOLON == token;
+            break;
+        case KW_START:
+            token = lexer.nextToken();
+            if (token != MySQLToken.KW_TRANSACTION) {
                 break;
             }
-            // else continue check next statement
+            result.startTransaction = true;
+            // characteristics: WITH CONSISTENT SNAPSHOT | READ WRITE | READ ONLY
             token = lexer.nextToken();
-            ++stmtId;
+            while (token != MySQLToken.EOF && token != MySQLToken.PUNC_SEMICOLON) {
+                if (MySQLToken.KW_READ == token) {
+                    token = lexer.nextToken();
+                    if (MySQLToken.KW_ONLY == token) {
+                        result.startTransactionReadOnly = true;
+                    } else if (MySQLToken.KW_WRITE == token) {
+                        result.startTransactionReadOnly = false;
+                    }
+                    continue;
+                }
+                token = lexer.nextToken();
+            }
+            break;
+        case KW_USE:
+            token = lexer.nextToken();
+            result.databaseChanges.add(new StatementClassification.DatabaseChange(stmtId, true,
+                unquoteIdentifier(lexer.originalStringValue())));
+            break;
+        default:
+            break;
         }
-        return nowDatabase;
+        return token;
     }
 
     public static String buildErrorMsg(Exception e, MySQLLexer lexer) {
@@ -273,11 +383,20 @@ public class SQLParser {
         return sb.toString();
     }
 
-    // todo more check and fix on syntax parser
     public List<SQLStatement> parseMultiStatements() throws SQLSyntaxErrorException {
+        final List<SQLStatement> statements = classified().getStatements();
+        if (statements != null) {
+            return new ArrayList<>(statements);
+        }
+        // parse again only for the syntax error
+        return parseMultiStatementsFully();
+    }
+
+    // todo more check and fix on syntax parser
+    private List<SQLStatement> parseMultiStatementsFully() throws SQLSyntaxErrorException {
         final List<SQLStatement> stmtList = new ArrayList<>();
 
-        lexer.reset();
+        rescan();
         lexer.nextToken();
         while (true) {
             try {
@@ -312,6 +431,13 @@ public class SQLParser {
                 case PUNC_SEMICOLON:
                     break;
 
+                case KW_RESET:
+                    if (MySQLToken.KW_PROXY == lexer.nextToken()) {
+                        stmt = new MySQLDALParser(lexer, exprParser).resetAfterKeyword();
+                        break;
+                    }
+                    // fall through, other RESET statements are not parsed
+
                 default:
                     // todo: throw if not parser or consume until ';' or EOF
                     while (lexer.token() != MySQLToken.EOF && lexer.token() != MySQLToken.PUNC_SEMICOLON) {
@@ -0,0 +1,126 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.parser.recognizer;
+
+import com.alibaba.polardbx.proxy.parser.ast.stmt.SQLStatement;
+import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
+import lombok.AccessLevel;
+import lombok.Getter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Everything the COM_QUERY pipeline needs to know about a query, gathered in one lexer pass by
+ * {@link SQLParser#classify()}. Immutable after classification, so it can be shared between tasks,
+ * threads and reschedules of the same request.
+ */
+@Getter
+public class StatementClassification {
+    private final MySQLToken firstToken;
+    private final boolean noBackslashEscapes;
+    private final int version;
+
+    // statement count include the empty one after the last ';'
+    int statementCount = 0;
+    boolean multiStatement = false;
+    boolean readOnly = true; // all statements are select
+    boolean slaveReadable = true; // all statements are select without locking read
+    boolean privilegeDatabaseChanged = false;
+
+    // single START TRANSACTION or BEGIN, access mode is true for READ ONLY, false for READ WRITE and null if absent
+    boolean startTransaction = false;
+    Boolean startTransactionReadOnly = null;
+
+    // PROXY_ROUTE and PROXY_CONSISTENCY hints, kept in digest cache key so literal independent
+    ProxyHint proxyHint = null;
+
+    // normalized text and hash of token stream, literal independent so shared via digest cache, null if classified
+    // without digest(statement statistics off)
+    String digest = null;
+    long digestHash = 0;
+
+    // parsed SET/SHOW/KILL statements(null for others), or null if any of them failed to parse, unmodifiable once
+    // classified
+    List<SQLStatement> statements = new ArrayList<>();
+
+    // USE db and DROP DATABASE in order
+    @Getter(AccessLevel.NONE)
+    final List<DatabaseChange> databaseChanges = new ArrayList<>(0);
+
+    StatementClassification(MySQLToken firstToken, boolean noBackslashEscapes, int version) {
+        this.firstToken = firstToken;
+        this.noBackslashEscapes = noBackslashEscapes;
+        this.version = version;
+    }
+
+    /**
+     * Check whether this classification is still valid for the same sql under the given sql mode and version.
+     */
+    public boolean isCompatible(String sqlMode, int version) {
+        return this.noBackslashEscapes == SQLParser.isNoBackslashEscapes(sqlMode) && this.version == version;
+    }
+
+    /**
+     * Whether this classification only depends on the shape of the sql, and can be shared by all sqls which only
+     * differ in literals. Parsed statements and database names depend on the literal values, so never cached.
+     */
+    public boolean isLiteralIndependent() {
+        if (null == statements || !databaseChanges.isEmpty()) {
+            return false;
+        }
+        for (final SQLStatement stmt : statements) {
+            if (stmt != null) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Apply USE db and DROP DATABASE db in order to current database, and statements not succeeded are ignored.
+     */
+    public String applyDatabase(String nowDatabase, boolean lowerCase, boolean[] stmtGood) {
+        for (final DatabaseChange change : databaseChanges) {
+            if (stmtGood != null && change.stmtId < stmtGood.length && !stmtGood[change.stmtId]) {
+                continue; // ignore stmt which is not success
+            }
+
+            if (change.use) {
+                nowDatabase = change.database;
+            } else if (lowerCase ? change.database.equalsIgnoreCase(nowDatabase) :
+                change.database.equals(nowDatabase)) {
+                nowDatabase = null; // clear current db if same
+            }
+        }
+        return nowDatabase;
+    }
+
+    static class DatabaseChange {
+        final int stmtId;
+        final boolean use; // USE db or DROP DATABASE db
+        final String database;
+
+        DatabaseChange(int stmtId, boolean use, String database) {
+            this.stmtId = stmtId;
+            this.use = use;
+            this.database = database;
+        }
+    }
+}
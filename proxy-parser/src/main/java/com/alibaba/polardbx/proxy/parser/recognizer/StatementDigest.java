@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.parser.recognizer;
+
+import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
+
+import java.nio.charset.Charset;
+
+/**
+ * Normalized text and hash of a statement built from the lexer token stream, fed by
+ * {@link com.alibaba.polardbx.proxy.parser.recognizer.mysql.lexer.MySQLLexer} during {@link SQLParser#classify()}.
+ * Literals and placeholders become '?', comma separated lists of two or more literals collapse to "?, ...",
+ * keywords are upper cased, comments and whitespace are normalized, and the trailing ';' is dropped. So
+ * {@code select a from t where id in (1, 2,3)} and {@code SELECT a  FROM t WHERE id IN ('x', 'y')} have the same
+ * digest.
+ * Text is truncated at max length, while hash always covers the whole token stream.
+ */
+public final class StatementDigest {
+    public static final int DEFAULT_MAX_LENGTH = 1024;
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final int NONE = 0;
+    private static final int LITERAL = 1; // last emitted is a literal
+    private static final int LITERAL_LIST = 2; // last emitted is collapsed literal list
+
+    private final int maxLength;
+    private final StringBuilder text = new StringBuilder(64);
+    private long hash = FNV_OFFSET;
+    private boolean truncated = false;
+
+    private MySQLToken last = null;
+    private int state = NONE;
+    private MySQLToken pending = null; // deferred ',' after literal or ';'
+
+    public StatementDigest(int maxLength) {
+        this.maxLength = maxLength;
+    }
+
+    public String getText() {
+        return text.toString();
+    }
+
+    public long getHash() {
+        return hash;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    private static boolean isLiteral(MySQLToken token) {
+        switch (token) {
+        case LITERAL_HEX:
+        case LITERAL_BIT:
+        case LITERAL_NUM_PURE_DIGIT:
+        case LITERAL_NUM_MIX_DIGIT:
+        case LITERAL_CHARS:
+        case LITERAL_NCHARS:
+        case QUESTION_MARK:
+            return true;
+        default:
+            return false;
+        }
+    }
+
+    private void append(char ch) {
+        hash = (hash ^ ch) * FNV_PRIME;
+        if (text.length() < maxLength) {
+            text.append(ch);
+        } else {
+            truncated = true;
+        }
+    }
+
+    private void append(String str) {
+        for (int i = 0; i < str.length(); ++i) {
+            append(str.charAt(i));
+        }
+    }
+
+    private void separate(MySQLToken token) {
+        if (null == last) {
+            return;
+        }
+        switch (token) {
+        case PUNC_COMMA:
+        case PUNC_RIGHT_PAREN:
+        case PUNC_DOT:
+        case PUNC_SEMICOLON:
+            return;
+        case PUNC_LEFT_PAREN:
+            if (MySQLToken.IDENTIFIER == last) {
+                return; // function call
+            }
+            break;
+        default:
+            break;
+        }
+        if (MySQLToken.PUNC_LEFT_PAREN == last || MySQLToken.PUNC_DOT == last) {
+            return;
+        }
+        append(' ');
+    }
+
+    /**
+     * Feed a token which spans [from, to) of sql. EOF and comments are never fed.
+     */
+    public void feed(MySQLToken token, byte[] sql, int from, int to, Charset charset) {
+        if (pending != null) {
+            if (MySQLToken.PUNC_COMMA == pending && isLiteral(token)) {
+                // literal list, "?, ?, ?" -> "?, ..."
+                pending = null;
+                if (state != LITERAL_LIST) {
+                    append(", ...");
+                    state = LITERAL_LIST;
+                }
+                return;
+            }
+            separate(pending);
+            append(MySQLToken.PUNC_COMMA == pending ? ',' : ';');
+            last = pending;
+            pending = null;
+        }
+
+        if (MySQLToken.PUNC_SEMICOLON == token || (MySQLToken.PUNC_COMMA == token && state != NONE)) {
+            pending = token;
+            return;
+        }
+
+        separate(token);
+        if (isLiteral(token)) {
+            append('?');
+            state = LITERAL;
+        } else {
+            state = NONE;
+            final boolean verbatim;
+            switch (token) {
+            case IDENTIFIER:
+            case USR_VAR:
+            case SYS_VAR:
+            case PLACE_HOLDER:
+                verbatim = true;
+                break;
+            default:
+                verbatim = false;
+                break;
+            }
+            boolean ascii = true;
+            for (int i = from; i < to; ++i) {
+                if (sql[i] < 0) {
+                    ascii = false;
+                    break;
+                }
+            }
+            if (ascii) {
+                for (int i = from; i < to; ++i) {
+                    final char ch = (char) sql[i];
+                    append(!verbatim && ch >= 'a' && ch <= 'z' ? (char) (ch - 'a' + 'A') : ch);
+                }
+            } else {
+                append(new String(sql, from, to - from, charset));
+            }
+        }
+        last = token;
+    }
+}
@@ -0,0 +1,353 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.parser.recognizer;
+
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.parser.util.FastCharTypes;
+
+import java.nio.charset.Charset;
+import java.sql.SQLSyntaxErrorException;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Bounded concurrent cache from normalized sql(literals replaced by '?') to its classification, so repeated
+ * parameterized sqls skip the lexer and classification entirely.
+ * <p>
+ * Normalization is a single byte scan which follows the string, comment and number rules of MySQLLexer. Any sql
+ * it is not sure about(executable comments, introducers like _utf8'x', unclosed quotes) is not cached. Entries are
+ * kept in two generations, new entries go to the young one and old entries are promoted when hit, and the whole
+ * old generation is dropped when the young one is full.
+ */
+public class StatementDigestCache {
+    private static final StatementDigestCache INSTANCE = new StatementDigestCache();
+
+    public static StatementDigestCache getInstance() {
+        return INSTANCE;
+    }
+
+    private static final ThreadLocal<byte[]> BUFFER = ThreadLocal.withInitial(() -> new byte[1024]);
+
+    private volatile ConcurrentHashMap<Digest, StatementClassification> young = new ConcurrentHashMap<>();
+    private volatile ConcurrentHashMap<Digest, StatementClassification> old = new ConcurrentHashMap<>();
+
+    // stats
+    private final AtomicLong hits = new AtomicLong(0);
+    private final AtomicLong misses = new AtomicLong(0);
+    private final AtomicLong uncacheable = new AtomicLong(0); // can not normalize or result depends on literals
+    private final AtomicLong bypass = new AtomicLong(0); // disabled or too long
+    private final AtomicLong evictions = new AtomicLong(0);
+    private final AtomicLong rotations = new AtomicLong(0);
+
+    private static final class Digest {
+        private final byte[] bytes;
+        private final int length;
+        private final Charset charset;
+        private final int version;
+        private final int hash;
+
+        private Digest(byte[] bytes, int length, Charset charset, int version, int hash) {
+            this.bytes = bytes;
+            this.length = length;
+            this.charset = charset;
+            this.version = version;
+            this.hash = hash;
+        }
+
+        private Digest copy() {
+            return new Digest(Arrays.copyOf(bytes, length), length, charset, version, hash);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof Digest)) {
+                return false;
+            }
+            final Digest that = (Digest) obj;
+            return hash == that.hash && version == that.version && charset.equals(that.charset)
+                && Arrays.equals(bytes, 0, length, that.bytes, 0, that.length);
+        }
+    }
+
+    /**
+     * Normalize sql into buffer.
+     *
+     * @return length of normalized sql, or -1 if not able to normalize safely
+     */
+    static int normalize(byte[] sql, int offset, int length, boolean noBackslashEscapes, byte[] out) {
+        if (out.length < length + 1) {
+            return -1;
+        }
+        final int limit = offset + length;
+        int sz = 0;
+        // first byte of key is the escape mode
+        out[sz++] = (byte) (noBackslashEscapes ? 1 : 0);
+        int pos = offset;
+        while (pos < limit) {
+            final byte ch = sql[pos];
+            if (FastCharTypes.isSpace(ch)) {
+                // collapse spaces
+                while (++pos < limit && FastCharTypes.isSpace(sql[pos])) {
+                }
+                out[sz++] = ' ';
+                continue;
+            }
+            switch (ch) {
+            case '#': {
+                // line comment, keep it
+                final int end = lineEnd(sql, pos, limit);
+                System.arraycopy(sql, pos, out, sz, end - pos);
+                sz += end - pos;
+                pos = end;
+                continue;
+            }
+            case '-':
+                if (limit - pos >= 3 && '-' == sql[pos + 1] && FastCharTypes.isSpace(sql[pos + 2])) {
+                    final int end = lineEnd(sql, pos, limit);
+                    System.arraycopy(sql, pos, out, sz, end - pos);
+                    sz += end - pos;
+                    pos = end;
+                    continue;
+                }
+                break;
+            case '/':
+                if (limit - pos >= 3 && '*' == sql[pos + 1]) {
+                    if ('!' == sql[pos + 2]) {
+                        return -1; // executable comment depends on version
+                    }
+                    // normal comment(include hints), keep it
+                    int end = pos + 2;
+                    while (end + 1 < limit && !('*' == sql[end] && '/' == sql[end + 1])) {
+                        ++end;
+                    }
+                    if (end + 1 >= limit) {
+                        return -1; // unclosed
+                    }
+                    end += 2;
+                    System.arraycopy(sql, pos, out, sz, end - pos);
+                    sz += end - pos;
+                    pos = end;
+                    continue;
+                }
+                break;
+            case '`': {
+                // quoted identifier, keep it
+                int end = pos + 1;
+                while (true) {
+                    if (end >= limit) {
+                        return -1; // unclosed
+                    }
+                    if ('`' == sql[end]) {
+                        if (end + 1 < limit && '`' == sql[end + 1]) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    ++end;
+                }
+                ++end;
+                System.arraycopy(sql, pos, out, sz, end - pos);
+                sz += end - pos;
+                pos = end;
+                continue;
+            }
+            case '\'':
+            case '"': {
+                if (pos > offset && (FastCharTypes.isIdentifier(sql[pos - 1]) || '@' == sql[pos - 1])) {
+                    return -1; // introducer, hex/bit literal or quoted user variable
+                }
+                // string literal, replace with '?'
+                int end = pos + 1;
+                while (true) {
+                    if (end >= limit) {
+                        return -1; // unclosed
+                    }
+                    final byte c = sql[end];
+                    if ('\\' == c && !noBackslashEscapes) {
+                        end += 2;
+                        continue;
+                    }
+                    if (c == ch) {
+                        if (end + 1 < limit && ch == sql[end + 1]) {
+                            end += 2;
+                            continue;
+                        }
+                        break;
+                    }
+                    ++end;
+                }
+                out[sz++] = '?';
+                pos = end + 1;
+                continue;
+            }
+            default:
+                if (FastCharTypes.isDigit(ch) && (pos == offset || isNumberBoundary(sql[pos - 1]))) {
+                    // only pure digits which is a whole token
+                    int end = pos + 1;
+                    while (end < limit && FastCharTypes.isDigit(sql[end])) {
+                        ++end;
+                    }
+                    if (end == limit || isNumberBoundary(sql[end])) {
+                        out[sz++] = '?';
+                        pos = end;
+                        continue;
+                    }
+                    // identifier or decimal, keep it
+                    System.arraycopy(sql, pos, out, sz, end - pos);
+                    sz += end - pos;
+                    pos = end;
+                    continue;
+                }
+                break;
+            }
+            out[sz++] = ch;
+            ++pos;
+        }
+        return sz;
+    }
+
+    private static int lineEnd(byte[] sql, int pos, int limit) {
+        while (pos < limit && sql[pos] != '\n') {
+            ++pos;
+        }
+        return pos < limit ? pos + 1 : limit;
+    }
+
+    private static boolean isNumberBoundary(byte ch) {
+        return !FastCharTypes.isIdentifier(ch) && ch != '.' && ch != '@';
+    }
+
+    private static int hash(byte[] bytes, int length) {
+        int hash = 1;
+        for (int i = 0; i < length; ++i) {
+            hash = 31 * hash + bytes[i];
+        }
+        return hash;
+    }
+
+    /**
+     * Classify the sql via cache, same result as {@link SQLParser#classify()}.
+     * <p>
+     * Entries classified while statement statistics were off carry no token digest, they are reclassified and
+     * replaced on hit once statistics are on, so a cached result always has digest when it is wanted.
+     */
+    public StatementClassification classify(byte[] sql, Charset charset, String sqlMode, int version)
+        throws SQLSyntaxErrorException {
+        final boolean withDigest = FastConfig.statementStatsSize > 0;
+        final int capacity = FastConfig.sqlDigestCacheSize;
+        if (capacity <= 0 || sql.length > FastConfig.sqlDigestMaxLength) {
+            bypass.getAndIncrement();
+            return new SQLParser(sql, 0, sql.length, charset, sqlMode, version).classify(withDigest);
+        }
+
+        byte[] buffer = BUFFER.get();
+        if (buffer.length < sql.length + 1) {
+            buffer = new byte[Math.max(sql.length + 1, buffer.length * 2)];
+            BUFFER.set(buffer);
+        }
+        final int length = normalize(sql, 0, sql.length, SQLParser.isNoBackslashEscapes(sqlMode), buffer);
+        if (length < 0) {
+            uncacheable.getAndIncrement();
+            return new SQLParser(sql, 0, sql.length, charset, sqlMode, version).classify(withDigest);
+        }
+
+        final Digest digest = new Digest(buffer, length, charset, version, 31 * hash(buffer, length) + version);
+        StatementClassification classification = young.get(digest);
+        if (classification != null && (!withDigest || classification.getDigest() != null)) {
+            hits.getAndIncrement();
+            return classification;
+        }
+        classification = old.get(digest);
+        if (classification != null && (!withDigest || classification.getDigest() != null)) {
+            hits.getAndIncrement();
+            put(digest.copy(), classification, capacity); // promote
+            return classification;
+        }
+
+        // miss or cached without digest
+        misses.getAndIncrement();
+        classification = new SQLParser(sql, 0, sql.length, charset, sqlMode, version).classify(withDigest);
+        if (classification.isLiteralIndependent()) {
+            put(digest.copy(), classification, capacity);
+        } else {
+            uncacheable.getAndIncrement();
+        }
+        return classification;
+    }
+
+    private void put(Digest digest, StatementClassification classification, int capacity) {
+        final ConcurrentHashMap<Digest, StatementClassification> now = young;
+        now.put(digest, classification);
+        if (now.size() >= Math.max(1, capacity / 2)) {
+            synchronized (this) {
+                if (now == young) {
+                    evictions.getAndAdd(old.size());
+                    rotations.getAndIncrement();
+                    old = now;
+                    young = new ConcurrentHashMap<>();
+                }
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (this) {
+            young = new ConcurrentHashMap<>();
+            old = new ConcurrentHashMap<>();
+        }
+    }
+
+    public int size() {
+        return young.size() + old.size();
+    }
+
+    public long getHits() {
+        return hits.get();
+    }
+
+    public long getMisses() {
+        return misses.get();
+    }
+
+    public long getUncacheable() {
+        return uncacheable.get();
+    }
+
+    public long getBypass() {
+        return bypass.get();
+    }
+
+    public long getEvictions() {
+        return evictions.get();
+    }
+
+    public long getRotations() {
+        return rotations.get();
+    }
+}
@@ -18,6 +18,8 @@
 
 package com.alibaba.polardbx.proxy.parser.recognizer.mysql.lexer;
 
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementDigest;
 import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
 import com.alibaba.polardbx.proxy.parser.util.FastCharTypes;
 import lombok.Getter;
@@ -52,6 +54,8 @@ public final class MySQLLexer {
     private boolean recordComments = false;
     @Getter
     private List<byte[]> comments;
+    @Getter
+    private ProxyHint proxyHint = null; // merged PROXY_* hints met so far
 
     @Getter
     private MySQLToken lastToken;
@@ -74,6 +78,11 @@ public final class MySQLLexer {
     private byte[] sbuf;
     private String stringValue = null;
 
+    // feed every scanned token when set, cached(pushed back) tokens are not fed again
+    @Getter
+    @Setter
+    private StatementDigest digest = null;
+
     public MySQLLexer(final String sql) {
         this(sql.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, false);
     }
@@ -128,6 +137,7 @@ public final class MySQLLexer {
         this.token = null;
 
         this.inCStyleComment = false;
+        this.proxyHint = null;
         this.offsetCache = this.sizeCache = 0;
 
         this.paramIndex = 0;
@@ -325,6 +335,10 @@ public final class MySQLLexer {
                                 ++pos;
                                 final boolean hasNext = next();
                                 addComment(from, pos);
+                                if ('+' == sql[from + 2]) {
+                                    // optimizer hints, pick proxy ones in the same scan
+                                    proxyHint = ProxyHint.parse(proxyHint, sql, from, pos);
+                                }
                                 if (!hasNext) {
                                     return; // eof
                                 }
@@ -1084,11 +1098,16 @@ public final class MySQLLexer {
             return token;
         }
 
+        int tokenStart;
         do {
             skipSeparator();
             lastToken = token;
+            tokenStart = pos;
             token = nextTokenInternal();
         } while ((inCStyleComment && inCStyleCommentIgnore) || MySQLToken.PUNC_C_STYLE_COMMENT_END == token);
+        if (digest != null && token != MySQLToken.EOF) {
+            digest.feed(token, sql, tokenStart, pos, charset);
+        }
         return token;
     }
 }
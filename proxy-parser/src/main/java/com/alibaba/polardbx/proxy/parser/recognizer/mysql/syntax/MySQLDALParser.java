@@ -34,10 +34,14 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetCharacterSetStatemen
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetNamesStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALShowStatement;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResetProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowBackend;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowCluster;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDigestCache;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowFrontend;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProperties;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyLatency;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRO;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRW;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowReactor;
@@ -53,18 +57,23 @@ import java.util.List;
 import java.util.Map;
 
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.IDENTIFIER;
+import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_CACHE;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_CHARACTER;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_CHARSET;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_COLLATE;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_DEFAULT;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_FULL;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_LEVEL;
+import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_LIKE;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_NAMES;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_OPTION;
+import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_PROXY;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_READ;
+import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_RESET;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_SET;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_SHOW;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.KW_TRANSACTION;
+import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.LITERAL_CHARS;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.OP_ASSIGN;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.OP_EQUALS;
 import static com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken.PUNC_COMMA;
@@ -81,7 +90,7 @@ public class MySQLDALParser extends MySQLParser {
     }
 
     private enum SpecialIdentifier {
-        CLUSTER, RO, RW, PROPERTIES, REACTOR, FRONTEND, BACKEND
+        CLUSTER, RO, RW, PROPERTIES, REACTOR, FRONTEND, BACKEND, DIGEST, LATENCY, STATEMENTS
     }
 
     private static final Map<String, SpecialIdentifier> specialIdentifiers = new HashMap<>();
@@ -94,6 +103,9 @@ public class MySQLDALParser extends MySQLParser {
         specialIdentifiers.put("REACTOR", SpecialIdentifier.REACTOR);
         specialIdentifiers.put("FRONTEND", SpecialIdentifier.FRONTEND);
         specialIdentifiers.put("BACKEND", SpecialIdentifier.BACKEND);
+        specialIdentifiers.put("DIGEST", SpecialIdentifier.DIGEST);
+        specialIdentifiers.put("LATENCY", SpecialIdentifier.LATENCY);
+        specialIdentifiers.put("STATEMENTS", SpecialIdentifier.STATEMENTS);
     }
 
     public DALShowStatement show() throws SQLSyntaxErrorException {
@@ -119,10 +131,29 @@ public class MySQLDALParser extends MySQLParser {
                     return new ShowReactor();
                 case FRONTEND:
                     lexer.nextToken();
-                    return new ShowFrontend();
+                    return new ShowFrontend(false, likePattern(), limit());
                 case BACKEND:
                     lexer.nextToken();
-                    return new ShowBackend();
+                    return new ShowBackend(false, likePattern(), limit());
+                case DIGEST:
+                    lexer.nextToken();
+                    match(KW_CACHE);
+                    return new ShowDigestCache();
+                }
+            }
+        } else if (KW_PROXY == lexer.token()) {
+            lexer.nextToken();
+            if (IDENTIFIER == lexer.token()) {
+                final SpecialIdentifier tempSi = specialIdentifiers.get(lexer.stringValueUppercase());
+                if (tempSi != null) {
+                    switch (tempSi) {
+                    case LATENCY:
+                        lexer.nextToken();
+                        return new ShowProxyLatency();
+                    case STATEMENTS:
+                        lexer.nextToken();
+                        return new ShowProxyStatements(limit());
+                    }
                 }
             }
         } else if (KW_FULL == lexer.token()) {
@@ -133,10 +164,10 @@ public class MySQLDALParser extends MySQLParser {
                     switch (tempSi) {
                     case FRONTEND:
                         lexer.nextToken();
-                        return new ShowFrontend(true);
+                        return new ShowFrontend(true, likePattern(), limit());
                     case BACKEND:
                         lexer.nextToken();
-                        return new ShowBackend(true);
+                        return new ShowBackend(true, likePattern(), limit());
                     }
                 }
             }
@@ -149,6 +180,21 @@ public class MySQLDALParser extends MySQLParser {
         return null;
     }
 
+    /**
+     * optional <code>LIKE 'pattern'</code>, null if absent
+     */
+    private LiteralString likePattern() throws SQLSyntaxErrorException {
+        if (lexer.token() != KW_LIKE) {
+            return null;
+        }
+        if (lexer.nextToken() != LITERAL_CHARS) {
+            throw err("expect string after LIKE");
+        }
+        final String str = lexer.stringValue();
+        lexer.nextToken();
+        return new LiteralString(null, str.substring(1, str.length() - 1), false);
+    }
+
     private String getStringValue() throws SQLSyntaxErrorException {
         String name;
         switch (lexer.token()) {
@@ -166,12 +212,39 @@ public class MySQLDALParser extends MySQLParser {
         }
     }
 
+    public ResetProxyStatements reset() throws SQLSyntaxErrorException {
+        match(KW_RESET);
+        return resetAfterKeyword();
+    }
+
+    /**
+     * first token is the one after <code>RESET</code>, only <code>RESET PROXY STATEMENTS</code> is supported
+     */
+    public ResetProxyStatements resetAfterKeyword() throws SQLSyntaxErrorException {
+        match(KW_PROXY);
+        if (IDENTIFIER == lexer.token()
+            && SpecialIdentifier.STATEMENTS == specialIdentifiers.get(lexer.stringValueUppercase())) {
+            lexer.nextToken();
+            return new ResetProxyStatements();
+        }
+        throw err("unsupported reset statement");
+    }
+
     /**
      * @return {@link DALSetStatement} or {@link MTSSetTransactionStatement}
      */
-    @SuppressWarnings("unchecked")
     public SQLStatement set() throws SQLSyntaxErrorException {
         match(KW_SET);
+        return setAfterKeyword();
+    }
+
+    /**
+     * first token is the one after <code>SET</code>
+     *
+     * @return {@link DALSetStatement} or {@link MTSSetTransactionStatement}
+     */
+    @SuppressWarnings("unchecked")
+    public SQLStatement setAfterKeyword() throws SQLSyntaxErrorException {
         if (lexer.token() == KW_OPTION) {
             lexer.nextToken();
         }
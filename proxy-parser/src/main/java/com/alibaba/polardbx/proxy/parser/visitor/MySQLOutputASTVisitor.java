@@ -160,6 +160,7 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.InspectGroupSeqRangeStatem
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.InspectRuleVersionStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.Kill;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ReleaseDbLock;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResetProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResyncLocalRulesStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResyncOutlineStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowAuthors;
@@ -179,6 +180,7 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDatabases;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDbLock;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDbStatus;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDdlStatusStatement;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDigestCache;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowEngine;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowEngines;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowErrors;
@@ -202,6 +204,8 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProcesslist;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProfile;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProfiles;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProperties;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyLatency;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRO;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRW;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowReactor;
@@ -4890,10 +4894,50 @@ public class MySQLOutputASTVisitor implements SQLASTVisitor {
 
     public void visit(ShowFrontend node) {
         appendable.append(node.isFull() ? "SHOW FULL FRONTEND" : "SHOW FRONTEND");
+        if (node.getPattern() != null) {
+            appendable.append(" LIKE ");
+            node.getPattern().accept(this);
+        }
+        if (node.getLimit() != null) {
+            appendable.append(' ');
+            node.getLimit().accept(this);
+        }
     }
 
     public void visit(ShowBackend node) {
         appendable.append(node.isFull() ? "SHOW FULL BACKEND" : "SHOW BACKEND");
+        if (node.getPattern() != null) {
+            appendable.append(" LIKE ");
+            node.getPattern().accept(this);
+        }
+        if (node.getLimit() != null) {
+            appendable.append(' ');
+            node.getLimit().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(ShowDigestCache node) {
+        appendable.append("SHOW DIGEST CACHE");
+    }
+
+    @Override
+    public void visit(ShowProxyLatency node) {
+        appendable.append("SHOW PROXY LATENCY");
+    }
+
+    @Override
+    public void visit(ShowProxyStatements node) {
+        appendable.append("SHOW PROXY STATEMENTS");
+        if (node.getLimit() != null) {
+            appendable.append(' ');
+            node.getLimit().accept(this);
+        }
+    }
+
+    @Override
+    public void visit(ResetProxyStatements node) {
+        appendable.append("RESET PROXY STATEMENTS");
     }
 
     @Override
@@ -148,6 +148,7 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.InspectGroupSeqRangeStatem
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.InspectRuleVersionStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.Kill;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ReleaseDbLock;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResetProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResyncLocalRulesStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResyncOutlineStatement;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowAuthors;
@@ -167,6 +168,7 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDatabases;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDbLock;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDbStatus;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDdlStatusStatement;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDigestCache;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowEngine;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowEngines;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowErrors;
@@ -190,6 +192,8 @@ import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProcesslist;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProfile;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProfiles;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProperties;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyLatency;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyStatements;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRO;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowRW;
 import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowReactor;
@@ -486,6 +490,14 @@ public interface SQLASTVisitor {
 
     void visit(ShowBackend node);
 
+    void visit(ShowDigestCache node);
+
+    void visit(ShowProxyLatency node);
+
+    void visit(ShowProxyStatements node);
+
+    void visit(ResetProxyStatements node);
+
     // -------------------------------------------------------
     void visit(DMLCallStatement node);
 
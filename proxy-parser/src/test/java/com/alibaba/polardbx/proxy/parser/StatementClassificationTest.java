@@ -0,0 +1,293 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.parser;
+
+import com.alibaba.polardbx.proxy.parser.ast.stmt.SQLStatement;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.DALSetStatement;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.Kill;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ResetProxyStatements;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowCluster;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowDigestCache;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyLatency;
+import com.alibaba.polardbx.proxy.parser.ast.stmt.dal.ShowProxyStatements;
+import com.alibaba.polardbx.proxy.parser.recognizer.ProxyHint;
+import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
+import com.alibaba.polardbx.proxy.parser.recognizer.mysql.MySQLToken;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class StatementClassificationTest {
+    // sql, slave readable, read only, multi statement, privilege or database changed, database after USE/DROP on xxx
+    private static final Object[][] SQLS = new Object[][] {
+        {"select 1", true, true, false, false, "xxx"},
+        {"select 1;", false, false, false, false, "xxx"},
+        {"select 1;select 2", true, true, true, false, "xxx"},
+        {"select 1;;", false, false, true, false, "xxx"},
+        {"select 1;update tt set a=1", false, false, true, false, "xxx"},
+        {"select 1;select 2 for update", false, true, true, false, "xxx"},
+        {"select 1 lock in share mode;select 2", false, true, true, false, "xxx"},
+        {"select a from t for share", false, true, false, false, "xxx"},
+        {"select /*+ hint */ a from t where id = 'for update'", true, true, false, false, "xxx"},
+        {"explain select 1", false, false, false, false, "xxx"},
+        {"insert into t values (1)", false, false, false, false, "xxx"},
+        {"show cluster", false, false, false, false, "xxx"},
+        {"show rw; show ro", false, false, true, false, "xxx"},
+        {"kill 1;select 2;", false, false, true, false, "xxx"},
+        {"kill query 3", false, false, false, false, "xxx"},
+        {"set @a=1, b=2", false, false, false, false, "xxx"},
+        {"set names utf8mb4; set session transaction read only", false, false, true, false, "xxx"},
+        {"set password = 'x'", false, false, false, true, "xxx"},
+        {"select 1;SET PASSWORD FOR 'jeffrey'@'localhost' = 'auth_string';select 2", false, false, true, true, "xxx"},
+        {"set a=1 garbage", false, false, false, false, "xxx"},
+        {"select 1;flush privileges;select 2", false, false, true, true, "xxx"},
+        {"select 1;create database xxx;select 2", false, false, true, true, "xxx"},
+        {"select 1;create user 'newuser'@'localhost' IDENTIFIED BY 'password';select 2",
+            false, false, true, true, "xxx"},
+        {"select 1;drop user 'newuser'@'localhost';select 2", false, false, true, true, "xxx"},
+        {"select 1;ALTER USER 'jeffrey'@'localhost' IDENTIFIED BY 'new_password' PASSWORD EXPIRE;;select 2",
+            false, false, true, true, "xxx"},
+        {"select 1;RENAME USER 'jeffrey'@'localhost' TO 'jeff'@'127.0.0.1';select 2", false, false, true, true, "xxx"},
+        {"drop database if exists xxx", false, false, false, true, null},
+        {"drop schema `xxx`; use `x``xx`; drop database a;", false, false, true, true, "x`xx"},
+        {"use db1", false, false, false, false, "db1"},
+        {"rollback", false, false, false, false, "xxx"},
+        {"show proxy statements limit 10; reset proxy statements", false, false, true, false, "xxx"},
+        {"reset master", false, false, false, false, "xxx"},
+        {"", false, false, false, false, "xxx"},
+    };
+
+    @Test
+    public void legacyChecksShareClassificationTest() throws Exception {
+        for (final Object[] row : SQLS) {
+            final String sql = (String) row[0];
+            final SQLParser parser = new SQLParser(sql);
+            final StatementClassification classification = parser.classify();
+            Assert.assertEquals(1, parser.getScans());
+
+            Assert.assertEquals(sql, parser.getFirstToken(), classification.getFirstToken());
+            Assert.assertEquals(sql, row[1], classification.isSlaveReadable());
+            Assert.assertEquals(sql, row[2], classification.isReadOnly());
+            Assert.assertEquals(sql, row[3], classification.isMultiStatement());
+            Assert.assertEquals(sql, row[4], classification.isPrivilegeDatabaseChanged());
+            Assert.assertEquals(sql, row[5], classification.applyDatabase("xxx", false, null));
+
+            // legacy checks are answered by the classification
+            Assert.assertEquals(sql, row[1], parser.canSlaveRead());
+            Assert.assertEquals(sql, row[2], parser.isReadOnly());
+            Assert.assertEquals(sql, row[3], parser.isMultiStatement());
+            Assert.assertEquals(sql, row[4], parser.isPrivilegeDatabaseChanged());
+            for (final String db : new String[] {null, "a", "xxx", "XXX", "x`xx"}) {
+                Assert.assertEquals(sql, parser.applyDatabase(db, false),
+                    classification.applyDatabase(db, false, null));
+                Assert.assertEquals(sql, parser.applyDatabase(db, true),
+                    classification.applyDatabase(db, true, null));
+                final boolean[] good = new boolean[] {true, false, true};
+                Assert.assertEquals(sql, parser.applyDatabase(db, false, good),
+                    classification.applyDatabase(db, false, good));
+            }
+            Assert.assertEquals(sql, 1, parser.getScans());
+
+            // legacy checks on a fresh parser lex only once
+            final SQLParser legacy = new SQLParser(sql);
+            Assert.assertEquals(sql, row[1], legacy.canSlaveRead());
+            Assert.assertEquals(sql, row[2], legacy.isReadOnly());
+            Assert.assertEquals(sql, row[3], legacy.isMultiStatement());
+            Assert.assertEquals(sql, row[4], legacy.isPrivilegeDatabaseChanged());
+            Assert.assertEquals(sql, row[5], legacy.applyDatabase("xxx", false));
+            Assert.assertEquals(sql, 1, legacy.getScans());
+
+            List<SQLStatement> statements;
+            try {
+                statements = parser.parseMultiStatements();
+            } catch (Exception ignore) {
+                statements = null;
+            }
+            if (null == statements || null == classification.getStatements()) {
+                // SET PASSWORD is not supported by parser, but recorded as privilege change
+                if (!classification.isPrivilegeDatabaseChanged()) {
+                    Assert.assertNull(sql, statements);
+                    Assert.assertNull(sql, classification.getStatements());
+                }
+            } else {
+                Assert.assertEquals(sql, statements.size(), classification.getStatements().size());
+                Assert.assertEquals(sql, statements.size(), classification.getStatementCount());
+                for (int i = 0; i < statements.size(); ++i) {
+                    Assert.assertEquals(sql, null == statements.get(i) ? null : statements.get(i).getClass(),
+                        null == classification.getStatements().get(i) ? null :
+                            classification.getStatements().get(i).getClass());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void statementsTest() throws Exception {
+        StatementClassification classification = new SQLParser("show cluster").classify();
+        Assert.assertEquals(1, classification.getStatements().size());
+        Assert.assertTrue(classification.getStatements().get(0) instanceof ShowCluster);
+
+        classification = new SQLParser("show digest cache").classify();
+        Assert.assertTrue(classification.getStatements().get(0) instanceof ShowDigestCache);
+
+        classification = new SQLParser("show proxy latency").classify();
+        Assert.assertTrue(classification.getStatements().get(0) instanceof ShowProxyLatency);
+
+        classification = new SQLParser("show proxy statements").classify();
+        Assert.assertNull(((ShowProxyStatements) classification.getStatements().get(0)).getLimit());
+        classification = new SQLParser("show proxy statements limit 5").classify();
+        Assert.assertEquals(5,
+            ((ShowProxyStatements) classification.getStatements().get(0)).getLimit().getSize());
+
+        classification = new SQLParser("reset proxy statements").classify();
+        Assert.assertTrue(classification.getStatements().get(0) instanceof ResetProxyStatements);
+        Assert.assertFalse(classification.isReadOnly());
+        classification = new SQLParser("reset master").classify();
+        Assert.assertEquals(MySQLToken.KW_RESET, classification.getFirstToken());
+        Assert.assertNull(classification.getStatements().get(0));
+
+        classification = new SQLParser("kill 1;set @a=1;select 2").classify();
+        Assert.assertEquals(3, classification.getStatements().size());
+        Assert.assertTrue(classification.getStatements().get(0) instanceof Kill);
+        Assert.assertTrue(classification.getStatements().get(1) instanceof DALSetStatement);
+        Assert.assertNull(classification.getStatements().get(2));
+        Assert.assertTrue(classification.isMultiStatement());
+        Assert.assertFalse(classification.isReadOnly());
+        final List<SQLStatement> shared = classification.getStatements();
+        Assert.assertThrows(UnsupportedOperationException.class, () -> shared.add(null));
+
+        classification = new SQLParser("set password = 'x'; set @a=1").classify();
+        Assert.assertTrue(classification.isPrivilegeDatabaseChanged());
+        Assert.assertNull(classification.getStatements().get(0));
+        Assert.assertTrue(classification.getStatements().get(1) instanceof DALSetStatement);
+
+        classification = new SQLParser("rollback").classify();
+        Assert.assertSame(MySQLToken.KW_ROLLBACK, classification.getFirstToken());
+    }
+
+    @Test
+    public void compatibleTest() throws Exception {
+        final StatementClassification classification = new SQLParser("select 1").classify();
+        Assert.assertTrue(classification.isCompatible(null, classification.getVersion()));
+        Assert.assertTrue(classification.isCompatible("STRICT_TRANS_TABLES", classification.getVersion()));
+        Assert.assertFalse(classification.isCompatible("NO_BACKSLASH_ESCAPES", classification.getVersion()));
+        Assert.assertFalse(classification.isCompatible(null, classification.getVersion() + 1));
+    }
+
+    @Test
+    public void digestTest() throws Exception {
+        final StatementClassification a =
+            new SQLParser("select a, b from t where id in (1, 2,3) and c = 'x' /* c */ limit 10;").classify();
+        Assert.assertEquals("SELECT a, b FROM t WHERE id IN (?, ...) AND c = ? LIMIT ?", a.getDigest());
+
+        final StatementClassification b =
+            new SQLParser("SELECT  a,b FROM t WHERE id IN ('x', 'z') AND c = \"y\" LIMIT 1").classify();
+        Assert.assertEquals(a.getDigest(), b.getDigest());
+        Assert.assertEquals(a.getDigestHash(), b.getDigestHash());
+
+        final StatementClassification c = new SQLParser("select a, b from t where id = ?").classify();
+        Assert.assertEquals("SELECT a, b FROM t WHERE id = ?", c.getDigest());
+        Assert.assertNotEquals(a.getDigestHash(), c.getDigestHash());
+
+        Assert.assertEquals("INSERT INTO `t`(a, b) VALUES (?, ...), (?, ...); SELECT count(*) FROM t.x",
+            new SQLParser("insert into `t`(a, b) values (1, 'a'), (2, 'b');select count(*) from t.x").classify()
+                .getDigest());
+        Assert.assertEquals("SET @a = ?, b = ?", new SQLParser("set @a=1, b=2").classify().getDigest());
+        Assert.assertEquals("", new SQLParser("").classify().getDigest());
+
+        // no digest if not wanted, and others are same
+        final StatementClassification d =
+            new SQLParser("select a, b from t where id in (1, 2,3) and c = 'x' /* c */ limit 10;").classify(false);
+        Assert.assertNull(d.getDigest());
+        Assert.assertEquals(0, d.getDigestHash());
+        Assert.assertEquals(a.isSlaveReadable(), d.isSlaveReadable());
+        Assert.assertEquals(a.getStatementCount(), d.getStatementCount());
+    }
+
+    @Test
+    public void startTransactionTest() throws Exception {
+        StatementClassification classification = new SQLParser("start transaction read only").classify();
+        Assert.assertTrue(classification.isStartTransaction());
+        Assert.assertEquals(Boolean.TRUE, classification.getStartTransactionReadOnly());
+        Assert.assertFalse(classification.isSlaveReadable());
+
+        classification = new SQLParser("START TRANSACTION WITH CONSISTENT SNAPSHOT, READ ONLY;").classify();
+        Assert.assertTrue(classification.isStartTransaction());
+        Assert.assertEquals(Boolean.TRUE, classification.getStartTransactionReadOnly());
+
+        classification = new SQLParser("start transaction read write").classify();
+        Assert.assertTrue(classification.isStartTransaction());
+        Assert.assertEquals(Boolean.FALSE, classification.getStartTransactionReadOnly());
+
+        for (final String sql : new String[] {"begin", "BEGIN WORK;", "start transaction"}) {
+            classification = new SQLParser(sql).classify();
+            Assert.assertTrue(sql, classification.isStartTransaction());
+            Assert.assertNull(sql, classification.getStartTransactionReadOnly());
+        }
+
+        for (final String sql : new String[] {
+            "start slave", "begin not atomic select 1; end", "start transaction read only; select 1",
+            "select 1; begin", "commit", "set transaction read only"}) {
+            classification = new SQLParser(sql).classify();
+            Assert.assertFalse(sql, classification.isStartTransaction());
+            Assert.assertNull(sql, classification.getStartTransactionReadOnly());
+        }
+    }
+
+    @Test
+    public void proxyHintTest() throws Exception {
+        SQLParser parser = new SQLParser("select /*+ PROXY_ROUTE(learner) proxy_consistency( weak ) */ a from t");
+        StatementClassification classification = parser.classify();
+        Assert.assertEquals(1, parser.getScans());
+        ProxyHint hint = classification.getProxyHint();
+        Assert.assertEquals(ProxyHint.Route.LEARNER, hint.getRoute());
+        Assert.assertEquals(ProxyHint.Consistency.WEAK, hint.getConsistency());
+        Assert.assertTrue(classification.isSlaveReadable());
+
+        // node route, and hints in separated comments are merged
+        classification = new SQLParser(
+            "/*+ PROXY_ROUTE(node='10.0.0.1:3306') */ select /*+ PROXY_CONSISTENCY(strong) */ 1").classify();
+        hint = classification.getProxyHint();
+        Assert.assertEquals(ProxyHint.Route.NODE, hint.getRoute());
+        Assert.assertEquals("10.0.0.1:3306", hint.getNode());
+        Assert.assertEquals(ProxyHint.Consistency.STRONG, hint.getConsistency());
+
+        // not hint comment, other hints and bad value
+        Assert.assertNull(new SQLParser("select /* PROXY_ROUTE(leader) */ 1").classify().getProxyHint());
+        Assert.assertNull(new SQLParser("select /*+ MAX_EXECUTION_TIME(10) */ 1").classify().getProxyHint());
+        Assert.assertNull(new SQLParser("select 'PROXY_ROUTE(leader)'").classify().getProxyHint());
+        hint = new SQLParser("select /*+ PROXY_ROUTE(somewhere) */ 1").classify().getProxyHint();
+        Assert.assertNull(hint.getRoute());
+        Assert.assertNull(hint.getConsistency());
+
+        // strip proxy ones and keep others
+        final String sql = "select /*+ MAX_EXECUTION_TIME(10) PROXY_ROUTE(leader) */ a, '/*+ x */' from t";
+        hint = new SQLParser(sql).classify().getProxyHint();
+        Assert.assertEquals(ProxyHint.Route.LEADER, hint.getRoute());
+        Assert.assertEquals("select /*+ MAX_EXECUTION_TIME(10)  */ a, '/*+ x */' from t",
+            new String(hint.strip(sql.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+        final String only = "/*+ PROXY_CONSISTENCY(weak) */select 1";
+        hint = new SQLParser(only).classify().getProxyHint();
+        Assert.assertEquals("select 1",
+            new String(hint.strip(only.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8));
+    }
+}
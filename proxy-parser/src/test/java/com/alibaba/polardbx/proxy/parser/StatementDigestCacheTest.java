@@ -0,0 +1,207 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the License);
+ * you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.alibaba.polardbx.proxy.parser;
+
+import com.alibaba.polardbx.proxy.config.FastConfig;
+import com.alibaba.polardbx.proxy.parser.recognizer.SQLParser;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementClassification;
+import com.alibaba.polardbx.proxy.parser.recognizer.StatementDigestCache;
+import com.alibaba.polardbx.proxy.parser.recognizer.mysql.lexer.MySQLLexer;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLSyntaxErrorException;
+
+public class StatementDigestCacheTest {
+    private final StatementDigestCache cache = StatementDigestCache.getInstance();
+
+    @Before
+    public void setUp() {
+        FastConfig.sqlDigestCacheSize = 16;
+        FastConfig.sqlDigestMaxLength = 4096;
+        cache.clear();
+    }
+
+    @After
+    public void tearDown() {
+        cache.clear();
+    }
+
+    private StatementClassification classify(String sql, String sqlMode) throws Exception {
+        return cache.classify(sql.getBytes(StandardCharsets.UTF_8), StandardCharsets.UTF_8, sqlMode,
+            MySQLLexer.DEFAULT_VERSION);
+    }
+
+    private static void assertSame(String sql, String sqlMode) throws Exception {
+        final byte[] bytes = sql.getBytes(StandardCharsets.UTF_8);
+        final StatementClassification expect;
+        try {
+            expect = new SQLParser(bytes, 0, bytes.length, StandardCharsets.UTF_8, sqlMode,
+                MySQLLexer.DEFAULT_VERSION).classify();
+        } catch (SQLSyntaxErrorException e) {
+            Assert.assertThrows(sql, SQLSyntaxErrorException.class, () -> StatementDigestCache.getInstance()
+                .classify(bytes, StandardCharsets.UTF_8, sqlMode, MySQLLexer.DEFAULT_VERSION));
+            return;
+        }
+        final StatementClassification actual = StatementDigestCache.getInstance()
+            .classify(bytes, StandardCharsets.UTF_8, sqlMode, MySQLLexer.DEFAULT_VERSION);
+        Assert.assertEquals(sql, expect.getFirstToken(), actual.getFirstToken());
+        Assert.assertEquals(sql, expect.isSlaveReadable(), actual.isSlaveReadable());
+        Assert.assertEquals(sql, expect.isReadOnly(), actual.isReadOnly());
+        Assert.assertEquals(sql, expect.isMultiStatement(), actual.isMultiStatement());
+        Assert.assertEquals(sql, expect.getStatementCount(), actual.getStatementCount());
+        Assert.assertEquals(sql, expect.isPrivilegeDatabaseChanged(), actual.isPrivilegeDatabaseChanged());
+        Assert.assertEquals(sql, null == expect.getStatements(), null == actual.getStatements());
+    }
+
+    @Test
+    public void hitTest() throws Exception {
+        final long hits = cache.getHits();
+        final long misses = cache.getMisses();
+        final StatementClassification first = classify("select * from t where id = 1 and name = 'a'", null);
+        Assert.assertSame(first, classify("select * from t where id = 12345  and name = 'b''c'", null));
+        Assert.assertSame(first, classify("select * from t where id = 2 and name = \"x\\\"y\"", null));
+        Assert.assertEquals(misses + 1, cache.getMisses());
+        Assert.assertEquals(hits + 2, cache.getHits());
+
+        // identifiers, decimals and comments are part of the digest
+        Assert.assertNotSame(first, classify("select * from t2 where id = 1 and name = 'a'", null));
+        Assert.assertNotSame(first, classify("select * from t where id = 1.5 and name = 'a'", null));
+        Assert.assertNotSame(first, classify("select * from t where id = 1 and name = 'a' /* x */", null));
+        final StatementClassification hinted =
+            classify("select /*+ PROXY_ROUTE(leader) */ * from t where id = 1 and name = 'a'", null);
+        Assert.assertNull(first.getProxyHint());
+        Assert.assertNotNull(hinted.getProxyHint());
+        Assert.assertSame(hinted,
+            classify("select /*+ PROXY_ROUTE(leader) */ * from t where id = 2 and name = 'b'", null));
+        // escape mode is part of the digest
+        Assert.assertNotSame(first, classify("select * from t where id = 1 and name = 'a'", "NO_BACKSLASH_ESCAPES"));
+    }
+
+    @Test
+    public void statementStatsToggleTest() throws Exception {
+        final int original = FastConfig.statementStatsSize;
+        try {
+            // no digest built when statement stats off
+            FastConfig.statementStatsSize = 0;
+            final StatementClassification plain = classify("select * from t where id = 1", null);
+            Assert.assertNull(plain.getDigest());
+            Assert.assertSame(plain, classify("select * from t where id = 2", null));
+
+            // cached one without digest is replaced once stats on
+            FastConfig.statementStatsSize = 16;
+            final long misses = cache.getMisses();
+            final StatementClassification digested = classify("select * from t where id = 3", null);
+            Assert.assertEquals("SELECT * FROM t WHERE id = ?", digested.getDigest());
+            Assert.assertEquals(misses + 1, cache.getMisses());
+            Assert.assertSame(digested, classify("select * from t where id = 4", null));
+
+            // and entry with digest still serves when stats off again
+            FastConfig.statementStatsSize = 0;
+            Assert.assertSame(digested, classify("select * from t where id = 5", null));
+        } finally {
+            FastConfig.statementStatsSize = original;
+        }
+    }
+
+    @Test
+    public void literalSafetyTest() throws Exception {
+        final String[] sqls = new String[] {
+            "select 1",
+            "select ';' from t",
+            "select ';update t set a=1' from t",
+            "select 'a\\';update t set a=1;#' from t",
+            "select \"for update\" from t",
+            "select 1 from t for update",
+            "select 1 from t where a = 'x' for update",
+            "select 1 from t where a = 'x' -- for update",
+            "select 1 from t where a = 'x' --for update",
+            "select 1 from t where a = 'x' # ; for update\n",
+            "select 1 /* ; */ from t",
+            "select 1 /*!40001 for update */",
+            "select `a;b` from `t``1`",
+            "select _utf8mb4'abc' from t",
+            "select x'0A', b'01', n'abc' from t",
+            "select 1 from t1; select 2 from t2",
+            "select 1e3, 0x1F, 1a from t",
+            "insert into t values (1, 'a'), (2, 'b')",
+            "update t set a = 'b' where id = 3",
+            "set @a = 'x'",
+            "set autocommit = 0",
+            "show cluster",
+            "kill 12",
+            "use db",
+            "drop database db",
+            "select 1; set password = 'a'",
+            "select 'unclosed",
+            "select 1 /* unclosed",
+        };
+        for (int round = 0; round < 2; ++round) {
+            for (final String sql : sqls) {
+                assertSame(sql, null);
+                assertSame(sql, "NO_BACKSLASH_ESCAPES");
+            }
+        }
+        // same template, different literals
+        assertSame("select 'a\\';update t set a=1;#' from t", "NO_BACKSLASH_ESCAPES");
+        assertSame("select 'a\\';update t set a=2;#' from t", null);
+    }
+
+    @Test
+    public void uncacheableTest() throws Exception {
+        final long uncacheable = cache.getUncacheable();
+        // depends on literals
+        final StatementClassification set = classify("set @a = 1", null);
+        Assert.assertNotSame(set, classify("set @a = 2", null));
+        classify("use db1", null);
+        // not able to normalize safely
+        classify("select /*!40001 1 */", null);
+        classify("select _utf8mb4'a'", null);
+        Assert.assertEquals(uncacheable + 5, cache.getUncacheable());
+        Assert.assertEquals(0, cache.size());
+
+        final long bypass = cache.getBypass();
+        FastConfig.sqlDigestMaxLength = 8;
+        classify("select 123456789", null);
+        FastConfig.sqlDigestCacheSize = 0;
+        classify("select 1", null);
+        Assert.assertEquals(bypass + 2, cache.getBypass());
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void evictionTest() throws Exception {
+        final long evictions = cache.getEvictions();
+        for (int i = 0; i < 100; ++i) {
+            classify("select c" + i + " from t where id = " + i, null);
+            Assert.assertTrue(cache.size() <= FastConfig.sqlDigestCacheSize);
+        }
+        Assert.assertTrue(cache.getEvictions() > evictions);
+
+        // hot entry survives by promotion
+        final StatementClassification hot = classify("select hot from t where id = 1", null);
+        for (int i = 0; i < 100; ++i) {
+            classify("select d" + i + " from t where id = " + i, null);
+            Assert.assertSame(hot, classify("select hot from t where id = " + i, null));
+        }
+    }
+}
@@ -24,28 +24,53 @@ import io.grpc.ServerBuilder;
 import io.grpc.stub.StreamObserver;
 
 import java.io.IOException;
+import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 public class GeneralService extends GeneralServiceGrpc.GeneralServiceImplBase {
     private static final String OK_RESULT = "ok";
     private static final String NO_HANDLER_RESULT = "no_handler";
-    private static final Map<String, ServiceHandler> HANDLER_MAP = new ConcurrentHashMap<>();
+
+    // the service of this process
+    private static final GeneralService INSTANCE = new GeneralService();
+
+    // <host:port, channel>, channels are thread safe and reconnect by themselves, so shared by all invocations
+    private static final Map<String, ManagedChannel> CHANNELS = new ConcurrentHashMap<>();
+
+    // replaceable for in-process transport in test
+    private static volatile BiFunction<String, Integer, ManagedChannelBuilder<?>> channelBuilder =
+        (host, port) -> ManagedChannelBuilder.forAddress(host, port).usePlaintext();
+
+    private final Map<String, ServiceHandler> handlers = new ConcurrentHashMap<>();
+
+    public static void setChannelBuilder(BiFunction<String, Integer, ManagedChannelBuilder<?>> builder) {
+        channelBuilder = builder;
+    }
+
+    public ServiceHandler register(String name, ServiceHandler handler) {
+        return handlers.put(name, handler);
+    }
+
+    public ServiceHandler unregister(String name) {
+        return handlers.remove(name);
+    }
 
     public static ServiceHandler registerHandler(String name, ServiceHandler handler) {
-        return HANDLER_MAP.put(name, handler);
+        return INSTANCE.register(name, handler);
     }
 
     public static ServiceHandler unregisterHandler(String name) {
-        return HANDLER_MAP.remove(name);
+        return INSTANCE.unregister(name);
     }
 
     @Override
     public void generalRemoteProcedure(GeneralServiceProto.GeneralRequest request,
                                        StreamObserver<GeneralServiceProto.GeneralResponse> responseObserver) {
         final String type = request.getType();
-        final ServiceHandler handler = HANDLER_MAP.get(type);
+        final ServiceHandler handler = handlers.get(type);
 
         final GeneralServiceProto.GeneralResponse response;
         if (null == handler) {
@@ -66,28 +91,41 @@ public class GeneralService extends GeneralServiceGrpc.GeneralServiceImplBase {
 
     public static void startServer(int port) throws IOException {
         ServerBuilder.forPort(port)
-            .addService(new GeneralService())
+            .addService(INSTANCE)
             .build()
             .start();
     }
 
+    private static ManagedChannel channel(final String host, final int port) {
+        return CHANNELS.computeIfAbsent(host + ':' + port, k -> channelBuilder.apply(host, port).build());
+    }
+
+    /**
+     * Close cached channels of peers not in targets(host:port), invoked when peers leave.
+     */
+    public static void retainChannels(Collection<String> targets) {
+        CHANNELS.entrySet().removeIf(entry -> {
+            if (targets.contains(entry.getKey())) {
+                return false;
+            }
+            entry.getValue().shutdown();
+            return true;
+        });
+    }
+
+    /**
+     * @return json result, or null if no handler for type on peer
+     */
     public static String invoke(final String host, final int port, final String type, final String json,
                                 final long timeoutMillis) {
-        final ManagedChannel channel = ManagedChannelBuilder.forAddress(host, port)
-            .usePlaintext()
+        final GeneralServiceGrpc.GeneralServiceBlockingStub stub =
+            GeneralServiceGrpc.newBlockingStub(channel(host, port));
+        final GeneralServiceProto.GeneralRequest request = GeneralServiceProto.GeneralRequest.newBuilder()
+            .setType(type)
+            .setJson(json)
             .build();
-
-        try {
-            final GeneralServiceGrpc.GeneralServiceBlockingStub stub = GeneralServiceGrpc.newBlockingStub(channel);
-            final GeneralServiceProto.GeneralRequest request = GeneralServiceProto.GeneralRequest.newBuilder()
-                .setType(type)
-                .setJson(json)
-                .build();
-            final GeneralServiceProto.GeneralResponse response =
-                stub.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS).generalRemoteProcedure(request);
-            return response.getResult().equals(OK_RESULT) ? response.getJson() : null;
-        } finally {
-            channel.shutdownNow();
-        }
+        final GeneralServiceProto.GeneralResponse response =
+            stub.withDeadlineAfter(timeoutMillis, TimeUnit.MILLISECONDS).generalRemoteProcedure(request);
+        return response.getResult().equals(OK_RESULT) ? response.getJson() : null;
     }
 }
@@ -0,0 +1,27 @@
+#!/bin/bash
+# Decode binary SQL audit log files(logs/sql/sql-*.bin) into text lines.
+# Usage: decode_sql_log.sh <sql-*.bin>...
+case "`uname`" in
+    Linux)
+		bin_abs_path=$(readlink -f $(dirname $0))
+		;;
+	*)
+		bin_abs_path=`cd $(dirname $0); pwd`
+		;;
+esac
+base=${bin_abs_path}/..
+
+if [ $# -eq 0 ]; then
+    echo "Usage: $0 <sql-*.bin>..."
+    exit 1
+fi
+
+if [ -z "$JAVA" ]; then
+    if [ -n "$JAVA_HOME" ]; then
+        JAVA="$JAVA_HOME/bin/java"
+    else
+        JAVA=java
+    fi
+fi
+
+exec $JAVA -cp "$base/conf:$base/lib/*" com.alibaba.polardbx.proxy.logger.SqlAuditDecoder "$@"